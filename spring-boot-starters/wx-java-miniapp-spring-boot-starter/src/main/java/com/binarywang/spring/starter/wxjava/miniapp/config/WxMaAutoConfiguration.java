@@ -1,18 +1,26 @@
 package com.binarywang.spring.starter.wxjava.miniapp.config;
 
 import cn.binarywang.wx.miniapp.api.WxMaService;
+import cn.binarywang.wx.miniapp.api.impl.WxMaCachedQrcodeServiceImpl;
 import cn.binarywang.wx.miniapp.api.impl.WxMaServiceImpl;
 import cn.binarywang.wx.miniapp.config.WxMaConfig;
-import cn.binarywang.wx.miniapp.config.impl.WxMaDefaultConfigImpl;
+import cn.binarywang.wx.miniapp.util.cache.WxMaQrcodeCache;
 import com.binarywang.spring.starter.wxjava.miniapp.properties.WxMaProperties;
 import lombok.AllArgsConstructor;
-import org.apache.commons.lang3.StringUtils;
+import me.chanjar.weixin.common.api.WxAccessTokenRefresher;
+import me.chanjar.weixin.common.util.http.apache.ApacheHttpClientBuilder;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * 自动配置.
@@ -28,23 +36,62 @@ import org.springframework.context.annotation.Configuration;
 public class WxMaAutoConfiguration {
   private WxMaProperties properties;
 
+  @Bean
+  @ConditionalOnMissingBean
+  public WxMaConfigFactory wxMaConfigFactory(ObjectProvider<JedisPool> jedisPool,
+                                             ObjectProvider<ApacheHttpClientBuilder> apacheHttpClientBuilder) {
+    return new WxMaConfigFactory(this.properties, jedisPool.getIfAvailable(), apacheHttpClientBuilder.getIfAvailable());
+  }
+
   /**
-   * 小程序service.
+   * 小程序service，配置了多个小程序时为第一个.
    *
    * @return 小程序service
    */
   @Bean
   @ConditionalOnMissingBean(WxMaService.class)
-  public WxMaService service() {
-    WxMaDefaultConfigImpl config = new WxMaDefaultConfigImpl();
-    config.setAppid(StringUtils.trimToNull(this.properties.getAppid()));
-    config.setSecret(StringUtils.trimToNull(this.properties.getSecret()));
-    config.setToken(StringUtils.trimToNull(this.properties.getToken()));
-    config.setAesKey(StringUtils.trimToNull(this.properties.getAesKey()));
-    config.setMsgDataFormat(StringUtils.trimToNull(this.properties.getMsgDataFormat()));
+  public WxMaService service(WxMaConfigFactory configFactory,
+                             ObjectProvider<WxAccessTokenRefresher> accessTokenRefresher,
+                             ObjectProvider<WxMaQrcodeCache> qrcodeCache) {
+    return newService(configFactory.getConfigs().values().iterator().next(),
+      accessTokenRefresher.getIfAvailable(), qrcodeCache.getIfAvailable());
+  }
 
+  /**
+   * 所有小程序的service，默认小程序对应的即为上面的service.
+   *
+   * @return 所有小程序的service
+   */
+  @Bean
+  @ConditionalOnMissingBean(WxMaMultiServices.class)
+  public WxMaMultiServices wxMaMultiServices(WxMaService service, WxMaConfigFactory configFactory,
+                                             ObjectProvider<WxAccessTokenRefresher> accessTokenRefresher,
+                                             ObjectProvider<WxMaQrcodeCache> qrcodeCache) {
+    Map<String, WxMaService> services = new LinkedHashMap<>();
+    Iterator<Map.Entry<String, WxMaConfig>> iterator = configFactory.getConfigs().entrySet().iterator();
+    services.put(iterator.next().getKey(), service);
+    while (iterator.hasNext()) {
+      Map.Entry<String, WxMaConfig> entry = iterator.next();
+      services.put(entry.getKey(),
+        newService(entry.getValue(), accessTokenRefresher.getIfAvailable(), qrcodeCache.getIfAvailable()));
+    }
+    return new WxMaMultiServices(services);
+  }
+
+  /**
+   * 创建小程序service，容器中有{@link WxAccessTokenRefresher}时由其在后台主动刷新access token，
+   * 有{@link WxMaQrcodeCache}时缓存生成的小程序码.
+   */
+  private static WxMaService newService(WxMaConfig config, WxAccessTokenRefresher accessTokenRefresher,
+                                        WxMaQrcodeCache qrcodeCache) {
     final WxMaServiceImpl service = new WxMaServiceImpl();
     service.setWxMaConfig(config);
+    if (accessTokenRefresher != null) {
+      service.setAccessTokenRefresher(accessTokenRefresher);
+    }
+    if (qrcodeCache != null) {
+      service.setQrcodeService(new WxMaCachedQrcodeServiceImpl(service, qrcodeCache));
+    }
     return service;
   }
 }
@@ -0,0 +1,151 @@
+package com.binarywang.spring.starter.wxjava.miniapp.config;
+
+import cn.binarywang.wx.miniapp.config.WxMaConfig;
+import cn.binarywang.wx.miniapp.config.impl.WxMaDefaultConfigImpl;
+import cn.binarywang.wx.miniapp.config.impl.WxMaRedisConfigImpl;
+import com.binarywang.spring.starter.wxjava.miniapp.properties.RedisProperties;
+import com.binarywang.spring.starter.wxjava.miniapp.properties.WxMaProperties;
+import me.chanjar.weixin.common.util.http.apache.ApacheHttpClientBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 根据配置属性创建所有小程序的配置.
+ * 各小程序共用同一个Redis连接池（优先使用容器中的JedisPool，没有时按照config-storage.redis创建）及同一个http连接池
+ * （容器中有ApacheHttpClientBuilder时使用它，否则使用默认的全局连接池），Redis中的数据以appid区分.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMaConfigFactory implements DisposableBean {
+  private final WxMaProperties properties;
+  private final JedisPool sharedJedisPool;
+  private final ApacheHttpClientBuilder apacheHttpClientBuilder;
+
+  private JedisPool ownedJedisPool;
+  private Map<String, WxMaConfig> configs;
+
+  /**
+   * @param properties              配置属性
+   * @param sharedJedisPool         容器中的Redis连接池，可以为null
+   * @param apacheHttpClientBuilder 容器中的http连接池，可以为null
+   */
+  public WxMaConfigFactory(WxMaProperties properties, JedisPool sharedJedisPool,
+                           ApacheHttpClientBuilder apacheHttpClientBuilder) {
+    this.properties = properties;
+    this.sharedJedisPool = sharedJedisPool;
+    this.apacheHttpClientBuilder = apacheHttpClientBuilder;
+  }
+
+  /**
+   * 获取所有小程序的配置，key为小程序标识，第一个为默认小程序.
+   * 只配置了单个小程序（或者什么都没有配置）时只有一个元素，其key为appid.
+   */
+  public synchronized Map<String, WxMaConfig> getConfigs() {
+    if (this.configs != null) {
+      return this.configs;
+    }
+
+    Map<String, WxMaConfig> result = new LinkedHashMap<>();
+    Map<String, WxMaProperties.Account> accounts = this.properties.getAccounts();
+    if (accounts.isEmpty() || StringUtils.isNotBlank(this.properties.getAppid())) {
+      WxMaProperties.Account account = new WxMaProperties.Account();
+      account.setAppid(this.properties.getAppid());
+      account.setSecret(this.properties.getSecret());
+      account.setToken(this.properties.getToken());
+      account.setAesKey(this.properties.getAesKey());
+      account.setMsgDataFormat(this.properties.getMsgDataFormat());
+      result.put(StringUtils.trimToNull(this.properties.getAppid()), this.create(account));
+    }
+
+    for (Map.Entry<String, WxMaProperties.Account> entry : accounts.entrySet()) {
+      if (result.containsKey(entry.getKey())) {
+        throw new IllegalStateException(String.format("小程序标识【%s】重复，请核实！", entry.getKey()));
+      }
+      result.put(entry.getKey(), this.create(entry.getValue()));
+    }
+
+    this.configs = Collections.unmodifiableMap(result);
+    return this.configs;
+  }
+
+  /**
+   * 创建单个小程序的配置.
+   *
+   * @param account 小程序配置
+   * @return 小程序配置
+   */
+  public WxMaConfig create(WxMaProperties.Account account) {
+    WxMaProperties.ConfigStorage storage = this.properties.getConfigStorage();
+    String appid = StringUtils.trimToNull(account.getAppid());
+    WxMaDefaultConfigImpl config;
+    if (storage.getType() == WxMaProperties.StorageType.redis) {
+      WxMaRedisConfigImpl redisConfig = new WxMaRedisConfigImpl(this.getJedisPool());
+      if (StringUtils.isNotBlank(storage.getKeyPrefix())) {
+        redisConfig.setRedisKeyPrefix(storage.getKeyPrefix());
+      }
+      redisConfig.setMaId(appid);
+      config = redisConfig;
+    } else {
+      config = new WxMaDefaultConfigImpl();
+    }
+
+    config.setAppid(appid);
+    config.setSecret(StringUtils.trimToNull(account.getSecret()));
+    config.setToken(StringUtils.trimToNull(account.getToken()));
+    config.setAesKey(StringUtils.trimToNull(account.getAesKey()));
+    config.setMsgDataFormat(StringUtils.trimToNull(account.getMsgDataFormat()));
+    if (this.apacheHttpClientBuilder != null) {
+      config.setApacheHttpClientBuilder(this.apacheHttpClientBuilder);
+    }
+    return config;
+  }
+
+  private synchronized JedisPool getJedisPool() {
+    if (this.sharedJedisPool != null) {
+      return this.sharedJedisPool;
+    }
+
+    if (this.ownedJedisPool == null) {
+      this.ownedJedisPool = createJedisPool(this.properties.getConfigStorage().getRedis());
+    }
+    return this.ownedJedisPool;
+  }
+
+  private static JedisPool createJedisPool(RedisProperties redis) {
+    JedisPoolConfig config = new JedisPoolConfig();
+    if (redis.getMaxActive() != null) {
+      config.setMaxTotal(redis.getMaxActive());
+    }
+    if (redis.getMaxIdle() != null) {
+      config.setMaxIdle(redis.getMaxIdle());
+    }
+    if (redis.getMaxWaitMillis() != null) {
+      config.setMaxWaitMillis(redis.getMaxWaitMillis());
+    }
+    if (redis.getMinIdle() != null) {
+      config.setMinIdle(redis.getMinIdle());
+    }
+    config.setTestOnBorrow(redis.isTestOnBorrow());
+    config.setTestWhileIdle(redis.isTestWhileIdle());
+    config.setTimeBetweenEvictionRunsMillis(redis.getTimeBetweenEvictionRunsMillis());
+
+    return new JedisPool(config, redis.getHost(), redis.getPort(),
+      redis.getTimeout(), redis.getPassword(), redis.getDatabase());
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (this.ownedJedisPool != null) {
+      this.ownedJedisPool.close();
+      this.ownedJedisPool = null;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.binarywang.spring.starter.wxjava.miniapp.config;
+
+import cn.binarywang.wx.miniapp.api.WxMaService;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 多个小程序的service，小程序的service只能对应一个小程序，故而每个小程序各有一个service.
+ * 所有service共用同一个http连接池及Redis连接池，参考{@link WxMaConfigFactory}.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMaMultiServices {
+  private final Map<String, WxMaService> services;
+
+  /**
+   * @param services key为小程序标识
+   */
+  public WxMaMultiServices(Map<String, WxMaService> services) {
+    this.services = Collections.unmodifiableMap(services);
+  }
+
+  /**
+   * 获取小程序对应的service.
+   *
+   * @param maId 小程序标识，即wx.miniapp.accounts的key，单个小程序时为其appid
+   * @return 小程序service
+   */
+  public WxMaService getWxMaService(String maId) {
+    WxMaService service = this.services.get(maId);
+    if (service == null) {
+      throw new RuntimeException(String.format("无法找到对应【%s】的小程序配置信息，请核实！", maId));
+    }
+    return service;
+  }
+
+  /**
+   * 获取所有小程序的service，key为小程序标识.
+   */
+  public Map<String, WxMaService> getWxMaServices() {
+    return this.services;
+  }
+}
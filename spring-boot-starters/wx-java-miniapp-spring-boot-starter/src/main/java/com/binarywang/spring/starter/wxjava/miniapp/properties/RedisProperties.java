@@ -0,0 +1,60 @@
+package com.binarywang.spring.starter.wxjava.miniapp.properties;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Redis配置.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Data
+public class RedisProperties implements Serializable {
+  private static final long serialVersionUID = 3914256186103257394L;
+
+  /**
+   * 主机地址.
+   */
+  private String host = "127.0.0.1";
+
+  /**
+   * 端口号.
+   */
+  private int port = 6379;
+
+  /**
+   * 密码.
+   */
+  private String password;
+
+  /**
+   * 超时.
+   */
+  private int timeout = 2000;
+
+  /**
+   * 数据库.
+   */
+  private int database = 0;
+
+  private Integer maxActive;
+  private Integer maxIdle;
+  private Integer maxWaitMillis;
+  private Integer minIdle;
+
+  /**
+   * 从连接池获取连接时是否先发送PING校验，开启后每次获取连接都多一次网络往返，默认关闭.
+   */
+  private boolean testOnBorrow = false;
+
+  /**
+   * 是否由后台线程定期校验空闲连接，失效的连接会被移出连接池.
+   */
+  private boolean testWhileIdle = true;
+
+  /**
+   * 后台校验空闲连接的间隔时间（毫秒）.
+   */
+  private long timeBetweenEvictionRunsMillis = 30000;
+}
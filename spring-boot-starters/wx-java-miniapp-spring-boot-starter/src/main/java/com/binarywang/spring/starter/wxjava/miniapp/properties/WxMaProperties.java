@@ -3,6 +3,10 @@ package com.binarywang.spring.starter.wxjava.miniapp.properties;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 属性配置类.
  *
@@ -36,4 +40,72 @@ public class WxMaProperties {
    * 消息格式，XML或者JSON.
    */
   private String msgDataFormat;
+
+  /**
+   * <pre>
+   * 多小程序配置，key为小程序标识，通过{@link com.binarywang.spring.starter.wxjava.miniapp.config.WxMaMultiServices}获取对应的service.
+   * 同时配置了上面的单个小程序时，该小程序以其appid为标识，并作为默认小程序；否则第一个小程序为默认小程序.
+   * </pre>
+   */
+  private Map<String, Account> accounts = new LinkedHashMap<>();
+
+  /**
+   * 存储策略.
+   */
+  private ConfigStorage configStorage = new ConfigStorage();
+
+  @Data
+  public static class Account implements Serializable {
+    private static final long serialVersionUID = 2617052957327384613L;
+
+    /**
+     * 小程序的appid.
+     */
+    private String appid;
+
+    /**
+     * 小程序的Secret.
+     */
+    private String secret;
+
+    /**
+     * 小程序消息服务器配置的token.
+     */
+    private String token;
+
+    /**
+     * 小程序消息服务器配置的EncodingAESKey.
+     */
+    private String aesKey;
+
+    /**
+     * 消息格式，XML或者JSON.
+     */
+    private String msgDataFormat;
+  }
+
+  @Data
+  public static class ConfigStorage implements Serializable {
+    private static final long serialVersionUID = -4289130409452862137L;
+
+    private StorageType type = StorageType.memory;
+
+    /**
+     * Redis中key的前缀，各小程序的数据以appid区分.
+     */
+    private String keyPrefix;
+
+    private RedisProperties redis = new RedisProperties();
+  }
+
+  public enum StorageType {
+    /**
+     * 内存.
+     */
+    memory,
+    /**
+     * redis.
+     */
+    redis
+  }
 }
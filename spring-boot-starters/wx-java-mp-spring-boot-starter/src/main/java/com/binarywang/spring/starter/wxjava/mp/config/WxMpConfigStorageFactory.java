@@ -0,0 +1,162 @@
+package com.binarywang.spring.starter.wxjava.mp.config;
+
+import com.binarywang.spring.starter.wxjava.mp.properties.RedisProperties;
+import com.binarywang.spring.starter.wxjava.mp.properties.WxMpProperties;
+import me.chanjar.weixin.common.util.http.apache.ApacheHttpClientBuilder;
+import me.chanjar.weixin.mp.config.WxMpConfigStorage;
+import me.chanjar.weixin.mp.config.impl.WxMpDefaultConfigImpl;
+import me.chanjar.weixin.mp.config.impl.WxMpNearCacheConfigImpl;
+import me.chanjar.weixin.mp.config.impl.WxMpRedisConfigImpl;
+import me.chanjar.weixin.mp.config.impl.WxMpRedisNearCacheInvalidator;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.DisposableBean;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 根据配置属性创建所有公众号的配置存储，各公众号共用以下资源：
+ * 1. Redis连接池：优先使用容器中的JedisPool，没有时按照config-storage.redis创建一个，应用关闭时销毁；
+ * 2. http连接池：容器中有ApacheHttpClientBuilder时使用它，否则使用默认的全局连接池；
+ * 3. 近端缓存的跨节点失效通知：开启近端缓存且容器中有WxMpRedisNearCacheInvalidator时注册到其中.
+ * 同一应用中同时使用小程序、开放平台等starter时，声明一个JedisPool及ApacheHttpClientBuilder即可让它们共用.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMpConfigStorageFactory implements DisposableBean {
+  private final WxMpProperties properties;
+  private final JedisPool sharedJedisPool;
+  private final ApacheHttpClientBuilder apacheHttpClientBuilder;
+  private final WxMpRedisNearCacheInvalidator nearCacheInvalidator;
+
+  private JedisPool ownedJedisPool;
+  private Map<String, WxMpConfigStorage> configStorages;
+
+  /**
+   * @param properties              配置属性
+   * @param sharedJedisPool         容器中的Redis连接池，可以为null
+   * @param apacheHttpClientBuilder 容器中的http连接池，可以为null
+   * @param nearCacheInvalidator    近端缓存跨节点失效通知，可以为null
+   */
+  public WxMpConfigStorageFactory(WxMpProperties properties, JedisPool sharedJedisPool,
+                                  ApacheHttpClientBuilder apacheHttpClientBuilder,
+                                  WxMpRedisNearCacheInvalidator nearCacheInvalidator) {
+    this.properties = properties;
+    this.sharedJedisPool = sharedJedisPool;
+    this.apacheHttpClientBuilder = apacheHttpClientBuilder;
+    this.nearCacheInvalidator = nearCacheInvalidator;
+  }
+
+  /**
+   * 获取所有公众号的配置存储，key为公众号标识，第一个为默认公众号.
+   * 只配置了单个公众号（或者什么都没有配置）时只有一个元素，其key为appId.
+   */
+  public synchronized Map<String, WxMpConfigStorage> getConfigStorages() {
+    if (this.configStorages != null) {
+      return this.configStorages;
+    }
+
+    Map<String, WxMpConfigStorage> storages = new LinkedHashMap<>();
+    Map<String, WxMpProperties.Account> accounts = this.properties.getAccounts();
+    if (accounts.isEmpty() || StringUtils.isNotBlank(this.properties.getAppId())) {
+      WxMpProperties.Account account = new WxMpProperties.Account();
+      account.setAppId(this.properties.getAppId());
+      account.setSecret(this.properties.getSecret());
+      account.setToken(this.properties.getToken());
+      account.setAesKey(this.properties.getAesKey());
+      storages.put(this.properties.getAppId(), this.create(account));
+    }
+
+    for (Map.Entry<String, WxMpProperties.Account> entry : accounts.entrySet()) {
+      if (storages.containsKey(entry.getKey())) {
+        throw new IllegalStateException(String.format("公众号标识【%s】重复，请核实！", entry.getKey()));
+      }
+      storages.put(entry.getKey(), this.create(entry.getValue()));
+    }
+
+    this.configStorages = Collections.unmodifiableMap(storages);
+    return this.configStorages;
+  }
+
+  /**
+   * 创建单个公众号的配置存储.
+   *
+   * @param account 公众号配置
+   * @return 配置存储
+   */
+  public WxMpConfigStorage create(WxMpProperties.Account account) {
+    WxMpProperties.ConfigStorage storage = this.properties.getConfigStorage();
+    WxMpDefaultConfigImpl config;
+    if (storage.getType() == WxMpProperties.StorageType.redis) {
+      config = new WxMpRedisConfigImpl(this.getJedisPool());
+    } else {
+      config = new WxMpDefaultConfigImpl();
+    }
+
+    config.setAppId(account.getAppId());
+    config.setSecret(account.getSecret());
+    config.setToken(account.getToken());
+    config.setAesKey(account.getAesKey());
+    if (this.apacheHttpClientBuilder != null) {
+      config.setApacheHttpClientBuilder(this.apacheHttpClientBuilder);
+    }
+
+    WxMpProperties.NearCache nearCache = storage.getNearCache();
+    if (!nearCache.isEnabled()) {
+      return config;
+    }
+
+    WxMpNearCacheConfigImpl nearCacheConfig = new WxMpNearCacheConfigImpl(config);
+    nearCacheConfig.setMaxLocalTtlMillis(nearCache.getMaxLocalTtlMillis());
+    if (this.nearCacheInvalidator != null) {
+      this.nearCacheInvalidator.register(nearCacheConfig);
+    }
+    return nearCacheConfig;
+  }
+
+  private synchronized JedisPool getJedisPool() {
+    if (this.sharedJedisPool != null) {
+      return this.sharedJedisPool;
+    }
+
+    if (this.ownedJedisPool == null) {
+      this.ownedJedisPool = createJedisPool(this.properties.getConfigStorage().getRedis());
+    }
+    return this.ownedJedisPool;
+  }
+
+  private static JedisPool createJedisPool(RedisProperties redis) {
+    JedisPoolConfig config = new JedisPoolConfig();
+    if (redis.getMaxActive() != null) {
+      config.setMaxTotal(redis.getMaxActive());
+    }
+    if (redis.getMaxIdle() != null) {
+      config.setMaxIdle(redis.getMaxIdle());
+    }
+    if (redis.getMaxWaitMillis() != null) {
+      config.setMaxWaitMillis(redis.getMaxWaitMillis());
+    }
+    if (redis.getMinIdle() != null) {
+      config.setMinIdle(redis.getMinIdle());
+    }
+    config.setTestOnBorrow(redis.isTestOnBorrow());
+    config.setTestWhileIdle(redis.isTestWhileIdle());
+    config.setTimeBetweenEvictionRunsMillis(redis.getTimeBetweenEvictionRunsMillis());
+
+    return new JedisPool(config, redis.getHost(), redis.getPort(),
+      redis.getTimeout(), redis.getPassword(), redis.getDatabase());
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (this.ownedJedisPool != null) {
+      this.ownedJedisPool.close();
+      this.ownedJedisPool = null;
+    }
+  }
+}
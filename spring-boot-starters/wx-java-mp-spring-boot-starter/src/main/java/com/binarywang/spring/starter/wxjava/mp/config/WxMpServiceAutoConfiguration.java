@@ -1,12 +1,16 @@
 package com.binarywang.spring.starter.wxjava.mp.config;
 
+import me.chanjar.weixin.common.api.WxAccessTokenRefresher;
 import me.chanjar.weixin.mp.api.*;
 import me.chanjar.weixin.mp.api.impl.WxMpServiceImpl;
 import me.chanjar.weixin.mp.config.WxMpConfigStorage;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Map;
+
 /**
  * 微信公众号相关服务自动注册.
  *
@@ -15,11 +19,26 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class WxMpServiceAutoConfiguration {
 
+  /**
+   * 配置了多个公众号时全部设置到同一个service中，使用时通过switchover切换；
+   * 容器中有{@link WxAccessTokenRefresher}时，所有公众号的access token都由其在后台主动刷新.
+   */
   @Bean
   @ConditionalOnMissingBean
-  public WxMpService wxMpService(WxMpConfigStorage configStorage) {
-    WxMpService wxMpService = new WxMpServiceImpl();
-    wxMpService.setWxMpConfigStorage(configStorage);
+  public WxMpService wxMpService(WxMpConfigStorage configStorage, WxMpConfigStorageFactory configStorageFactory,
+                                 ObjectProvider<WxAccessTokenRefresher> accessTokenRefresher) {
+    WxMpServiceImpl wxMpService = new WxMpServiceImpl();
+    Map<String, WxMpConfigStorage> configStorages = configStorageFactory.getConfigStorages();
+    if (configStorages.size() > 1) {
+      wxMpService.setMultiConfigStorages(configStorages);
+    } else {
+      wxMpService.setWxMpConfigStorage(configStorage);
+    }
+
+    WxAccessTokenRefresher refresher = accessTokenRefresher.getIfAvailable();
+    if (refresher != null) {
+      wxMpService.setAccessTokenRefresher(refresher);
+    }
     return wxMpService;
   }
 
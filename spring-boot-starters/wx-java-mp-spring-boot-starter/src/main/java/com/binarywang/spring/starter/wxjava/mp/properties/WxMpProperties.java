@@ -4,6 +4,8 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.binarywang.spring.starter.wxjava.mp.properties.WxMpProperties.PREFIX;
 import static com.binarywang.spring.starter.wxjava.mp.properties.WxMpProperties.StorageType.memory;
@@ -39,6 +41,14 @@ public class WxMpProperties {
    */
   private String aesKey;
 
+  /**
+   * <pre>
+   * 多公众号配置，key为公众号标识，即{@link me.chanjar.weixin.mp.api.WxMpService#switchover(String)}所用的mpId.
+   * 同时配置了上面的单个公众号时，该公众号以其appId为标识，并作为默认公众号；否则第一个公众号为默认公众号.
+   * </pre>
+   */
+  private Map<String, Account> accounts = new LinkedHashMap<>();
+
   /**
    * 存储策略, memory, redis.
    */
@@ -53,6 +63,51 @@ public class WxMpProperties {
 
     private RedisProperties redis = new RedisProperties();
 
+    /**
+     * 进程内近端缓存.
+     */
+    private NearCache nearCache = new NearCache();
+
+  }
+
+  @Data
+  public static class Account implements Serializable {
+    private static final long serialVersionUID = -2427651474580346387L;
+
+    /**
+     * 公众号的appid.
+     */
+    private String appId;
+
+    /**
+     * 公众号的app secret.
+     */
+    private String secret;
+
+    /**
+     * 公众号的token.
+     */
+    private String token;
+
+    /**
+     * 公众号的EncodingAESKey.
+     */
+    private String aesKey;
+  }
+
+  @Data
+  public static class NearCache implements Serializable {
+    private static final long serialVersionUID = 7018457361233408823L;
+
+    /**
+     * 是否在进程内缓存access token及ticket，开启后缓存有效期内的读取不再访问Redis.
+     */
+    private boolean enabled = false;
+
+    /**
+     * 本地缓存的最大有效时间（毫秒），建议不超过5分钟.
+     */
+    private long maxLocalTtlMillis = 60000;
   }
 
   public enum StorageType {
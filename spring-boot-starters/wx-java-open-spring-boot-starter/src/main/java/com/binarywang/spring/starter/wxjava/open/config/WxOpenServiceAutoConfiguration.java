@@ -1,10 +1,14 @@
 package com.binarywang.spring.starter.wxjava.open.config;
 
+import cn.binarywang.wx.miniapp.util.cache.WxMaQrcodeCache;
+import me.chanjar.weixin.open.api.WxOpenAuthorizerServiceCustomizer;
 import me.chanjar.weixin.open.api.WxOpenComponentService;
 import me.chanjar.weixin.open.api.WxOpenConfigStorage;
 import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.api.impl.WxOpenComponentServiceImpl;
 import me.chanjar.weixin.open.api.impl.WxOpenMessageRouter;
 import me.chanjar.weixin.open.api.impl.WxOpenServiceImpl;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,11 +21,23 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class WxOpenServiceAutoConfiguration {
 
+  /**
+   * 容器中有{@link WxOpenAuthorizerServiceCustomizer}时，每次创建授权方service都由其定制；
+   * 有{@link WxMaQrcodeCache}时缓存授权方小程序的体验二维码.
+   */
   @Bean
   @ConditionalOnMissingBean
-  public WxOpenService wxOpenService(WxOpenConfigStorage configStorage) {
+  public WxOpenService wxOpenService(WxOpenConfigStorage configStorage,
+                                     ObjectProvider<WxOpenAuthorizerServiceCustomizer> serviceCustomizer,
+                                     ObjectProvider<WxMaQrcodeCache> testQrcodeCache) {
     WxOpenService wxOpenService = new WxOpenServiceImpl();
     wxOpenService.setWxOpenConfigStorage(configStorage);
+    if (wxOpenService.getWxOpenComponentService() instanceof WxOpenComponentServiceImpl) {
+      WxOpenComponentServiceImpl componentService =
+        (WxOpenComponentServiceImpl) wxOpenService.getWxOpenComponentService();
+      componentService.setServiceCustomizer(serviceCustomizer.getIfAvailable());
+      componentService.setTestQrcodeCache(testQrcodeCache.getIfAvailable());
+    }
     return wxOpenService;
   }
 
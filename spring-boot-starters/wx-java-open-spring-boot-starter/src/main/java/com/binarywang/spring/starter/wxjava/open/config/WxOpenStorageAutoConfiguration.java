@@ -3,18 +3,28 @@ package com.binarywang.spring.starter.wxjava.open.config;
 import com.binarywang.spring.starter.wxjava.open.properties.RedisProperties;
 import com.binarywang.spring.starter.wxjava.open.properties.WxOpenProperties;
 import lombok.RequiredArgsConstructor;
+import me.chanjar.weixin.common.util.http.apache.ApacheHttpClientBuilder;
 import me.chanjar.weixin.open.api.WxOpenConfigStorage;
+import me.chanjar.weixin.open.api.WxOpenService;
+import me.chanjar.weixin.open.api.impl.AbstractWxOpenInRedisConfigStorage;
+import me.chanjar.weixin.open.api.impl.WxOpenAuthorizerTokenRefresher;
 import me.chanjar.weixin.open.api.impl.WxOpenInMemoryConfigStorage;
 import me.chanjar.weixin.open.api.impl.WxOpenInRedisConfigStorage;
 import me.chanjar.weixin.open.api.impl.WxOpenInRedissonConfigStorage;
+import me.chanjar.weixin.open.api.impl.WxOpenJedisAuthorizerLease;
+import me.chanjar.weixin.open.api.impl.WxOpenRedissonAuthorizerLease;
 import org.apache.commons.lang3.StringUtils;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
 import org.redisson.config.TransportMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import redis.clients.jedis.JedisPool;
@@ -27,7 +37,9 @@ import redis.clients.jedis.JedisPoolConfig;
  */
 @Configuration
 @RequiredArgsConstructor
-public class WxOpenStorageAutoConfiguration {
+public class WxOpenStorageAutoConfiguration implements DisposableBean {
+  private static final Logger log = LoggerFactory.getLogger(WxOpenStorageAutoConfiguration.class);
+
   private final WxOpenProperties properties;
 
   @Autowired(required = false)
@@ -36,53 +48,111 @@ public class WxOpenStorageAutoConfiguration {
   @Autowired(required = false)
   private RedissonClient redissonClient;
 
+  /**
+   * 容器中有http连接池时，与其他starter共用.
+   */
+  @Autowired(required = false)
+  private ApacheHttpClientBuilder apacheHttpClientBuilder;
+
   @Value("${wx.open.config-storage.redis.host:}")
   private String redisHost;
 
+  /**
+   * 存储实际使用的Redis客户端，由本配置创建的在应用关闭时销毁.
+   */
+  private JedisPool jedisPoolToUse;
+  private RedissonClient redissonClientToUse;
+  private boolean ownsRedisClient;
+
   @Bean
   @ConditionalOnMissingBean(WxOpenConfigStorage.class)
   public WxOpenConfigStorage wxOpenConfigStorage() {
     WxOpenProperties.ConfigStorage storage = properties.getConfigStorage();
     WxOpenProperties.StorageType type = storage.getType();
 
-    if (type == WxOpenProperties.StorageType.redis) {
-      return getWxOpenInRedisConfigStorage();
+    WxOpenInMemoryConfigStorage config;
+    if (type == WxOpenProperties.StorageType.redis || type == WxOpenProperties.StorageType.jedis) {
+      config = getWxOpenInRedisConfigStorage();
+    } else if (type == WxOpenProperties.StorageType.redisson) {
+      config = getWxOpenInRedissonConfigStorage();
+    } else {
+      config = new WxOpenInMemoryConfigStorage();
     }
 
-    if (type == WxOpenProperties.StorageType.jedis) {
-      return getWxOpenInRedisConfigStorage();
+    config.setWxOpenInfo(properties.getAppId(), properties.getSecret(), properties.getToken(), properties.getAesKey());
+    if (this.apacheHttpClientBuilder != null) {
+      config.setApacheHttpClientBuilder(this.apacheHttpClientBuilder);
     }
+    return config;
+  }
 
-    if (type == WxOpenProperties.StorageType.redisson) {
-      return getWxOpenInRedissonConfigStorage();
-    }
-    return getWxOpenInMemoryConfigStorage();
+  /**
+   * 授权方access token后台批量刷新器，使用Redis存储时通过Redis租约避免多个节点重复刷新同一个授权方.
+   */
+  @Bean(initMethod = "start", destroyMethod = "close")
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(prefix = "wx.open.authorizer-token-refresh", name = "enabled", havingValue = "true")
+  public WxOpenAuthorizerTokenRefresher wxOpenAuthorizerTokenRefresher(WxOpenService wxOpenService) {
+    WxOpenProperties.AuthorizerTokenRefresh refresh = properties.getAuthorizerTokenRefresh();
+    WxOpenAuthorizerTokenRefresher.Lease lease = this.createLease(wxOpenService.getWxOpenConfigStorage());
+
+    WxOpenAuthorizerTokenRefresher refresher = new WxOpenAuthorizerTokenRefresher(
+      wxOpenService.getWxOpenComponentService(), lease, refresh.getConcurrency());
+    refresher.setRefreshAheadMillis(refresh.getRefreshAheadMillis());
+    refresher.setSyncIntervalMillis(refresh.getSyncIntervalMillis());
+    return refresher;
   }
 
-  private WxOpenInMemoryConfigStorage getWxOpenInMemoryConfigStorage() {
-    WxOpenInMemoryConfigStorage config = new WxOpenInMemoryConfigStorage();
-    config.setWxOpenInfo(properties.getAppId(), properties.getSecret(), properties.getToken(), properties.getAesKey());
-    return config;
+  /**
+   * <pre>
+   * 根据实际使用的存储创建租约，存储可能是自定义注入的，因此不依赖本配置创建的Redis客户端.
+   * 内存存储时每个节点各自维护token，不需要租约；
+   * 其他Redis存储使用容器中的JedisPool或RedissonClient，都没有时多个节点可能重复刷新同一个授权方.
+   * </pre>
+   */
+  private WxOpenAuthorizerTokenRefresher.Lease createLease(WxOpenConfigStorage configStorage) {
+    String leaseKeyPrefix = "wechat_authorizer_refresh_lease:" + properties.getAppId() + ":";
+    if (configStorage instanceof WxOpenInRedisConfigStorage) {
+      return new WxOpenJedisAuthorizerLease(((WxOpenInRedisConfigStorage) configStorage).getJedisPool(),
+        leaseKeyPrefix);
+    }
+    if (configStorage instanceof WxOpenInRedissonConfigStorage) {
+      return new WxOpenRedissonAuthorizerLease(((WxOpenInRedissonConfigStorage) configStorage).getRedissonClient(),
+        leaseKeyPrefix);
+    }
+
+    WxOpenProperties.StorageType type = properties.getConfigStorage().getType();
+    if (type == WxOpenProperties.StorageType.memory && !(configStorage instanceof AbstractWxOpenInRedisConfigStorage)) {
+      return null;
+    }
+    if (this.jedisPool != null) {
+      return new WxOpenJedisAuthorizerLease(this.jedisPool, leaseKeyPrefix);
+    }
+    if (this.redissonClient != null) {
+      return new WxOpenRedissonAuthorizerLease(this.redissonClient, leaseKeyPrefix);
+    }
+
+    log.warn("授权方token存储【{}】基于Redis，但无法找到JedisPool或RedissonClient创建刷新租约，"
+      + "多个节点可能重复刷新同一个授权方的token", configStorage.getClass().getName());
+    return null;
   }
 
   private WxOpenInRedisConfigStorage getWxOpenInRedisConfigStorage() {
-    JedisPool poolToUse = jedisPool;
+    this.jedisPoolToUse = jedisPool;
     if (jedisPool == null || StringUtils.isNotEmpty(redisHost)) {
-      poolToUse = getJedisPool();
+      this.jedisPoolToUse = getJedisPool();
+      this.ownsRedisClient = true;
     }
-    WxOpenInRedisConfigStorage config = new WxOpenInRedisConfigStorage(poolToUse, properties.getConfigStorage().getKeyPrefix());
-    config.setWxOpenInfo(properties.getAppId(), properties.getSecret(), properties.getToken(), properties.getAesKey());
-    return config;
+    return new WxOpenInRedisConfigStorage(this.jedisPoolToUse, properties.getConfigStorage().getKeyPrefix());
   }
 
   private WxOpenInRedissonConfigStorage getWxOpenInRedissonConfigStorage() {
-    RedissonClient redissonClientToUse = this.redissonClient;
+    this.redissonClientToUse = this.redissonClient;
     if (redissonClient == null) {
-      redissonClientToUse = getRedissonClient();
+      this.redissonClientToUse = getRedissonClient();
+      this.ownsRedisClient = true;
     }
-    WxOpenInRedissonConfigStorage config = new WxOpenInRedissonConfigStorage(redissonClientToUse, properties.getConfigStorage().getKeyPrefix());
-    config.setWxOpenInfo(properties.getAppId(), properties.getSecret(), properties.getToken(), properties.getAesKey());
-    return config;
+    return new WxOpenInRedissonConfigStorage(this.redissonClientToUse, properties.getConfigStorage().getKeyPrefix());
   }
 
 
@@ -103,8 +173,9 @@ public class WxOpenStorageAutoConfiguration {
     if (redis.getMinIdle() != null) {
       config.setMinIdle(redis.getMinIdle());
     }
-    config.setTestOnBorrow(true);
-    config.setTestWhileIdle(true);
+    config.setTestOnBorrow(redis.isTestOnBorrow());
+    config.setTestWhileIdle(redis.isTestWhileIdle());
+    config.setTimeBetweenEvictionRunsMillis(redis.getTimeBetweenEvictionRunsMillis());
 
     JedisPool pool = new JedisPool(config, redis.getHost(), redis.getPort(),
       redis.getTimeout(), redis.getPassword(), redis.getDatabase());
@@ -122,4 +193,18 @@ public class WxOpenStorageAutoConfiguration {
     config.setTransportMode(TransportMode.NIO);
     return Redisson.create(config);
   }
+
+  @Override
+  public void destroy() {
+    if (!this.ownsRedisClient) {
+      return;
+    }
+
+    if (this.jedisPoolToUse != null) {
+      this.jedisPoolToUse.close();
+    }
+    if (this.redissonClientToUse != null) {
+      this.redissonClientToUse.shutdown();
+    }
+  }
 }
@@ -42,4 +42,19 @@ public class RedisProperties implements Serializable {
   private Integer maxIdle;
   private Integer maxWaitMillis;
   private Integer minIdle;
+
+  /**
+   * 从连接池获取连接时是否先发送PING校验，开启后每次获取连接都多一次网络往返，默认关闭.
+   */
+  private boolean testOnBorrow = false;
+
+  /**
+   * 是否由后台线程定期校验空闲连接，失效的连接会被移出连接池.
+   */
+  private boolean testWhileIdle = true;
+
+  /**
+   * 后台校验空闲连接的间隔时间（毫秒）.
+   */
+  private long timeBetweenEvictionRunsMillis = 30000;
 }
@@ -44,6 +44,11 @@ public class WxOpenProperties {
    */
   private ConfigStorage configStorage = new ConfigStorage();
 
+  /**
+   * 授权方access token后台批量刷新.
+   */
+  private AuthorizerTokenRefresh authorizerTokenRefresh = new AuthorizerTokenRefresh();
+
 
   @Data
   public static class ConfigStorage implements Serializable {
@@ -57,6 +62,31 @@ public class WxOpenProperties {
 
   }
 
+  @Data
+  public static class AuthorizerTokenRefresh implements Serializable {
+    private static final long serialVersionUID = -6731257245734108839L;
+
+    /**
+     * 是否开启，开启后由后台线程在授权方access token过期前主动刷新.
+     */
+    private boolean enabled = false;
+
+    /**
+     * 工作线程数，即同时进行的刷新请求数上限.
+     */
+    private int concurrency = 4;
+
+    /**
+     * 在过期前多久刷新（毫秒）.
+     */
+    private long refreshAheadMillis = 5 * 60 * 1000L;
+
+    /**
+     * 重新拉取授权方列表的间隔（毫秒）.
+     */
+    private long syncIntervalMillis = 60 * 60 * 1000L;
+  }
+
   public enum StorageType {
     /**
      * 内存.
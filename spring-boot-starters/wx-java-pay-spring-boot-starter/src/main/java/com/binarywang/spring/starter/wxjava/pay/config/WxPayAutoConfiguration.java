@@ -13,6 +13,9 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * <pre>
  *  微信支付自动配置
@@ -34,21 +37,76 @@ public class WxPayAutoConfiguration {
   }
 
   /**
-   * 构造微信支付服务对象.
+   * 构造微信支付服务对象，配置了多个商户时为第一个.
    *
    * @return 微信支付service
    */
   @Bean
   @ConditionalOnMissingBean(WxPayService.class)
   public WxPayService wxPayService() {
+    return this.newService(this.getAccounts().values().iterator().next());
+  }
+
+  /**
+   * 所有商户的微信支付服务对象，默认商户对应的即为上面的service.
+   *
+   * @return 所有商户的service
+   */
+  @Bean
+  @ConditionalOnMissingBean(WxPayMultiServices.class)
+  public WxPayMultiServices wxPayMultiServices(WxPayService wxPayService) {
+    Map<String, WxPayService> services = new LinkedHashMap<>();
+    boolean first = true;
+    for (Map.Entry<String, WxPayProperties.Account> entry : this.getAccounts().entrySet()) {
+      services.put(entry.getKey(), first ? wxPayService : this.newService(entry.getValue()));
+      first = false;
+    }
+    return new WxPayMultiServices(services);
+  }
+
+  /**
+   * 所有商户的配置，只配置了单个商户（或者什么都没有配置）时只有一个元素，其key为商户号.
+   */
+  private Map<String, WxPayProperties.Account> getAccounts() {
+    Map<String, WxPayProperties.Account> accounts = new LinkedHashMap<>();
+    if (this.properties.getAccounts().isEmpty() || StringUtils.isNotBlank(this.properties.getMchId())) {
+      WxPayProperties.Account account = new WxPayProperties.Account();
+      account.setAppId(this.properties.getAppId());
+      account.setMchId(this.properties.getMchId());
+      account.setMchKey(this.properties.getMchKey());
+      account.setSubAppId(this.properties.getSubAppId());
+      account.setSubMchId(this.properties.getSubMchId());
+      account.setKeyPath(this.properties.getKeyPath());
+      accounts.put(StringUtils.trimToNull(this.properties.getMchId()), account);
+    }
+
+    for (Map.Entry<String, WxPayProperties.Account> entry : this.properties.getAccounts().entrySet()) {
+      if (accounts.containsKey(entry.getKey())) {
+        throw new IllegalStateException(String.format("商户标识【%s】重复，请核实！", entry.getKey()));
+      }
+      accounts.put(entry.getKey(), entry.getValue());
+    }
+    return accounts;
+  }
+
+  private WxPayService newService(WxPayProperties.Account account) {
     final WxPayServiceImpl wxPayService = new WxPayServiceImpl();
     WxPayConfig payConfig = new WxPayConfig();
-    payConfig.setAppId(StringUtils.trimToNull(this.properties.getAppId()));
-    payConfig.setMchId(StringUtils.trimToNull(this.properties.getMchId()));
-    payConfig.setMchKey(StringUtils.trimToNull(this.properties.getMchKey()));
-    payConfig.setSubAppId(StringUtils.trimToNull(this.properties.getSubAppId()));
-    payConfig.setSubMchId(StringUtils.trimToNull(this.properties.getSubMchId()));
-    payConfig.setKeyPath(StringUtils.trimToNull(this.properties.getKeyPath()));
+    payConfig.setAppId(StringUtils.trimToNull(account.getAppId()));
+    payConfig.setMchId(StringUtils.trimToNull(account.getMchId()));
+    payConfig.setMchKey(StringUtils.trimToNull(account.getMchKey()));
+    payConfig.setSubAppId(StringUtils.trimToNull(account.getSubAppId()));
+    payConfig.setSubMchId(StringUtils.trimToNull(account.getSubMchId()));
+    payConfig.setKeyPath(StringUtils.trimToNull(account.getKeyPath()));
+    if (this.properties.getHttpMaxConnPerRoute() != null) {
+      payConfig.setHttpMaxConnPerRoute(this.properties.getHttpMaxConnPerRoute());
+    }
+    if (this.properties.getHttpMaxTotalConn() != null) {
+      payConfig.setHttpMaxTotalConn(this.properties.getHttpMaxTotalConn());
+    }
+    if (this.properties.getHttpIdleConnTimeout() != null) {
+      payConfig.setHttpIdleConnTimeout(this.properties.getHttpIdleConnTimeout());
+    }
 
     wxPayService.setConfig(payConfig);
     return wxPayService;
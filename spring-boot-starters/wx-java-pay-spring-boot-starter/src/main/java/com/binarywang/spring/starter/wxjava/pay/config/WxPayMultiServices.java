@@ -0,0 +1,57 @@
+package com.binarywang.spring.starter.wxjava.pay.config;
+
+import com.github.binarywang.wxpay.service.WxPayService;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 多个商户的微信支付service，每个商户使用各自的商户证书，故而各有一个service及其http连接池.
+ * 应用关闭时关闭所有service的连接池.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxPayMultiServices implements Closeable {
+  private final Map<String, WxPayService> services;
+
+  /**
+   * @param services key为商户标识
+   */
+  public WxPayMultiServices(Map<String, WxPayService> services) {
+    this.services = Collections.unmodifiableMap(services);
+  }
+
+  /**
+   * 获取商户对应的service.
+   *
+   * @param mchKey 商户标识，即wx.pay.accounts的key，单个商户时为其商户号
+   * @return 微信支付service
+   */
+  public WxPayService getWxPayService(String mchKey) {
+    WxPayService service = this.services.get(mchKey);
+    if (service == null) {
+      throw new RuntimeException(String.format("无法找到对应【%s】的商户配置信息，请核实！", mchKey));
+    }
+    return service;
+  }
+
+  /**
+   * 获取所有商户的service，key为商户标识.
+   */
+  public Map<String, WxPayService> getWxPayServices() {
+    return this.services;
+  }
+
+  @Override
+  public void close() {
+    for (WxPayService service : this.services.values()) {
+      if (service instanceof Closeable) {
+        IOUtils.closeQuietly((Closeable) service);
+      }
+    }
+  }
+}
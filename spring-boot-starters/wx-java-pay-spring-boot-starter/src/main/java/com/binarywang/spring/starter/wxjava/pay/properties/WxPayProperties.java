@@ -3,6 +3,10 @@ package com.binarywang.spring.starter.wxjava.pay.properties;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * <pre>
  *  微信支付属性配置类
@@ -43,4 +47,63 @@ public class WxPayProperties {
    * apiclient_cert.p12文件的绝对路径，或者如果放在项目中，请以classpath:开头指定.
    */
   private String keyPath;
+
+  /**
+   * <pre>
+   * 多商户配置，key为商户标识，通过{@link com.binarywang.spring.starter.wxjava.pay.config.WxPayMultiServices}获取对应的service.
+   * 同时配置了上面的单个商户时，该商户以其商户号为标识，并作为默认商户；否则第一个商户为默认商户.
+   * </pre>
+   */
+  private Map<String, Account> accounts = new LinkedHashMap<>();
+
+  /**
+   * http连接池每个路由的最大连接数，为空时使用默认值，对所有商户生效.
+   * 各商户使用各自的证书，连接池按商户分开，总连接数约为商户数乘以该值.
+   */
+  private Integer httpMaxConnPerRoute;
+
+  /**
+   * http连接池最大总连接数，为空时使用默认值，对所有商户生效.
+   */
+  private Integer httpMaxTotalConn;
+
+  /**
+   * http连接池中空闲连接的回收时间（毫秒），为空时使用默认值，对所有商户生效.
+   */
+  private Long httpIdleConnTimeout;
+
+  @Data
+  public static class Account implements Serializable {
+    private static final long serialVersionUID = 5468320754186731205L;
+
+    /**
+     * 公众号或者小程序等的appid.
+     */
+    private String appId;
+
+    /**
+     * 微信支付商户号.
+     */
+    private String mchId;
+
+    /**
+     * 微信支付商户密钥.
+     */
+    private String mchKey;
+
+    /**
+     * 服务商模式下的子商户公众账号ID.
+     */
+    private String subAppId;
+
+    /**
+     * 服务商模式下的子商户号.
+     */
+    private String subMchId;
+
+    /**
+     * apiclient_cert.p12文件的绝对路径，或者以classpath:开头指定.
+     */
+    private String keyPath;
+  }
 }
@@ -0,0 +1,345 @@
+package me.chanjar.weixin.common.api;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import me.chanjar.weixin.common.error.WxErrorException;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * access token后台主动刷新器.
+ * 按照每个账号当前access token的过期时间，提前一段时间（默认5分钟，再减去最多1分钟的随机抖动，避免大量账号同时刷新）
+ * 在固定大小的后台线程池中强制刷新access token，使业务请求线程不再因为token过期而阻塞在获取token的http请求上.
+ * 无法得知过期时间的账号会立即刷新一次，之后按照微信默认的7200秒有效期估算下次刷新时间.
+ * 刷新失败时每隔30秒重试，直到成功为止.
+ * 到了计划时间时会重新读取过期时间，token已经被业务请求或者其他节点刷新过时不再刷新，而是按新的过期时间重新安排.
+ *
+ * 同一个账号只需要在一个节点上主动刷新，多个节点共享Redis等存储时，其他节点会直接读取到刷新后的token.
+ * 公众号、企业微信及小程序的服务实现类均提供了setAccessTokenRefresher方法，设置后会自动注册其配置的所有账号.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Slf4j
+public class WxAccessTokenRefresher implements Closeable {
+  /**
+   * 微信access token默认的有效时间，已减去各配置存储实现预留的200秒.
+   */
+  private static final long DEFAULT_EXPIRES_IN_MILLIS = (7200 - 200) * 1000L;
+
+  /**
+   * 两次成功刷新之间的最小间隔，避免过期时间异常时频繁刷新.
+   */
+  private static final long MIN_REFRESH_INTERVAL_MILLIS = 60 * 1000L;
+
+  private final ScheduledThreadPoolExecutor executor;
+  private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+  private volatile long refreshAheadMillis = 5 * 60 * 1000L;
+  private volatile long maxJitterMillis = 60 * 1000L;
+  private volatile long retryDelayMillis = 30 * 1000L;
+
+  /**
+   * 使用2个后台线程.
+   */
+  public WxAccessTokenRefresher() {
+    this(2);
+  }
+
+  /**
+   * @param threads 后台刷新线程数
+   */
+  public WxAccessTokenRefresher(int threads) {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = new ScheduledThreadPoolExecutor(threads, r -> {
+      Thread thread = new Thread(r, "WxAccessTokenRefresher-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executor.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * 设置提前刷新的时间.
+   *
+   * @param refreshAheadMillis 在过期前多久刷新（毫秒）
+   */
+  public void setRefreshAheadMillis(long refreshAheadMillis) {
+    this.refreshAheadMillis = refreshAheadMillis;
+  }
+
+  /**
+   * 设置随机抖动的最大值.
+   *
+   * @param maxJitterMillis 在提前刷新时间的基础上再随机提前的最大时间（毫秒），为0时不抖动
+   */
+  public void setMaxJitterMillis(long maxJitterMillis) {
+    this.maxJitterMillis = maxJitterMillis;
+  }
+
+  /**
+   * 设置刷新失败后的重试间隔.
+   *
+   * @param retryDelayMillis 重试间隔（毫秒）
+   */
+  public void setRetryDelayMillis(long retryDelayMillis) {
+    this.retryDelayMillis = retryDelayMillis;
+  }
+
+  /**
+   * 注册需要主动刷新的账号，账号已存在时替换之.
+   *
+   * @param accountId 账号标识，在同一个刷新器中唯一
+   * @param target    刷新目标
+   */
+  public void register(String accountId, Target target) {
+    Account account = new Account(accountId, target);
+    Account previous = this.accounts.put(accountId, account);
+    if (previous != null) {
+      previous.cancel();
+    }
+
+    this.schedule(account, this.delayUntilRefresh(target.getExpiresTime(), 0));
+  }
+
+  /**
+   * 取消账号的主动刷新.
+   *
+   * @param accountId 账号标识
+   */
+  public void unregister(String accountId) {
+    Account account = this.accounts.remove(accountId);
+    if (account != null) {
+      account.cancel();
+    }
+  }
+
+  /**
+   * 获取账号的刷新统计信息.
+   *
+   * @param accountId 账号标识
+   * @return 统计信息，账号未注册时返回null
+   */
+  public Stats getStats(String accountId) {
+    Account account = this.accounts.get(accountId);
+    return account == null ? null : account.toStats();
+  }
+
+  /**
+   * 获取所有账号的刷新统计信息.
+   *
+   * @return 账号标识->统计信息
+   */
+  public Map<String, Stats> getAllStats() {
+    Map<String, Stats> result = new HashMap<>(this.accounts.size());
+    for (Account account : this.accounts.values()) {
+      result.put(account.accountId, account.toStats());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * 计算距离下次刷新的时间.
+   *
+   * @param expiresTime 过期时间，不大于当前时间时表示未知或者已过期
+   * @param minDelay    最小间隔
+   */
+  private long delayUntilRefresh(long expiresTime, long minDelay) {
+    long now = System.currentTimeMillis();
+    if (expiresTime <= now) {
+      return minDelay;
+    }
+
+    long jitter = this.maxJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(this.maxJitterMillis) : 0;
+    return Math.max(minDelay, expiresTime - this.refreshAheadMillis - jitter - now);
+  }
+
+  private void schedule(final Account account, long delayMillis) {
+    if (this.executor.isShutdown() || this.accounts.get(account.accountId) != account) {
+      return;
+    }
+
+    account.nextRefreshTime = System.currentTimeMillis() + delayMillis;
+    account.future = this.executor.schedule(() -> this.refresh(account), delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void refresh(Account account) {
+    if (this.accounts.get(account.accountId) != account) {
+      return;
+    }
+
+    long startTime = System.currentTimeMillis();
+    long start = System.nanoTime();
+    try {
+      long currentExpiresTime = account.target.getExpiresTime();
+      if (currentExpiresTime - this.refreshAheadMillis - this.maxJitterMillis > startTime) {
+        // 业务请求或者共享存储的其他节点已经刷新过了，按新的过期时间重新安排
+        this.schedule(account, this.delayUntilRefresh(currentExpiresTime, 0));
+        return;
+      }
+
+      account.target.refreshAccessToken();
+      account.recordSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+      long expiresTime = account.target.getExpiresTime();
+      if (expiresTime <= System.currentTimeMillis()) {
+        expiresTime = startTime + DEFAULT_EXPIRES_IN_MILLIS;
+      }
+      this.schedule(account, this.delayUntilRefresh(expiresTime, MIN_REFRESH_INTERVAL_MILLIS));
+    } catch (Exception e) {
+      account.recordFailure(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), e);
+      log.warn("主动刷新access token失败，账号：{}，{}毫秒后重试：{}", account.accountId, this.retryDelayMillis,
+        e.getMessage());
+      this.schedule(account, this.retryDelayMillis);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * 需要主动刷新access token的账号.
+   */
+  public interface Target {
+    /**
+     * 当前access token的过期时间.
+     *
+     * @return 过期时间（毫秒），未知时返回0
+     */
+    long getExpiresTime();
+
+    /**
+     * 强制刷新access token.
+     *
+     * @throws WxErrorException 刷新失败时抛出
+     */
+    void refreshAccessToken() throws WxErrorException;
+  }
+
+  /**
+   * 账号的刷新统计信息.
+   */
+  @Data
+  public static class Stats {
+    /**
+     * 成功刷新次数.
+     */
+    private long successCount;
+    /**
+     * 刷新失败次数.
+     */
+    private long failureCount;
+    /**
+     * 连续失败次数，成功后清零.
+     */
+    private long consecutiveFailures;
+    /**
+     * 刷新的累计耗时（毫秒）.
+     */
+    private long totalLatencyMillis;
+    /**
+     * 最近一次刷新的耗时（毫秒）.
+     */
+    private long lastLatencyMillis;
+    /**
+     * 刷新的最大耗时（毫秒）.
+     */
+    private long maxLatencyMillis;
+    /**
+     * 最近一次成功刷新的时间.
+     */
+    private long lastSuccessTime;
+    /**
+     * 下次计划刷新的时间.
+     */
+    private long nextRefreshTime;
+    /**
+     * 最近一次失败的原因.
+     */
+    private String lastError;
+
+    /**
+     * @return 平均刷新耗时（毫秒）
+     */
+    public long getAverageLatencyMillis() {
+      long count = this.successCount + this.failureCount;
+      return count == 0 ? 0 : this.totalLatencyMillis / count;
+    }
+  }
+
+  private static class Account {
+    private final String accountId;
+    private final Target target;
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong consecutiveFailures = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private volatile long lastLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile long lastSuccessTime;
+    private volatile long nextRefreshTime;
+    private volatile String lastError;
+    private volatile ScheduledFuture<?> future;
+
+    private Account(String accountId, Target target) {
+      this.accountId = accountId;
+      this.target = target;
+    }
+
+    private void recordSuccess(long latencyMillis) {
+      this.successCount.incrementAndGet();
+      this.consecutiveFailures.set(0);
+      this.lastSuccessTime = System.currentTimeMillis();
+      this.recordLatency(latencyMillis);
+    }
+
+    private void recordFailure(long latencyMillis, Exception e) {
+      this.failureCount.incrementAndGet();
+      this.consecutiveFailures.incrementAndGet();
+      this.lastError = e.getMessage();
+      this.recordLatency(latencyMillis);
+    }
+
+    private void recordLatency(long latencyMillis) {
+      this.totalLatencyMillis.addAndGet(latencyMillis);
+      this.lastLatencyMillis = latencyMillis;
+      if (latencyMillis > this.maxLatencyMillis) {
+        this.maxLatencyMillis = latencyMillis;
+      }
+    }
+
+    private void cancel() {
+      ScheduledFuture<?> current = this.future;
+      if (current != null) {
+        current.cancel(false);
+      }
+    }
+
+    private Stats toStats() {
+      Stats stats = new Stats();
+      stats.setSuccessCount(this.successCount.get());
+      stats.setFailureCount(this.failureCount.get());
+      stats.setConsecutiveFailures(this.consecutiveFailures.get());
+      stats.setTotalLatencyMillis(this.totalLatencyMillis.get());
+      stats.setLastLatencyMillis(this.lastLatencyMillis);
+      stats.setMaxLatencyMillis(this.maxLatencyMillis);
+      stats.setLastSuccessTime(this.lastSuccessTime);
+      stats.setNextRefreshTime(this.nextRefreshTime);
+      stats.setLastError(this.lastError);
+      return stats;
+    }
+  }
+}
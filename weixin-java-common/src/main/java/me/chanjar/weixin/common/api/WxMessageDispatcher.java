@@ -0,0 +1,559 @@
+package me.chanjar.weixin.common.api;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import me.chanjar.weixin.common.error.WxErrorException;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 消息批量发送调度器，适用于模板消息、订阅消息等需要向大量用户推送的场景.
+ * 1. 每个账号（appId）一个令牌桶，按照设定的每秒发送数均匀发送，令牌不足时延时发送而不是阻塞线程；
+ * 2. 同时进行中（排队等待令牌、发送中及等待重试）的消息数不超过maxInFlight，
+ *    达到上限时{@link #dispatch(String, Object)}会阻塞调用方，从而对消息生产方形成反压；
+ * 3. 遇到系统繁忙（-1）、频率限制（45011）等可重试错误时，通过定时器延时后重新排队，间隔依次翻倍；
+ * 4. 每条消息的发送结果通过返回的CompletableFuture异步通知.
+ *
+ * 实际的发送由{@link Sender}完成，它应当是非阻塞的（例如基于公众号的异步API），
+ * 只有同步API时可以通过{@link #ofBlocking(BlockingSender, int)}创建，此时发送在独立的线程池中执行，
+ * 运行在Java 21及以上版本时使用虚拟线程.
+ * </pre>
+ *
+ * @param <M> 消息类型
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Slf4j
+public class WxMessageDispatcher<M> implements Closeable {
+  private final Sender<M> sender;
+  private final ExecutorService ownedExecutor;
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+  private final Semaphore inFlight;
+  /**
+   * 等待令牌或者等待重试的消息，关闭时以异常完成.
+   */
+  private final Set<Task> waiting = ConcurrentHashMap.newKeySet();
+  private final int maxInFlight;
+
+  private volatile double permitsPerSecond = 100;
+  private volatile int maxRetries = 3;
+  private volatile long retryDelayMillis = 1000L;
+  private volatile Set<Integer> retryableErrorCodes = new HashSet<>(Arrays.asList(-1, 45011));
+  private volatile boolean closed;
+
+  /**
+   * 同时进行中的消息数上限为1024.
+   *
+   * @param sender 非阻塞的消息发送器
+   */
+  public WxMessageDispatcher(Sender<M> sender) {
+    this(sender, 1024);
+  }
+
+  /**
+   * @param sender      非阻塞的消息发送器
+   * @param maxInFlight 同时进行中的消息数上限
+   */
+  public WxMessageDispatcher(Sender<M> sender, int maxInFlight) {
+    this(sender, maxInFlight, null);
+  }
+
+  private WxMessageDispatcher(Sender<M> sender, int maxInFlight, ExecutorService ownedExecutor) {
+    if (maxInFlight <= 0) {
+      throw new IllegalArgumentException("maxInFlight必须大于0");
+    }
+
+    this.sender = sender;
+    this.maxInFlight = maxInFlight;
+    this.inFlight = new Semaphore(maxInFlight);
+    this.ownedExecutor = ownedExecutor;
+    this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+      Thread thread = new Thread(r, "WxMessageDispatcher-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 基于同步的消息发送器创建调度器，发送在调度器自己的线程池中执行，关闭调度器时一并关闭.
+   *
+   * @param sender      同步的消息发送器
+   * @param concurrency 同时发送的消息数上限，同时也是进行中的消息数上限
+   * @param <M>         消息类型
+   * @return 调度器
+   */
+  public static <M> WxMessageDispatcher<M> ofBlocking(final BlockingSender<M> sender, int concurrency) {
+    final ExecutorService executor = newBlockingExecutor(concurrency);
+    return new WxMessageDispatcher<>((accountId, message) -> CompletableFuture.supplyAsync(() -> {
+      try {
+        return sender.send(accountId, message);
+      } catch (WxErrorException e) {
+        throw new CompletionException(e);
+      }
+    }, executor), concurrency, executor);
+  }
+
+  /**
+   * 有虚拟线程时（Java 21+）每个发送使用一个虚拟线程，否则使用固定大小的守护线程池.
+   */
+  private static ExecutorService newBlockingExecutor(int threads) {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      final AtomicInteger threadNumber = new AtomicInteger();
+      return Executors.newFixedThreadPool(threads, r -> {
+        Thread thread = new Thread(r, "WxMessageDispatcher-sender-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * 设置每个账号默认的每秒发送数，只对之后新出现的账号生效.
+   *
+   * @param permitsPerSecond 每秒发送数，默认为100
+   */
+  public void setPermitsPerSecond(double permitsPerSecond) {
+    checkPermitsPerSecond(permitsPerSecond);
+    this.permitsPerSecond = permitsPerSecond;
+  }
+
+  /**
+   * 设置某个账号的每秒发送数.
+   *
+   * @param accountId        账号标识，一般为appId
+   * @param permitsPerSecond 每秒发送数
+   */
+  public void setPermitsPerSecond(String accountId, double permitsPerSecond) {
+    checkPermitsPerSecond(permitsPerSecond);
+    this.account(accountId).setPermitsPerSecond(permitsPerSecond);
+  }
+
+  private static void checkPermitsPerSecond(double permitsPerSecond) {
+    if (!(permitsPerSecond > 0)) {
+      throw new IllegalArgumentException("每秒发送数必须大于0");
+    }
+  }
+
+  /**
+   * @param maxRetries 遇到可重试错误时的最大重试次数，默认为3
+   */
+  public void setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+  }
+
+  /**
+   * @param retryDelayMillis 第一次重试前的等待时间（毫秒），之后每次翻倍，默认为1秒
+   */
+  public void setRetryDelayMillis(long retryDelayMillis) {
+    this.retryDelayMillis = retryDelayMillis;
+  }
+
+  /**
+   * @param retryableErrorCodes 需要重试的错误码，默认为-1（系统繁忙）和45011（频率限制）
+   */
+  public void setRetryableErrorCodes(Set<Integer> retryableErrorCodes) {
+    this.retryableErrorCodes = new HashSet<>(retryableErrorCodes);
+  }
+
+  /**
+   * 提交一条消息，进行中的消息数已达上限时阻塞等待.
+   *
+   * @param accountId 发送消息的账号标识，一般为appId，会原样传给{@link Sender}
+   * @param message   消息
+   * @return 发送结果，成功时为{@link Sender}返回的结果（如模板消息的msgid），
+   * 失败时以{@link WxErrorException}异常完成，等待时线程被中断则以{@link InterruptedException}异常完成
+   */
+  public CompletableFuture<String> dispatch(String accountId, M message) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    try {
+      this.inFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      result.completeExceptionally(e);
+      return result;
+    }
+
+    this.start(accountId, message, result);
+    return result;
+  }
+
+  /**
+   * 尝试提交一条消息，进行中的消息数已达上限时直接返回null.
+   *
+   * @param accountId 发送消息的账号标识
+   * @param message   消息
+   * @return 发送结果，未能提交时为null
+   */
+  public CompletableFuture<String> tryDispatch(String accountId, M message) {
+    if (!this.inFlight.tryAcquire()) {
+      return null;
+    }
+
+    CompletableFuture<String> result = new CompletableFuture<>();
+    this.start(accountId, message, result);
+    return result;
+  }
+
+  /**
+   * 依次提交所有消息，进行中的消息数已达上限时阻塞等待，因此方法返回时所有消息均已提交.
+   *
+   * @param accountId 发送消息的账号标识
+   * @param messages  消息
+   * @param listener  每条消息发送完成（成功或最终失败）后的回调，可以为null
+   * @return 所有消息均发送完成后完成
+   */
+  public CompletableFuture<Void> dispatchAll(String accountId, Iterable<? extends M> messages,
+                                             final Listener<? super M> listener) {
+    final CompletableFuture<Void> all = new CompletableFuture<>();
+    // 初始为1，所有消息提交完后再减去，避免提交过程中计数提前归零
+    final AtomicInteger pending = new AtomicInteger(1);
+    for (final M message : messages) {
+      pending.incrementAndGet();
+      this.dispatch(accountId, message).whenComplete((result, e) -> {
+        if (listener != null) {
+          try {
+            listener.onComplete(message, result, e == null ? null : unwrap(e));
+          } catch (RuntimeException ex) {
+            log.error("消息发送结果回调出错", ex);
+          }
+        }
+        if (pending.decrementAndGet() == 0) {
+          all.complete(null);
+        }
+      });
+    }
+
+    if (pending.decrementAndGet() == 0) {
+      all.complete(null);
+    }
+    return all;
+  }
+
+  /**
+   * 获取账号的发送统计信息.
+   *
+   * @param accountId 账号标识
+   * @return 统计信息，该账号尚未发送过消息时返回null
+   */
+  public Stats getStats(String accountId) {
+    Account account = this.accounts.get(accountId);
+    return account == null ? null : account.toStats();
+  }
+
+  /**
+   * 获取所有账号的发送统计信息.
+   *
+   * @return 账号标识->统计信息
+   */
+  public Map<String, Stats> getAllStats() {
+    Map<String, Stats> result = new HashMap<>(this.accounts.size());
+    for (Account account : this.accounts.values()) {
+      result.put(account.accountId, account.toStats());
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * @return 当前进行中的消息数
+   */
+  public int getInFlight() {
+    return this.maxInFlight - this.inFlight.availablePermits();
+  }
+
+  private Account account(String accountId) {
+    String key = accountId == null ? "" : accountId;
+    Account account = this.accounts.get(key);
+    if (account == null) {
+      Account created = new Account(key, this.permitsPerSecond);
+      account = this.accounts.putIfAbsent(key, created);
+      if (account == null) {
+        account = created;
+      }
+    }
+    return account;
+  }
+
+  private void start(String accountId, M message, CompletableFuture<String> result) {
+    Task task = new Task(this.account(accountId), accountId, message, result);
+    task.account.submitted.incrementAndGet();
+    task.account.inFlight.incrementAndGet();
+    result.whenComplete((r, e) -> {
+      task.account.inFlight.decrementAndGet();
+      this.inFlight.release();
+    });
+
+    if (this.closed) {
+      task.fail(new IllegalStateException("调度器已关闭"));
+      return;
+    }
+    this.enqueue(task);
+  }
+
+  /**
+   * 从令牌桶中预定一个令牌，令牌可用时立即发送，否则延时到令牌可用时再发送.
+   */
+  private void enqueue(Task task) {
+    long waitNanos = task.account.reserve(System.nanoTime());
+    if (waitNanos <= 0) {
+      task.run();
+      return;
+    }
+
+    this.schedule(task, waitNanos, false);
+  }
+
+  /**
+   * 延时执行，retry为true时重新从令牌桶中预定令牌，否则直接发送.
+   */
+  private void schedule(final Task task, long delayNanos, final boolean retry) {
+    this.waiting.add(task);
+    try {
+      this.scheduler.schedule(() -> {
+        if (this.waiting.remove(task)) {
+          if (retry) {
+            this.enqueue(task);
+          } else {
+            task.run();
+          }
+        }
+      }, delayNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      if (this.waiting.remove(task)) {
+        task.fail(new IllegalStateException("调度器已关闭"));
+      }
+    }
+  }
+
+  private void onFailure(final Task task, Throwable e) {
+    Throwable cause = unwrap(e);
+    if (cause instanceof WxErrorException && task.attempts <= this.maxRetries
+      && this.retryableErrorCodes.contains(((WxErrorException) cause).getError().getErrorCode())) {
+      long delayMillis = this.retryDelayMillis << Math.min(task.attempts - 1, 16);
+      task.account.retries.incrementAndGet();
+      log.warn("发送消息失败，账号：{}，{}毫秒后进行第{}次重试：{}", task.account.accountId, delayMillis, task.attempts,
+        cause.getMessage());
+      this.schedule(task, TimeUnit.MILLISECONDS.toNanos(delayMillis), true);
+      return;
+    }
+
+    task.fail(cause);
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+      e = e.getCause();
+    }
+    return e;
+  }
+
+  /**
+   * 关闭调度器，尚未发送的消息以异常完成，已经发出的请求不受影响.
+   */
+  @Override
+  public void close() {
+    this.closed = true;
+    this.scheduler.shutdownNow();
+    for (Task task : this.waiting) {
+      if (this.waiting.remove(task)) {
+        task.fail(new IllegalStateException("调度器已关闭"));
+      }
+    }
+    if (this.ownedExecutor != null) {
+      this.ownedExecutor.shutdown();
+    }
+  }
+
+  /**
+   * 非阻塞的消息发送器.
+   *
+   * @param <M> 消息类型
+   */
+  public interface Sender<M> {
+    /**
+     * 发送消息，不应阻塞调用线程.
+     *
+     * @param accountId 调用{@link #dispatch(String, Object)}时传入的账号标识
+     * @param message   消息
+     * @return 发送结果，失败时应以{@link WxErrorException}异常完成，以便根据错误码决定是否重试
+     */
+    CompletableFuture<String> send(String accountId, M message);
+  }
+
+  /**
+   * 同步的消息发送器.
+   *
+   * @param <M> 消息类型
+   */
+  public interface BlockingSender<M> {
+    /**
+     * 发送消息.
+     *
+     * @param accountId 调用{@link #dispatch(String, Object)}时传入的账号标识
+     * @param message   消息
+     * @return 发送结果，没有时返回null
+     * @throws WxErrorException 发送失败
+     */
+    String send(String accountId, M message) throws WxErrorException;
+  }
+
+  /**
+   * 消息发送完成的回调.
+   *
+   * @param <M> 消息类型
+   */
+  public interface Listener<M> {
+    /**
+     * 消息发送完成（成功或最终失败）后调用，在完成发送的线程中执行，不应有耗时操作.
+     *
+     * @param message 消息
+     * @param result  发送结果，失败时为null
+     * @param error   失败原因，成功时为null
+     */
+    void onComplete(M message, String result, Throwable error);
+  }
+
+  /**
+   * 账号的发送统计信息.
+   */
+  @Data
+  public static class Stats {
+    /**
+     * 已提交的消息数.
+     */
+    private long submitted;
+    /**
+     * 发送成功的消息数.
+     */
+    private long succeeded;
+    /**
+     * 最终发送失败的消息数.
+     */
+    private long failed;
+    /**
+     * 重试次数.
+     */
+    private long retries;
+    /**
+     * 进行中的消息数.
+     */
+    private long inFlight;
+    /**
+     * 每秒发送数.
+     */
+    private double permitsPerSecond;
+  }
+
+  private class Task {
+    private final Account account;
+    private final String accountId;
+    private final M message;
+    private final CompletableFuture<String> result;
+    private int attempts;
+
+    private Task(Account account, String accountId, M message, CompletableFuture<String> result) {
+      this.account = account;
+      this.accountId = accountId;
+      this.message = message;
+      this.result = result;
+    }
+
+    private void run() {
+      this.attempts++;
+      CompletableFuture<String> future;
+      try {
+        future = WxMessageDispatcher.this.sender.send(this.accountId, this.message);
+      } catch (RuntimeException e) {
+        WxMessageDispatcher.this.onFailure(this, e);
+        return;
+      }
+
+      future.whenComplete((r, e) -> {
+        if (e == null) {
+          this.account.succeeded.incrementAndGet();
+          this.result.complete(r);
+        } else {
+          WxMessageDispatcher.this.onFailure(this, e);
+        }
+      });
+    }
+
+    private void fail(Throwable e) {
+      if (this.result.completeExceptionally(e)) {
+        this.account.failed.incrementAndGet();
+      }
+    }
+  }
+
+  private static class Account {
+    private final String accountId;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private double permitsPerSecond;
+    private long intervalNanos;
+    /**
+     * 下一个令牌可用的时间.
+     */
+    private long nextFreeNanos = Long.MIN_VALUE;
+
+    private Account(String accountId, double permitsPerSecond) {
+      this.accountId = accountId;
+      this.setPermitsPerSecond(permitsPerSecond);
+    }
+
+    private synchronized void setPermitsPerSecond(double permitsPerSecond) {
+      this.permitsPerSecond = permitsPerSecond;
+      this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    /**
+     * 预定一个令牌.
+     *
+     * @return 需要等待的时间（纳秒），不大于0时可以立即发送
+     */
+    private synchronized long reserve(long nowNanos) {
+      if (this.nextFreeNanos == Long.MIN_VALUE || this.nextFreeNanos - nowNanos < 0) {
+        this.nextFreeNanos = nowNanos;
+      }
+
+      long waitNanos = this.nextFreeNanos - nowNanos;
+      this.nextFreeNanos += this.intervalNanos;
+      return waitNanos;
+    }
+
+    private synchronized Stats toStats() {
+      Stats stats = new Stats();
+      stats.setSubmitted(this.submitted.get());
+      stats.setSucceeded(this.succeeded.get());
+      stats.setFailed(this.failed.get());
+      stats.setRetries(this.retries.get());
+      stats.setInFlight(this.inFlight.get());
+      stats.setPermitsPerSecond(this.permitsPerSecond);
+      return stats;
+    }
+  }
+
+}
@@ -0,0 +1,216 @@
+package me.chanjar.weixin.common.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 消息路由规则索引，供公众号、企业微信及小程序的消息路由器使用.
+ * 每条规则按照其设置了精确匹配条件的维度（如msgType、event、eventKey、content）归入一个桶，
+ * 路由消息时只需根据消息在各维度上的取值查找若干个桶，得到可能匹配的候选规则（保持规则的注册顺序），
+ * 再由路由器对候选规则逐一执行完整的匹配逻辑，从而避免每条消息都遍历所有规则.
+ *
+ * 各维度的取值需要由调用方按照规则的匹配逻辑进行规范化（比如不区分大小写的维度使用{@link #ignoreCaseKey(String)}），
+ * 保证所有能够匹配消息的规则都在候选结果中. 索引创建后不可修改，规则变化时需要重新创建.
+ * </pre>
+ *
+ * @param <R> 规则类型
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMessageRouterRuleIndex<R> {
+  private final int dimensions;
+  private final List<R> rules = new ArrayList<>();
+  private final Map<String, int[]> buckets = new HashMap<>();
+  private final Map<String, List<Integer>> pendingBuckets = new HashMap<>();
+  private final boolean[] maskPresent;
+  private int[] masks;
+
+  /**
+   * @param dimensions 建立索引的维度数量，最多8个
+   */
+  public WxMessageRouterRuleIndex(int dimensions) {
+    if (dimensions < 0 || dimensions > 8) {
+      throw new IllegalArgumentException("索引维度数量应在0到8之间");
+    }
+
+    this.dimensions = dimensions;
+    this.maskPresent = new boolean[1 << dimensions];
+  }
+
+  /**
+   * 将不区分大小写匹配的值规范化，规范化后相等当且仅当原值{@link String#equalsIgnoreCase(String)}.
+   *
+   * @param value 原值
+   * @return 规范化后的值，原值为null时返回null
+   */
+  public static String ignoreCaseKey(String value) {
+    if (value == null) {
+      return null;
+    }
+
+    char[] chars = value.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * 按照注册顺序添加规则.
+   *
+   * @param rule 规则
+   * @param keys 规则在各维度上要求精确匹配的值，为null表示该维度不限
+   */
+  public void add(R rule, String... keys) {
+    if (this.masks != null) {
+      throw new IllegalStateException("索引已经开始使用，不能再添加规则");
+    }
+    this.checkDimensions(keys);
+
+    int mask = 0;
+    for (int i = 0; i < this.dimensions; i++) {
+      if (keys[i] != null) {
+        mask |= 1 << i;
+      }
+    }
+
+    this.maskPresent[mask] = true;
+    String bucketKey = this.bucketKey(mask, keys);
+    List<Integer> bucket = this.pendingBuckets.get(bucketKey);
+    if (bucket == null) {
+      bucket = new ArrayList<>();
+      this.pendingBuckets.put(bucketKey, bucket);
+    }
+    bucket.add(this.rules.size());
+    this.rules.add(rule);
+  }
+
+  /**
+   * @return 规则数量
+   */
+  public int size() {
+    return this.rules.size();
+  }
+
+  /**
+   * 查找可能匹配消息的候选规则.
+   *
+   * @param keys 消息在各维度上的值（与添加规则时的规范化方式一致），为null表示消息没有该值
+   * @return 按照注册顺序排列的候选规则
+   */
+  public List<R> candidates(String... keys) {
+    this.checkDimensions(keys);
+    this.freeze();
+
+    int[] single = null;
+    List<int[]> matched = null;
+    for (int mask : this.masks) {
+      if (!this.covers(mask, keys)) {
+        continue;
+      }
+
+      int[] bucket = this.buckets.get(this.bucketKey(mask, keys));
+      if (bucket == null) {
+        continue;
+      }
+
+      if (single == null) {
+        single = bucket;
+      } else {
+        if (matched == null) {
+          matched = new ArrayList<>();
+          matched.add(single);
+        }
+        matched.add(bucket);
+      }
+    }
+
+    if (single == null) {
+      return Collections.emptyList();
+    }
+
+    int[] positions = single;
+    if (matched != null) {
+      int total = 0;
+      for (int[] bucket : matched) {
+        total += bucket.length;
+      }
+
+      positions = new int[total];
+      int offset = 0;
+      for (int[] bucket : matched) {
+        System.arraycopy(bucket, 0, positions, offset, bucket.length);
+        offset += bucket.length;
+      }
+      // 每条规则只属于一个桶，不会重复
+      Arrays.sort(positions);
+    }
+
+    List<R> result = new ArrayList<>(positions.length);
+    for (int position : positions) {
+      result.add(this.rules.get(position));
+    }
+    return result;
+  }
+
+  private void checkDimensions(String[] keys) {
+    if (keys.length != this.dimensions) {
+      throw new IllegalArgumentException("索引维度数量应为" + this.dimensions);
+    }
+  }
+
+  /**
+   * 首次查询前将构建过程中的桶转换为数组，之后索引只读，可以被多个线程并发查询.
+   */
+  private synchronized void freeze() {
+    if (this.masks != null) {
+      return;
+    }
+
+    for (Map.Entry<String, List<Integer>> entry : this.pendingBuckets.entrySet()) {
+      List<Integer> bucket = entry.getValue();
+      int[] positions = new int[bucket.size()];
+      for (int i = 0; i < positions.length; i++) {
+        positions[i] = bucket.get(i);
+      }
+      this.buckets.put(entry.getKey(), positions);
+    }
+    this.pendingBuckets.clear();
+
+    int count = 0;
+    int[] presentMasks = new int[this.maskPresent.length];
+    for (int mask = 0; mask < this.maskPresent.length; mask++) {
+      if (this.maskPresent[mask]) {
+        presentMasks[count++] = mask;
+      }
+    }
+    this.masks = Arrays.copyOf(presentMasks, count);
+  }
+
+  /**
+   * 消息在规则要求的所有维度上都有值时才可能匹配.
+   */
+  private boolean covers(int mask, String[] keys) {
+    for (int i = 0; i < this.dimensions; i++) {
+      if ((mask & (1 << i)) != 0 && keys[i] == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String bucketKey(int mask, String[] keys) {
+    StringBuilder sb = new StringBuilder().append(mask);
+    for (int i = 0; i < this.dimensions; i++) {
+      if ((mask & (1 << i)) != 0) {
+        // 带上长度，避免不同维度的值拼接后产生歧义
+        sb.append('|').append(keys[i].length()).append(':').append(keys[i]);
+      }
+    }
+    return sb.toString();
+  }
+}
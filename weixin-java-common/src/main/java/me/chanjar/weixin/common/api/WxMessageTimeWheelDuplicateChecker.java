@@ -0,0 +1,256 @@
+package me.chanjar.weixin.common.api;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 基于时间轮的消息重复检查器，内存占用有上限.
+ * 与{@link WxMessageInMemoryDuplicateChecker}相比：
+ * 1. 不保存消息id字符串，只保存其64位指纹（8字节），指纹碰撞的概率可以忽略；
+ * 2. 按照消息到达的时间把指纹放入时间轮的格子，每个格子对应一个时间片（默认1秒），
+ *    过期的格子在下次使用时整体丢弃，不需要后台线程定期遍历所有消息id；
+ * 3. 保存的消息id数量超过上限（默认10万）时，提前丢弃最早的格子，保证内存不会无限增长；
+ * 4. 提供重复次数、保存的消息id数量等统计信息.
+ *
+ * 为了降低锁竞争，指纹按照哈希值分散到16个分段中，每个分段有独立的时间轮和数量上限.
+ * 可以直接替换公众号、企业微信及小程序消息路由器的默认消息重复检查器.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMessageTimeWheelDuplicateChecker implements WxMessageDuplicateChecker {
+  private static final int SEGMENT_COUNT = 16;
+
+  private final long tickMillis;
+  private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * 无参构造方法.
+   * <pre>
+   * 一个消息ID在内存的过期时间：15秒
+   * 时间轮每格的时间片：1秒
+   * 最多保存的消息ID数量：10万
+   * </pre>
+   */
+  public WxMessageTimeWheelDuplicateChecker() {
+    this(15 * 1000L, 1000L, 100000);
+  }
+
+  /**
+   * 构造方法.
+   *
+   * @param timeToLive 一个消息ID在内存的过期时间：毫秒，实际过期时间会在此基础上延后不超过一个时间片
+   * @param tickMillis 时间轮每格的时间片：毫秒
+   * @param maxSize    最多保存的消息ID数量
+   */
+  public WxMessageTimeWheelDuplicateChecker(long timeToLive, long tickMillis, int maxSize) {
+    if (timeToLive <= 0 || tickMillis <= 0 || maxSize <= 0) {
+      throw new IllegalArgumentException("过期时间、时间片及最大数量都必须大于0");
+    }
+
+    this.tickMillis = tickMillis;
+    int wheelSize = (int) ((timeToLive + tickMillis - 1) / tickMillis) + 1;
+    int segmentMaxSize = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+    for (int i = 0; i < SEGMENT_COUNT; i++) {
+      this.segments[i] = new Segment(wheelSize, segmentMaxSize);
+    }
+  }
+
+  @Override
+  public boolean isDuplicate(String messageId) {
+    if (messageId == null) {
+      return false;
+    }
+
+    long fingerprint = fingerprint(messageId);
+    Segment segment = this.segments[(int) (fingerprint >>> 60)];
+    boolean duplicate = segment.checkAndAdd(fingerprint, this.currentTimeMillis() / this.tickMillis);
+    if (duplicate) {
+      this.hitCount.increment();
+    } else {
+      this.missCount.increment();
+    }
+    return duplicate;
+  }
+
+  /**
+   * @return 判定为重复消息的次数
+   */
+  public long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * @return 判定为非重复消息的次数
+   */
+  public long getMissCount() {
+    return this.missCount.sum();
+  }
+
+  /**
+   * @return 因超过数量上限而被提前丢弃的消息ID数量
+   */
+  public long getEvictionCount() {
+    return this.evictionCount.sum();
+  }
+
+  /**
+   * @return 当前保存的消息ID数量，可能包含已过期但尚未丢弃的消息ID
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : this.segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * 当前时间，单元测试中可以覆盖.
+   */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * 计算消息id的64位指纹，FNV-1a哈希后再经过MurmurHash3的fmix64混合.
+   */
+  static long fingerprint(String messageId) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < messageId.length(); i++) {
+      h ^= messageId.charAt(i);
+      h *= 0x100000001b3L;
+    }
+
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /**
+   * 一个分段，包含一个时间轮，每个格子是一个保存指纹的开放寻址哈希表.
+   */
+  private class Segment {
+    private final FingerprintSet[] slots;
+    private final long[] slotTicks;
+    private final int maxSize;
+    private int size;
+
+    private Segment(int wheelSize, int maxSize) {
+      this.slots = new FingerprintSet[wheelSize];
+      this.slotTicks = new long[wheelSize];
+      Arrays.fill(this.slotTicks, Long.MIN_VALUE);
+      this.maxSize = maxSize;
+    }
+
+    private synchronized boolean checkAndAdd(long fingerprint, long tick) {
+      for (int i = 0; i < this.slots.length; i++) {
+        if (this.slots[i] == null) {
+          continue;
+        }
+
+        if (tick - this.slotTicks[i] >= this.slots.length) {
+          // 整个格子已经过期
+          this.drop(i);
+        } else if (this.slots[i].contains(fingerprint)) {
+          return true;
+        }
+      }
+
+      int current = (int) Math.floorMod(tick, (long) this.slots.length);
+      if (this.slots[current] != null && this.slotTicks[current] != tick) {
+        this.drop(current);
+      }
+
+      while (this.size >= this.maxSize) {
+        this.evictOldest(current);
+      }
+
+      if (this.slots[current] == null) {
+        this.slots[current] = new FingerprintSet();
+        this.slotTicks[current] = tick;
+      }
+      this.slots[current].add(fingerprint);
+      this.size++;
+      return false;
+    }
+
+    /**
+     * 数量达到上限时丢弃最早的格子，只剩当前格子时丢弃当前格子.
+     */
+    private void evictOldest(int current) {
+      int oldest = current;
+      for (int i = 0; i < this.slots.length; i++) {
+        if (this.slots[i] != null && i != current
+          && (oldest == current || this.slotTicks[i] < this.slotTicks[oldest])) {
+          oldest = i;
+        }
+      }
+
+      WxMessageTimeWheelDuplicateChecker.this.evictionCount.add(this.slots[oldest].size);
+      this.drop(oldest);
+    }
+
+    private void drop(int slot) {
+      this.size -= this.slots[slot].size;
+      this.slots[slot] = null;
+    }
+
+    private synchronized int size() {
+      return this.size;
+    }
+  }
+
+  /**
+   * 保存64位指纹的开放寻址哈希表，0作为空位标记.
+   */
+  private static class FingerprintSet {
+    private long[] table = new long[16];
+    private int size;
+
+    private boolean contains(long fingerprint) {
+      long key = fingerprint == 0 ? 1 : fingerprint;
+      int mask = this.table.length - 1;
+      for (int i = (int) key & mask; ; i = (i + 1) & mask) {
+        if (this.table[i] == 0) {
+          return false;
+        }
+        if (this.table[i] == key) {
+          return true;
+        }
+      }
+    }
+
+    private void add(long fingerprint) {
+      if ((this.size + 1) * 2 > this.table.length) {
+        long[] old = this.table;
+        this.table = new long[old.length * 2];
+        for (long key : old) {
+          if (key != 0) {
+            this.insert(key);
+          }
+        }
+      }
+
+      this.insert(fingerprint == 0 ? 1 : fingerprint);
+      this.size++;
+    }
+
+    private void insert(long key) {
+      int mask = this.table.length - 1;
+      int i = (int) key & mask;
+      while (this.table[i] != 0) {
+        i = (i + 1) & mask;
+      }
+      this.table[i] = key;
+    }
+  }
+}
@@ -1,12 +1,16 @@
 package me.chanjar.weixin.common.error;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import lombok.Builder;
 import lombok.Data;
 import me.chanjar.weixin.common.WxType;
 import me.chanjar.weixin.common.util.json.WxGsonBuilder;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringReader;
 
 /**
  * 微信错误码.
@@ -44,6 +48,12 @@ public class WxError implements Serializable {
   }
 
   public static WxError fromJson(String json, WxType type) {
+    final WxError sniffed = sniff(json);
+    if (sniffed != null && sniffed.getErrorCode() == 0) {
+      // 成功的响应无需完整解析，之后还会被解析为具体的结果类型
+      return sniffed;
+    }
+
     final WxError wxError = WxGsonBuilder.create().fromJson(json, WxError.class);
     if (wxError.getErrorCode() == 0 || type == null) {
       return wxError;
@@ -82,6 +92,45 @@ public class WxError implements Serializable {
     return wxError;
   }
 
+  /**
+   * <pre>
+   * 以流的方式只读取json顶层的errcode和errmsg，其他字段直接跳过而不解析成对象，两者都读到后立即停止.
+   * 不是json对象或者格式有误时返回null，由调用方按原来的方式完整解析.
+   * </pre>
+   */
+  static WxError sniff(String json) {
+    if (json == null) {
+      return null;
+    }
+
+    try (JsonReader reader = new JsonReader(new StringReader(json))) {
+      reader.setLenient(true);
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        return null;
+      }
+
+      reader.beginObject();
+      Integer errorCode = null;
+      String errorMsg = null;
+      while (reader.hasNext() && (errorCode == null || errorMsg == null)) {
+        String name = reader.nextName();
+        if (reader.peek() == JsonToken.NULL) {
+          reader.skipValue();
+        } else if ("errcode".equals(name)) {
+          errorCode = reader.peek() == JsonToken.STRING ? Integer.valueOf(reader.nextString().trim()) : reader.nextInt();
+        } else if ("errmsg".equals(name)) {
+          errorMsg = reader.nextString();
+        } else {
+          reader.skipValue();
+        }
+      }
+
+      return WxError.builder().errorCode(errorCode == null ? 0 : errorCode).errorMsg(errorMsg).json(json).build();
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
   @Override
   public String toString() {
     if (this.json == null) {
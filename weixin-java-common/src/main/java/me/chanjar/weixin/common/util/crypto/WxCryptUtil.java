@@ -3,8 +3,8 @@ package me.chanjar.weixin.common.util.crypto;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.Random;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -24,6 +24,13 @@ import org.xml.sax.InputSource;
  * 针对org.apache.commons.codec.binary.Base64，
  * 需要导入架包commons-codec-1.9（或commons-codec-1.8等其他版本）
  * 官方下载地址：http://commons.apache.org/proper/commons-codec/download_codec.cgi
+ *
+ * 为了提高吞吐量：
+ * 1. 每个线程缓存已初始化的Cipher，密钥不变时直接复用，不再每次调用Cipher.getInstance及init；
+ * 2. 解密前通过扫描字符串提取Encrypt元素，不构建DOM，遇到无法确定的情况时才回退到DOM解析；
+ * 3. 加解密都在同一个字节数组上原地进行，避免多次拷贝；
+ * 4. 随机字符串使用共享的SecureRandom生成.
+ * 子类直接给aesKey等字段赋值即可，密钥相关的对象会在首次使用时根据aesKey创建.
  * </pre>
  *
  * @author Tencent
@@ -32,6 +39,17 @@ public class WxCryptUtil {
 
   private static final Base64 BASE64 = new Base64();
   private static final Charset CHARSET = StandardCharsets.UTF_8;
+  private static final String CIPHER_ALGORITHM = "AES/CBC/NoPadding";
+  private static final int BLOCK_SIZE = 32;
+  private static final String RANDOM_STR_BASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private static final String ENCRYPT_START_TAG = "<Encrypt>";
+  private static final String ENCRYPT_END_TAG = "</Encrypt>";
+  private static final String CDATA_START = "<![CDATA[";
+  private static final String CDATA_END = "]]>";
+
+  private static final ThreadLocal<CipherHolder> CIPHER_LOCAL = ThreadLocal.withInitial(CipherHolder::new);
 
   private static final ThreadLocal<DocumentBuilder> BUILDER_LOCAL = new ThreadLocal<DocumentBuilder>() {
     @Override
@@ -51,6 +69,8 @@ public class WxCryptUtil {
   protected String token;
   protected String appidOrCorpid;
 
+  private volatile KeyContext keyContext;
+
   public WxCryptUtil() {
   }
 
@@ -67,7 +87,76 @@ public class WxCryptUtil {
     this.aesKey = Base64.decodeBase64(encodingAesKey + "=");
   }
 
-  private static String extractEncryptPart(String xml) {
+  /**
+   * 提取xml中Encrypt元素的文本.
+   * <pre>
+   * 先按照xml的词法扫描字符串（跳过CDATA、注释及处理指令），找到第一个Encrypt元素后直接截取其文本，不构建DOM；
+   * 遇到DOCTYPE声明、带属性的标签、实体引用或混合内容等无法简单确定结果的情况时，回退到原来的DOM解析.
+   * 提取结果仅用于签名校验和解密，格式不正确的xml会在签名校验时被拒绝.
+   * </pre>
+   */
+  static String extractEncryptPart(String xml) {
+    String cipherText = scanEncryptPart(xml);
+    if (cipherText != null) {
+      return cipherText;
+    }
+
+    return parseEncryptPart(xml);
+  }
+
+  private static String scanEncryptPart(String xml) {
+    int i = 0;
+    while ((i = xml.indexOf('<', i)) >= 0) {
+      if (xml.startsWith(CDATA_START, i)) {
+        i = skipTo(xml, i + CDATA_START.length(), CDATA_END);
+      } else if (xml.startsWith("<!--", i)) {
+        i = skipTo(xml, i + 4, "-->");
+      } else if (xml.startsWith("<?", i)) {
+        i = skipTo(xml, i + 2, "?>");
+      } else if (xml.startsWith("<!", i)) {
+        // DOCTYPE等声明交给DOM解析处理（会被拒绝）
+        return null;
+      } else if (xml.startsWith(ENCRYPT_START_TAG, i)) {
+        return scanElementText(xml, i + ENCRYPT_START_TAG.length());
+      } else if (xml.startsWith("<Encrypt", i)) {
+        return null;
+      } else {
+        i++;
+      }
+
+      if (i < 0) {
+        return null;
+      }
+    }
+
+    return null;
+  }
+
+  private static int skipTo(String xml, int from, String end) {
+    int index = xml.indexOf(end, from);
+    return index < 0 ? -1 : index + end.length();
+  }
+
+  private static String scanElementText(String xml, int start) {
+    if (xml.startsWith(CDATA_START, start)) {
+      int end = xml.indexOf(CDATA_END, start + CDATA_START.length());
+      if (end < 0 || !xml.startsWith(ENCRYPT_END_TAG, end + CDATA_END.length())) {
+        return null;
+      }
+      return xml.substring(start + CDATA_START.length(), end);
+    }
+
+    int end = xml.indexOf('<', start);
+    if (end < 0 || !xml.startsWith(ENCRYPT_END_TAG, end)) {
+      return null;
+    }
+
+    String text = xml.substring(start, end);
+    // 包含实体引用时交给DOM解析
+    return text.indexOf('&') >= 0 ? null : text;
+  }
+
+  private static String parseEncryptPart(String xml) {
     try {
       DocumentBuilder db = BUILDER_LOCAL.get();
       Document document = db.parse(new InputSource(new StringReader(xml)));
@@ -80,25 +169,23 @@ public class WxCryptUtil {
   }
 
   /**
-   * 将一个数字转换成生成4个字节的网络字节序bytes数组.
+   * 将一个数字以4个字节的网络字节序写入bytes数组.
    */
-  private static byte[] number2BytesInNetworkOrder(int number) {
-    byte[] orderBytes = new byte[4];
-    orderBytes[3] = (byte) (number & 0xFF);
-    orderBytes[2] = (byte) (number >> 8 & 0xFF);
-    orderBytes[1] = (byte) (number >> 16 & 0xFF);
-    orderBytes[0] = (byte) (number >> 24 & 0xFF);
-    return orderBytes;
+  private static void writeNumberInNetworkOrder(int number, byte[] bytes, int offset) {
+    bytes[offset + 3] = (byte) (number & 0xFF);
+    bytes[offset + 2] = (byte) (number >> 8 & 0xFF);
+    bytes[offset + 1] = (byte) (number >> 16 & 0xFF);
+    bytes[offset] = (byte) (number >> 24 & 0xFF);
   }
 
   /**
    * 4个字节的网络字节序bytes数组还原成一个数字.
    */
-  private static int bytesNetworkOrder2Number(byte[] bytesInNetworkOrder) {
+  private static int bytesNetworkOrder2Number(byte[] bytesInNetworkOrder, int offset) {
     int sourceNumber = 0;
     for (int i = 0; i < 4; i++) {
       sourceNumber <<= 8;
-      sourceNumber |= bytesInNetworkOrder[i] & 0xff;
+      sourceNumber |= bytesInNetworkOrder[offset + i] & 0xff;
     }
     return sourceNumber;
   }
@@ -107,14 +194,11 @@ public class WxCryptUtil {
    * 随机生成16位字符串.
    */
   private static String genRandomStr() {
-    String base = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-    Random random = new Random();
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < 16; i++) {
-      int number = random.nextInt(base.length());
-      sb.append(base.charAt(number));
+    char[] chars = new char[16];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = RANDOM_STR_BASE.charAt(RANDOM.nextInt(RANDOM_STR_BASE.length()));
     }
-    return sb.toString();
+    return new String(chars);
   }
 
   /**
@@ -164,40 +248,34 @@ public class WxCryptUtil {
    * @return 加密后base64编码的字符串
    */
   protected String encrypt(String randomStr, String plainText) {
-    ByteGroup byteCollector = new ByteGroup();
     byte[] randomStringBytes = randomStr.getBytes(CHARSET);
     byte[] plainTextBytes = plainText.getBytes(CHARSET);
-    byte[] bytesOfSizeInNetworkOrder = number2BytesInNetworkOrder(plainTextBytes.length);
     byte[] appIdBytes = this.appidOrCorpid.getBytes(CHARSET);
 
-    // randomStr + networkBytesOrder + text + appid
-    byteCollector.addBytes(randomStringBytes);
-    byteCollector.addBytes(bytesOfSizeInNetworkOrder);
-    byteCollector.addBytes(plainTextBytes);
-    byteCollector.addBytes(appIdBytes);
-
-    // ... + pad: 使用自定义的填充方式对明文进行补位填充
-    byte[] padBytes = PKCS7Encoder.encode(byteCollector.size());
-    byteCollector.addBytes(padBytes);
-
-    // 获得最终的字节流, 未加密
-    byte[] unencrypted = byteCollector.toBytes();
-
-    try {
-      // 设置加密模式为AES的CBC模式
-      Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-      SecretKeySpec keySpec = new SecretKeySpec(this.aesKey, "AES");
-      IvParameterSpec iv = new IvParameterSpec(this.aesKey, 0, 16);
-      cipher.init(Cipher.ENCRYPT_MODE, keySpec, iv);
+    // randomStr + networkBytesOrder + text + appid + pad，直接写入同一个字节数组
+    int count = randomStringBytes.length + 4 + plainTextBytes.length + appIdBytes.length;
+    // 使用自定义的填充方式对明文进行补位填充，与PKCS7Encoder.encode一致
+    int amountToPad = BLOCK_SIZE - (count % BLOCK_SIZE);
+    byte[] bytes = new byte[count + amountToPad];
+
+    int offset = 0;
+    System.arraycopy(randomStringBytes, 0, bytes, offset, randomStringBytes.length);
+    offset += randomStringBytes.length;
+    writeNumberInNetworkOrder(plainTextBytes.length, bytes, offset);
+    offset += 4;
+    System.arraycopy(plainTextBytes, 0, bytes, offset, plainTextBytes.length);
+    offset += plainTextBytes.length;
+    System.arraycopy(appIdBytes, 0, bytes, offset, appIdBytes.length);
+    offset += appIdBytes.length;
+    for (; offset < bytes.length; offset++) {
+      bytes[offset] = (byte) amountToPad;
+    }
 
-      // 加密
-      byte[] encrypted = cipher.doFinal(unencrypted);
+    // 使用AES的CBC模式原地加密
+    this.doFinal(Cipher.ENCRYPT_MODE, bytes);
 
-      // 使用BASE64对加密后的字符串进行编码
-      return BASE64.encodeToString(encrypted);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+    // 使用BASE64对加密后的字符串进行编码
+    return BASE64.encodeToString(bytes);
   }
 
   /**
@@ -236,41 +314,32 @@ public class WxCryptUtil {
    * @return 解密得到的明文
    */
   public String decrypt(String cipherText) {
-    byte[] original;
-    try {
-      // 设置解密模式为AES的CBC模式
-      Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-      SecretKeySpec keySpec = new SecretKeySpec(this.aesKey, "AES");
-      IvParameterSpec iv = new IvParameterSpec(Arrays.copyOfRange(this.aesKey, 0, 16));
-      cipher.init(Cipher.DECRYPT_MODE, keySpec, iv);
-
-      // 使用BASE64对密文进行解码
-      byte[] encrypted = Base64.decodeBase64(cipherText);
-
-      // 解密
-      original = cipher.doFinal(encrypted);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
-    }
+    // 使用BASE64对密文进行解码，并使用AES的CBC模式原地解密
+    byte[] bytes = Base64.decodeBase64(cipherText);
+    int length = this.doFinal(Cipher.DECRYPT_MODE, bytes);
 
     String xmlContent;
-    String fromAppid;
     try {
       // 去除补位字符
-      byte[] bytes = PKCS7Encoder.decode(original);
+      int pad = bytes[length - 1];
+      if (pad < 1 || pad > BLOCK_SIZE) {
+        pad = 0;
+      }
+      int contentLength = length - pad;
 
       // 分离16位随机字符串,网络字节序和AppId
-      byte[] networkOrder = Arrays.copyOfRange(bytes, 16, 20);
-
-      int xmlLength = bytesNetworkOrder2Number(networkOrder);
+      int xmlLength = bytesNetworkOrder2Number(bytes, 16);
+      if (xmlLength < 0 || 20 + xmlLength > contentLength) {
+        throw new ArrayIndexOutOfBoundsException(20 + xmlLength);
+      }
 
-      xmlContent = new String(Arrays.copyOfRange(bytes, 20, 20 + xmlLength), CHARSET);
-      fromAppid = new String(Arrays.copyOfRange(bytes, 20 + xmlLength, bytes.length), CHARSET);
+      xmlContent = new String(bytes, 20, xmlLength, CHARSET);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
 
     // appid不相同的情况 暂时忽略这段判断
+//    String fromAppid = new String(bytes, 20 + xmlLength, contentLength - 20 - xmlLength, CHARSET);
 //    if (!fromAppid.equals(this.appidOrCorpid)) {
 //      throw new RuntimeException("AppID不正确，请核实！");
 //    }
@@ -279,4 +348,89 @@ public class WxCryptUtil {
 
   }
 
+  /**
+   * 使用当前线程缓存的Cipher对bytes原地加密或解密.
+   *
+   * @return 结果的字节数
+   */
+  private int doFinal(int mode, byte[] bytes) {
+    CipherHolder holder = CIPHER_LOCAL.get();
+    try {
+      return holder.get(mode, this.keyContext()).doFinal(bytes, 0, bytes.length, bytes, 0);
+    } catch (Exception e) {
+      // 出错后Cipher的状态不确定，下次使用时重新初始化
+      holder.reset(mode);
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * 根据当前的aesKey获取密钥相关的对象，aesKey被重新赋值后会重新创建.
+   */
+  private KeyContext keyContext() {
+    KeyContext context = this.keyContext;
+    if (context == null || context.aesKey != this.aesKey) {
+      context = new KeyContext(this.aesKey);
+      this.keyContext = context;
+    }
+    return context;
+  }
+
+  /**
+   * 由aesKey得到的密钥及初始向量，创建后不再修改.
+   */
+  private static class KeyContext {
+    private final byte[] aesKey;
+    private final SecretKeySpec keySpec;
+    private final IvParameterSpec iv;
+
+    private KeyContext(byte[] aesKey) {
+      this.aesKey = aesKey;
+      this.keySpec = new SecretKeySpec(aesKey, "AES");
+      this.iv = new IvParameterSpec(aesKey, 0, 16);
+    }
+  }
+
+  /**
+   * 每个线程持有的加密及解密Cipher，记录其初始化时使用的密钥，密钥相同时直接复用.
+   */
+  private static class CipherHolder {
+    private Cipher encryptCipher;
+    private KeyContext encryptContext;
+    private Cipher decryptCipher;
+    private KeyContext decryptContext;
+
+    private Cipher get(int mode, KeyContext context) throws GeneralSecurityException {
+      if (mode == Cipher.ENCRYPT_MODE) {
+        if (this.encryptCipher == null) {
+          this.encryptCipher = Cipher.getInstance(CIPHER_ALGORITHM);
+        }
+        if (this.encryptContext != context) {
+          this.encryptContext = null;
+          this.encryptCipher.init(mode, context.keySpec, context.iv);
+          this.encryptContext = context;
+        }
+        return this.encryptCipher;
+      }
+
+      if (this.decryptCipher == null) {
+        this.decryptCipher = Cipher.getInstance(CIPHER_ALGORITHM);
+      }
+      if (this.decryptContext != context) {
+        this.decryptContext = null;
+        this.decryptCipher.init(mode, context.keySpec, context.iv);
+        this.decryptContext = context;
+      }
+      return this.decryptCipher;
+    }
+
+    private void reset(int mode) {
+      if (mode == Cipher.ENCRYPT_MODE) {
+        this.encryptContext = null;
+      } else {
+        this.decryptContext = null;
+      }
+    }
+  }
+
 }
@@ -0,0 +1,71 @@
+package me.chanjar.weixin.common.util.http;
+
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.apache.ApacheMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.jodd.JoddHttpMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.okhttp.OkHttpMediaStreamDownloadRequestExecutor;
+
+import java.io.IOException;
+
+/**
+ * <pre>
+ * 以流的方式下载媒体文件的请求执行器.
+ * 请求的参数是String, 返回的结果是{@link MediaDownloadStream}，与{@link BaseMediaDownloadRequestExecutor}不同，
+ * 响应内容不会写入临时文件，调用方可以直接读取或者转存到其他输出流、通道中，读取完毕或关闭流后才会释放连接.
+ * 视频文件不支持下载
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public abstract class BaseMediaStreamDownloadRequestExecutor<H, P> implements RequestExecutor<MediaDownloadStream, String> {
+  protected RequestHttp<H, P> requestHttp;
+
+  public BaseMediaStreamDownloadRequestExecutor(RequestHttp<H, P> requestHttp) {
+    this.requestHttp = requestHttp;
+  }
+
+  @Override
+  public void execute(String uri, String data, ResponseHandler<MediaDownloadStream> handler, WxType wxType)
+    throws WxErrorException, IOException {
+    try (MediaDownloadStream stream = this.execute(uri, data, wxType)) {
+      handler.handle(stream);
+    }
+  }
+
+  protected static String appendQueryParam(String uri, String queryParam) {
+    if (queryParam == null) {
+      return uri;
+    }
+
+    if (uri.indexOf('?') == -1) {
+      uri += '?';
+    }
+    return uri + (uri.endsWith("?") ? queryParam : '&' + queryParam);
+  }
+
+  /**
+   * 从响应头中获取文件名，没有时返回null.
+   */
+  protected static String getFileName(HttpResponseProxy responseProxy) {
+    try {
+      return responseProxy.getFileName();
+    } catch (WxErrorException e) {
+      return null;
+    }
+  }
+
+  public static RequestExecutor<MediaDownloadStream, String> create(RequestHttp requestHttp) {
+    switch (requestHttp.getRequestType()) {
+      case APACHE_HTTP:
+        return new ApacheMediaStreamDownloadRequestExecutor(requestHttp);
+      case JODD_HTTP:
+        return new JoddHttpMediaStreamDownloadRequestExecutor(requestHttp);
+      case OK_HTTP:
+        return new OkHttpMediaStreamDownloadRequestExecutor(requestHttp);
+      default:
+        return null;
+    }
+  }
+
+}
@@ -0,0 +1,132 @@
+package me.chanjar.weixin.common.util.http;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * <pre>
+ * 下载媒体文件时返回的流，直接读取http响应内容，不会先写入临时文件.
+ * 文件名、内容类型和长度取自响应头，无需读取内容即可获取.
+ * 流读取完毕或者关闭后才会释放底层的http连接，因此使用完毕后必须关闭，建议使用try-with-resources.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class MediaDownloadStream extends FilterInputStream {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String fileName;
+  private final String contentType;
+  private final long contentLength;
+  private final Closeable connection;
+  private boolean closed;
+
+  /**
+   * @param in            响应内容
+   * @param fileName      文件名，响应头中没有时为null
+   * @param contentType   内容类型，响应头中没有时为null
+   * @param contentLength 内容长度，未知时为-1
+   * @param connection    关闭流时需要一并释放的连接，可以为null
+   */
+  public MediaDownloadStream(InputStream in, String fileName, String contentType, long contentLength,
+                             Closeable connection) {
+    super(in);
+    this.fileName = fileName;
+    this.contentType = contentType;
+    this.contentLength = contentLength;
+    this.connection = connection;
+  }
+
+  /**
+   * @return 文件名，响应头中没有时为null
+   */
+  public String getFileName() {
+    return this.fileName;
+  }
+
+  /**
+   * @return 内容类型，响应头中没有时为null
+   */
+  public String getContentType() {
+    return this.contentType;
+  }
+
+  /**
+   * @return 内容长度，未知时为-1
+   */
+  public long getContentLength() {
+    return this.contentLength;
+  }
+
+  /**
+   * 将剩余内容全部写入输出流，完成后关闭本流并释放连接，输出流不会被关闭.
+   * 与{@code InputStream.transferTo}（JDK 9+）不同的是会关闭本流，因此没有使用同样的方法名.
+   *
+   * @param out 输出流
+   * @return 写入的字节数
+   * @throws IOException 读取或写入出错
+   */
+  public long writeTo(OutputStream out) throws IOException {
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long total = 0;
+      int read;
+      while ((read = this.in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        total += read;
+      }
+      return total;
+    } finally {
+      this.close();
+    }
+  }
+
+  /**
+   * 将剩余内容全部写入通道，完成后关闭本流并释放连接，通道不会被关闭.
+   *
+   * @param channel 输出通道
+   * @return 写入的字节数
+   * @throws IOException 读取或写入出错
+   */
+  public long writeTo(WritableByteChannel channel) throws IOException {
+    try {
+      ReadableByteChannel source = Channels.newChannel(this.in);
+      ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      long total = 0;
+      while (source.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          total += channel.write(buffer);
+        }
+        buffer.clear();
+      }
+      return total;
+    } finally {
+      this.close();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    try {
+      super.close();
+    } finally {
+      if (this.connection != null) {
+        this.connection.close();
+      }
+    }
+  }
+
+}
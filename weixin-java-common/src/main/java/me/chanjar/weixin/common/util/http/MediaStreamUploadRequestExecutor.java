@@ -0,0 +1,47 @@
+package me.chanjar.weixin.common.util.http;
+
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.apache.ApacheMediaStreamUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.jodd.JoddHttpMediaStreamUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.okhttp.OkHttpMediaStreamUploadRequestExecutor;
+
+import java.io.IOException;
+
+/**
+ * <pre>
+ * 以流的方式上传媒体文件的请求执行器.
+ * 请求的参数是{@link MediaUploadSource}，可以是文件、输入流、通道或者字节数组的一段，
+ * 数据直接写入multipart请求体，不需要先保存为临时文件.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public abstract class MediaStreamUploadRequestExecutor<H, P> implements RequestExecutor<WxMediaUploadResult, MediaUploadSource> {
+  protected RequestHttp<H, P> requestHttp;
+
+  public MediaStreamUploadRequestExecutor(RequestHttp requestHttp) {
+    this.requestHttp = requestHttp;
+  }
+
+  @Override
+  public void execute(String uri, MediaUploadSource data, ResponseHandler<WxMediaUploadResult> handler, WxType wxType)
+    throws WxErrorException, IOException {
+    handler.handle(this.execute(uri, data, wxType));
+  }
+
+  public static RequestExecutor<WxMediaUploadResult, MediaUploadSource> create(RequestHttp requestHttp) {
+    switch (requestHttp.getRequestType()) {
+      case APACHE_HTTP:
+        return new ApacheMediaStreamUploadRequestExecutor(requestHttp);
+      case JODD_HTTP:
+        return new JoddHttpMediaStreamUploadRequestExecutor(requestHttp);
+      case OK_HTTP:
+        return new OkHttpMediaStreamUploadRequestExecutor(requestHttp);
+      default:
+        return null;
+    }
+  }
+
+}
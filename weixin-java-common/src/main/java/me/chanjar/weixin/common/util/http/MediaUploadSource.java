@@ -0,0 +1,321 @@
+package me.chanjar.weixin.common.util.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * <pre>
+ * 上传媒体文件时的数据来源，可以是文件、输入流、通道或者字节数组的一段.
+ * 上传时数据直接写入multipart请求体，不会先写入临时文件，也不会额外复制到堆内存中：
+ * 1. 文件通过{@link FileChannel#transferTo(long, long, WritableByteChannel)}写出；
+ * 2. 字节数组直接写出指定的区间；
+ * 3. 输入流和通道边读边写，只能读取一次，因此access token失效或者微信系统繁忙时不会自动重试，而是直接抛出错误，
+ *    需要自动重试时可以先调用{@link #toRepeatable()}（会将内容读入内存），或者改用文件作为数据来源.
+ * 内容长度未知（-1）时请求体会使用分块传输.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class MediaUploadSource {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final String fileName;
+  private final long contentLength;
+  private final File file;
+  private final byte[] bytes;
+  private final int offset;
+  private final InputStream inputStream;
+  private final ReadableByteChannel channel;
+  private boolean consumed;
+
+  private MediaUploadSource(String fileName, long contentLength, File file, byte[] bytes, int offset,
+                            InputStream inputStream, ReadableByteChannel channel) {
+    this.fileName = fileName;
+    this.contentLength = contentLength;
+    this.file = file;
+    this.bytes = bytes;
+    this.offset = offset;
+    this.inputStream = inputStream;
+    this.channel = channel;
+  }
+
+  /**
+   * 以文件作为数据来源，文件名取文件本身的名称.
+   */
+  public static MediaUploadSource of(File file) {
+    return of(file, file.getName());
+  }
+
+  /**
+   * 以文件作为数据来源.
+   */
+  public static MediaUploadSource of(File file, String fileName) {
+    return new MediaUploadSource(fileName, file.length(), file, null, 0, null, null);
+  }
+
+  /**
+   * 以整个字节数组作为数据来源，数组不会被复制，上传完成前不要修改.
+   */
+  public static MediaUploadSource of(byte[] bytes, String fileName) {
+    return of(bytes, 0, bytes.length, fileName);
+  }
+
+  /**
+   * 以字节数组的一段作为数据来源，数组不会被复制，上传完成前不要修改.
+   */
+  public static MediaUploadSource of(byte[] bytes, int offset, int length, String fileName) {
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException("offset: " + offset + ", length: " + length);
+    }
+    return new MediaUploadSource(fileName, length, null, bytes, offset, null, null);
+  }
+
+  /**
+   * 以输入流作为数据来源，长度未知，输入流需要由调用方关闭.
+   */
+  public static MediaUploadSource of(InputStream inputStream, String fileName) {
+    return of(inputStream, fileName, -1);
+  }
+
+  /**
+   * 以输入流作为数据来源，输入流需要由调用方关闭.
+   *
+   * @param contentLength 内容长度，未知时为-1
+   */
+  public static MediaUploadSource of(InputStream inputStream, String fileName, long contentLength) {
+    return new MediaUploadSource(fileName, contentLength, null, null, 0, inputStream, null);
+  }
+
+  /**
+   * 以通道作为数据来源，通道需要由调用方关闭.
+   *
+   * @param contentLength 内容长度，未知时为-1
+   */
+  public static MediaUploadSource of(ReadableByteChannel channel, String fileName, long contentLength) {
+    return new MediaUploadSource(fileName, contentLength, null, null, 0, null, channel);
+  }
+
+  public String getFileName() {
+    return this.fileName;
+  }
+
+  /**
+   * @return 内容长度，未知时为-1
+   */
+  public long getContentLength() {
+    return this.contentLength;
+  }
+
+  /**
+   * @return 数据来源为文件时返回该文件，否则返回null
+   */
+  public File getFile() {
+    return this.file;
+  }
+
+  /**
+   * @return 是否可以重复写出，输入流和通道只能写出一次
+   */
+  public boolean isRepeatable() {
+    return this.file != null || this.bytes != null;
+  }
+
+  /**
+   * 判断请求数据失败后能否重新发送，只能读取一次的输入流和通道不能重新发送，其他数据都可以.
+   *
+   * @param requestData 请求数据
+   * @return 能否重新发送
+   */
+  public static boolean isRetryable(Object requestData) {
+    return !(requestData instanceof MediaUploadSource) || ((MediaUploadSource) requestData).isRepeatable();
+  }
+
+  /**
+   * 将全部内容写入输出流，输出流不会被关闭.
+   *
+   * @param out 输出流
+   * @return 写入的字节数
+   * @throws IOException 读取或写入出错，或者输入流、通道已经被读取过
+   */
+  public long writeTo(OutputStream out) throws IOException {
+    if (this.bytes != null) {
+      out.write(this.bytes, this.offset, (int) this.contentLength);
+      return this.contentLength;
+    }
+
+    if (this.file != null) {
+      try (FileChannel fileChannel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+        WritableByteChannel target = Channels.newChannel(out);
+        long size = fileChannel.size();
+        long position = 0;
+        while (position < size) {
+          position += fileChannel.transferTo(position, size - position, target);
+        }
+        return size;
+      }
+    }
+
+    this.checkNotConsumed();
+    if (this.inputStream != null) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long total = 0;
+      int read;
+      while ((read = this.inputStream.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+        total += read;
+      }
+      return total;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long total = 0;
+    int read;
+    while ((read = this.channel.read(buffer)) != -1) {
+      out.write(buffer.array(), 0, read);
+      total += read;
+      buffer.clear();
+    }
+    return total;
+  }
+
+  /**
+   * <pre>
+   * 计算内容的摘要，返回之后用于上传的数据来源.
+   * 字节数组和文件直接计算，返回本身；
+   * 输入流和通道只能读取一次，读取时同时计算摘要并将内容保存在内存中，返回基于该内存数据的数据来源，
+   * 这样整个过程只读取一次数据，上传时也不会再复制.
+   * </pre>
+   *
+   * @param digest 摘要算法，计算结果通过{@link MessageDigest#digest()}获取
+   * @return 之后用于上传的数据来源
+   * @throws IOException 读取出错
+   */
+  public MediaUploadSource digest(MessageDigest digest) throws IOException {
+    if (this.bytes != null) {
+      digest.update(this.bytes, this.offset, (int) this.contentLength);
+      return this;
+    }
+
+    if (this.file != null) {
+      try (FileChannel fileChannel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ)) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        while (fileChannel.read(buffer) != -1) {
+          buffer.flip();
+          digest.update(buffer);
+          buffer.clear();
+        }
+      }
+      return this;
+    }
+
+    return this.readFully(digest);
+  }
+
+  /**
+   * <pre>
+   * 返回可以重复写出的数据来源，用于access token失效等情况下的自动重试.
+   * 文件和字节数组直接返回本身；输入流和通道将内容全部读入内存，返回基于该内存数据的数据来源.
+   * </pre>
+   *
+   * @return 可以重复写出的数据来源
+   * @throws IOException 读取出错
+   */
+  public MediaUploadSource toRepeatable() throws IOException {
+    if (this.isRepeatable()) {
+      return this;
+    }
+    return this.readFully(null);
+  }
+
+  /**
+   * 获取全部内容，数据来源为整个字节数组时直接返回该数组，不会复制.
+   *
+   * @return 全部内容
+   * @throws IOException 读取出错
+   */
+  public byte[] toByteArray() throws IOException {
+    if (this.bytes != null) {
+      if (this.offset == 0 && this.contentLength == this.bytes.length) {
+        return this.bytes;
+      }
+      return Arrays.copyOfRange(this.bytes, this.offset, this.offset + (int) this.contentLength);
+    }
+
+    if (this.file != null) {
+      return Files.readAllBytes(this.file.toPath());
+    }
+
+    return this.readFully(null).toByteArray();
+  }
+
+  /**
+   * 将输入流或通道的内容全部读入内存，digest不为null时同时计算摘要.
+   */
+  private MediaUploadSource readFully(MessageDigest digest) throws IOException {
+    if (this.contentLength > Integer.MAX_VALUE - 8) {
+      throw new IOException("内容过大，无法读入内存");
+    }
+
+    this.checkNotConsumed();
+    byte[] content = new byte[this.contentLength >= 0 ? (int) this.contentLength : BUFFER_SIZE];
+    int size = 0;
+    byte[] probe = new byte[1];
+    while (true) {
+      if (size == content.length) {
+        // 已读满时先尝试读取一个字节，避免已知长度的内容读完后仍然扩容
+        if (this.read(probe, 0, 1) == -1) {
+          break;
+        }
+        content = Arrays.copyOf(content, Math.max(content.length * 2, BUFFER_SIZE));
+        content[size] = probe[0];
+        if (digest != null) {
+          digest.update(probe[0]);
+        }
+        size++;
+        continue;
+      }
+
+      int read = this.read(content, size, content.length - size);
+      if (read == -1) {
+        break;
+      }
+      if (digest != null) {
+        digest.update(content, size, read);
+      }
+      size += read;
+    }
+    return of(content, 0, size, this.fileName);
+  }
+
+  private int read(byte[] buffer, int offset, int length) throws IOException {
+    if (this.inputStream != null) {
+      return this.inputStream.read(buffer, offset, length);
+    }
+
+    int read;
+    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+    do {
+      read = this.channel.read(byteBuffer);
+    } while (read == 0);
+    return read;
+  }
+
+  private synchronized void checkNotConsumed() throws IOException {
+    if (this.consumed) {
+      throw new IOException("输入流或通道只能读取一次");
+    }
+    this.consumed = true;
+  }
+
+}
@@ -14,6 +14,15 @@ public interface RequestHttp<H, P> {
    */
   H getRequestHttpClient();
 
+  /**
+   * 返回用于媒体文件上传下载的httpClient，默认与{@link #getRequestHttpClient()}相同.
+   *
+   * @return 返回httpClient
+   */
+  default H getMediaRequestHttpClient() {
+    return this.getRequestHttpClient();
+  }
+
   /**
    * 返回httpProxy.
    *
@@ -17,6 +17,15 @@ public interface ApacheHttpClientBuilder {
    */
   CloseableHttpClient build();
 
+  /**
+   * 构建用于媒体文件上传下载的httpclient实例，默认与{@link #build()}相同.
+   *
+   * @return instance of CloseableHttpClient
+   */
+  default CloseableHttpClient buildMediaClient() {
+    return this.build();
+  }
+
   /**
    * 代理服务器地址.
    */
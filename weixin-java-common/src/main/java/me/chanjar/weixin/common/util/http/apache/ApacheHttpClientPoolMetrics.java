@@ -0,0 +1,32 @@
+package me.chanjar.weixin.common.util.http.apache;
+
+/**
+ * <pre>
+ * httpclient连接池的监控指标扩展接口.
+ * 连接池初始化时通过{@link #bindPool(String, ApacheHttpClientPoolStats)}传入可实时读取的连接池状态，
+ * 实现类可以将其注册为监控系统（如Micrometer、Prometheus）的gauge；
+ * 每次从连接池获取连接后通过{@link #recordLeaseWait(String, long, boolean)}上报等待时间.
+ * 实现类需要保证线程安全，且不能阻塞调用线程.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public interface ApacheHttpClientPoolMetrics {
+
+  /**
+   * 连接池初始化完成.
+   *
+   * @param poolName 连接池名称
+   * @param stats    连接池状态，每次读取时都返回最新的值
+   */
+  void bindPool(String poolName, ApacheHttpClientPoolStats stats);
+
+  /**
+   * 记录一次从连接池获取连接的等待时间.
+   *
+   * @param poolName   连接池名称
+   * @param waitMillis 等待时间（毫秒）
+   * @param leased     是否成功获取到连接，为false时表示等待超时或被中断
+   */
+  void recordLeaseWait(String poolName, long waitMillis, boolean leased);
+}
@@ -0,0 +1,138 @@
+package me.chanjar.weixin.common.util.http.apache;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * httpclient连接池的实时状态.
+ * 连接数相关的值每次读取时都从连接池获取，等待时间为连接池创建以来的累计值.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class ApacheHttpClientPoolStats {
+  private final String poolName;
+  private final PoolingHttpClientConnectionManager connectionManager;
+
+  private final LongAdder leaseCount = new LongAdder();
+  private final LongAdder leaseFailureCount = new LongAdder();
+  private final LongAdder totalWaitMillis = new LongAdder();
+  private final AtomicLong maxWaitMillis = new AtomicLong();
+
+  ApacheHttpClientPoolStats(String poolName, PoolingHttpClientConnectionManager connectionManager) {
+    this.poolName = poolName;
+    this.connectionManager = connectionManager;
+  }
+
+  public String getPoolName() {
+    return this.poolName;
+  }
+
+  /**
+   * @return 正在使用的连接数
+   */
+  public int getLeased() {
+    return this.connectionManager.getTotalStats().getLeased();
+  }
+
+  /**
+   * @return 正在等待获取连接的请求数
+   */
+  public int getPending() {
+    return this.connectionManager.getTotalStats().getPending();
+  }
+
+  /**
+   * @return 空闲可用的连接数
+   */
+  public int getAvailable() {
+    return this.connectionManager.getTotalStats().getAvailable();
+  }
+
+  /**
+   * @return 最大总连接数
+   */
+  public int getMax() {
+    return this.connectionManager.getTotalStats().getMax();
+  }
+
+  /**
+   * 某个主机的连接数统计，包括该主机的所有路由（http、https及是否经过代理）.
+   *
+   * @param host 主机名，如api.weixin.qq.com
+   * @return 连接数统计，max为各路由上限之和
+   */
+  public PoolStats getHostStats(String host) {
+    int leased = 0;
+    int pending = 0;
+    int available = 0;
+    int max = 0;
+    for (HttpRoute route : this.connectionManager.getRoutes()) {
+      if (host.equalsIgnoreCase(route.getTargetHost().getHostName())) {
+        PoolStats stats = this.connectionManager.getStats(route);
+        leased += stats.getLeased();
+        pending += stats.getPending();
+        available += stats.getAvailable();
+        max += stats.getMax();
+      }
+    }
+    return new PoolStats(leased, pending, available, max);
+  }
+
+  /**
+   * @return 成功获取连接的次数
+   */
+  public long getLeaseCount() {
+    return this.leaseCount.sum();
+  }
+
+  /**
+   * @return 等待超时或被中断而未获取到连接的次数
+   */
+  public long getLeaseFailureCount() {
+    return this.leaseFailureCount.sum();
+  }
+
+  /**
+   * @return 获取连接的平均等待时间（毫秒）
+   */
+  public double getAverageWaitMillis() {
+    long count = this.leaseCount.sum() + this.leaseFailureCount.sum();
+    return count == 0 ? 0 : (double) this.totalWaitMillis.sum() / count;
+  }
+
+  /**
+   * @return 获取连接的最长等待时间（毫秒）
+   */
+  public long getMaxWaitMillis() {
+    return this.maxWaitMillis.get();
+  }
+
+  void recordLeaseWait(long waitMillis, boolean leased) {
+    if (leased) {
+      this.leaseCount.increment();
+    } else {
+      this.leaseFailureCount.increment();
+    }
+    this.totalWaitMillis.add(waitMillis);
+
+    long max;
+    while (waitMillis > (max = this.maxWaitMillis.get())) {
+      if (this.maxWaitMillis.compareAndSet(max, waitMillis)) {
+        break;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s[leased=%d, pending=%d, available=%d, max=%d, averageWaitMillis=%.1f, maxWaitMillis=%d]",
+      this.poolName, this.getLeased(), this.getPending(), this.getAvailable(), this.getMax(),
+      this.getAverageWaitMillis(), this.getMaxWaitMillis());
+  }
+}
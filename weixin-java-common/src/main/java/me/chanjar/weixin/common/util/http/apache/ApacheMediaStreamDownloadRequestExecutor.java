@@ -0,0 +1,66 @@
+package me.chanjar.weixin.common.util.http.apache;
+
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.BaseMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.HttpResponseProxy;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <pre>
+ * 以流的方式下载媒体文件，返回的流读取完毕或关闭后连接才会归还连接池.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class ApacheMediaStreamDownloadRequestExecutor
+  extends BaseMediaStreamDownloadRequestExecutor<CloseableHttpClient, HttpHost> {
+  public ApacheMediaStreamDownloadRequestExecutor(RequestHttp requestHttp) {
+    super(requestHttp);
+  }
+
+  @Override
+  public MediaDownloadStream execute(String uri, String queryParam, WxType wxType) throws WxErrorException, IOException {
+    HttpGet httpGet = new HttpGet(appendQueryParam(uri, queryParam));
+    if (requestHttp.getRequestHttpProxy() != null) {
+      RequestConfig config = RequestConfig.custom().setProxy(requestHttp.getRequestHttpProxy()).build();
+      httpGet.setConfig(config);
+    }
+
+    CloseableHttpResponse response = requestHttp.getMediaRequestHttpClient().execute(httpGet);
+    boolean handedOver = false;
+    try {
+      InputStream inputStream = InputStreamResponseHandler.INSTANCE.handleResponse(response);
+      Header contentTypeHeader = response.getFirstHeader("Content-Type");
+      String contentType = contentTypeHeader == null ? null : contentTypeHeader.getValue();
+      if (contentType != null && contentType.startsWith(ContentType.APPLICATION_JSON.getMimeType())) {
+        // application/json; encoding=utf-8 下载媒体文件出错
+        String responseContent = Utf8ResponseHandler.INSTANCE.handleResponse(response);
+        throw new WxErrorException(WxError.fromJson(responseContent, wxType));
+      }
+
+      long contentLength = response.getEntity() == null ? -1 : response.getEntity().getContentLength();
+      MediaDownloadStream stream = new MediaDownloadStream(inputStream, getFileName(new HttpResponseProxy(response)),
+        contentType, contentLength, response);
+      handedOver = true;
+      return stream;
+    } finally {
+      if (!handedOver) {
+        response.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+package me.chanjar.weixin.common.util.http.apache;
+
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.MediaStreamUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.mime.HttpMultipartMode;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+
+/**
+ * <pre>
+ * 以流的方式上传媒体文件，apache httpclient实现.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class ApacheMediaStreamUploadRequestExecutor extends MediaStreamUploadRequestExecutor<CloseableHttpClient, HttpHost> {
+  public ApacheMediaStreamUploadRequestExecutor(RequestHttp requestHttp) {
+    super(requestHttp);
+  }
+
+  @Override
+  public WxMediaUploadResult execute(String uri, MediaUploadSource source, WxType wxType)
+    throws WxErrorException, IOException {
+    HttpPost httpPost = new HttpPost(uri);
+    if (requestHttp.getRequestHttpProxy() != null) {
+      RequestConfig config = RequestConfig.custom().setProxy(requestHttp.getRequestHttpProxy()).build();
+      httpPost.setConfig(config);
+    }
+    if (source != null) {
+      httpPost.setEntity(MultipartEntityBuilder
+        .create()
+        .addPart("media", new MediaUploadSourceBody(source))
+        .setMode(HttpMultipartMode.RFC6532)
+        .build());
+    }
+    try (CloseableHttpResponse response = requestHttp.getMediaRequestHttpClient().execute(httpPost)) {
+      String responseContent = Utf8ResponseHandler.INSTANCE.handleResponse(response);
+      WxError error = WxError.fromJson(responseContent, wxType);
+      if (error.getErrorCode() != 0) {
+        throw new WxErrorException(error);
+      }
+      return WxMediaUploadResult.fromJson(responseContent);
+    } finally {
+      httpPost.releaseConnection();
+    }
+  }
+}
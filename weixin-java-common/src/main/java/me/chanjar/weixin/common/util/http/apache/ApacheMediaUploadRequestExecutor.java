@@ -41,7 +41,7 @@ public class ApacheMediaUploadRequestExecutor extends MediaUploadRequestExecutor
         .build();
       httpPost.setEntity(entity);
     }
-    try (CloseableHttpResponse response = requestHttp.getRequestHttpClient().execute(httpPost)) {
+    try (CloseableHttpResponse response = requestHttp.getMediaRequestHttpClient().execute(httpPost)) {
       String responseContent = Utf8ResponseHandler.INSTANCE.handleResponse(response);
       WxError error = WxError.fromJson(responseContent, wxType);
       if (error.getErrorCode() != 0) {
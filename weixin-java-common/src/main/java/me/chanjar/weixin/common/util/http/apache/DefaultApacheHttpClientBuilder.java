@@ -1,6 +1,7 @@
 package me.chanjar.weixin.common.util.http.apache;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpHost;
 import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.auth.AuthScope;
@@ -11,7 +12,10 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
 import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
@@ -33,11 +37,22 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * httpclient 连接管理器
+ * <pre>
+ * {@link #get()}返回全局共享的实例；连接数较多（如一个节点上有大量公众号或企业微信）时，
+ * 可以通过{@link #create(String)}为每个或每组service创建独立的连接池，
+ * 并可以通过{@link #setMaxConnPerHost(String, int)}单独设置某个主机的最大连接数.
+ * 开启{@link #setSeparateMediaPool(boolean)}后，媒体文件的上传下载使用独立的连接池，不会占用普通接口调用的连接.
+ * 连接池的实时状态可以通过{@link #setPoolMetrics(ApacheHttpClientPoolMetrics)}接入监控系统，
+ * 最大连接数在连接池创建后仍可以修改，立即生效.
+ * </pre>
  *
  * @author kakotor
  */
@@ -52,6 +67,13 @@ public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
   private int checkWaitTime = 60000;
   private int maxConnPerHost = 10;
   private int maxTotalConn = 50;
+  private final Map<String, Integer> hostMaxConn = new ConcurrentHashMap<>();
+  private String poolName = "default";
+  private boolean separateMediaPool = false;
+  private int mediaSoTimeout = 60000;
+  private int mediaMaxConnPerHost = 5;
+  private int mediaMaxTotalConn = 20;
+  private ApacheHttpClientPoolMetrics poolMetrics;
   private String userAgent;
   private HttpRequestRetryHandler httpRequestRetryHandler = new HttpRequestRetryHandler() {
     @Override
@@ -73,6 +95,16 @@ public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
    * 持有client对象,仅初始化一次,避免多service实例的时候造成重复初始化的问题
    */
   private CloseableHttpClient closeableHttpClient;
+  private PoolingHttpClientConnectionManager connectionManager;
+  private ApacheHttpClientPoolStats poolStats;
+
+  /**
+   * 媒体文件上传下载使用的独立连接池，仅在开启separateMediaPool时创建
+   */
+  private IdleConnectionMonitorThread mediaIdleConnectionMonitorThread;
+  private CloseableHttpClient mediaHttpClient;
+  private PoolingHttpClientConnectionManager mediaConnectionManager;
+  private ApacheHttpClientPoolStats mediaPoolStats;
 
   private DefaultApacheHttpClientBuilder() {
   }
@@ -81,6 +113,18 @@ public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
     return DefaultApacheHttpClientBuilder.SingletonHolder.INSTANCE;
   }
 
+  /**
+   * 创建一个独立的实例，拥有自己的连接池，用于按service或按租户隔离连接.
+   *
+   * @param poolName 连接池名称，用于监控指标及日志
+   * @return 新的实例
+   */
+  public static DefaultApacheHttpClientBuilder create(String poolName) {
+    DefaultApacheHttpClientBuilder builder = new DefaultApacheHttpClientBuilder();
+    builder.poolName = poolName;
+    return builder;
+  }
+
   @Override
   public ApacheHttpClientBuilder httpProxyHost(String httpProxyHost) {
     this.httpProxyHost = httpProxyHost;
@@ -169,21 +213,120 @@ public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
   }
 
   /**
-   * 每路的最大链接数,默认10
+   * 每路的最大链接数,默认10.连接池创建后修改也会立即生效
    *
    * @param maxConnPerHost 每路的最大链接数,默认10
    */
   public void setMaxConnPerHost(int maxConnPerHost) {
     this.maxConnPerHost = maxConnPerHost;
+    this.applyPoolLimits();
   }
 
   /**
-   * 最大总连接数,默认50
+   * 单独设置某个主机（如api.weixin.qq.com）每路的最大链接数,覆盖{@link #setMaxConnPerHost(int)}的设置.
+   * 对该主机默认端口的http及https路由生效,连接池创建后修改也会立即生效
+   *
+   * @param host           主机名
+   * @param maxConnPerHost 该主机每路的最大链接数
+   */
+  public void setMaxConnPerHost(String host, int maxConnPerHost) {
+    this.hostMaxConn.put(host, maxConnPerHost);
+    this.applyPoolLimits();
+  }
+
+  /**
+   * 最大总连接数,默认50.连接池创建后修改也会立即生效
    *
    * @param maxTotalConn 最大总连接数,默认50
    */
   public void setMaxTotalConn(int maxTotalConn) {
     this.maxTotalConn = maxTotalConn;
+    this.applyPoolLimits();
+  }
+
+  /**
+   * 运行时调整连接池大小.
+   * <p>
+   * 扩容立即生效；缩容时正在使用的连接不受影响，归还后多余的空闲连接会在下次获取连接时被关闭
+   * </p>
+   *
+   * @param maxTotalConn   最大总连接数
+   * @param maxConnPerHost 每路的最大链接数
+   */
+  public synchronized void resize(int maxTotalConn, int maxConnPerHost) {
+    this.maxTotalConn = maxTotalConn;
+    this.maxConnPerHost = maxConnPerHost;
+    this.applyPoolLimits();
+  }
+
+  /**
+   * 连接池名称,默认为default,用于监控指标及日志
+   *
+   * @param poolName 连接池名称
+   */
+  public void setPoolName(String poolName) {
+    this.poolName = poolName;
+  }
+
+  /**
+   * 媒体文件的上传下载是否使用独立的连接池,默认false,需要在连接池创建前设置
+   *
+   * @param separateMediaPool 是否使用独立的连接池
+   */
+  public void setSeparateMediaPool(boolean separateMediaPool) {
+    this.separateMediaPool = separateMediaPool;
+  }
+
+  /**
+   * 媒体文件连接池的socket超时时间,默认60000ms
+   *
+   * @param mediaSoTimeout socket超时时间(单位毫秒)
+   */
+  public void setMediaSoTimeout(int mediaSoTimeout) {
+    this.mediaSoTimeout = mediaSoTimeout;
+  }
+
+  /**
+   * 媒体文件连接池每路的最大链接数,默认5.连接池创建后修改也会立即生效
+   *
+   * @param mediaMaxConnPerHost 每路的最大链接数
+   */
+  public void setMediaMaxConnPerHost(int mediaMaxConnPerHost) {
+    this.mediaMaxConnPerHost = mediaMaxConnPerHost;
+    this.applyPoolLimits();
+  }
+
+  /**
+   * 媒体文件连接池的最大总连接数,默认20.连接池创建后修改也会立即生效
+   *
+   * @param mediaMaxTotalConn 最大总连接数
+   */
+  public void setMediaMaxTotalConn(int mediaMaxTotalConn) {
+    this.mediaMaxTotalConn = mediaMaxTotalConn;
+    this.applyPoolLimits();
+  }
+
+  /**
+   * 连接池监控指标的实现,需要在连接池创建前设置
+   *
+   * @param poolMetrics 监控指标的实现
+   */
+  public void setPoolMetrics(ApacheHttpClientPoolMetrics poolMetrics) {
+    this.poolMetrics = poolMetrics;
+  }
+
+  /**
+   * @return 普通接口调用连接池的实时状态,连接池未创建时为null
+   */
+  public ApacheHttpClientPoolStats getPoolStats() {
+    return this.poolStats;
+  }
+
+  /**
+   * @return 媒体文件连接池的实时状态,未开启独立的媒体文件连接池或连接池未创建时为null
+   */
+  public ApacheHttpClientPoolStats getMediaPoolStats() {
+    return this.mediaPoolStats;
   }
 
   /**
@@ -203,32 +346,61 @@ public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
     if (prepared.get()) {
       return;
     }
+
+    this.connectionManager = this.createConnectionManager(this.soTimeout);
+    this.poolStats = new ApacheHttpClientPoolStats(this.poolName, this.connectionManager);
+    this.idleConnectionMonitorThread = this.startIdleConnectionMonitor(this.connectionManager);
+    this.closeableHttpClient = this.createHttpClient(this.connectionManager, this.soTimeout);
+
+    if (this.separateMediaPool) {
+      this.mediaConnectionManager = this.createConnectionManager(this.mediaSoTimeout);
+      this.mediaPoolStats = new ApacheHttpClientPoolStats(this.poolName + "-media", this.mediaConnectionManager);
+      this.mediaIdleConnectionMonitorThread = this.startIdleConnectionMonitor(this.mediaConnectionManager);
+      this.mediaHttpClient = this.createHttpClient(this.mediaConnectionManager, this.mediaSoTimeout);
+    }
+
+    prepared.set(true);
+    this.applyPoolLimits();
+
+    if (this.poolMetrics != null) {
+      this.poolMetrics.bindPool(this.poolStats.getPoolName(), this.poolStats);
+      if (this.mediaPoolStats != null) {
+        this.poolMetrics.bindPool(this.mediaPoolStats.getPoolName(), this.mediaPoolStats);
+      }
+    }
+  }
+
+  private PoolingHttpClientConnectionManager createConnectionManager(int soTimeout) {
     Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
       .register("http", this.plainConnectionSocketFactory)
       .register("https", this.sslConnectionSocketFactory)
       .build();
 
     @SuppressWarnings("resource")
-    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(registry);
-    connectionManager.setMaxTotal(this.maxTotalConn);
-    connectionManager.setDefaultMaxPerRoute(this.maxConnPerHost);
+    PoolingHttpClientConnectionManager connectionManager = new InstrumentedConnectionManager(registry);
     connectionManager.setDefaultSocketConfig(
       SocketConfig.copy(SocketConfig.DEFAULT)
-        .setSoTimeout(this.soTimeout)
+        .setSoTimeout(soTimeout)
         .build()
     );
+    return connectionManager;
+  }
 
-    this.idleConnectionMonitorThread = new IdleConnectionMonitorThread(
+  private IdleConnectionMonitorThread startIdleConnectionMonitor(HttpClientConnectionManager connectionManager) {
+    IdleConnectionMonitorThread monitorThread = new IdleConnectionMonitorThread(
       connectionManager, this.idleConnTimeout, this.checkWaitTime);
-    this.idleConnectionMonitorThread.setDaemon(true);
-    this.idleConnectionMonitorThread.start();
+    monitorThread.setDaemon(true);
+    monitorThread.start();
+    return monitorThread;
+  }
 
+  private CloseableHttpClient createHttpClient(PoolingHttpClientConnectionManager connectionManager, int soTimeout) {
     HttpClientBuilder httpClientBuilder = HttpClients.custom()
       .setConnectionManager(connectionManager)
       .setConnectionManagerShared(true)
       .setSSLSocketFactory(this.buildSSLConnectionSocketFactory())
       .setDefaultRequestConfig(RequestConfig.custom()
-        .setSocketTimeout(this.soTimeout)
+        .setSocketTimeout(soTimeout)
         .setConnectTimeout(this.connectionTimeout)
         .setConnectionRequestTimeout(this.connectionRequestTimeout)
         .build()
@@ -247,8 +419,45 @@ public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
       httpClientBuilder.setUserAgent(this.userAgent);
     }
 
-    this.closeableHttpClient = httpClientBuilder.build();
-    prepared.set(true);
+    return httpClientBuilder.build();
+  }
+
+  /**
+   * 将当前的连接数设置应用到已创建的连接池.
+   */
+  private synchronized void applyPoolLimits() {
+    if (!prepared.get()) {
+      return;
+    }
+
+    this.applyPoolLimits(this.connectionManager, this.maxTotalConn, this.maxConnPerHost);
+    if (this.mediaConnectionManager != null) {
+      this.applyPoolLimits(this.mediaConnectionManager, this.mediaMaxTotalConn, this.mediaMaxConnPerHost);
+    }
+  }
+
+  private void applyPoolLimits(PoolingHttpClientConnectionManager connectionManager, int maxTotal, int maxPerRoute) {
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+    for (Map.Entry<String, Integer> entry : this.hostMaxConn.entrySet()) {
+      for (HttpRoute route : this.hostRoutes(entry.getKey())) {
+        connectionManager.setMaxPerRoute(route, entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * 某个主机默认端口的http及https路由，与httpclient默认的路由规划方式一致.
+   */
+  private HttpRoute[] hostRoutes(String host) {
+    HttpHost httpHost = new HttpHost(host, 80, "http");
+    HttpHost httpsHost = new HttpHost(host, 443, "https");
+    if (StringUtils.isNotBlank(this.httpProxyHost) && StringUtils.isNotBlank(this.httpProxyUsername)) {
+      HttpHost proxy = new HttpHost(this.httpProxyHost, this.httpProxyPort);
+      return new HttpRoute[]{new HttpRoute(httpHost, null, proxy, false), new HttpRoute(httpsHost, null, proxy, true)};
+    }
+
+    return new HttpRoute[]{new HttpRoute(httpHost, null, false), new HttpRoute(httpsHost, null, true)};
   }
 
   private SSLConnectionSocketFactory buildSSLConnectionSocketFactory() {
@@ -282,6 +491,77 @@ public class DefaultApacheHttpClientBuilder implements ApacheHttpClientBuilder {
     return this.closeableHttpClient;
   }
 
+  @Override
+  public CloseableHttpClient buildMediaClient() {
+    if (!prepared.get()) {
+      prepare();
+    }
+    return this.mediaHttpClient != null ? this.mediaHttpClient : this.closeableHttpClient;
+  }
+
+  /**
+   * 关闭连接池及闲置连接监控线程,适用于通过{@link #create(String)}创建且不再使用的实例.
+   */
+  public synchronized void shutdown() {
+    if (!prepared.get()) {
+      return;
+    }
+
+    this.idleConnectionMonitorThread.shutdown();
+    this.connectionManager.shutdown();
+    if (this.mediaConnectionManager != null) {
+      this.mediaIdleConnectionMonitorThread.shutdown();
+      this.mediaConnectionManager.shutdown();
+    }
+  }
+
+  /**
+   * 记录获取连接等待时间的连接管理器.
+   */
+  private class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+    private InstrumentedConnectionManager(Registry<ConnectionSocketFactory> registry) {
+      super(registry);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+      final ConnectionRequest request = super.requestConnection(route, state);
+      return new ConnectionRequest() {
+        @Override
+        public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+          throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+          long start = System.nanoTime();
+          boolean leased = false;
+          try {
+            HttpClientConnection connection = request.get(timeout, timeUnit);
+            leased = true;
+            return connection;
+          } finally {
+            recordLeaseWait(InstrumentedConnectionManager.this,
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), leased);
+          }
+        }
+
+        @Override
+        public boolean cancel() {
+          return request.cancel();
+        }
+      };
+    }
+  }
+
+  private void recordLeaseWait(PoolingHttpClientConnectionManager manager, long waitMillis, boolean leased) {
+    ApacheHttpClientPoolStats stats = manager == this.mediaConnectionManager ? this.mediaPoolStats : this.poolStats;
+    if (stats == null) {
+      return;
+    }
+
+    stats.recordLeaseWait(waitMillis, leased);
+    if (this.poolMetrics != null) {
+      this.poolMetrics.recordLeaseWait(stats.getPoolName(), waitMillis, leased);
+    }
+  }
+
   /**
    * DefaultApacheHttpClientBuilder 改为单例模式,并持有唯一的CloseableHttpClient(仅首次调用创建)
    */
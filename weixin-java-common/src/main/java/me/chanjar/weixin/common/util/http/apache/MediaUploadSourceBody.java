@@ -0,0 +1,50 @@
+package me.chanjar.weixin.common.util.http.apache;
+
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MIME;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <pre>
+ * 基于{@link MediaUploadSource}的multipart内容，写出请求体时直接从数据来源读取.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class MediaUploadSourceBody extends AbstractContentBody {
+  private final MediaUploadSource source;
+
+  public MediaUploadSourceBody(MediaUploadSource source) {
+    this(source, ContentType.DEFAULT_BINARY);
+  }
+
+  public MediaUploadSourceBody(MediaUploadSource source, ContentType contentType) {
+    super(contentType);
+    this.source = source;
+  }
+
+  @Override
+  public String getFilename() {
+    return this.source.getFileName();
+  }
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    this.source.writeTo(out);
+  }
+
+  @Override
+  public String getTransferEncoding() {
+    return MIME.ENC_BINARY;
+  }
+
+  @Override
+  public long getContentLength() {
+    return this.source.getContentLength();
+  }
+
+}
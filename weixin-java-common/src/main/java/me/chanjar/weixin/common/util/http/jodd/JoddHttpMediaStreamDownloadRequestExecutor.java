@@ -0,0 +1,55 @@
+package me.chanjar.weixin.common.util.http.jodd;
+
+import jodd.http.HttpConnectionProvider;
+import jodd.http.HttpRequest;
+import jodd.http.HttpResponse;
+import jodd.http.ProxyInfo;
+import jodd.util.StringPool;
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.BaseMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.HttpResponseProxy;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * <pre>
+ * 以流的方式下载媒体文件.
+ * jodd-http在返回响应时已经将内容全部读入内存，因此这里直接基于内存中的内容返回流，同样不会写入临时文件.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class JoddHttpMediaStreamDownloadRequestExecutor
+  extends BaseMediaStreamDownloadRequestExecutor<HttpConnectionProvider, ProxyInfo> {
+  public JoddHttpMediaStreamDownloadRequestExecutor(RequestHttp requestHttp) {
+    super(requestHttp);
+  }
+
+  @Override
+  public MediaDownloadStream execute(String uri, String queryParam, WxType wxType) throws WxErrorException, IOException {
+    HttpRequest request = HttpRequest.get(appendQueryParam(uri, queryParam));
+    if (requestHttp.getRequestHttpProxy() != null) {
+      requestHttp.getRequestHttpClient().useProxy(requestHttp.getRequestHttpProxy());
+    }
+    request.withConnectionProvider(requestHttp.getRequestHttpClient());
+
+    HttpResponse response = request.send();
+    response.charset(StringPool.UTF_8);
+
+    String contentType = response.header("Content-Type");
+    if (contentType != null && contentType.startsWith("application/json")) {
+      // application/json; encoding=utf-8 下载媒体文件出错
+      throw new WxErrorException(WxError.fromJson(response.bodyText(), wxType));
+    }
+
+    byte[] body = response.bodyBytes();
+    return new MediaDownloadStream(new ByteArrayInputStream(body), getFileName(new HttpResponseProxy(response)),
+      contentType, body.length, null);
+  }
+
+}
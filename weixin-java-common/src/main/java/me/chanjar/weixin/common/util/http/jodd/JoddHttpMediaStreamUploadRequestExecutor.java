@@ -0,0 +1,56 @@
+package me.chanjar.weixin.common.util.http.jodd;
+
+import jodd.http.HttpConnectionProvider;
+import jodd.http.HttpRequest;
+import jodd.http.HttpResponse;
+import jodd.http.ProxyInfo;
+import jodd.http.up.ByteArrayUploadable;
+import jodd.http.up.FileUploadable;
+import jodd.util.StringPool;
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.MediaStreamUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+
+import java.io.IOException;
+
+/**
+ * <pre>
+ * 以流的方式上传媒体文件，jodd-http实现.
+ * jodd-http发送前会在内存中拼装整个请求体，因此非文件的数据来源会先读入内存（整个字节数组时不会复制）.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class JoddHttpMediaStreamUploadRequestExecutor extends MediaStreamUploadRequestExecutor<HttpConnectionProvider, ProxyInfo> {
+  public JoddHttpMediaStreamUploadRequestExecutor(RequestHttp requestHttp) {
+    super(requestHttp);
+  }
+
+  @Override
+  public WxMediaUploadResult execute(String uri, MediaUploadSource source, WxType wxType)
+    throws WxErrorException, IOException {
+    HttpRequest request = HttpRequest.post(uri);
+    if (requestHttp.getRequestHttpProxy() != null) {
+      requestHttp.getRequestHttpClient().useProxy(requestHttp.getRequestHttpProxy());
+    }
+    request.withConnectionProvider(requestHttp.getRequestHttpClient());
+    if (source.getFile() != null) {
+      request.form("media", new FileUploadable(source.getFile(), source.getFileName(), null));
+    } else {
+      request.form("media", new ByteArrayUploadable(source.toByteArray(), source.getFileName()));
+    }
+    HttpResponse response = request.send();
+    response.charset(StringPool.UTF_8);
+
+    String responseContent = response.bodyText();
+    WxError error = WxError.fromJson(responseContent, wxType);
+    if (error.getErrorCode() != 0) {
+      throw new WxErrorException(error);
+    }
+    return WxMediaUploadResult.fromJson(responseContent);
+  }
+}
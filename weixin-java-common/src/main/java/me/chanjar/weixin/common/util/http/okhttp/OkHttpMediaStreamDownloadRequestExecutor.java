@@ -0,0 +1,54 @@
+package me.chanjar.weixin.common.util.http.okhttp;
+
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.BaseMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.HttpResponseProxy;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+
+/**
+ * <pre>
+ * 以流的方式下载媒体文件，返回的流读取完毕或关闭后连接才会释放.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class OkHttpMediaStreamDownloadRequestExecutor
+  extends BaseMediaStreamDownloadRequestExecutor<OkHttpClient, OkHttpProxyInfo> {
+  public OkHttpMediaStreamDownloadRequestExecutor(RequestHttp requestHttp) {
+    super(requestHttp);
+  }
+
+  @Override
+  public MediaDownloadStream execute(String uri, String queryParam, WxType wxType) throws WxErrorException, IOException {
+    Request request = new Request.Builder().url(appendQueryParam(uri, queryParam)).get().build();
+    Response response = requestHttp.getMediaRequestHttpClient().newCall(request).execute();
+    boolean handedOver = false;
+    try {
+      ResponseBody body = response.body();
+      String contentType = response.header("Content-Type");
+      if (contentType != null && contentType.startsWith("application/json")) {
+        // application/json; encoding=utf-8 下载媒体文件出错
+        throw new WxErrorException(WxError.fromJson(body.string(), wxType));
+      }
+
+      MediaDownloadStream stream = new MediaDownloadStream(body.byteStream(),
+        getFileName(new HttpResponseProxy(response)), contentType, body.contentLength(), response);
+      handedOver = true;
+      return stream;
+    } finally {
+      if (!handedOver) {
+        response.close();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,63 @@
+package me.chanjar.weixin.common.util.http.okhttp;
+
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.MediaStreamUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+import okhttp3.*;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * <pre>
+ * 以流的方式上传媒体文件，okhttp实现.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class OkHttpMediaStreamUploadRequestExecutor extends MediaStreamUploadRequestExecutor<OkHttpClient, OkHttpProxyInfo> {
+  private static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
+
+  public OkHttpMediaStreamUploadRequestExecutor(RequestHttp requestHttp) {
+    super(requestHttp);
+  }
+
+  @Override
+  public WxMediaUploadResult execute(String uri, final MediaUploadSource source, WxType wxType)
+    throws WxErrorException, IOException {
+    RequestBody body = new MultipartBody.Builder()
+      .setType(MediaType.parse("multipart/form-data"))
+      .addFormDataPart("media", source.getFileName(), new RequestBody() {
+        @Override
+        public MediaType contentType() {
+          return OCTET_STREAM;
+        }
+
+        @Override
+        public long contentLength() {
+          return source.getContentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+          source.writeTo(sink.outputStream());
+        }
+      })
+      .build();
+    Request request = new Request.Builder().url(uri).post(body).build();
+
+    try (Response response = requestHttp.getRequestHttpClient().newCall(request).execute()) {
+      String responseContent = response.body().string();
+      WxError error = WxError.fromJson(responseContent, wxType);
+      if (error.getErrorCode() != 0) {
+        throw new WxErrorException(error);
+      }
+      return WxMediaUploadResult.fromJson(responseContent);
+    }
+  }
+
+}
@@ -15,6 +15,7 @@ import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
 public class WxGsonBuilder {
 
   private static final GsonBuilder INSTANCE = new GsonBuilder();
+  private static final Gson GSON_INSTANCE;
 
   static {
     INSTANCE.disableHtmlEscaping();
@@ -24,10 +25,14 @@ public class WxGsonBuilder {
     INSTANCE.registerTypeAdapter(WxMediaUploadResult.class, new WxMediaUploadResultAdapter());
     INSTANCE.registerTypeAdapter(WxNetCheckResult.class, new WxNetCheckResultGsonAdapter());
 
+    GSON_INSTANCE = INSTANCE.create();
   }
 
+  /**
+   * Gson实例是线程安全且不可变的，因此直接返回缓存的实例，避免每次重新创建.
+   */
   public static Gson create() {
-    return INSTANCE.create();
+    return GSON_INSTANCE;
   }
 
 }
@@ -0,0 +1,122 @@
+package me.chanjar.weixin.common.api;
+
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxAccessTokenRefresherTest {
+
+  @Test
+  public void testRefreshAheadOfExpiry() throws Exception {
+    final CountDownLatch refreshed = new CountDownLatch(1);
+    final long[] expiresTime = {0};
+
+    try (WxAccessTokenRefresher refresher = new WxAccessTokenRefresher(1)) {
+      refresher.register("mp:test", new WxAccessTokenRefresher.Target() {
+        @Override
+        public long getExpiresTime() {
+          return expiresTime[0];
+        }
+
+        @Override
+        public void refreshAccessToken() {
+          expiresTime[0] = System.currentTimeMillis() + 7000 * 1000L;
+          refreshed.countDown();
+        }
+      });
+
+      // 过期时间未知时立即刷新，之后在过期前5分钟到6分钟之间再次刷新
+      assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+      WxAccessTokenRefresher.Stats stats = waitForStats(refresher, "mp:test");
+      assertEquals(stats.getSuccessCount(), 1);
+      assertEquals(stats.getFailureCount(), 0);
+      long delay = stats.getNextRefreshTime() - System.currentTimeMillis();
+      assertTrue(delay > (7000 - 360) * 1000L && delay <= (7000 - 300) * 1000L, String.valueOf(delay));
+
+      refresher.unregister("mp:test");
+      assertNull(refresher.getStats("mp:test"));
+    }
+  }
+
+  @Test
+  public void testRetryOnFailure() throws Exception {
+    final AtomicInteger attempts = new AtomicInteger();
+    try (WxAccessTokenRefresher refresher = new WxAccessTokenRefresher(1)) {
+      refresher.setRetryDelayMillis(10);
+      refresher.register("cp:test", new WxAccessTokenRefresher.Target() {
+        @Override
+        public long getExpiresTime() {
+          return 0;
+        }
+
+        @Override
+        public void refreshAccessToken() throws WxErrorException {
+          attempts.incrementAndGet();
+          throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg("system busy").build());
+        }
+      });
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (attempts.get() < 3 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      WxAccessTokenRefresher.Stats stats = refresher.getStats("cp:test");
+      assertTrue(stats.getFailureCount() >= 2);
+      assertTrue(stats.getConsecutiveFailures() >= 2);
+      assertEquals(stats.getSuccessCount(), 0);
+      assertNotNull(stats.getLastError());
+    }
+  }
+
+  @Test
+  public void testSkipRefreshWhenAlreadyRefreshed() throws Exception {
+    final AtomicInteger refreshes = new AtomicInteger();
+    final long[] expiresTime = {System.currentTimeMillis() + 1200};
+
+    try (WxAccessTokenRefresher refresher = new WxAccessTokenRefresher(1)) {
+      refresher.setRefreshAheadMillis(1000);
+      refresher.setMaxJitterMillis(0);
+      refresher.register("mp:test", new WxAccessTokenRefresher.Target() {
+        @Override
+        public long getExpiresTime() {
+          return expiresTime[0];
+        }
+
+        @Override
+        public void refreshAccessToken() {
+          refreshes.incrementAndGet();
+        }
+      });
+
+      // 计划刷新之前其他节点已经刷新过了
+      expiresTime[0] = System.currentTimeMillis() + 7000 * 1000L;
+      Thread.sleep(500);
+
+      WxAccessTokenRefresher.Stats stats = refresher.getStats("mp:test");
+      assertEquals(refreshes.get(), 0);
+      assertEquals(stats.getSuccessCount(), 0);
+      assertTrue(stats.getNextRefreshTime() - System.currentTimeMillis() > 6000 * 1000L);
+    }
+  }
+
+  private static WxAccessTokenRefresher.Stats waitForStats(WxAccessTokenRefresher refresher, String accountId)
+    throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    WxAccessTokenRefresher.Stats stats = refresher.getStats(accountId);
+    while (stats.getNextRefreshTime() - System.currentTimeMillis() < 1000 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      stats = refresher.getStats(accountId);
+    }
+    return stats;
+  }
+}
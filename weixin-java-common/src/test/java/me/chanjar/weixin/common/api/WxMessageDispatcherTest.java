@@ -0,0 +1,164 @@
+package me.chanjar.weixin.common.api;
+
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMessageDispatcherTest {
+
+  private static <T> CompletableFuture<T> failed(int errorCode) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(new WxErrorException(WxError.builder().errorCode(errorCode).build()));
+    return future;
+  }
+
+  @Test
+  public void testRateLimitPerAccount() throws Exception {
+    WxMessageDispatcher<Integer> dispatcher = new WxMessageDispatcher<>(
+      (accountId, message) -> CompletableFuture.completedFuture(accountId + message));
+    dispatcher.setPermitsPerSecond(50);
+    dispatcher.setPermitsPerSecond("fast", 1000);
+
+    long start = System.nanoTime();
+    List<CompletableFuture<String>> slow = new ArrayList<>();
+    List<CompletableFuture<String>> fast = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      slow.add(dispatcher.dispatch("slow", i));
+      fast.add(dispatcher.dispatch("fast", i));
+    }
+    CompletableFuture.allOf(fast.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    long fastMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    CompletableFuture.allOf(slow.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+    long slowMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // 50条每秒时20条消息至少需要380毫秒，且不会被另一个账号拖慢
+    assertTrue(slowMillis >= 370, "slow: " + slowMillis);
+    assertTrue(fastMillis < 300, "fast: " + fastMillis);
+    assertEquals(slow.get(19).get(), "slow19");
+    assertEquals(dispatcher.getStats("slow").getSucceeded(), 20);
+    assertEquals(dispatcher.getStats("slow").getPermitsPerSecond(), 50.0);
+    assertEquals(dispatcher.getInFlight(), 0);
+    dispatcher.close();
+  }
+
+  @Test
+  public void testRetry() throws Exception {
+    final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    WxMessageDispatcher<Integer> dispatcher = new WxMessageDispatcher<>((accountId, message) -> {
+      int attempt = attempts.computeIfAbsent(message, k -> new AtomicInteger()).incrementAndGet();
+      if (message == 1 && attempt < 3) {
+        return failed(45011);
+      }
+      if (message == 2) {
+        return failed(-1);
+      }
+      if (message == 3) {
+        return failed(40003);
+      }
+      return CompletableFuture.completedFuture("ok");
+    });
+    dispatcher.setRetryDelayMillis(10);
+    dispatcher.setMaxRetries(2);
+
+    assertEquals(dispatcher.dispatch("app", 1).get(5, TimeUnit.SECONDS), "ok");
+    assertEquals(attempts.get(1).get(), 3);
+
+    for (int message : new int[]{2, 3}) {
+      try {
+        dispatcher.dispatch("app", message).get(5, TimeUnit.SECONDS);
+        fail("应该抛出异常");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof WxErrorException);
+      }
+    }
+    assertEquals(attempts.get(2).get(), 3);
+    assertEquals(attempts.get(3).get(), 1);
+
+    WxMessageDispatcher.Stats stats = dispatcher.getStats("app");
+    assertEquals(stats.getSubmitted(), 3);
+    assertEquals(stats.getSucceeded(), 1);
+    assertEquals(stats.getFailed(), 2);
+    assertEquals(stats.getRetries(), 4);
+    dispatcher.close();
+  }
+
+  @Test
+  public void testBackpressure() throws Exception {
+    final List<CompletableFuture<String>> pending = Collections.synchronizedList(new ArrayList<>());
+    WxMessageDispatcher<Integer> dispatcher = new WxMessageDispatcher<>((accountId, message) -> {
+      CompletableFuture<String> future = new CompletableFuture<>();
+      pending.add(future);
+      return future;
+    }, 2);
+    dispatcher.setPermitsPerSecond(10000);
+
+    dispatcher.dispatch("app", 1);
+    dispatcher.dispatch("app", 2);
+    assertNull(dispatcher.tryDispatch("app", 3));
+    assertEquals(dispatcher.getInFlight(), 2);
+
+    pending.get(0).complete("1");
+    CompletableFuture<String> third = dispatcher.tryDispatch("app", 3);
+    assertTrue(third != null);
+    dispatcher.close();
+  }
+
+  @Test
+  public void testDispatchAllWithBlockingSender() throws Exception {
+    final List<String> results = Collections.synchronizedList(new ArrayList<>());
+    WxMessageDispatcher<Integer> dispatcher = WxMessageDispatcher.ofBlocking((accountId, message) -> {
+      if (message == 3) {
+        throw new WxErrorException(WxError.builder().errorCode(43101).build());
+      }
+      return "msg" + message;
+    }, 2);
+    dispatcher.setPermitsPerSecond(10000);
+
+    dispatcher.dispatchAll("app", Arrays.asList(1, 2, 3, 4, 5),
+      (message, result, error) -> results.add(error == null ? result
+        : message + ":" + ((WxErrorException) error).getError().getErrorCode()))
+      .get(5, TimeUnit.SECONDS);
+
+    Collections.sort(results);
+    assertEquals(results.toString(), "[3:43101, msg1, msg2, msg4, msg5]");
+    dispatcher.close();
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    WxMessageDispatcher<Integer> dispatcher = new WxMessageDispatcher<>(
+      (accountId, message) -> CompletableFuture.completedFuture("ok"));
+    dispatcher.setPermitsPerSecond(1);
+    assertEquals(dispatcher.dispatch("app", 1).get(), "ok");
+    CompletableFuture<String> delayed = dispatcher.dispatch("app", 2);
+    dispatcher.close();
+
+    try {
+      delayed.get(1, TimeUnit.SECONDS);
+      fail("应该抛出异常");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+    assertEquals(dispatcher.getInFlight(), 0);
+  }
+
+}
@@ -0,0 +1,44 @@
+package me.chanjar.weixin.common.api;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMessageRouterRuleIndexTest {
+
+  @Test
+  public void testCandidatesKeepRegistrationOrder() {
+    WxMessageRouterRuleIndex<String> index = new WxMessageRouterRuleIndex<>(2);
+    index.add("event", "event", null);
+    index.add("click-menu1", "event", "menu1");
+    index.add("text", "text", null);
+    index.add("all", null, null);
+    index.add("click-menu2", "event", "menu2");
+    index.add("any-menu1", null, "menu1");
+
+    assertEquals(index.candidates("event", "menu1"), Arrays.asList("event", "click-menu1", "all", "any-menu1"));
+    assertEquals(index.candidates("event", null), Arrays.asList("event", "all"));
+    assertEquals(index.candidates("text", "menu2"), Arrays.asList("text", "all"));
+    assertEquals(index.candidates(null, null), Collections.singletonList("all"));
+  }
+
+  @Test
+  public void testNoCandidates() {
+    WxMessageRouterRuleIndex<String> index = new WxMessageRouterRuleIndex<>(1);
+    index.add("text", "text");
+    assertTrue(index.candidates("image").isEmpty());
+  }
+
+  @Test
+  public void testIgnoreCaseKey() {
+    assertEquals(WxMessageRouterRuleIndex.ignoreCaseKey("CLICK"), WxMessageRouterRuleIndex.ignoreCaseKey("click"));
+    assertEquals(WxMessageRouterRuleIndex.ignoreCaseKey(null), null);
+  }
+}
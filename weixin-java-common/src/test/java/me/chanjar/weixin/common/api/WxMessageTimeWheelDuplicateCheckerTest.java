@@ -0,0 +1,62 @@
+package me.chanjar.weixin.common.api;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMessageTimeWheelDuplicateCheckerTest {
+
+  @Test
+  public void testExpire() {
+    ManualClockChecker checker = new ManualClockChecker(15000L, 1000L, 1000);
+    assertFalse(checker.isDuplicate("msg-1"));
+    assertTrue(checker.isDuplicate("msg-1"));
+    assertFalse(checker.isDuplicate(null));
+
+    checker.now += 15000L;
+    assertTrue(checker.isDuplicate("msg-1"));
+    assertFalse(checker.isDuplicate("msg-2"));
+    assertEquals(checker.size(), 2);
+
+    // 过期时间最多延后一个时间片
+    checker.now += 1000L;
+    assertFalse(checker.isDuplicate("msg-1"));
+    assertTrue(checker.isDuplicate("msg-2"));
+    assertEquals(checker.size(), 2);
+
+    assertEquals(checker.getHitCount(), 3);
+    assertEquals(checker.getMissCount(), 3);
+  }
+
+  @Test
+  public void testMaxSize() {
+    ManualClockChecker checker = new ManualClockChecker(15000L, 1000L, 16 * 10);
+    for (int i = 0; i < 10000; i++) {
+      if (i % 100 == 0) {
+        checker.now += 1000L;
+      }
+      assertFalse(checker.isDuplicate("msg-" + i));
+      assertTrue(checker.size() <= 16 * 10);
+    }
+
+    assertEquals(checker.getMissCount(), 10000);
+    assertEquals(checker.getEvictionCount(), 10000 - checker.size());
+    assertTrue(checker.isDuplicate("msg-9999"));
+  }
+
+  private static class ManualClockChecker extends WxMessageTimeWheelDuplicateChecker {
+    private long now = 1000000L;
+
+    private ManualClockChecker(long timeToLive, long tickMillis, int maxSize) {
+      super(timeToLive, tickMillis, maxSize);
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+      return this.now;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package me.chanjar.weixin.common.error;
+
+import com.google.gson.GsonBuilder;
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.util.json.WxErrorAdapter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 请求执行器检查响应是否为错误信息的开销对比，响应为包含10000个openid的关注者列表.
+ * legacyFromJson 模拟之前的做法：每次新建Gson实例，并将整个响应解析为json树后再绑定到WxError，
+ * fromJson 为当前的做法：以流的方式只读取顶层的errcode和errmsg，其余内容直接跳过.
+ * 运行main方法即可执行.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WxErrorBenchmark {
+  private String json;
+
+  @Setup
+  public void setup() {
+    StringBuilder sb = new StringBuilder("{\"total\":23000,\"count\":10000,\"data\":{\"openid\":[");
+    for (int i = 0; i < 10000; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append("\"oUpF8uMuAJO_M2pxb1Q9zNj").append(String.format("%05d", i)).append('"');
+    }
+    this.json = sb.append("]},\"next_openid\":\"oUpF8uMuAJO_M2pxb1Q9zNj09999\"}").toString();
+  }
+
+  @Benchmark
+  public WxError legacyFromJson() {
+    return new GsonBuilder().disableHtmlEscaping().registerTypeAdapter(WxError.class, new WxErrorAdapter()).create()
+      .fromJson(this.json, WxError.class);
+  }
+
+  @Benchmark
+  public WxError fromJson() {
+    return WxError.fromJson(this.json, WxType.MP);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(WxErrorBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -32,4 +32,23 @@ public class WxErrorTest {
 
   }
 
+  public void testFromJsonSkipsSuccessPayload() {
+    String json = "{\"total\":2,\"count\":2,\"data\":{\"openid\":[\"OPENID1\",\"OPENID2\"]},\"next_openid\":\"OPENID2\"}";
+    WxError wxError = WxError.fromJson(json, WxType.MP);
+    assertEquals(wxError.getErrorCode(), 0);
+    assertNull(wxError.getErrorMsg());
+    assertEquals(wxError.getJson(), json);
+
+    wxError = WxError.fromJson("{\"errcode\":0,\"errmsg\":\"ok\",\"msgid\":200228332}", WxType.MP);
+    assertEquals(wxError.getErrorCode(), 0);
+    assertEquals(wxError.getErrorMsg(), "ok");
+  }
+
+  public void testSniff() {
+    assertEquals(WxError.sniff("{\"data\":[{\"errcode\":1}],\"errcode\":\"40001\",\"errmsg\":\"x\"}").getErrorCode(), 40001);
+    assertEquals(WxError.sniff("{\"errcode\":null,\"errmsg\":null}").getErrorCode(), 0);
+    assertNull(WxError.sniff("[1,2]"));
+    assertNull(WxError.sniff("{\"errcode\":1.5}"));
+  }
+
 }
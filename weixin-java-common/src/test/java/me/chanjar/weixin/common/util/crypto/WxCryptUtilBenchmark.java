@@ -0,0 +1,122 @@
+package me.chanjar.weixin.common.util.crypto;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 消息加解密的开销对比.
+ * legacyDecrypt 模拟之前的做法：通过（复用的）DocumentBuilder构建DOM提取Encrypt元素、每次调用Cipher.getInstance并多次拷贝字节数组，
+ * decrypt 为当前的做法：扫描字符串提取Encrypt元素、复用线程缓存的Cipher并原地解密，
+ * legacyEncrypt 与 encrypt 分别为之前及当前的加密做法（均不含签名及生成xml）.
+ * 运行main方法即可执行.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WxCryptUtilBenchmark {
+  private static final String TOKEN = "pamtest";
+  private static final String APP_ID = "wxb11529c136998cb6";
+  private static final String RANDOM_STR = "aaaabbbbccccdddd";
+
+  private WxCryptUtil cryptUtil;
+  private byte[] aesKey;
+  private DocumentBuilder documentBuilder;
+  private String plainText;
+  private String encryptedXml;
+
+  @Setup
+  public void setup() throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setExpandEntityReferences(false);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    this.documentBuilder = factory.newDocumentBuilder();
+    this.cryptUtil = new WxCryptUtil(TOKEN, "abcdefghijklmnopqrstuvwxyz0123456789ABCDEFG", APP_ID);
+    this.aesKey = Base64.decodeBase64("abcdefghijklmnopqrstuvwxyz0123456789ABCDEFG=");
+    this.plainText = "<xml><ToUserName><![CDATA[gh_7f083739789a]]></ToUserName>"
+      + "<FromUserName><![CDATA[oia2TjjewbmiOUlr6X-1crbLOvLw]]></FromUserName><CreateTime>1407743423</CreateTime>"
+      + "<MsgType><![CDATA[text]]></MsgType><Content><![CDATA[你好，这是一条测试消息]]></Content>"
+      + "<MsgId>1234567890123456</MsgId></xml>";
+    this.encryptedXml = "<xml><ToUserName><![CDATA[gh_7f083739789a]]></ToUserName><Encrypt><![CDATA["
+      + this.cryptUtil.encrypt(RANDOM_STR, this.plainText) + "]]></Encrypt></xml>";
+
+    if (!this.legacyDecrypt().equals(this.decrypt())
+      || !this.legacyEncrypt().equals(this.encrypt())) {
+      throw new IllegalStateException("两种方式的结果不一致");
+    }
+  }
+
+  @Benchmark
+  public String legacyDecrypt() {
+    try {
+      Document document = this.documentBuilder.parse(new InputSource(new StringReader(this.encryptedXml)));
+      String cipherText = document.getDocumentElement().getElementsByTagName("Encrypt").item(0).getTextContent();
+
+      Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(this.aesKey, "AES"),
+        new IvParameterSpec(Arrays.copyOfRange(this.aesKey, 0, 16)));
+      byte[] bytes = PKCS7Encoder.decode(cipher.doFinal(Base64.decodeBase64(cipherText)));
+      byte[] networkOrder = Arrays.copyOfRange(bytes, 16, 20);
+      int xmlLength = (networkOrder[0] & 0xff) << 24 | (networkOrder[1] & 0xff) << 16
+        | (networkOrder[2] & 0xff) << 8 | networkOrder[3] & 0xff;
+      return new String(Arrays.copyOfRange(bytes, 20, 20 + xmlLength), StandardCharsets.UTF_8);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Benchmark
+  public String decrypt() {
+    return this.cryptUtil.decrypt(WxCryptUtil.extractEncryptPart(this.encryptedXml));
+  }
+
+  @Benchmark
+  public String legacyEncrypt() {
+    ByteGroup byteCollector = new ByteGroup();
+    byte[] plainTextBytes = this.plainText.getBytes(StandardCharsets.UTF_8);
+    byteCollector.addBytes(RANDOM_STR.getBytes(StandardCharsets.UTF_8));
+    byteCollector.addBytes(new byte[]{(byte) (plainTextBytes.length >> 24), (byte) (plainTextBytes.length >> 16),
+      (byte) (plainTextBytes.length >> 8), (byte) plainTextBytes.length});
+    byteCollector.addBytes(plainTextBytes);
+    byteCollector.addBytes(APP_ID.getBytes(StandardCharsets.UTF_8));
+    byteCollector.addBytes(PKCS7Encoder.encode(byteCollector.size()));
+
+    try {
+      Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+      cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(this.aesKey, "AES"),
+        new IvParameterSpec(this.aesKey, 0, 16));
+      return new Base64().encodeToString(cipher.doFinal(byteCollector.toBytes()));
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Benchmark
+  public String encrypt() {
+    return this.cryptUtil.encrypt(RANDOM_STR, this.plainText);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(WxCryptUtilBenchmark.class.getSimpleName()).build()).run();
+  }
+}
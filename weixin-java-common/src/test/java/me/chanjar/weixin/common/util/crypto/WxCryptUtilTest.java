@@ -104,4 +104,36 @@ public class WxCryptUtilTest {
     fail("错误流程不抛出异常？？？");
   }
 
+  public void testDecryptWithSignature() {
+    WxCryptUtil pc = new WxCryptUtil(this.token, this.encodingAesKey, this.appId);
+    String signature = SHA1.gen(this.token, this.timestamp, this.nonce, this.afterAesEncrypt2);
+
+    String cdataXml = String.format(this.xmlFormat, this.afterAesEncrypt2);
+    assertEquals(pc.decrypt(signature, this.timestamp, this.nonce, cdataXml), this.replyMsg2);
+
+    String textXml = "<xml><!-- <Encrypt>fake</Encrypt> --><ToUserName><![CDATA[<Encrypt>fake</Encrypt>]]></ToUserName>"
+      + "<Encrypt>" + this.afterAesEncrypt2 + "</Encrypt></xml>";
+    assertEquals(pc.decrypt(signature, this.timestamp, this.nonce, textXml), this.replyMsg2);
+
+    // 内容前后有空白时回退到DOM解析，结果与之前一致
+    assertEquals(WxCryptUtil.extractEncryptPart("<xml><Encrypt>\n<![CDATA[abc]]>\n</Encrypt></xml>"), "\nabc\n");
+    assertEquals(WxCryptUtil.extractEncryptPart("<xml><Encrypt>a&amp;b</Encrypt></xml>"), "a&b");
+  }
+
+  public void testSubclassAssignsKey() {
+    WxCryptUtil pc = new WxCryptUtil() {
+      {
+        this.token = WxCryptUtilTest.this.token;
+        this.appidOrCorpid = WxCryptUtilTest.this.appId;
+        this.aesKey = org.apache.commons.codec.binary.Base64.decodeBase64(WxCryptUtilTest.this.encodingAesKey + "=");
+      }
+    };
+    assertEquals(pc.encrypt(this.randomStr, this.replyMsg), this.afterAesEncrypt);
+    assertEquals(pc.decrypt(this.afterAesEncrypt2), this.replyMsg2);
+
+    WxCryptUtil other = new WxCryptUtil(this.token, "1234567890abcdefghijklmnopqrstuvwxyzABCDEFG", this.appId);
+    assertEquals(other.decrypt(other.encrypt(this.randomStr, this.replyMsg)), this.replyMsg);
+    assertEquals(pc.decrypt(this.afterAesEncrypt), this.replyMsg);
+  }
+
 }
@@ -0,0 +1,115 @@
+package me.chanjar.weixin.common.util.http;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class MediaUploadSourceTest {
+  private final byte[] content = new byte[100000];
+
+  {
+    new Random(1).nextBytes(this.content);
+  }
+
+  @Test
+  public void testWriteTo() throws IOException {
+    File file = File.createTempFile("media", ".jpg");
+    file.deleteOnExit();
+    Files.write(file.toPath(), this.content);
+
+    MediaUploadSource[] sources = {
+      MediaUploadSource.of(file),
+      MediaUploadSource.of(this.content, "a.jpg"),
+      MediaUploadSource.of(new ByteArrayInputStream(this.content), "a.jpg"),
+      MediaUploadSource.of(Channels.newChannel(new ByteArrayInputStream(this.content)), "a.jpg", this.content.length)
+    };
+    for (MediaUploadSource source : sources) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(source.writeTo(out), this.content.length);
+      assertTrue(Arrays.equals(out.toByteArray(), this.content));
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MediaUploadSource.of(this.content, 10, 20, "a.jpg").writeTo(out);
+    assertTrue(Arrays.equals(out.toByteArray(), Arrays.copyOfRange(this.content, 10, 30)));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testStreamCanOnlyBeReadOnce() throws IOException {
+    MediaUploadSource source = MediaUploadSource.of(new ByteArrayInputStream(this.content), "a.jpg");
+    assertFalse(source.isRepeatable());
+    source.writeTo(new ByteArrayOutputStream());
+    source.writeTo(new ByteArrayOutputStream());
+  }
+
+  @Test
+  public void testToRepeatable() throws IOException {
+    MediaUploadSource bytes = MediaUploadSource.of(this.content, "a.jpg");
+    assertSame(bytes.toRepeatable(), bytes);
+
+    MediaUploadSource source = MediaUploadSource.of(new ByteArrayInputStream(this.content), "a.jpg").toRepeatable();
+    assertTrue(source.isRepeatable());
+    assertEquals(source.getFileName(), "a.jpg");
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(source.writeTo(out), this.content.length);
+      assertTrue(Arrays.equals(out.toByteArray(), this.content));
+    }
+  }
+
+  @Test
+  public void testIsRetryable() {
+    assertTrue(MediaUploadSource.isRetryable("{}"));
+    assertTrue(MediaUploadSource.isRetryable(null));
+    assertTrue(MediaUploadSource.isRetryable(MediaUploadSource.of(this.content, "a.jpg")));
+    assertFalse(MediaUploadSource.isRetryable(MediaUploadSource.of(new ByteArrayInputStream(this.content), "a.jpg")));
+  }
+
+  @Test
+  public void testDigest() throws Exception {
+    String expected = DigestUtils.sha256Hex(this.content);
+
+    MediaUploadSource bytes = MediaUploadSource.of(this.content, "a.jpg");
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    assertSame(bytes.digest(digest), bytes);
+    assertEquals(Hex.encodeHexString(digest.digest()), expected);
+
+    for (long length : new long[]{-1, this.content.length}) {
+      digest = MessageDigest.getInstance("SHA-256");
+      MediaUploadSource buffered = MediaUploadSource.of(new ByteArrayInputStream(this.content), "a.jpg", length)
+        .digest(digest);
+      assertEquals(Hex.encodeHexString(digest.digest()), expected);
+      assertTrue(buffered.isRepeatable());
+      assertEquals(buffered.getContentLength(), this.content.length);
+      assertTrue(Arrays.equals(buffered.toByteArray(), this.content));
+    }
+
+    byte[] exact = MediaUploadSource.of(new ByteArrayInputStream(this.content), "a.jpg", this.content.length)
+      .digest(MessageDigest.getInstance("SHA-256")).toByteArray();
+    assertEquals(exact.length, this.content.length);
+  }
+
+  @Test
+  public void testToByteArrayWithoutCopy() throws IOException {
+    assertSame(MediaUploadSource.of(this.content, "a.jpg").toByteArray(), this.content);
+  }
+
+}
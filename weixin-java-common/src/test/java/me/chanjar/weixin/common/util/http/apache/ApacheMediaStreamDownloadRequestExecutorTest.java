@@ -0,0 +1,144 @@
+package me.chanjar.weixin.common.util.http.apache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.BaseMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.HttpType;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class ApacheMediaStreamDownloadRequestExecutorTest {
+  private static final byte[] CONTENT = new byte[100000];
+
+  static {
+    Arrays.fill(CONTENT, (byte) 'a');
+  }
+
+  private HttpServer server;
+  private DefaultApacheHttpClientBuilder builder;
+  private RequestHttp<CloseableHttpClient, HttpHost> requestHttp;
+  private String baseUrl;
+
+  @BeforeClass
+  public void setUp() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        if (query.contains("media_id=error")) {
+          byte[] error = "{\"errcode\":40007,\"errmsg\":\"invalid media_id\"}".getBytes("UTF-8");
+          exchange.getResponseHeaders().add("Content-Type", "application/json; encoding=utf-8");
+          exchange.sendResponseHeaders(200, error.length);
+          exchange.getResponseBody().write(error);
+        } else {
+          if (!query.contains("media_id=noname")) {
+            exchange.getResponseHeaders().add("Content-disposition", "attachment; filename=\"test.jpg\"");
+          }
+          exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+          exchange.sendResponseHeaders(200, CONTENT.length);
+          exchange.getResponseBody().write(CONTENT);
+        }
+        exchange.close();
+      }
+    });
+    this.server.start();
+    this.baseUrl = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/cgi-bin/media/get?access_token=t";
+
+    this.builder = DefaultApacheHttpClientBuilder.create("media-stream-test");
+    final CloseableHttpClient client = this.builder.build();
+    this.requestHttp = new RequestHttp<CloseableHttpClient, HttpHost>() {
+      @Override
+      public CloseableHttpClient getRequestHttpClient() {
+        return client;
+      }
+
+      @Override
+      public HttpHost getRequestHttpProxy() {
+        return null;
+      }
+
+      @Override
+      public HttpType getRequestType() {
+        return HttpType.APACHE_HTTP;
+      }
+    };
+  }
+
+  @AfterClass
+  public void tearDown() {
+    this.builder.shutdown();
+    this.server.stop(0);
+  }
+
+  @Test
+  public void testStreamReleasesConnectionAfterConsumed() throws Exception {
+    MediaDownloadStream stream = BaseMediaStreamDownloadRequestExecutor.create(this.requestHttp)
+      .execute(this.baseUrl, "media_id=1", WxType.MP);
+    assertEquals(stream.getFileName(), "test.jpg");
+    assertEquals(stream.getContentType(), "image/jpeg");
+    assertEquals(stream.getContentLength(), CONTENT.length);
+    assertEquals(this.builder.getPoolStats().getLeased(), 1);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(stream.writeTo(out), CONTENT.length);
+    assertTrue(Arrays.equals(out.toByteArray(), CONTENT));
+    assertEquals(this.builder.getPoolStats().getLeased(), 0);
+  }
+
+  @Test
+  public void testWriteToChannel() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (MediaDownloadStream stream = BaseMediaStreamDownloadRequestExecutor.create(this.requestHttp)
+      .execute(this.baseUrl, "media_id=noname", WxType.MP)) {
+      assertNull(stream.getFileName());
+      assertEquals(stream.writeTo(Channels.newChannel(out)), CONTENT.length);
+    }
+    assertEquals(out.size(), CONTENT.length);
+    assertEquals(this.builder.getPoolStats().getLeased(), 0);
+  }
+
+  @Test
+  public void testCloseBeforeConsumed() throws Exception {
+    MediaDownloadStream stream = BaseMediaStreamDownloadRequestExecutor.create(this.requestHttp)
+      .execute(this.baseUrl, "media_id=2", WxType.MP);
+    assertEquals(stream.read(), 'a');
+    stream.close();
+    stream.close();
+    assertEquals(this.builder.getPoolStats().getLeased(), 0);
+  }
+
+  @Test
+  public void testError() throws Exception {
+    try {
+      BaseMediaStreamDownloadRequestExecutor.create(this.requestHttp).execute(this.baseUrl, "media_id=error", WxType.MP);
+      fail("应该抛出异常");
+    } catch (WxErrorException e) {
+      assertEquals(e.getError().getErrorCode(), 40007);
+    }
+    assertEquals(this.builder.getPoolStats().getLeased(), 0);
+  }
+
+}
@@ -0,0 +1,85 @@
+package me.chanjar.weixin.common.util.http.apache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
+import me.chanjar.weixin.common.util.http.HttpType;
+import me.chanjar.weixin.common.util.http.MediaStreamUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
+import me.chanjar.weixin.common.util.http.RequestHttp;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class ApacheMediaStreamUploadRequestExecutorTest {
+
+  @Test
+  public void testUploadFromInputStream() throws Exception {
+    final AtomicReference<String> requestBody = new AtomicReference<>();
+    final AtomicReference<String> contentLength = new AtomicReference<>();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        contentLength.set(exchange.getRequestHeaders().getFirst("Content-Length"));
+        requestBody.set(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        byte[] response = "{\"type\":\"image\",\"media_id\":\"MEDIA_ID\",\"created_at\":123456789}"
+          .getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, response.length);
+        exchange.getResponseBody().write(response);
+        exchange.close();
+      }
+    });
+    server.start();
+
+    DefaultApacheHttpClientBuilder builder = DefaultApacheHttpClientBuilder.create("media-upload-test");
+    final CloseableHttpClient client = builder.build();
+    RequestHttp<CloseableHttpClient, HttpHost> requestHttp = new RequestHttp<CloseableHttpClient, HttpHost>() {
+      @Override
+      public CloseableHttpClient getRequestHttpClient() {
+        return client;
+      }
+
+      @Override
+      public HttpHost getRequestHttpProxy() {
+        return null;
+      }
+
+      @Override
+      public HttpType getRequestType() {
+        return HttpType.APACHE_HTTP;
+      }
+    };
+
+    try {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/cgi-bin/media/upload?type=image";
+      byte[] content = "image-content".getBytes(StandardCharsets.UTF_8);
+      WxMediaUploadResult result = MediaStreamUploadRequestExecutor.create(requestHttp)
+        .execute(url, MediaUploadSource.of(new ByteArrayInputStream(content), "a.jpg", content.length), WxType.MP);
+
+      assertEquals(result.getMediaId(), "MEDIA_ID");
+      assertTrue(requestBody.get().contains("name=\"media\"; filename=\"a.jpg\""));
+      assertTrue(requestBody.get().contains("image-content"));
+      assertEquals(Integer.parseInt(contentLength.get()), requestBody.get().getBytes(StandardCharsets.UTF_8).length);
+    } finally {
+      builder.shutdown();
+      server.stop(0);
+    }
+  }
+
+}
@@ -1,14 +1,21 @@
 package me.chanjar.weixin.common.util.http.apache;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
 
 public class DefaultApacheHttpClientBuilderTest {
   @Test
@@ -39,6 +46,64 @@ public class DefaultApacheHttpClientBuilderTest {
   }
 
 
+  @Test
+  public void testIndependentPoolsAndMetrics() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 2);
+        exchange.getResponseBody().write("ok".getBytes());
+        exchange.close();
+      }
+    });
+    server.start();
+
+    final Map<String, ApacheHttpClientPoolStats> boundPools = new ConcurrentHashMap<>();
+    DefaultApacheHttpClientBuilder builder = DefaultApacheHttpClientBuilder.create("tenant-a");
+    builder.setSeparateMediaPool(true);
+    builder.setMaxConnPerHost("127.0.0.1", 3);
+    builder.setPoolMetrics(new ApacheHttpClientPoolMetrics() {
+      @Override
+      public void bindPool(String poolName, ApacheHttpClientPoolStats stats) {
+        boundPools.put(poolName, stats);
+      }
+
+      @Override
+      public void recordLeaseWait(String poolName, long waitMillis, boolean leased) {
+      }
+    });
+
+    try {
+      Assert.assertNotSame(builder, DefaultApacheHttpClientBuilder.get());
+      CloseableHttpClient client = builder.build();
+      CloseableHttpClient mediaClient = builder.buildMediaClient();
+      Assert.assertNotSame(client, mediaClient);
+      Assert.assertEquals(boundPools.keySet().size(), 2);
+
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+      try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+        Assert.assertEquals(builder.getPoolStats().getLeased(), 1);
+        Assert.assertEquals(EntityUtils.toString(response.getEntity()), "ok");
+      }
+      try (CloseableHttpResponse response = mediaClient.execute(new HttpGet(url))) {
+        EntityUtils.consume(response.getEntity());
+      }
+
+      ApacheHttpClientPoolStats stats = boundPools.get("tenant-a");
+      Assert.assertEquals(stats.getLeaseCount(), 1);
+      Assert.assertEquals(stats.getLeased(), 0);
+      Assert.assertEquals(stats.getHostStats("127.0.0.1").getAvailable(), 1);
+      Assert.assertEquals(boundPools.get("tenant-a-media").getLeaseCount(), 1);
+
+      builder.resize(80, 20);
+      Assert.assertEquals(stats.getMax(), 80);
+    } finally {
+      builder.shutdown();
+      server.stop(0);
+    }
+  }
+
   public static class TestThread extends Thread {
     private CloseableHttpClient client;
     private int respState = -1;
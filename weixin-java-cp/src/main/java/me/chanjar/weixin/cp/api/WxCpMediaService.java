@@ -2,6 +2,8 @@ package me.chanjar.weixin.cp.api;
 
 import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
 import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,6 +28,7 @@ public interface WxCpMediaService {
    *   视频（video）：10MB，支持MP4格式
    *   缩略图（thumb）：64KB，支持JPG格式
    * 详情请见: http://mp.weixin.qq.com/wiki/index.php?title=上传下载多媒体文件
+   * 输入流边读边上传，只能发送一次，access token失效或者微信系统繁忙时直接抛出错误，不会自动重试.
    * </pre>
    *
    * @param mediaType   媒体类型, 请看{@link me.chanjar.weixin.common.api.WxConsts}
@@ -44,6 +47,18 @@ public interface WxCpMediaService {
    */
   WxMediaUploadResult upload(String mediaType, File file) throws WxErrorException;
 
+  /**
+   * <pre>
+   * 上传多媒体文件.
+   * 数据来源可以是文件、输入流、通道或者字节数组的一段，数据直接写入请求体，不会先保存为临时文件.
+   * 输入流和通道只能发送一次，失败时直接抛出错误，不会自动重试.
+   * </pre>
+   *
+   * @param mediaType 媒体类型, 请看{@link me.chanjar.weixin.common.api.WxConsts}
+   * @param source    数据来源
+   */
+  WxMediaUploadResult upload(String mediaType, MediaUploadSource source) throws WxErrorException;
+
   /**
    * <pre>
    * 下载多媒体文件.
@@ -56,6 +71,19 @@ public interface WxCpMediaService {
    */
   File download(String mediaId) throws WxErrorException;
 
+  /**
+   * <pre>
+   * 以流的方式下载多媒体文件，与{@link #download(String)}相同，但不会写入本地临时文件.
+   * 返回的流可以直接读取，或者通过{@link MediaDownloadStream#writeTo(java.io.OutputStream)}
+   * 转存到其他输出流中，文件名和内容类型可以直接从返回的流中获取.
+   * 流读取完毕或关闭后才会释放http连接，使用完毕后必须关闭.
+   * </pre>
+   *
+   * @param mediaId 媒体id
+   * @return 媒体文件内容的流
+   */
+  MediaDownloadStream downloadStream(String mediaId) throws WxErrorException;
+
   /**
    * <pre>
    * 获取高清语音素材.
@@ -7,6 +7,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.api.WxAccessTokenRefresher;
 import me.chanjar.weixin.common.bean.WxJsapiSignature;
 import me.chanjar.weixin.common.error.WxError;
 import me.chanjar.weixin.common.error.WxErrorException;
@@ -16,6 +17,7 @@ import me.chanjar.weixin.common.session.WxSessionManager;
 import me.chanjar.weixin.common.util.DataUtils;
 import me.chanjar.weixin.common.util.RandomUtils;
 import me.chanjar.weixin.common.util.crypto.SHA1;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 import me.chanjar.weixin.common.util.http.RequestExecutor;
 import me.chanjar.weixin.common.util.http.RequestHttp;
 import me.chanjar.weixin.common.util.http.SimpleGetRequestExecutor;
@@ -70,6 +72,11 @@ public abstract class BaseWxCpServiceImpl<H, P> implements WxCpService, RequestH
 
   protected WxCpConfigStorage configStorage;
 
+  /**
+   * access token后台主动刷新器，为null时只在请求时按需刷新.
+   */
+  private volatile WxAccessTokenRefresher accessTokenRefresher;
+
   private WxSessionManager sessionManager = new StandardSessionManager();
 
   /**
@@ -238,7 +245,8 @@ public abstract class BaseWxCpServiceImpl<H, P> implements WxCpService, RequestH
         /*
          * -1 系统繁忙, 1000ms后重试
          */
-        if (error.getErrorCode() == -1) {
+        // 只能读取一次的数据已经发送过，无法重试
+        if (error.getErrorCode() == -1 && MediaUploadSource.isRetryable(data)) {
           int sleepMillis = this.retrySleepMillis * (1 << retryTimes);
           try {
             log.debug("微信系统繁忙，{} ms 后重试(第{}次)", sleepMillis, retryTimes + 1);
@@ -281,7 +289,7 @@ public abstract class BaseWxCpServiceImpl<H, P> implements WxCpService, RequestH
       if (error.getErrorCode() == 42001 || error.getErrorCode() == 40001 || error.getErrorCode() == 40014) {
         // 强制设置wxCpConfigStorage它的access token过期了，这样在下一次请求里就会刷新access token
         this.configStorage.expireAccessToken();
-        if (this.getWxCpConfigStorage().autoRefreshToken()) {
+        if (this.getWxCpConfigStorage().autoRefreshToken() && MediaUploadSource.isRetryable(data)) {
           return this.execute(executor, uri, data);
         }
       }
@@ -299,8 +307,59 @@ public abstract class BaseWxCpServiceImpl<H, P> implements WxCpService, RequestH
 
   @Override
   public void setWxCpConfigStorage(WxCpConfigStorage wxConfigProvider) {
+    this.unregisterAccessTokenRefresh();
     this.configStorage = wxConfigProvider;
     this.initHttp();
+    this.registerAccessTokenRefresh();
+  }
+
+  /**
+   * 设置access token后台主动刷新器，设置后access token会在过期前由后台线程主动刷新.
+   *
+   * @param accessTokenRefresher 主动刷新器，为null时取消主动刷新
+   */
+  public void setAccessTokenRefresher(WxAccessTokenRefresher accessTokenRefresher) {
+    this.unregisterAccessTokenRefresh();
+    this.accessTokenRefresher = accessTokenRefresher;
+    this.registerAccessTokenRefresh();
+  }
+
+  public WxAccessTokenRefresher getAccessTokenRefresher() {
+    return this.accessTokenRefresher;
+  }
+
+  private void registerAccessTokenRefresh() {
+    WxAccessTokenRefresher refresher = this.accessTokenRefresher;
+    final WxCpConfigStorage storage = this.configStorage;
+    if (refresher == null || storage == null) {
+      return;
+    }
+
+    refresher.register(getAccessTokenRefreshAccountId(storage), new WxAccessTokenRefresher.Target() {
+      @Override
+      public long getExpiresTime() {
+        return storage.getExpiresTime();
+      }
+
+      @Override
+      public void refreshAccessToken() throws WxErrorException {
+        getAccessToken(true);
+      }
+    });
+  }
+
+  private void unregisterAccessTokenRefresh() {
+    WxAccessTokenRefresher refresher = this.accessTokenRefresher;
+    if (refresher != null && this.configStorage != null) {
+      refresher.unregister(getAccessTokenRefreshAccountId(this.configStorage));
+    }
+  }
+
+  /**
+   * 应用在刷新器中的账号标识，同一个刷新器可能同时被公众号、企业微信及小程序使用，故而加上前缀.
+   */
+  private static String getAccessTokenRefreshAccountId(WxCpConfigStorage storage) {
+    return "cp:" + storage.getCorpId() + ":" + storage.getAgentId();
   }
 
   @Override
@@ -3,9 +3,12 @@ package me.chanjar.weixin.cp.api.impl;
 import lombok.RequiredArgsConstructor;
 import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
 import me.chanjar.weixin.common.error.WxErrorException;
-import me.chanjar.weixin.common.util.fs.FileUtils;
 import me.chanjar.weixin.common.util.http.BaseMediaDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.BaseMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.MediaStreamUploadRequestExecutor;
 import me.chanjar.weixin.common.util.http.MediaUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 import me.chanjar.weixin.common.util.http.RequestExecutor;
 import me.chanjar.weixin.cp.api.WxCpMediaService;
 import me.chanjar.weixin.cp.api.WxCpService;
@@ -33,7 +36,13 @@ public class WxCpMediaServiceImpl implements WxCpMediaService {
   @Override
   public WxMediaUploadResult upload(String mediaType, String fileType, InputStream inputStream)
     throws WxErrorException, IOException {
-    return this.upload(mediaType, FileUtils.createTmpFile(inputStream, UUID.randomUUID().toString(), fileType));
+    return this.upload(mediaType, MediaUploadSource.of(inputStream, UUID.randomUUID().toString() + "." + fileType));
+  }
+
+  @Override
+  public WxMediaUploadResult upload(String mediaType, MediaUploadSource source) throws WxErrorException {
+    return this.mainService.execute(MediaStreamUploadRequestExecutor.create(this.mainService.getRequestHttp()),
+      this.mainService.getWxCpConfigStorage().getApiUrl(MEDIA_UPLOAD + mediaType), source);
   }
 
   @Override
@@ -50,6 +59,12 @@ public class WxCpMediaServiceImpl implements WxCpMediaService {
       this.mainService.getWxCpConfigStorage().getApiUrl(MEDIA_GET), "media_id=" + mediaId);
   }
 
+  @Override
+  public MediaDownloadStream downloadStream(String mediaId) throws WxErrorException {
+    return this.mainService.execute(BaseMediaStreamDownloadRequestExecutor.create(this.mainService.getRequestHttp()),
+      this.mainService.getWxCpConfigStorage().getApiUrl(MEDIA_GET), "media_id=" + mediaId);
+  }
+
   @Override
   public File getJssdkFile(String mediaId) throws WxErrorException {
     return this.mainService.execute(
@@ -24,6 +24,7 @@ import java.io.IOException;
  */
 public class WxCpServiceApacheHttpClientImpl extends BaseWxCpServiceImpl<CloseableHttpClient, HttpHost> {
   private CloseableHttpClient httpClient;
+  private CloseableHttpClient mediaHttpClient;
   private HttpHost httpProxy;
 
   @Override
@@ -31,6 +32,11 @@ public class WxCpServiceApacheHttpClientImpl extends BaseWxCpServiceImpl<Closeab
     return httpClient;
   }
 
+  @Override
+  public CloseableHttpClient getMediaRequestHttpClient() {
+    return mediaHttpClient;
+  }
+
   @Override
   public HttpHost getRequestHttpProxy() {
     return httpProxy;
@@ -96,6 +102,7 @@ public class WxCpServiceApacheHttpClientImpl extends BaseWxCpServiceImpl<Closeab
     }
 
     this.httpClient = apacheHttpClientBuilder.build();
+    this.mediaHttpClient = apacheHttpClientBuilder.buildMediaClient();
   }
 
   @Override
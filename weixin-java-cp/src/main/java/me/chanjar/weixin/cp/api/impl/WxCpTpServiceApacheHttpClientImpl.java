@@ -27,6 +27,7 @@ import java.io.IOException;
  */
 public class WxCpTpServiceApacheHttpClientImpl extends BaseWxCpTpServiceImpl<CloseableHttpClient, HttpHost> {
   private CloseableHttpClient httpClient;
+  private CloseableHttpClient mediaHttpClient;
   private HttpHost httpProxy;
 
   @Override
@@ -34,6 +35,11 @@ public class WxCpTpServiceApacheHttpClientImpl extends BaseWxCpTpServiceImpl<Clo
     return httpClient;
   }
 
+  @Override
+  public CloseableHttpClient getMediaRequestHttpClient() {
+    return mediaHttpClient;
+  }
+
   @Override
   public HttpHost getRequestHttpProxy() {
     return httpProxy;
@@ -104,6 +110,7 @@ public class WxCpTpServiceApacheHttpClientImpl extends BaseWxCpTpServiceImpl<Clo
     }
 
     this.httpClient = apacheHttpClientBuilder.build();
+    this.mediaHttpClient = apacheHttpClientBuilder.buildMediaClient();
   }
 
   @Override
@@ -12,7 +12,8 @@ import org.slf4j.LoggerFactory;
 
 import me.chanjar.weixin.common.api.WxErrorExceptionHandler;
 import me.chanjar.weixin.common.api.WxMessageDuplicateChecker;
-import me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker;
+import me.chanjar.weixin.common.api.WxMessageRouterRuleIndex;
+import me.chanjar.weixin.common.api.WxMessageTimeWheelDuplicateChecker;
 import me.chanjar.weixin.common.session.InternalSession;
 import me.chanjar.weixin.common.session.InternalSessionManager;
 import me.chanjar.weixin.common.session.WxSessionManager;
@@ -54,6 +55,11 @@ public class WxCpMessageRouter {
   private final Logger log = LoggerFactory.getLogger(WxCpMessageRouter.class);
   private final List<WxCpMessageRouterRule> rules = new ArrayList<>();
 
+  /**
+   * 规则索引，规则发生变化后在下次路由时重建.
+   */
+  private volatile WxMessageRouterRuleIndex<WxCpMessageRouterRule> ruleIndex;
+
   private final WxCpService wxCpService;
 
   private ExecutorService executorService;
@@ -70,7 +76,7 @@ public class WxCpMessageRouter {
   public WxCpMessageRouter(WxCpService wxCpService) {
     this.wxCpService = wxCpService;
     this.executorService = Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE);
-    this.messageDuplicateChecker = new WxMessageInMemoryDuplicateChecker();
+    this.messageDuplicateChecker = new WxMessageTimeWheelDuplicateChecker();
     this.sessionManager = wxCpService.getSessionManager();
     this.exceptionHandler = new LogExceptionHandler();
   }
@@ -88,7 +94,7 @@ public class WxCpMessageRouter {
   /**
    * <pre>
    * 设置自定义的 {@link me.chanjar.weixin.common.api.WxMessageDuplicateChecker}
-   * 如果不调用该方法，默认使用 {@link me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker}
+   * 如果不调用该方法，默认使用 {@link me.chanjar.weixin.common.api.WxMessageTimeWheelDuplicateChecker}
    * </pre>
    */
   public void setMessageDuplicateChecker(WxMessageDuplicateChecker messageDuplicateChecker) {
@@ -119,6 +125,25 @@ public class WxCpMessageRouter {
     return this.rules;
   }
 
+  /**
+   * 规则的匹配条件发生变化时调用，使规则索引失效.
+   */
+  void ruleChanged() {
+    this.ruleIndex = null;
+  }
+
+  private WxMessageRouterRuleIndex<WxCpMessageRouterRule> getRuleIndex() {
+    WxMessageRouterRuleIndex<WxCpMessageRouterRule> index = this.ruleIndex;
+    if (index == null || index.size() != this.rules.size()) {
+      index = new WxMessageRouterRuleIndex<>(4);
+      for (WxCpMessageRouterRule rule : this.rules) {
+        index.add(rule, rule.indexKeys());
+      }
+      this.ruleIndex = index;
+    }
+    return index;
+  }
+
   /**
    * 开始一个新的Route规则.
    */
@@ -136,8 +161,13 @@ public class WxCpMessageRouter {
     }
 
     final List<WxCpMessageRouterRule> matchRules = new ArrayList<>();
-    // 收集匹配的规则
-    for (final WxCpMessageRouterRule rule : this.rules) {
+    // 收集匹配的规则，只需检查索引中msgType、event、eventKey及content可能匹配的规则
+    final List<WxCpMessageRouterRule> candidates = getRuleIndex().candidates(
+      WxMessageRouterRuleIndex.ignoreCaseKey(wxMessage.getMsgType()),
+      WxMessageRouterRuleIndex.ignoreCaseKey(wxMessage.getEvent()),
+      WxMessageRouterRuleIndex.ignoreCaseKey(wxMessage.getEventKey()),
+      StringUtils.trimToNull(wxMessage.getContent()));
+    for (final WxCpMessageRouterRule rule : candidates) {
       if (rule.test(wxMessage)) {
         matchRules.add(rule);
         if (!rule.isReEnter()) {
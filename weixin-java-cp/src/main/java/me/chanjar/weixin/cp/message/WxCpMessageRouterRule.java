@@ -1,6 +1,7 @@
 package me.chanjar.weixin.cp.message;
 
 import me.chanjar.weixin.common.api.WxErrorExceptionHandler;
+import me.chanjar.weixin.common.api.WxMessageRouterRuleIndex;
 import me.chanjar.weixin.common.error.WxErrorException;
 import me.chanjar.weixin.common.session.WxSessionManager;
 import me.chanjar.weixin.cp.api.WxCpService;
@@ -30,10 +31,14 @@ public class WxCpMessageRouterRule {
 
   private String eventKeyRegex;
 
+  private Pattern eventKeyPattern;
+
   private String content;
 
   private String rContent;
 
+  private Pattern rContentPattern;
+
   private WxCpMessageMatcher matcher;
 
   private boolean reEnter = false;
@@ -75,6 +80,7 @@ public class WxCpMessageRouterRule {
    */
   public WxCpMessageRouterRule msgType(String msgType) {
     this.msgType = msgType;
+    this.ruleChanged();
     return this;
   }
 
@@ -85,6 +91,7 @@ public class WxCpMessageRouterRule {
    */
   public WxCpMessageRouterRule event(String event) {
     this.event = event;
+    this.ruleChanged();
     return this;
   }
 
@@ -95,6 +102,7 @@ public class WxCpMessageRouterRule {
    */
   public WxCpMessageRouterRule eventKey(String eventKey) {
     this.eventKey = eventKey;
+    this.ruleChanged();
     return this;
   }
 
@@ -103,6 +111,7 @@ public class WxCpMessageRouterRule {
    */
   public WxCpMessageRouterRule eventKeyRegex(String regex) {
     this.eventKeyRegex = regex;
+    this.eventKeyPattern = compile(regex);
     return this;
   }
 
@@ -113,6 +122,7 @@ public class WxCpMessageRouterRule {
    */
   public WxCpMessageRouterRule content(String content) {
     this.content = content;
+    this.ruleChanged();
     return this;
   }
 
@@ -123,6 +133,7 @@ public class WxCpMessageRouterRule {
    */
   public WxCpMessageRouterRule rContent(String regex) {
     this.rContent = regex;
+    this.rContentPattern = compile(regex);
     return this;
   }
 
@@ -224,16 +235,38 @@ public class WxCpMessageRouterRule {
         &&
         (this.eventKey == null || this.eventKey.equalsIgnoreCase(wxMessage.getEventKey()))
         &&
-        (this.eventKeyRegex == null || Pattern.matches(this.eventKeyRegex, StringUtils.trimToEmpty(wxMessage.getEventKey())))
+        (this.eventKeyPattern == null || this.eventKeyPattern.matcher(StringUtils.trimToEmpty(wxMessage.getEventKey())).matches())
         &&
         (this.content == null || this.content.equals(StringUtils.trimToNull(wxMessage.getContent())))
         &&
-        (this.rContent == null || Pattern.matches(this.rContent, StringUtils.trimToEmpty(wxMessage.getContent())))
+        (this.rContentPattern == null || this.rContentPattern.matcher(StringUtils.trimToEmpty(wxMessage.getContent())).matches())
         &&
         (this.matcher == null || this.matcher.match(wxMessage))
       ;
   }
 
+  /**
+   * 规则在路由索引各维度上要求精确匹配的值，与{@link WxCpMessageRouter}中消息的取值一一对应.
+   */
+  String[] indexKeys() {
+    return new String[]{
+      WxMessageRouterRuleIndex.ignoreCaseKey(this.msgType),
+      WxMessageRouterRuleIndex.ignoreCaseKey(this.event),
+      WxMessageRouterRuleIndex.ignoreCaseKey(this.eventKey),
+      this.content
+    };
+  }
+
+  private static Pattern compile(String regex) {
+    return regex == null ? null : Pattern.compile(regex);
+  }
+
+  private void ruleChanged() {
+    if (this.routerBuilder != null) {
+      this.routerBuilder.ruleChanged();
+    }
+  }
+
   /**
    * 处理微信推送过来的消息
    *
@@ -280,22 +313,27 @@ public class WxCpMessageRouterRule {
 
   public void setMsgType(String msgType) {
     this.msgType = msgType;
+    this.ruleChanged();
   }
 
   public void setEvent(String event) {
     this.event = event;
+    this.ruleChanged();
   }
 
   public void setEventKey(String eventKey) {
     this.eventKey = eventKey;
+    this.ruleChanged();
   }
 
   public void setContent(String content) {
     this.content = content;
+    this.ruleChanged();
   }
 
   public void setrContent(String rContent) {
     this.rContent = rContent;
+    this.rContentPattern = compile(rContent);
   }
 
   public void setMatcher(WxCpMessageMatcher matcher) {
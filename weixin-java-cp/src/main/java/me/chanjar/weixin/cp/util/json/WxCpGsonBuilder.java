@@ -16,6 +16,7 @@ import me.chanjar.weixin.cp.bean.WxCpUser;
 public class WxCpGsonBuilder {
 
   private static final GsonBuilder INSTANCE = new GsonBuilder();
+  private static final Gson GSON_INSTANCE;
 
   static {
     INSTANCE.disableHtmlEscaping();
@@ -25,10 +26,12 @@ public class WxCpGsonBuilder {
     INSTANCE.registerTypeAdapter(WxError.class, new WxErrorAdapter());
     INSTANCE.registerTypeAdapter(WxMenu.class, new WxCpMenuGsonAdapter());
     INSTANCE.registerTypeAdapter(WxCpTag.class, new WxCpTagGsonAdapter());
+
+    GSON_INSTANCE = INSTANCE.create();
   }
 
   public static Gson create() {
-    return INSTANCE.create();
+    return GSON_INSTANCE;
   }
 
 }
@@ -0,0 +1,39 @@
+package cn.binarywang.wx.miniapp.api;
+
+import cn.binarywang.wx.miniapp.bean.WxMaSubscribeMessage;
+import me.chanjar.weixin.common.api.WxMessageDispatcher;
+import me.chanjar.weixin.common.error.WxErrorException;
+
+/**
+ * <pre>
+ * 小程序订阅消息的批量发送调度器.
+ * 小程序没有异步API，消息在调度器自己的线程池中通过{@link WxMaMsgService#sendSubscribeMsg(WxMaSubscribeMessage)}发送，
+ * 运行在Java 21及以上版本时使用虚拟线程，调度器的用法见{@link WxMessageDispatcher}.
+ * 每个小程序对应一个{@link WxMaService}，因此dispatch时传入的账号标识只用于区分令牌桶，一般传入appid即可.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMaMessageDispatchers {
+  private WxMaMessageDispatchers() {
+  }
+
+  /**
+   * 创建订阅消息调度器，发送结果为null.
+   *
+   * @param wxMaService 小程序服务
+   * @param concurrency 同时发送的消息数上限
+   * @return 调度器
+   */
+  public static WxMessageDispatcher<WxMaSubscribeMessage> subscribeMsg(final WxMaService wxMaService,
+                                                                       int concurrency) {
+    return WxMessageDispatcher.ofBlocking(new WxMessageDispatcher.BlockingSender<WxMaSubscribeMessage>() {
+      @Override
+      public String send(String appid, WxMaSubscribeMessage message) throws WxErrorException {
+        wxMaService.getMsgService().sendSubscribeMsg(message);
+        return null;
+      }
+    }, concurrency);
+  }
+
+}
@@ -0,0 +1,130 @@
+package cn.binarywang.wx.miniapp.api.impl;
+
+import cn.binarywang.wx.miniapp.api.WxMaService;
+import cn.binarywang.wx.miniapp.bean.WxMaCodeLineColor;
+import cn.binarywang.wx.miniapp.util.cache.WxMaQrcodeCache;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.fs.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * <pre>
+ * 带缓存的二维码（小程序码）服务，相同参数的图片只向微信请求一次，缓存的实现见{@link WxMaQrcodeCache}.
+ * 使用方法：
+ * wxMaService.setQrcodeService(new WxMaCachedQrcodeServiceImpl(wxMaService, new WxMaQrcodeCache(
+ *   64 * 1024 * 1024, new WxMaQrcodeFileStore(new File("/data/wxacode")))));
+ * 返回文件的方法每次都会从缓存的图片生成新的临时文件.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMaCachedQrcodeServiceImpl extends WxMaQrcodeServiceImpl {
+  private final WxMaService wxMaService;
+  private final WxMaQrcodeCache cache;
+
+  public WxMaCachedQrcodeServiceImpl(WxMaService wxMaService, WxMaQrcodeCache cache) {
+    super(wxMaService);
+    this.wxMaService = wxMaService;
+    this.cache = cache;
+  }
+
+  public WxMaQrcodeCache getCache() {
+    return this.cache;
+  }
+
+  @Override
+  public byte[] createQrcodeBytes(final String path, final int width) throws WxErrorException {
+    return this.cache.get(this.key(CREATE_QRCODE_URL, path, String.valueOf(width)), new WxMaQrcodeCache.Loader() {
+      @Override
+      public byte[] load() throws WxErrorException {
+        return WxMaCachedQrcodeServiceImpl.super.createQrcodeBytes(path, width);
+      }
+    });
+  }
+
+  @Override
+  public File createQrcode(String path, int width) throws WxErrorException {
+    return toFile(this.createQrcodeBytes(path, width));
+  }
+
+  @Override
+  public byte[] createWxaCodeBytes(final String path, final int width, final boolean autoColor,
+                                   final WxMaCodeLineColor lineColor, final boolean isHyaline) throws WxErrorException {
+    String key = this.key(GET_WXACODE_URL, path, null, width, autoColor, lineColor, isHyaline);
+    return this.cache.get(key, new WxMaQrcodeCache.Loader() {
+      @Override
+      public byte[] load() throws WxErrorException {
+        return WxMaCachedQrcodeServiceImpl.super.createWxaCodeBytes(path, width, autoColor, lineColor, isHyaline);
+      }
+    });
+  }
+
+  @Override
+  public File createWxaCode(String path, int width, boolean autoColor, WxMaCodeLineColor lineColor, boolean isHyaline)
+    throws WxErrorException {
+    return toFile(this.createWxaCodeBytes(path, width, autoColor, lineColor, isHyaline));
+  }
+
+  @Override
+  public byte[] createWxaCodeUnlimitBytes(final String scene, final String page, final int width,
+                                          final boolean autoColor, final WxMaCodeLineColor lineColor,
+                                          final boolean isHyaline) throws WxErrorException {
+    String key = this.key(GET_WXACODE_UNLIMIT_URL, scene, page, width, autoColor, lineColor, isHyaline);
+    return this.cache.get(key, new WxMaQrcodeCache.Loader() {
+      @Override
+      public byte[] load() throws WxErrorException {
+        return WxMaCachedQrcodeServiceImpl.super.createWxaCodeUnlimitBytes(scene, page, width, autoColor,
+          lineColor, isHyaline);
+      }
+    });
+  }
+
+  @Override
+  public File createWxaCodeUnlimit(String scene, String page, int width, boolean autoColor,
+                                   WxMaCodeLineColor lineColor, boolean isHyaline) throws WxErrorException {
+    return toFile(this.createWxaCodeUnlimitBytes(scene, page, width, autoColor, lineColor, isHyaline));
+  }
+
+  private String key(String url, String pathOrScene, String page, int width, boolean autoColor,
+                     WxMaCodeLineColor lineColor, boolean isHyaline) {
+    // 自动配置颜色时lineColor不生效，不参与缓存键；未指定时微信默认使用黑色
+    String color = "auto";
+    if (!autoColor) {
+      color = lineColor == null ? "0,0,0"
+        : normalizeColor(lineColor.getR()) + "," + normalizeColor(lineColor.getG()) + "," + normalizeColor(lineColor.getB());
+    }
+    return this.key(url, pathOrScene, page, String.valueOf(width), color, String.valueOf(isHyaline));
+  }
+
+  private String key(String... parts) {
+    String[] keyParts = new String[parts.length + 1];
+    keyParts[0] = this.wxMaService.getWxMaConfig().getAppid();
+    System.arraycopy(parts, 0, keyParts, 1, parts.length);
+    return WxMaQrcodeCache.key(keyParts);
+  }
+
+  private static String normalizeColor(String value) {
+    if (value == null) {
+      return "0";
+    }
+    try {
+      return String.valueOf(Integer.parseInt(value.trim()));
+    } catch (NumberFormatException e) {
+      return value;
+    }
+  }
+
+  private static File toFile(byte[] bytes) throws WxErrorException {
+    try {
+      return FileUtils.createTmpFile(new ByteArrayInputStream(bytes), UUID.randomUUID().toString(), "jpg");
+    } catch (IOException e) {
+      throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg(e.getMessage()).build(), e);
+    }
+  }
+
+}
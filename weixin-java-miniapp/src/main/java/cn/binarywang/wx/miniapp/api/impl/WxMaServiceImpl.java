@@ -8,6 +8,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.api.WxAccessTokenRefresher;
 import me.chanjar.weixin.common.bean.WxAccessToken;
 import me.chanjar.weixin.common.error.WxError;
 import me.chanjar.weixin.common.error.WxErrorException;
@@ -28,6 +29,8 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 
 import static cn.binarywang.wx.miniapp.constant.WxMaConstants.ErrorCode.*;
@@ -39,25 +42,19 @@ import static cn.binarywang.wx.miniapp.constant.WxMaConstants.ErrorCode.*;
 public class WxMaServiceImpl implements WxMaService, RequestHttp<CloseableHttpClient, HttpHost> {
   private static final JsonParser JSON_PARSER = new JsonParser();
   private CloseableHttpClient httpClient;
+  private CloseableHttpClient mediaHttpClient;
   private HttpHost httpProxy;
   private WxMaConfig wxMaConfig;
+  /**
+   * access token后台主动刷新器，为null时只在请求时按需刷新.
+   */
+  private volatile WxAccessTokenRefresher accessTokenRefresher;
 
-  private WxMaMsgService kefuService = new WxMaMsgServiceImpl(this);
-  private WxMaMediaService materialService = new WxMaMediaServiceImpl(this);
-  private WxMaUserService userService = new WxMaUserServiceImpl(this);
-  private WxMaQrcodeService qrCodeService = new WxMaQrcodeServiceImpl(this);
-  private WxMaTemplateService templateService = new WxMaTemplateServiceImpl(this);
-  private WxMaAnalysisService analysisService = new WxMaAnalysisServiceImpl(this);
-  private WxMaCodeService codeService = new WxMaCodeServiceImpl(this);
-  private WxMaSettingService settingService = new WxMaSettingServiceImpl(this);
-  private WxMaJsapiService jsapiService = new WxMaJsapiServiceImpl(this);
-  private WxMaShareService shareService = new WxMaShareServiceImpl(this);
-  private WxMaRunService runService = new WxMaRunServiceImpl(this);
-  private WxMaSecCheckService secCheckService = new WxMaSecCheckServiceImpl(this);
-  private WxMaPluginService pluginService = new WxMaPluginServiceImpl(this);
-  private WxMaExpressService expressService = new WxMaExpressServiceImpl(this);
-  private WxMaSubscribeService subscribeService = new WxMaSubscribeServiceImpl(this);
-  private WxMaCloudService cloudService = new WxMaCloudServiceImpl(this);
+  /**
+   * 接口服务按需创建，以接口类型为key.
+   * 并发首次获取时只会保留一个实例，且不会覆盖通过setXxxService设置的实现.
+   */
+  private final ConcurrentMap<Class<?>, Object> services = new ConcurrentHashMap<>();
 
   private int retrySleepMillis = 1000;
   private int maxRetryTimes = 5;
@@ -69,6 +66,11 @@ public class WxMaServiceImpl implements WxMaService, RequestHttp<CloseableHttpCl
     return httpClient;
   }
 
+  @Override
+  public CloseableHttpClient getMediaRequestHttpClient() {
+    return mediaHttpClient;
+  }
+
   @Override
   public HttpHost getRequestHttpProxy() {
     return httpProxy;
@@ -97,6 +99,7 @@ public class WxMaServiceImpl implements WxMaService, RequestHttp<CloseableHttpCl
     }
 
     this.httpClient = apacheHttpClientBuilder.build();
+    this.mediaHttpClient = apacheHttpClientBuilder.buildMediaClient();
   }
 
   @Override
@@ -296,8 +299,59 @@ public class WxMaServiceImpl implements WxMaService, RequestHttp<CloseableHttpCl
 
   @Override
   public void setWxMaConfig(WxMaConfig wxConfigProvider) {
+    this.unregisterAccessTokenRefresh();
     this.wxMaConfig = wxConfigProvider;
     this.initHttp();
+    this.registerAccessTokenRefresh();
+  }
+
+  /**
+   * 设置access token后台主动刷新器，设置后access token会在过期前由后台线程主动刷新.
+   *
+   * @param accessTokenRefresher 主动刷新器，为null时取消主动刷新
+   */
+  public void setAccessTokenRefresher(WxAccessTokenRefresher accessTokenRefresher) {
+    this.unregisterAccessTokenRefresh();
+    this.accessTokenRefresher = accessTokenRefresher;
+    this.registerAccessTokenRefresh();
+  }
+
+  public WxAccessTokenRefresher getAccessTokenRefresher() {
+    return this.accessTokenRefresher;
+  }
+
+  private void registerAccessTokenRefresh() {
+    WxAccessTokenRefresher refresher = this.accessTokenRefresher;
+    final WxMaConfig config = this.wxMaConfig;
+    if (refresher == null || config == null) {
+      return;
+    }
+
+    refresher.register(getAccessTokenRefreshAccountId(config), new WxAccessTokenRefresher.Target() {
+      @Override
+      public long getExpiresTime() {
+        return config.getExpiresTime();
+      }
+
+      @Override
+      public void refreshAccessToken() throws WxErrorException {
+        getAccessToken(true);
+      }
+    });
+  }
+
+  private void unregisterAccessTokenRefresh() {
+    WxAccessTokenRefresher refresher = this.accessTokenRefresher;
+    if (refresher != null && this.wxMaConfig != null) {
+      refresher.unregister(getAccessTokenRefreshAccountId(this.wxMaConfig));
+    }
+  }
+
+  /**
+   * 小程序在刷新器中的账号标识，同一个刷新器可能同时被公众号、企业微信及小程序使用，故而加上前缀.
+   */
+  private static String getAccessTokenRefreshAccountId(WxMaConfig config) {
+    return "ma:" + config.getAppid();
   }
 
   @Override
@@ -310,83 +364,129 @@ public class WxMaServiceImpl implements WxMaService, RequestHttp<CloseableHttpCl
     this.maxRetryTimes = maxRetryTimes;
   }
 
+  private <T> T getService(Class<T> type) {
+    return type.cast(this.services.get(type));
+  }
+
+  /**
+   * 登记新创建的接口服务，如其他线程已先登记（或已通过setXxxService设置），则丢弃新实例并返回已有的.
+   */
+  private <T> T initService(Class<T> type, T service) {
+    Object existing = this.services.putIfAbsent(type, service);
+    return existing == null ? service : type.cast(existing);
+  }
+
+  /**
+   * 替换指定类型的接口服务，设置为null时在下次获取时重新创建默认实现.
+   */
+  private <T> void setService(Class<T> type, T service) {
+    if (service == null) {
+      this.services.remove(type);
+    } else {
+      this.services.put(type, service);
+    }
+  }
+
   @Override
   public WxMaMsgService getMsgService() {
-    return this.kefuService;
+    WxMaMsgService service = this.getService(WxMaMsgService.class);
+    return service != null ? service : this.initService(WxMaMsgService.class, new WxMaMsgServiceImpl(this));
   }
 
   @Override
   public WxMaMediaService getMediaService() {
-    return this.materialService;
+    WxMaMediaService service = this.getService(WxMaMediaService.class);
+    return service != null ? service : this.initService(WxMaMediaService.class, new WxMaMediaServiceImpl(this));
   }
 
   @Override
   public WxMaUserService getUserService() {
-    return this.userService;
+    WxMaUserService service = this.getService(WxMaUserService.class);
+    return service != null ? service : this.initService(WxMaUserService.class, new WxMaUserServiceImpl(this));
   }
 
   @Override
   public WxMaQrcodeService getQrcodeService() {
-    return this.qrCodeService;
+    WxMaQrcodeService service = this.getService(WxMaQrcodeService.class);
+    return service != null ? service : this.initService(WxMaQrcodeService.class, new WxMaQrcodeServiceImpl(this));
+  }
+
+  /**
+   * 替换二维码（小程序码）服务，如需缓存小程序码，可设置为{@link WxMaCachedQrcodeServiceImpl}.
+   */
+  public void setQrcodeService(WxMaQrcodeService qrcodeService) {
+    this.setService(WxMaQrcodeService.class, qrcodeService);
   }
 
   @Override
   public WxMaTemplateService getTemplateService() {
-    return this.templateService;
+    WxMaTemplateService service = this.getService(WxMaTemplateService.class);
+    return service != null ? service : this.initService(WxMaTemplateService.class, new WxMaTemplateServiceImpl(this));
   }
 
   @Override
   public WxMaSubscribeService getSubscribeService() {
-    return this.subscribeService;
+    WxMaSubscribeService service = this.getService(WxMaSubscribeService.class);
+    return service != null ? service : this.initService(WxMaSubscribeService.class, new WxMaSubscribeServiceImpl(this));
   }
 
   @Override
   public WxMaAnalysisService getAnalysisService() {
-    return this.analysisService;
+    WxMaAnalysisService service = this.getService(WxMaAnalysisService.class);
+    return service != null ? service : this.initService(WxMaAnalysisService.class, new WxMaAnalysisServiceImpl(this));
   }
 
   @Override
   public WxMaCodeService getCodeService() {
-    return this.codeService;
+    WxMaCodeService service = this.getService(WxMaCodeService.class);
+    return service != null ? service : this.initService(WxMaCodeService.class, new WxMaCodeServiceImpl(this));
   }
 
   @Override
   public WxMaJsapiService getJsapiService() {
-    return this.jsapiService;
+    WxMaJsapiService service = this.getService(WxMaJsapiService.class);
+    return service != null ? service : this.initService(WxMaJsapiService.class, new WxMaJsapiServiceImpl(this));
   }
 
   @Override
   public WxMaSettingService getSettingService() {
-    return this.settingService;
+    WxMaSettingService service = this.getService(WxMaSettingService.class);
+    return service != null ? service : this.initService(WxMaSettingService.class, new WxMaSettingServiceImpl(this));
   }
 
   @Override
   public WxMaShareService getShareService() {
-    return this.shareService;
+    WxMaShareService service = this.getService(WxMaShareService.class);
+    return service != null ? service : this.initService(WxMaShareService.class, new WxMaShareServiceImpl(this));
   }
 
   @Override
   public WxMaRunService getRunService() {
-    return this.runService;
+    WxMaRunService service = this.getService(WxMaRunService.class);
+    return service != null ? service : this.initService(WxMaRunService.class, new WxMaRunServiceImpl(this));
   }
 
   @Override
   public WxMaSecCheckService getSecCheckService() {
-    return this.secCheckService;
+    WxMaSecCheckService service = this.getService(WxMaSecCheckService.class);
+    return service != null ? service : this.initService(WxMaSecCheckService.class, new WxMaSecCheckServiceImpl(this));
   }
 
   @Override
   public WxMaPluginService getPluginService() {
-    return this.pluginService;
+    WxMaPluginService service = this.getService(WxMaPluginService.class);
+    return service != null ? service : this.initService(WxMaPluginService.class, new WxMaPluginServiceImpl(this));
   }
 
   @Override
   public WxMaExpressService getExpressService() {
-    return this.expressService;
+    WxMaExpressService service = this.getService(WxMaExpressService.class);
+    return service != null ? service : this.initService(WxMaExpressService.class, new WxMaExpressServiceImpl(this));
   }
 
   @Override
   public WxMaCloudService getCloudService() {
-    return this.cloudService;
+    WxMaCloudService service = this.getService(WxMaCloudService.class);
+    return service != null ? service : this.initService(WxMaCloudService.class, new WxMaCloudServiceImpl(this));
   }
 }
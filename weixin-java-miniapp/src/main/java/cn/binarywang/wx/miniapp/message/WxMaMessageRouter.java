@@ -5,7 +5,8 @@ import cn.binarywang.wx.miniapp.bean.WxMaMessage;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import me.chanjar.weixin.common.api.WxErrorExceptionHandler;
 import me.chanjar.weixin.common.api.WxMessageDuplicateChecker;
-import me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker;
+import me.chanjar.weixin.common.api.WxMessageRouterRuleIndex;
+import me.chanjar.weixin.common.api.WxMessageTimeWheelDuplicateChecker;
 import me.chanjar.weixin.common.session.InternalSession;
 import me.chanjar.weixin.common.session.InternalSessionManager;
 import me.chanjar.weixin.common.session.StandardSessionManager;
@@ -28,10 +29,17 @@ public class WxMaMessageRouter {
   private final Logger log = LoggerFactory.getLogger(WxMaMessageRouter.class);
   private final List<WxMaMessageRouterRule> rules = new ArrayList<>();
 
+  /**
+   * 规则索引，规则发生变化后在下次路由时重建.
+   */
+  private volatile WxMessageRouterRuleIndex<WxMaMessageRouterRule> ruleIndex;
+
   private final WxMaService wxMaService;
 
   private ExecutorService executorService;
 
+  private WxMessageDuplicateChecker messageDuplicateChecker;
+
   private WxSessionManager sessionManager;
 
   private WxErrorExceptionHandler exceptionHandler;
@@ -41,6 +49,7 @@ public class WxMaMessageRouter {
     ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat("WxMaMessageRouter-pool-%d").build();
     this.executorService = new ThreadPoolExecutor(DEFAULT_THREAD_POOL_SIZE, DEFAULT_THREAD_POOL_SIZE,
       0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), namedThreadFactory);
+    this.messageDuplicateChecker = new WxMessageTimeWheelDuplicateChecker();
     this.sessionManager = new StandardSessionManager();
     this.exceptionHandler = new LogExceptionHandler();
   }
@@ -55,6 +64,16 @@ public class WxMaMessageRouter {
     this.executorService = executorService;
   }
 
+  /**
+   * <pre>
+   * 设置自定义的 {@link me.chanjar.weixin.common.api.WxMessageDuplicateChecker}
+   * 如果不调用该方法，默认使用 {@link me.chanjar.weixin.common.api.WxMessageTimeWheelDuplicateChecker}
+   * </pre>
+   */
+  public void setMessageDuplicateChecker(WxMessageDuplicateChecker messageDuplicateChecker) {
+    this.messageDuplicateChecker = messageDuplicateChecker;
+  }
+
   /**
    * <pre>
    * 设置自定义的{@link me.chanjar.weixin.common.session.WxSessionManager}
@@ -79,6 +98,25 @@ public class WxMaMessageRouter {
     return this.rules;
   }
 
+  /**
+   * 规则的匹配条件发生变化时调用，使规则索引失效.
+   */
+  void ruleChanged() {
+    this.ruleIndex = null;
+  }
+
+  private WxMessageRouterRuleIndex<WxMaMessageRouterRule> getRuleIndex() {
+    WxMessageRouterRuleIndex<WxMaMessageRouterRule> index = this.ruleIndex;
+    if (index == null || index.size() != this.rules.size()) {
+      index = new WxMessageRouterRuleIndex<>(4);
+      for (WxMaMessageRouterRule rule : this.rules) {
+        index.add(rule, rule.indexKeys());
+      }
+      this.ruleIndex = index;
+    }
+    return index;
+  }
+
   /**
    * 开始一个新的Route规则.
    */
@@ -90,9 +128,19 @@ public class WxMaMessageRouter {
    * 处理微信消息.
    */
   private WxMaXmlOutMessage route(final WxMaMessage wxMessage, final Map<String, Object> context) {
+    if (isMsgDuplicated(wxMessage)) {
+      // 如果是重复消息，那么就不做处理
+      return null;
+    }
+
     final List<WxMaMessageRouterRule> matchRules = new ArrayList<>();
-    // 收集匹配的规则
-    for (final WxMaMessageRouterRule rule : this.rules) {
+    // 收集匹配的规则，只需检查索引中msgType、event、content及title可能匹配的规则
+    final List<WxMaMessageRouterRule> candidates = getRuleIndex().candidates(
+      wxMessage.getMsgType() == null ? null : wxMessage.getMsgType().toLowerCase(),
+      wxMessage.getEvent() == null ? null : wxMessage.getEvent().toLowerCase(),
+      wxMessage.getContent() == null ? null : wxMessage.getContent().trim(),
+      wxMessage.getTitle() == null ? null : wxMessage.getTitle().trim());
+    for (final WxMaMessageRouterRule rule : candidates) {
       if (rule.test(wxMessage)) {
         matchRules.add(rule);
         if (!rule.isReEnter()) {
@@ -150,6 +198,21 @@ public class WxMaMessageRouter {
    return this.route(wxMessage, new HashMap<String, Object>(2));
   }
 
+  private boolean isMsgDuplicated(WxMaMessage wxMessage) {
+    StringBuilder messageId = new StringBuilder();
+    if (wxMessage.getMsgId() == null) {
+      messageId.append(wxMessage.getCreateTime())
+        .append("-").append(wxMessage.getFromUser())
+        .append("-").append(wxMessage.getEvent() == null ? "" : wxMessage.getEvent().trim());
+    } else {
+      messageId.append(wxMessage.getMsgId())
+        .append("-").append(wxMessage.getCreateTime())
+        .append("-").append(wxMessage.getFromUser());
+    }
+
+    return this.messageDuplicateChecker.isDuplicate(messageId.toString());
+  }
+
   /**
    * 对session的访问结束.
    */
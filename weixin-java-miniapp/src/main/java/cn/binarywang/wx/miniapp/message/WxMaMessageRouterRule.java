@@ -3,6 +3,7 @@ package cn.binarywang.wx.miniapp.message;
 import cn.binarywang.wx.miniapp.api.WxMaService;
 import cn.binarywang.wx.miniapp.bean.WxMaMessage;
 import me.chanjar.weixin.common.api.WxErrorExceptionHandler;
+import me.chanjar.weixin.common.api.WxMessageRouterRuleIndex;
 import me.chanjar.weixin.common.error.WxErrorException;
 import me.chanjar.weixin.common.session.WxSessionManager;
 
@@ -32,6 +33,8 @@ public class WxMaMessageRouterRule {
 
   private String rContent;
 
+  private Pattern rContentPattern;
+
   private String title;
 
   private WxMaMessageMatcher matcher;
@@ -59,6 +62,7 @@ public class WxMaMessageRouterRule {
    */
   public WxMaMessageRouterRule msgType(String msgType) {
     this.msgType = msgType;
+    this.ruleChanged();
     return this;
   }
 
@@ -69,6 +73,7 @@ public class WxMaMessageRouterRule {
    */
   public WxMaMessageRouterRule title(String title){
     this.title = title;
+    this.ruleChanged();
     return this;
   }
 
@@ -77,6 +82,7 @@ public class WxMaMessageRouterRule {
    */
   public WxMaMessageRouterRule event(String event) {
     this.event = event;
+    this.ruleChanged();
     return this;
   }
 
@@ -93,6 +99,7 @@ public class WxMaMessageRouterRule {
    */
   public WxMaMessageRouterRule content(String content) {
     this.content = content;
+    this.ruleChanged();
     return this;
   }
 
@@ -101,6 +108,7 @@ public class WxMaMessageRouterRule {
    */
   public WxMaMessageRouterRule rContent(String regex) {
     this.rContent = regex;
+    this.rContentPattern = compile(regex);
     return this;
   }
 
@@ -195,8 +203,8 @@ public class WxMaMessageRouterRule {
         (this.content == null || this.content
           .equals(wxMessage.getContent() == null ? null : wxMessage.getContent().trim()))
         &&
-        (this.rContent == null || Pattern
-          .matches(this.rContent, wxMessage.getContent() == null ? "" : wxMessage.getContent().trim()))
+        (this.rContentPattern == null || this.rContentPattern
+          .matcher(wxMessage.getContent() == null ? "" : wxMessage.getContent().trim()).matches())
         &&
         (this.matcher == null || this.matcher.match(wxMessage))
         &&
@@ -205,6 +213,28 @@ public class WxMaMessageRouterRule {
       ;
   }
 
+  /**
+   * 规则在路由索引各维度上要求精确匹配的值，与{@link WxMaMessageRouter}中消息的取值一一对应.
+   */
+  String[] indexKeys() {
+    return new String[]{
+      this.msgType == null ? null : this.msgType.toLowerCase(),
+      this.event == null ? null : this.event.toLowerCase(),
+      this.content,
+      this.title
+    };
+  }
+
+  private static Pattern compile(String regex) {
+    return regex == null ? null : Pattern.compile(regex);
+  }
+
+  private void ruleChanged() {
+    if (this.routerBuilder != null) {
+      this.routerBuilder.ruleChanged();
+    }
+  }
+
   /**
    * 处理微信推送过来的消息.
    */
@@ -267,6 +297,7 @@ public class WxMaMessageRouterRule {
 
   public void setMsgType(String msgType) {
     this.msgType = msgType;
+    this.ruleChanged();
   }
 
   public String getEvent() {
@@ -275,6 +306,7 @@ public class WxMaMessageRouterRule {
 
   public void setEvent(String event) {
     this.event = event;
+    this.ruleChanged();
   }
 
   public String getEventKey() {
@@ -291,6 +323,7 @@ public class WxMaMessageRouterRule {
 
   public void setContent(String content) {
     this.content = content;
+    this.ruleChanged();
   }
 
   public String getrContent() {
@@ -299,6 +332,7 @@ public class WxMaMessageRouterRule {
 
   public void setrContent(String rContent) {
     this.rContent = rContent;
+    this.rContentPattern = compile(rContent);
   }
 
   public WxMaMessageMatcher getMatcher() {
@@ -0,0 +1,292 @@
+package cn.binarywang.wx.miniapp.util.cache;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import me.chanjar.weixin.common.error.WxErrorException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 小程序码（二维码）图片缓存.
+ * 相同参数生成的小程序码内容不会变化，因此以规范化后请求参数的SHA-256摘要作为缓存键，分两级缓存：
+ * 1. 堆内缓存，按图片字节数限制总大小，超出后按最近最少使用淘汰；
+ * 2. 可选的持久化缓存{@link Store}，如本地磁盘{@link WxMaQrcodeFileStore}或Redis{@link WxMaQrcodeRedisStore}，
+ *    持久化缓存读写失败只记录日志，不影响向微信请求.
+ * 同一缓存键的并发请求会合并为一次加载，其余线程等待并共享其结果；加载失败时不缓存，异常抛给所有等待的线程.
+ * 返回的字节数组为缓存内共享的对象，调用方请勿修改.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Slf4j
+public class WxMaQrcodeCache {
+  /**
+   * 堆内缓存默认的最大字节数.
+   */
+  public static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+
+  private final Cache<String, byte[]> memory;
+  private final Store store;
+  private final ConcurrentHashMap<String, FutureTask<byte[]>> loading = new ConcurrentHashMap<>();
+
+  private final AtomicLong memoryBytes = new AtomicLong();
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong storeHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong loadFailures = new AtomicLong();
+  private final AtomicLong storeErrors = new AtomicLong();
+
+  public WxMaQrcodeCache() {
+    this(DEFAULT_MAX_MEMORY_BYTES, null);
+  }
+
+  /**
+   * @param maxMemoryBytes 堆内缓存的最大字节数，内部分段淘汰，应远大于单张图片的大小
+   * @param store          持久化缓存，为null时只使用堆内缓存
+   */
+  public WxMaQrcodeCache(long maxMemoryBytes, Store store) {
+    this.store = store;
+    this.memory = CacheBuilder.newBuilder()
+      .maximumWeight(maxMemoryBytes)
+      .weigher(new Weigher<String, byte[]>() {
+        @Override
+        public int weigh(String key, byte[] value) {
+          return value.length;
+        }
+      })
+      .removalListener(new RemovalListener<String, byte[]>() {
+        @Override
+        public void onRemoval(RemovalNotification<String, byte[]> notification) {
+          memoryBytes.addAndGet(-notification.getValue().length);
+        }
+      })
+      .build();
+  }
+
+  /**
+   * 根据参数计算缓存键，参数依次参与摘要，null与空字符串视为相同.
+   *
+   * @param parts 规范化后的请求参数，一般第一个为小程序appid，第二个为接口地址
+   * @return 64位十六进制的SHA-256摘要
+   */
+  public static String key(String... parts) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String part : parts) {
+      // 以长度作为前缀，避免不同的参数拼接后相同
+      String value = part == null ? "" : part;
+      hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * 获取缓存的图片，两级缓存均未命中时调用loader向微信请求并写入缓存.
+   *
+   * @param key    缓存键，见{@link #key(String...)}
+   * @param loader 未命中时的加载方法
+   * @return 图片内容
+   * @throws WxErrorException 加载时的异常
+   */
+  public byte[] get(final String key, final Loader loader) throws WxErrorException {
+    byte[] bytes = this.memory.getIfPresent(key);
+    if (bytes != null) {
+      this.memoryHits.incrementAndGet();
+      return bytes;
+    }
+
+    FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws WxErrorException {
+        return load(key, loader);
+      }
+    });
+    FutureTask<byte[]> inFlight = this.loading.putIfAbsent(key, task);
+    if (inFlight == null) {
+      inFlight = task;
+      try {
+        task.run();
+      } finally {
+        this.loading.remove(key, task);
+      }
+    } else {
+      this.coalesced.incrementAndGet();
+    }
+
+    try {
+      return inFlight.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof WxErrorException) {
+        throw (WxErrorException) cause;
+      }
+      Throwables.throwIfUnchecked(cause);
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private byte[] load(String key, Loader loader) throws WxErrorException {
+    // 等待加载权期间其他线程可能已经写入了堆内缓存
+    byte[] bytes = this.memory.getIfPresent(key);
+    if (bytes != null) {
+      this.memoryHits.incrementAndGet();
+      return bytes;
+    }
+
+    if (this.store != null) {
+      try {
+        bytes = this.store.get(key);
+      } catch (Exception e) {
+        this.storeErrors.incrementAndGet();
+        log.warn("读取小程序码持久化缓存{}失败", key, e);
+      }
+      if (bytes != null) {
+        this.storeHits.incrementAndGet();
+        this.putMemory(key, bytes);
+        return bytes;
+      }
+    }
+
+    this.misses.incrementAndGet();
+    try {
+      bytes = loader.load();
+    } catch (WxErrorException | RuntimeException e) {
+      this.loadFailures.incrementAndGet();
+      throw e;
+    }
+
+    this.putMemory(key, bytes);
+    if (this.store != null) {
+      try {
+        this.store.put(key, bytes);
+      } catch (Exception e) {
+        this.storeErrors.incrementAndGet();
+        log.warn("写入小程序码持久化缓存{}失败", key, e);
+      }
+    }
+    return bytes;
+  }
+
+  private void putMemory(String key, byte[] bytes) {
+    this.memoryBytes.addAndGet(bytes.length);
+    this.memory.put(key, bytes);
+  }
+
+  /**
+   * 使堆内缓存中的图片失效，持久化缓存中的内容需由{@link Store}的实现自行处理.
+   */
+  public void invalidate(String key) {
+    this.memory.invalidate(key);
+  }
+
+  /**
+   * 获取缓存的统计数据.
+   */
+  public Stats getStats() {
+    Stats stats = new Stats();
+    stats.setMemoryHits(this.memoryHits.get());
+    stats.setStoreHits(this.storeHits.get());
+    stats.setMisses(this.misses.get());
+    stats.setCoalesced(this.coalesced.get());
+    stats.setLoadFailures(this.loadFailures.get());
+    stats.setStoreErrors(this.storeErrors.get());
+    stats.setMemoryEntries(this.memory.size());
+    stats.setMemoryBytes(this.memoryBytes.get());
+    return stats;
+  }
+
+  /**
+   * 未命中缓存时向微信请求图片的方法.
+   */
+  public interface Loader {
+    /**
+     * 请求图片.
+     *
+     * @return 图片内容
+     * @throws WxErrorException 微信返回错误时抛出，此时不会缓存
+     */
+    byte[] load() throws WxErrorException;
+  }
+
+  /**
+   * 持久化缓存.
+   * 缓存键已经是摘要，实现类可以直接将其用作文件名或Redis键.
+   */
+  public interface Store {
+    /**
+     * 读取图片.
+     *
+     * @param key 缓存键
+     * @return 图片内容，不存在时返回null
+     * @throws IOException 读取失败时抛出
+     */
+    byte[] get(String key) throws IOException;
+
+    /**
+     * 写入图片.
+     *
+     * @param key   缓存键
+     * @param bytes 图片内容
+     * @throws IOException 写入失败时抛出
+     */
+    void put(String key, byte[] bytes) throws IOException;
+  }
+
+  @Data
+  public static class Stats {
+    /**
+     * 堆内缓存命中的次数.
+     */
+    private long memoryHits;
+    /**
+     * 持久化缓存命中的次数.
+     */
+    private long storeHits;
+    /**
+     * 两级缓存均未命中、向微信请求的次数.
+     */
+    private long misses;
+    /**
+     * 等待其他线程加载同一图片的次数.
+     */
+    private long coalesced;
+    /**
+     * 向微信请求失败的次数.
+     */
+    private long loadFailures;
+    /**
+     * 持久化缓存读写失败的次数.
+     */
+    private long storeErrors;
+    private long memoryEntries;
+    private long memoryBytes;
+
+    /**
+     * 命中率，合并等待的请求也计为命中.
+     */
+    public double getHitRate() {
+      long hits = this.memoryHits + this.storeHits + this.coalesced;
+      long total = hits + this.misses;
+      return total == 0 ? 0 : (double) hits / total;
+    }
+  }
+
+}
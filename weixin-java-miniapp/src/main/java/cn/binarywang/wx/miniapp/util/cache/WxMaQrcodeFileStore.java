@@ -0,0 +1,57 @@
+package cn.binarywang.wx.miniapp.util.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <pre>
+ * 基于本地磁盘的小程序码持久化缓存.
+ * 图片按缓存键的前两位分目录保存，先写临时文件再原子重命名，多个进程共享同一目录时不会读到写了一半的文件.
+ * 文件内容只由缓存键决定，不会过期，如需控制磁盘占用，可以随时删除任意文件.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMaQrcodeFileStore implements WxMaQrcodeCache.Store {
+  private final Path directory;
+
+  public WxMaQrcodeFileStore(File directory) {
+    this.directory = directory.toPath();
+  }
+
+  @Override
+  public byte[] get(String key) throws IOException {
+    try {
+      return Files.readAllBytes(this.path(key));
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void put(String key, byte[] bytes) throws IOException {
+    Path target = this.path(key);
+    Files.createDirectories(target.getParent());
+    Path tmp = Files.createTempFile(target.getParent(), key, ".tmp");
+    try {
+      Files.write(tmp, bytes);
+      try {
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private Path path(String key) {
+    return this.directory.resolve(key.substring(0, 2)).resolve(key);
+  }
+
+}
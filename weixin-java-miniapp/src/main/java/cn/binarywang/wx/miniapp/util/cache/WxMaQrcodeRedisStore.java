@@ -0,0 +1,63 @@
+package cn.binarywang.wx.miniapp.util.cache;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <pre>
+ * 基于Redis的小程序码持久化缓存，适用于多个实例共享缓存的场景.
+ * 图片以二进制形式保存，键为 keyPrefix + 缓存键.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMaQrcodeRedisStore implements WxMaQrcodeCache.Store {
+  private static final String DEFAULT_KEY_PREFIX = "wx:ma:qrcode:";
+
+  private final JedisPool jedisPool;
+  private final String keyPrefix;
+  private final int expireSeconds;
+
+  /**
+   * 使用默认的键前缀，且不过期.
+   */
+  public WxMaQrcodeRedisStore(JedisPool jedisPool) {
+    this(jedisPool, DEFAULT_KEY_PREFIX, 0);
+  }
+
+  /**
+   * @param jedisPool     连接池
+   * @param keyPrefix     键前缀
+   * @param expireSeconds 过期秒数，小于等于0时不过期
+   */
+  public WxMaQrcodeRedisStore(JedisPool jedisPool, String keyPrefix, int expireSeconds) {
+    this.jedisPool = jedisPool;
+    this.keyPrefix = keyPrefix;
+    this.expireSeconds = expireSeconds;
+  }
+
+  @Override
+  public byte[] get(String key) {
+    try (Jedis jedis = this.jedisPool.getResource()) {
+      return jedis.get(this.redisKey(key));
+    }
+  }
+
+  @Override
+  public void put(String key, byte[] bytes) {
+    try (Jedis jedis = this.jedisPool.getResource()) {
+      if (this.expireSeconds > 0) {
+        jedis.setex(this.redisKey(key), this.expireSeconds, bytes);
+      } else {
+        jedis.set(this.redisKey(key), bytes);
+      }
+    }
+  }
+
+  private byte[] redisKey(String key) {
+    return (this.keyPrefix + key).getBytes(StandardCharsets.UTF_8);
+  }
+
+}
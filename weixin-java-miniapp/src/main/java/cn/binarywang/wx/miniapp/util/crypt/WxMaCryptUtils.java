@@ -2,19 +2,18 @@ package cn.binarywang.wx.miniapp.util.crypt;
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.security.AlgorithmParameters;
-import java.security.Key;
-import java.security.Security;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
 import java.util.Arrays;
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.codec.binary.Base64;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
 import cn.binarywang.wx.miniapp.config.WxMaConfig;
-import me.chanjar.weixin.common.util.crypto.PKCS7Encoder;
 
 /**
  * @author <a href="https://github.com/binarywang">Binary Wang</a>
@@ -22,6 +21,16 @@ import me.chanjar.weixin.common.util.crypto.PKCS7Encoder;
 public class WxMaCryptUtils extends me.chanjar.weixin.common.util.crypto.WxCryptUtil {
   private static final Charset UTF_8 = StandardCharsets.UTF_8;
 
+  /**
+   * 解密用的Cipher及缓冲区按线程复用，Cipher每次调用时重新init即可.
+   */
+  private static final ThreadLocal<Decryptor> DECRYPTORS = new ThreadLocal<Decryptor>() {
+    @Override
+    protected Decryptor initialValue() {
+      return new Decryptor();
+    }
+  };
+
   public WxMaCryptUtils(WxMaConfig config) {
     this.appidOrCorpid = config.getAppid();
     this.token = config.getToken();
@@ -37,13 +46,7 @@ public class WxMaCryptUtils extends me.chanjar.weixin.common.util.crypto.WxCrypt
    */
   public static String decrypt(String sessionKey, String encryptedData, String ivStr) {
     try {
-      AlgorithmParameters params = AlgorithmParameters.getInstance("AES");
-      params.init(new IvParameterSpec(Base64.decodeBase64(ivStr)));
-
-      Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-      cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Base64.decodeBase64(sessionKey), "AES"), params);
-
-      return new String(PKCS7Encoder.decode(cipher.doFinal(Base64.decodeBase64(encryptedData))), UTF_8);
+      return DECRYPTORS.get().decrypt(sessionKey, encryptedData, ivStr, false);
     } catch (Exception e) {
       throw new RuntimeException("AES解密失败！", e);
     }
@@ -51,33 +54,167 @@ public class WxMaCryptUtils extends me.chanjar.weixin.common.util.crypto.WxCrypt
 
 
   /**
+   * <pre>
    * AES解密.
+   * 与{@link #decrypt(String, String, String)}的区别是：session_key长度不足16的倍数时补0，且严格校验PKCS#7填充.
+   * 之前借助BouncyCastle的AES/CBC/PKCS7Padding实现，AES的块大小为16字节，PKCS#7与JCE自带的PKCS5Padding完全相同，
+   * 现在直接在JCE的基础上校验填充，不再需要注册BouncyCastle.
+   * </pre>
    *
    * @param sessionKey    session_key
    * @param encryptedData 消息密文
    * @param ivStr         iv字符串
    */
   public static String decryptAnotherWay(String sessionKey, String encryptedData, String ivStr) {
-    byte[] keyBytes = Base64.decodeBase64(sessionKey.getBytes(UTF_8));
-
-    int base = 16;
-    if (keyBytes.length % base != 0) {
-      int groups = keyBytes.length / base + (keyBytes.length % base != 0 ? 1 : 0);
-      byte[] temp = new byte[groups * base];
-      Arrays.fill(temp, (byte) 0);
-      System.arraycopy(keyBytes, 0, temp, 0, keyBytes.length);
-      keyBytes = temp;
-    }
-
-    Security.addProvider(new BouncyCastleProvider());
-    Key key = new SecretKeySpec(keyBytes, "AES");
     try {
-      Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding", "BC");
-      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(Base64.decodeBase64(ivStr.getBytes(UTF_8))));
-      return new String(cipher.doFinal(Base64.decodeBase64(encryptedData.getBytes(UTF_8))), UTF_8);
+      return DECRYPTORS.get().decrypt(sessionKey, encryptedData, ivStr, true);
     } catch (Exception e) {
       throw new RuntimeException("AES解密失败！", e);
     }
   }
 
+  /**
+   * 每个线程持有的解密器.
+   */
+  private static class Decryptor {
+    private static final int BLOCK_SIZE = 16;
+    /**
+     * 超过该大小的密文使用临时缓冲区，避免线程长期持有大数组.
+     */
+    private static final int MAX_POOLED_BUFFER = 64 * 1024;
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+      Arrays.fill(BASE64_VALUES, (byte) -1);
+      String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+      for (int i = 0; i < alphabet.length(); i++) {
+        BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+      }
+      // 与commons-codec一致，同时支持URL安全的字符
+      BASE64_VALUES['-'] = 62;
+      BASE64_VALUES['_'] = 63;
+    }
+
+    private final Cipher cipher;
+    private final byte[] key = new byte[64];
+    private final byte[] iv = new byte[64];
+    private byte[] input = new byte[1024];
+    private byte[] output = new byte[1024];
+
+    private Decryptor() {
+      try {
+        this.cipher = Cipher.getInstance("AES/CBC/NoPadding");
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private String decrypt(String sessionKey, String encryptedData, String ivStr, boolean strict)
+      throws GeneralSecurityException {
+      if (maxDecodedLength(sessionKey) > this.key.length) {
+        throw new InvalidKeyException("session_key长度不合法");
+      }
+      if (maxDecodedLength(ivStr) > this.iv.length) {
+        throw new InvalidAlgorithmParameterException("iv长度不合法");
+      }
+
+      int keyLength = decodeBase64(sessionKey, this.key);
+      if (strict && keyLength % BLOCK_SIZE != 0) {
+        int paddedLength = (keyLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+        Arrays.fill(this.key, keyLength, paddedLength, (byte) 0);
+        keyLength = paddedLength;
+      }
+      int ivLength = decodeBase64(ivStr, this.iv);
+
+      int maxLength = maxDecodedLength(encryptedData);
+      byte[] in = this.input;
+      byte[] out = this.output;
+      if (maxLength > in.length) {
+        in = new byte[maxLength];
+        out = new byte[maxLength];
+        if (maxLength <= MAX_POOLED_BUFFER) {
+          this.input = in;
+          this.output = out;
+        }
+      }
+
+      int length = decodeBase64(encryptedData, in);
+      this.cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(this.key, 0, keyLength, "AES"),
+        new IvParameterSpec(this.iv, 0, ivLength));
+      length = this.cipher.doFinal(in, 0, length, out, 0);
+      try {
+        return new String(out, 0, length - padding(out, length, strict), UTF_8);
+      } finally {
+        // 明文中可能有手机号等敏感信息，不在线程的缓冲区中保留
+        Arrays.fill(out, 0, length, (byte) 0);
+      }
+    }
+
+    /**
+     * 宽松模式与{@link me.chanjar.weixin.common.util.crypto.PKCS7Encoder#decode(byte[])}一致，不合法的填充视为没有填充.
+     */
+    private static int padding(byte[] data, int length, boolean strict) throws BadPaddingException {
+      if (length == 0) {
+        throw new BadPaddingException("密文为空");
+      }
+
+      int pad = data[length - 1];
+      if (!strict) {
+        return pad < 1 || pad > 32 ? 0 : pad;
+      }
+
+      if (pad < 1 || pad > BLOCK_SIZE) {
+        throw new BadPaddingException("填充不合法");
+      }
+      for (int i = length - pad; i < length; i++) {
+        if (data[i] != pad) {
+          throw new BadPaddingException("填充不合法");
+        }
+      }
+      return pad;
+    }
+
+    private static int maxDecodedLength(String base64) {
+      return base64.length() / 4 * 3 + 3;
+    }
+
+    /**
+     * 与commons-codec的Base64.decodeBase64一致：忽略不属于Base64的字符，遇到=即结束.
+     *
+     * @return 写入out的字节数
+     */
+    private static int decodeBase64(String base64, byte[] out) {
+      int length = 0;
+      int bits = 0;
+      int count = 0;
+      for (int i = 0; i < base64.length(); i++) {
+        char c = base64.charAt(i);
+        if (c == '=') {
+          break;
+        }
+        int value = c < 128 ? BASE64_VALUES[c] : -1;
+        if (value < 0) {
+          continue;
+        }
+
+        bits = (bits << 6) | value;
+        if (++count == 4) {
+          out[length++] = (byte) (bits >> 16);
+          out[length++] = (byte) (bits >> 8);
+          out[length++] = (byte) bits;
+          bits = 0;
+          count = 0;
+        }
+      }
+
+      if (count == 2) {
+        out[length++] = (byte) (bits >> 4);
+      } else if (count == 3) {
+        out[length++] = (byte) (bits >> 10);
+        out[length++] = (byte) (bits >> 2);
+      }
+      return length;
+    }
+  }
+
 }
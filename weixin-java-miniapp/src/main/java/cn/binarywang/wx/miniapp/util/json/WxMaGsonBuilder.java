@@ -16,6 +16,7 @@ import com.google.gson.GsonBuilder;
  */
 public class WxMaGsonBuilder {
   private static final GsonBuilder INSTANCE = new GsonBuilder();
+  private static final Gson GSON_INSTANCE;
 
   static {
     INSTANCE.disableHtmlEscaping();
@@ -27,10 +28,12 @@ public class WxMaGsonBuilder {
     INSTANCE.registerTypeAdapter(WxMaVisitDistribution.class, new WxMaVisitDistributionGsonAdapter());
     INSTANCE.registerTypeAdapter(WxMaRetainInfo.class, new WxMaRetainInfoGsonAdapter());
     INSTANCE.registerTypeAdapter(WxMaUserPortrait.class, new WxMaUserPortraitGsonAdapter());
+
+    GSON_INSTANCE = INSTANCE.create();
   }
 
   public static Gson create() {
-    return INSTANCE.create();
+    return GSON_INSTANCE;
   }
 
 }
@@ -0,0 +1,128 @@
+package cn.binarywang.wx.miniapp.util.cache;
+
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMaQrcodeCacheTest {
+
+  private static WxMaQrcodeCache.Loader loader(final AtomicInteger loads, final CountDownLatch release) {
+    return new WxMaQrcodeCache.Loader() {
+      @Override
+      public byte[] load() throws WxErrorException {
+        loads.incrementAndGet();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return new byte[100];
+      }
+    };
+  }
+
+  @Test
+  public void testKey() {
+    assertEquals(WxMaQrcodeCache.key("appid", "a", null), WxMaQrcodeCache.key("appid", "a", ""));
+    assertNotEquals(WxMaQrcodeCache.key("appid", "ab", "c"), WxMaQrcodeCache.key("appid", "a", "bc"));
+    assertEquals(WxMaQrcodeCache.key("appid").length(), 64);
+  }
+
+  @Test
+  public void testConcurrentRequestsAreCoalesced() throws Exception {
+    final WxMaQrcodeCache cache = new WxMaQrcodeCache();
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<byte[]>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws Exception {
+            return cache.get("key", loader(loads, release));
+          }
+        }));
+      }
+      Thread.sleep(200);
+      release.countDown();
+
+      byte[] first = futures.get(0).get(5, TimeUnit.SECONDS);
+      for (Future<byte[]> future : futures) {
+        assertSame(future.get(5, TimeUnit.SECONDS), first);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(loads.get(), 1);
+    assertSame(cache.get("key", loader(loads, release)), cache.get("key", loader(loads, release)));
+    assertEquals(loads.get(), 1);
+
+    WxMaQrcodeCache.Stats stats = cache.getStats();
+    assertEquals(stats.getMisses(), 1);
+    assertEquals(stats.getMemoryHits() + stats.getCoalesced(), 9);
+    assertEquals(stats.getMemoryBytes(), 100);
+  }
+
+  @Test
+  public void testFileStore() throws Exception {
+    File directory = Files.createTempDirectory("wxacode").toFile();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(0);
+    String key = WxMaQrcodeCache.key("appid", "scene");
+
+    WxMaQrcodeCache cache = new WxMaQrcodeCache(1024, new WxMaQrcodeFileStore(directory));
+    cache.get(key, loader(loads, release));
+    assertEquals(loads.get(), 1);
+
+    // 新实例的堆内缓存为空，从共享的目录读取
+    cache = new WxMaQrcodeCache(1024, new WxMaQrcodeFileStore(directory));
+    assertEquals(cache.get(key, loader(loads, release)).length, 100);
+    assertEquals(loads.get(), 1);
+    assertEquals(cache.getStats().getStoreHits(), 1);
+    assertEquals(cache.getStats().getMemoryBytes(), 100);
+  }
+
+  @Test
+  public void testErrorIsNotCached() throws Exception {
+    WxMaQrcodeCache cache = new WxMaQrcodeCache();
+    try {
+      cache.get("key", new WxMaQrcodeCache.Loader() {
+        @Override
+        public byte[] load() throws WxErrorException {
+          throw new WxErrorException(WxError.builder().errorCode(41030).build());
+        }
+      });
+      fail("应该抛出异常");
+    } catch (WxErrorException e) {
+      assertEquals(e.getError().getErrorCode(), 41030);
+    }
+
+    AtomicInteger loads = new AtomicInteger();
+    cache.get("key", loader(loads, new CountDownLatch(0)));
+    assertEquals(loads.get(), 1);
+    assertEquals(cache.getStats().getLoadFailures(), 1);
+  }
+
+}
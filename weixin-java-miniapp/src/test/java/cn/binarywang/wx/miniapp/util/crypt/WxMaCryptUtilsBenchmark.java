@@ -0,0 +1,78 @@
+package cn.binarywang.wx.miniapp.util.crypt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParameters;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import me.chanjar.weixin.common.util.crypto.PKCS7Encoder;
+
+/**
+ * <pre>
+ * 解密手机号等开放数据的开销对比，使用{@link WxMaCryptUtilsTest}中的密文.
+ * legacyDecrypt 为之前decrypt的做法，每次创建AlgorithmParameters和Cipher并用commons-codec解码；
+ * legacyDecryptAnotherWay 为之前decryptAnotherWay的做法，每次注册BouncyCastle并使用其PKCS7Padding；
+ * decrypt 与 decryptAnotherWay 为按线程复用Cipher和缓冲区之后的做法.
+ * 加上 -prof gc 参数运行可以同时查看每次调用分配的内存.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WxMaCryptUtilsBenchmark {
+  private static final String SESSION_KEY = "tiihtNczf5v6AKRyjwEUhQ==";
+  private static final String IV = "r7BXXKkLb8qrSNn05n0qiA==";
+  private static final String ENCRYPTED_DATA = "CiyLU1Aw2KjvrjMdj8YKliAjtP4gsMZMQmRzooG2xrDcvSnxIMXFufNstNGTyaGS9uT5geRa0W4oTOb1WT7fJlAC+oNPdbB+3hVbJSRgv+4lGOETKUQz6OYStslQ142dNCuabNPGBzlooOmB231qMM85d2/fV6ChevvXvQP8Hkue1poOFtnEtpyxVLW1zAo6/1Xx1COxFvrc2d7UL/lmHInNlxuacJXwu0fjpXfz/YqYzBIBzD6WUfTIF9GRHpOn/Hz7saL8xz+W//FRAUid1OksQaQx4CMs8LOddcQhULW4ucetDf96JcR3g0gfRK4PC7E/r7Z6xNrXd2UIeorGj5Ef7b1pJAYB6Y5anaHqZ9J6nKEBvB4DnNLIVWSgARns/8wR2SiRS7MNACwTyrGvt9ts8p12PKFdlqYTopNHR1Vf7XjfhQlVsAJdNiKdYmYVoKlaRv85IfVunYzO0IKXsyl7JCUjCpoG20f0a04COwfneQAGGwd5oa+T8yO5hzuyDb/XcxxmK01EpqOyuxINew==";
+
+  @Benchmark
+  public String legacyDecrypt() throws Exception {
+    AlgorithmParameters params = AlgorithmParameters.getInstance("AES");
+    params.init(new IvParameterSpec(Base64.decodeBase64(IV)));
+
+    Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
+    cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Base64.decodeBase64(SESSION_KEY), "AES"), params);
+
+    return new String(PKCS7Encoder.decode(cipher.doFinal(Base64.decodeBase64(ENCRYPTED_DATA))), StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String legacyDecryptAnotherWay() throws Exception {
+    Security.addProvider(new BouncyCastleProvider());
+    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding", "BC");
+    cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(Base64.decodeBase64(SESSION_KEY.getBytes(StandardCharsets.UTF_8)), "AES"),
+      new IvParameterSpec(Base64.decodeBase64(IV.getBytes(StandardCharsets.UTF_8))));
+    return new String(cipher.doFinal(Base64.decodeBase64(ENCRYPTED_DATA.getBytes(StandardCharsets.UTF_8))), StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String decrypt() {
+    return WxMaCryptUtils.decrypt(SESSION_KEY, ENCRYPTED_DATA, IV);
+  }
+
+  @Benchmark
+  public String decryptAnotherWay() {
+    return WxMaCryptUtils.decryptAnotherWay(SESSION_KEY, ENCRYPTED_DATA, IV);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+      .include(WxMaCryptUtilsBenchmark.class.getSimpleName())
+      .build())
+      .run();
+  }
+
+}
@@ -1,9 +1,22 @@
 package cn.binarywang.wx.miniapp.util.crypt;
 
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
 import org.testng.annotations.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 
 /**
  * <pre>
@@ -32,4 +45,83 @@ public class WxMaCryptUtilsTest {
     assertThat(WxMaCryptUtils.decrypt(sessionKey, encryptedData, ivStr))
       .isEqualTo(WxMaCryptUtils.decryptAnotherWay(sessionKey, encryptedData, ivStr));
   }
+
+  private static String encrypt(byte[] key, byte[] iv, String data, String padding) throws Exception {
+    Cipher cipher = Cipher.getInstance("AES/CBC/" + padding);
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+    return Base64.encodeBase64String(cipher.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testDecryptLargeThenSmall() throws Exception {
+    byte[] key = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    byte[] iv = "fedcba9876543210".getBytes(StandardCharsets.UTF_8);
+    String sessionKey = Base64.encodeBase64String(key);
+    String ivStr = Base64.encodeBase64String(iv);
+
+    StringBuilder large = new StringBuilder("{\"phoneNumber\":\"13800138000\",\"watermark\":\"");
+    for (int i = 0; i < 10000; i++) {
+      large.append("水印");
+    }
+    large.append("\"}");
+    // 超过线程缓冲区大小的密文之后，再解密较短的密文，结果不应受之前缓冲区内容的影响
+    for (String data : new String[]{large.toString(), "{\"phoneNumber\":\"13800138000\"}", "短"}) {
+      String encryptedData = encrypt(key, iv, data, "PKCS5Padding");
+      assertThat(WxMaCryptUtils.decrypt(sessionKey, encryptedData, ivStr)).isEqualTo(data);
+      assertThat(WxMaCryptUtils.decryptAnotherWay(sessionKey, encryptedData, ivStr)).isEqualTo(data);
+    }
+
+    // 与commons-codec一致，忽略换行等非Base64字符
+    String encryptedData = Base64.encodeBase64String(Base64.decodeBase64(encrypt(key, iv, "换行", "PKCS5Padding")))
+      .replaceAll("(.{8})", "$1\r\n");
+    assertThat(WxMaCryptUtils.decrypt(sessionKey, encryptedData, ivStr)).isEqualTo("换行");
+  }
+
+  @Test
+  public void testDecryptInvalidPadding() throws Exception {
+    byte[] key = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    byte[] iv = "fedcba9876543210".getBytes(StandardCharsets.UTF_8);
+    // 明文恰好一个块且末尾不是合法填充
+    String encryptedData = encrypt(key, iv, "0123456789abcde\u0003", "NoPadding");
+
+    assertThat(WxMaCryptUtils.decrypt(Base64.encodeBase64String(key), encryptedData, Base64.encodeBase64String(iv)))
+      .isEqualTo("0123456789abc");
+    try {
+      WxMaCryptUtils.decryptAnotherWay(Base64.encodeBase64String(key), encryptedData, Base64.encodeBase64String(iv));
+      fail("应该抛出异常");
+    } catch (RuntimeException e) {
+      assertThat(e).hasMessage("AES解密失败！");
+    }
+  }
+
+  @Test
+  public void testDecryptConcurrently() throws Exception {
+    final String sessionKey = "tiihtNczf5v6AKRyjwEUhQ==";
+    final String ivStr = "r7BXXKkLb8qrSNn05n0qiA==";
+    final String encryptedData = "CiyLU1Aw2KjvrjMdj8YKliAjtP4gsMZMQmRzooG2xrDcvSnxIMXFufNstNGTyaGS9uT5geRa0W4oTOb1WT7fJlAC+oNPdbB+3hVbJSRgv+4lGOETKUQz6OYStslQ142dNCuabNPGBzlooOmB231qMM85d2/fV6ChevvXvQP8Hkue1poOFtnEtpyxVLW1zAo6/1Xx1COxFvrc2d7UL/lmHInNlxuacJXwu0fjpXfz/YqYzBIBzD6WUfTIF9GRHpOn/Hz7saL8xz+W//FRAUid1OksQaQx4CMs8LOddcQhULW4ucetDf96JcR3g0gfRK4PC7E/r7Z6xNrXd2UIeorGj5Ef7b1pJAYB6Y5anaHqZ9J6nKEBvB4DnNLIVWSgARns/8wR2SiRS7MNACwTyrGvt9ts8p12PKFdlqYTopNHR1Vf7XjfhQlVsAJdNiKdYmYVoKlaRv85IfVunYzO0IKXsyl7JCUjCpoG20f0a04COwfneQAGGwd5oa+T8yO5hzuyDb/XcxxmK01EpqOyuxINew==";
+    final String expected = WxMaCryptUtils.decrypt(sessionKey, encryptedData, ivStr);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            for (int j = 0; j < 500; j++) {
+              if (!expected.equals(WxMaCryptUtils.decrypt(sessionKey, encryptedData, ivStr))) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertThat(future.get()).isTrue();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 }
@@ -0,0 +1,119 @@
+package me.chanjar.weixin.mp.api;
+
+import me.chanjar.weixin.mp.bean.WxMpUserQuery;
+import me.chanjar.weixin.mp.bean.kefu.WxMpKefuMessage;
+import me.chanjar.weixin.mp.bean.result.WxMpUser;
+import me.chanjar.weixin.mp.bean.result.WxMpUserList;
+import me.chanjar.weixin.mp.bean.template.WxMpTemplateMessage;
+import me.chanjar.weixin.mp.enums.WxMpApiUrl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <pre>
+ * 微信公众号异步API.
+ * 所有方法都不会阻塞调用线程，返回的CompletableFuture在请求完成后由http客户端的回调线程完成，
+ * 调用失败时以{@link me.chanjar.weixin.common.error.WxErrorException}异常完成.
+ * 调用方法时即确定所使用的公众号配置，多公众号时请在调用前通过{@link WxMpService#switchover(String)}切换.
+ * 目前支持模板消息、客服消息及用户管理中调用量最大的接口，其他接口可以通过{@link #get}/{@link #post}调用.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public interface WxMpAsyncService {
+  /**
+   * 获取access_token，未过期时直接返回，否则异步刷新，同一公众号同时只会有一个刷新请求.
+   *
+   * @param forceRefresh 是否强制刷新
+   * @return access token
+   */
+  CompletableFuture<String> getAccessToken(boolean forceRefresh);
+
+  /**
+   * 异步执行GET请求，会自动附带access_token.
+   *
+   * @param url        接口地址
+   * @param queryParam 参数
+   * @return 接口响应字符串
+   */
+  CompletableFuture<String> get(WxMpApiUrl url, String queryParam);
+
+  /**
+   * 异步执行POST请求，会自动附带access_token.
+   *
+   * @param url      接口地址
+   * @param postData 请求body字符串
+   * @return 接口响应字符串
+   */
+  CompletableFuture<String> post(WxMpApiUrl url, String postData);
+
+  /**
+   * 发送模板消息.
+   *
+   * @param templateMessage 模板消息
+   * @return 消息Id
+   * @see WxMpTemplateMsgService#sendTemplateMsg(WxMpTemplateMessage)
+   */
+  CompletableFuture<String> sendTemplateMsg(WxMpTemplateMessage templateMessage);
+
+  /**
+   * 发送客服消息.
+   *
+   * @param message 客服消息
+   * @return 是否发送成功
+   * @see WxMpKefuService#sendKefuMessage(WxMpKefuMessage)
+   */
+  CompletableFuture<Boolean> sendKefuMessage(WxMpKefuMessage message);
+
+  /**
+   * 获取用户基本信息.
+   *
+   * @param openid 用户openid
+   * @param lang   语言，zh_CN 简体(默认)，zh_TW 繁体，en 英语
+   * @return 用户信息
+   * @see WxMpUserService#userInfo(String, String)
+   */
+  CompletableFuture<WxMpUser> userInfo(String openid, String lang);
+
+  /**
+   * 批量获取用户基本信息.
+   *
+   * @param openidList 用户openid列表，最多支持一次拉取100条
+   * @return 用户信息列表
+   * @see WxMpUserService#userInfoList(List)
+   */
+  CompletableFuture<List<WxMpUser>> userInfoList(List<String> openidList);
+
+  /**
+   * 批量获取用户基本信息.
+   *
+   * @param userQuery 查询条件
+   * @return 用户信息列表
+   * @see WxMpUserService#userInfoList(WxMpUserQuery)
+   */
+  CompletableFuture<List<WxMpUser>> userInfoList(WxMpUserQuery userQuery);
+
+  /**
+   * 获取用户列表.
+   *
+   * @param nextOpenid 可选，第一个拉取的OPENID，null为从头开始拉取
+   * @return 用户openid列表
+   * @see WxMpUserService#userList(String)
+   */
+  CompletableFuture<WxMpUserList> userList(String nextOpenid);
+
+  /**
+   * <pre>
+   * 返回微信系统繁忙（-1）时不自动重试的异步API，与本实例共用公众号配置、http客户端及access token刷新，
+   * access token失效时仍会刷新后重新发送.
+   * 供自行控制重试的调用方使用，例如{@link WxMpMessageDispatchers}创建的调度器.
+   * 默认返回本身，适用于本身不会重试系统繁忙的实现.
+   * </pre>
+   *
+   * @return 不自动重试系统繁忙的异步API
+   */
+  default WxMpAsyncService withoutBusyRetry() {
+    return this;
+  }
+}
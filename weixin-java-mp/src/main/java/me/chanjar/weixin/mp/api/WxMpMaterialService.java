@@ -5,6 +5,8 @@ import java.io.InputStream;
 
 import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
 import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 import me.chanjar.weixin.mp.bean.material.WxMediaImgUploadResult;
 import me.chanjar.weixin.mp.bean.material.WxMpMaterial;
 import me.chanjar.weixin.mp.bean.material.WxMpMaterialArticleUpdate;
@@ -59,6 +61,7 @@ public interface WxMpMaterialService {
    * <pre>
    * 新增临时素材
    * 本接口即为原“上传多媒体文件”接口。
+   * 输入流边读边上传，只能发送一次，access token失效或者微信系统繁忙时直接抛出错误，不会自动重试.
    *
    * 详情请见: <a href="http://mp.weixin.qq.com/wiki?t=resource/res_main&id=mp1444738726&token=&lang=zh_CN">新增临时素材</a>
    * 接口url格式：https://api.weixin.qq.com/cgi-bin/media/upload?access_token=ACCESS_TOKEN&type=TYPE
@@ -72,6 +75,22 @@ public interface WxMpMaterialService {
    */
   WxMediaUploadResult mediaUpload(String mediaType, String fileType, InputStream inputStream) throws WxErrorException;
 
+  /**
+   * <pre>
+   * 新增临时素材
+   * 数据来源可以是文件、输入流、通道或者字节数组的一段，数据直接写入请求体，不会先保存为临时文件.
+   * 输入流和通道只能发送一次，失败时直接抛出错误，不会自动重试.
+   *
+   * 详情请见: <a href="http://mp.weixin.qq.com/wiki?t=resource/res_main&id=mp1444738726&token=&lang=zh_CN">新增临时素材</a>
+   * 接口url格式：https://api.weixin.qq.com/cgi-bin/media/upload?access_token=ACCESS_TOKEN&type=TYPE
+   * </pre>
+   *
+   * @param mediaType 媒体类型, 请看{@link me.chanjar.weixin.common.api.WxConsts}
+   * @param source    数据来源
+   * @throws WxErrorException
+   */
+  WxMediaUploadResult mediaUpload(String mediaType, MediaUploadSource source) throws WxErrorException;
+
   /**
    * <pre>
    * 获取临时素材
@@ -88,6 +107,20 @@ public interface WxMpMaterialService {
    */
   File mediaDownload(String mediaId) throws WxErrorException;
 
+  /**
+   * <pre>
+   * 以流的方式获取临时素材，与{@link #mediaDownload(String)}相同，但不会写入本地临时文件.
+   * 返回的流可以直接读取，或者通过{@link MediaDownloadStream#writeTo(java.io.OutputStream)}
+   * 转存到其他输出流（如对象存储的上传流）中，文件名和内容类型可以直接从返回的流中获取.
+   * 流读取完毕或关闭后才会释放http连接，使用完毕后必须关闭.
+   * </pre>
+   *
+   * @param mediaId 媒体文件Id
+   * @return 媒体文件内容的流
+   * @throws WxErrorException
+   */
+  MediaDownloadStream mediaDownloadStream(String mediaId) throws WxErrorException;
+
   /**
    * <pre>
    * 获取高清语音素材
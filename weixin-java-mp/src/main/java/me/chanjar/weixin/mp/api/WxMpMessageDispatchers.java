@@ -0,0 +1,84 @@
+package me.chanjar.weixin.mp.api;
+
+import me.chanjar.weixin.common.api.WxMessageDispatcher;
+import me.chanjar.weixin.mp.bean.subscribe.WxMpSubscribeMessage;
+import me.chanjar.weixin.mp.bean.template.WxMpTemplateMessage;
+import me.chanjar.weixin.mp.util.WxMpConfigStorageHolder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static me.chanjar.weixin.mp.enums.WxMpApiUrl.SubscribeMsg.SEND_MESSAGE_URL;
+
+/**
+ * <pre>
+ * 公众号模板消息、一次性订阅消息的批量发送调度器.
+ * 消息通过{@link WxMpAsyncService}异步发送，不占用业务线程，调度器的用法见{@link WxMessageDispatcher}.
+ * 调用dispatch时传入的账号标识即为多公众号配置时{@link WxMpService#switchover(String)}所用的mpId，
+ * 发送时会临时切换到该公众号，为null时使用调用线程当前的公众号.
+ * 系统繁忙（-1）等错误的重试由调度器负责，发送时使用{@link WxMpAsyncService#withoutBusyRetry()}，
+ * 避免异步API内部再次重试：那样一次-1最多会变成调度器重试次数乘以异步API重试次数的多次发送，
+ * 而且内部重试不受每个账号的限速控制，退避期间还会一直占用进行中的名额.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMpMessageDispatchers {
+  private WxMpMessageDispatchers() {
+  }
+
+  /**
+   * 创建模板消息调度器，发送结果为消息的msgid.
+   *
+   * @param wxMpService  公众号服务，用于切换公众号
+   * @param asyncService 公众号异步API
+   * @return 调度器
+   */
+  public static WxMessageDispatcher<WxMpTemplateMessage> templateMsg(final WxMpService wxMpService,
+                                                                     WxMpAsyncService asyncService) {
+    final WxMpAsyncService sender = asyncService.withoutBusyRetry();
+    return new WxMessageDispatcher<>((mpId, message) ->
+      switchover(wxMpService, mpId, () -> sender.sendTemplateMsg(message)));
+  }
+
+  /**
+   * 创建一次性订阅消息调度器，发送结果为null.
+   *
+   * @param wxMpService  公众号服务，用于切换公众号
+   * @param asyncService 公众号异步API
+   * @return 调度器
+   */
+  public static WxMessageDispatcher<WxMpSubscribeMessage> subscribeMsg(final WxMpService wxMpService,
+                                                                       WxMpAsyncService asyncService) {
+    final WxMpAsyncService sender = asyncService.withoutBusyRetry();
+    return new WxMessageDispatcher<>((mpId, message) -> switchover(wxMpService, mpId, () -> {
+      if (message.getTemplateId() == null) {
+        message.setTemplateId(wxMpService.getWxMpConfigStorage().getTemplateId());
+      }
+      return sender.post(SEND_MESSAGE_URL, message.toJson()).thenApply(responseContent -> null);
+    }));
+  }
+
+  /**
+   * 切换到指定公众号发起请求，异步API在发起请求时即确定所用的公众号配置，因此发起后即可切换回原来的公众号.
+   */
+  private static CompletableFuture<String> switchover(WxMpService wxMpService, String mpId,
+                                                      Supplier<CompletableFuture<String>> call) {
+    if (mpId == null) {
+      return call.get();
+    }
+
+    String previous = WxMpConfigStorageHolder.get();
+    try {
+      if (!wxMpService.switchover(mpId)) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        result.completeExceptionally(new IllegalArgumentException("无法找到对应【" + mpId + "】的公众号配置信息"));
+        return result;
+      }
+      return call.get();
+    } finally {
+      WxMpConfigStorageHolder.set(previous);
+    }
+  }
+
+}
@@ -15,7 +15,8 @@ import org.slf4j.LoggerFactory;
 
 import me.chanjar.weixin.common.api.WxErrorExceptionHandler;
 import me.chanjar.weixin.common.api.WxMessageDuplicateChecker;
-import me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker;
+import me.chanjar.weixin.common.api.WxMessageRouterRuleIndex;
+import me.chanjar.weixin.common.api.WxMessageTimeWheelDuplicateChecker;
 import me.chanjar.weixin.common.session.InternalSession;
 import me.chanjar.weixin.common.session.InternalSessionManager;
 import me.chanjar.weixin.common.session.StandardSessionManager;
@@ -57,6 +58,11 @@ public class WxMpMessageRouter {
   protected final Logger log = LoggerFactory.getLogger(WxMpMessageRouter.class);
   private final List<WxMpMessageRouterRule> rules = new ArrayList<>();
 
+  /**
+   * 规则索引，规则发生变化后在下次路由时重建.
+   */
+  private volatile WxMessageRouterRuleIndex<WxMpMessageRouterRule> ruleIndex;
+
   private final WxMpService wxMpService;
 
   private ExecutorService executorService;
@@ -70,7 +76,7 @@ public class WxMpMessageRouter {
   public WxMpMessageRouter(WxMpService wxMpService) {
     this.wxMpService = wxMpService;
     this.executorService = Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE);
-    this.messageDuplicateChecker = new WxMessageInMemoryDuplicateChecker();
+    this.messageDuplicateChecker = new WxMessageTimeWheelDuplicateChecker();
     this.sessionManager = new StandardSessionManager();
     this.exceptionHandler = new LogExceptionHandler();
   }
@@ -81,7 +87,7 @@ public class WxMpMessageRouter {
   public WxMpMessageRouter(WxMpService wxMpService, ExecutorService executorService) {
     this.wxMpService = wxMpService;
     this.executorService = executorService;
-    this.messageDuplicateChecker = new WxMessageInMemoryDuplicateChecker();
+    this.messageDuplicateChecker = new WxMessageTimeWheelDuplicateChecker();
     this.sessionManager = new StandardSessionManager();
     this.exceptionHandler = new LogExceptionHandler();
   }
@@ -107,7 +113,7 @@ public class WxMpMessageRouter {
   /**
    * <pre>
    * 设置自定义的 {@link me.chanjar.weixin.common.api.WxMessageDuplicateChecker}
-   * 如果不调用该方法，默认使用 {@link me.chanjar.weixin.common.api.WxMessageInMemoryDuplicateChecker}
+   * 如果不调用该方法，默认使用 {@link me.chanjar.weixin.common.api.WxMessageTimeWheelDuplicateChecker}
    * </pre>
    */
   public void setMessageDuplicateChecker(WxMessageDuplicateChecker messageDuplicateChecker) {
@@ -138,6 +144,25 @@ public class WxMpMessageRouter {
     return this.rules;
   }
 
+  /**
+   * 规则的匹配条件发生变化时调用，使规则索引失效.
+   */
+  void ruleChanged() {
+    this.ruleIndex = null;
+  }
+
+  private WxMessageRouterRuleIndex<WxMpMessageRouterRule> getRuleIndex() {
+    WxMessageRouterRuleIndex<WxMpMessageRouterRule> index = this.ruleIndex;
+    if (index == null || index.size() != this.rules.size()) {
+      index = new WxMessageRouterRuleIndex<>(4);
+      for (WxMpMessageRouterRule rule : this.rules) {
+        index.add(rule, rule.indexKeys());
+      }
+      this.ruleIndex = index;
+    }
+    return index;
+  }
+
   /**
    * 开始一个新的Route规则.
    */
@@ -165,17 +190,8 @@ public class WxMpMessageRouter {
       return null;
     }
 
-    final List<WxMpMessageRouterRule> matchRules = new ArrayList<>();
     // 收集匹配的规则
-    for (final WxMpMessageRouterRule rule : this.rules) {
-      if (rule.test(wxMessage)) {
-        matchRules.add(rule);
-        if (!rule.isReEnter()) {
-          break;
-        }
-      }
-    }
-
+    final List<WxMpMessageRouterRule> matchRules = matchRules(wxMessage);
     if (matchRules.size() == 0) {
       return null;
     }
@@ -224,6 +240,28 @@ public class WxMpMessageRouter {
     return res;
   }
 
+  /**
+   * 按照注册顺序收集匹配消息的规则，遇到第一个不再进入其他规则的规则时停止.
+   */
+  List<WxMpMessageRouterRule> matchRules(WxMpXmlMessage wxMessage) {
+    List<WxMpMessageRouterRule> matchRules = new ArrayList<>();
+    // 只需检查索引中msgType、event、eventKey及content可能匹配的规则
+    List<WxMpMessageRouterRule> candidates = getRuleIndex().candidates(
+      WxMessageRouterRuleIndex.ignoreCaseKey(wxMessage.getMsgType()),
+      WxMessageRouterRuleIndex.ignoreCaseKey(wxMessage.getEvent()),
+      WxMessageRouterRuleIndex.ignoreCaseKey(wxMessage.getEventKey()),
+      StringUtils.trimToNull(wxMessage.getContent()));
+    for (WxMpMessageRouterRule rule : candidates) {
+      if (rule.test(wxMessage)) {
+        matchRules.add(rule);
+        if (!rule.isReEnter()) {
+          break;
+        }
+      }
+    }
+    return matchRules;
+  }
+
   public WxMpXmlOutMessage route(final WxMpXmlMessage wxMessage) {
     return this.route(wxMessage, new HashMap<String, Object>(2));
   }
@@ -1,6 +1,7 @@
 package me.chanjar.weixin.mp.api;
 
 import me.chanjar.weixin.common.api.WxErrorExceptionHandler;
+import me.chanjar.weixin.common.api.WxMessageRouterRuleIndex;
 import me.chanjar.weixin.common.error.WxErrorException;
 import me.chanjar.weixin.common.session.WxSessionManager;
 import me.chanjar.weixin.mp.bean.message.WxMpXmlMessage;
@@ -29,10 +30,14 @@ public class WxMpMessageRouterRule {
 
   private String eventKeyRegex;
 
+  private Pattern eventKeyPattern;
+
   private String content;
 
   private String rContent;
 
+  private Pattern rContentPattern;
+
   private WxMpMessageMatcher matcher;
 
   private boolean reEnter = false;
@@ -58,6 +63,7 @@ public class WxMpMessageRouterRule {
    */
   public WxMpMessageRouterRule msgType(String msgType) {
     this.msgType = msgType;
+    this.ruleChanged();
     return this;
   }
 
@@ -66,6 +72,7 @@ public class WxMpMessageRouterRule {
    */
   public WxMpMessageRouterRule event(String event) {
     this.event = event;
+    this.ruleChanged();
     return this;
   }
 
@@ -74,6 +81,7 @@ public class WxMpMessageRouterRule {
    */
   public WxMpMessageRouterRule eventKey(String eventKey) {
     this.eventKey = eventKey;
+    this.ruleChanged();
     return this;
   }
 
@@ -82,6 +90,7 @@ public class WxMpMessageRouterRule {
    */
   public WxMpMessageRouterRule eventKeyRegex(String regex) {
     this.eventKeyRegex = regex;
+    this.eventKeyPattern = compile(regex);
     return this;
   }
 
@@ -90,6 +99,7 @@ public class WxMpMessageRouterRule {
    */
   public WxMpMessageRouterRule content(String content) {
     this.content = content;
+    this.ruleChanged();
     return this;
   }
 
@@ -98,6 +108,7 @@ public class WxMpMessageRouterRule {
    */
   public WxMpMessageRouterRule rContent(String regex) {
     this.rContent = regex;
+    this.rContentPattern = compile(regex);
     return this;
   }
 
@@ -187,16 +198,38 @@ public class WxMpMessageRouterRule {
         &&
         (this.eventKey == null || this.eventKey.equalsIgnoreCase(wxMessage.getEventKey()))
         &&
-        (this.eventKeyRegex == null || Pattern.matches(this.eventKeyRegex, StringUtils.trimToEmpty(wxMessage.getEventKey())))
+        (this.eventKeyPattern == null || this.eventKeyPattern.matcher(StringUtils.trimToEmpty(wxMessage.getEventKey())).matches())
         &&
         (this.content == null || this.content.equals(StringUtils.trimToNull(wxMessage.getContent())))
         &&
-        (this.rContent == null || Pattern.matches(this.rContent, StringUtils.trimToEmpty(wxMessage.getContent())))
+        (this.rContentPattern == null || this.rContentPattern.matcher(StringUtils.trimToEmpty(wxMessage.getContent())).matches())
         &&
         (this.matcher == null || this.matcher.match(wxMessage))
       ;
   }
 
+  /**
+   * 规则在路由索引各维度上要求精确匹配的值，与{@link WxMpMessageRouter}中消息的取值一一对应.
+   */
+  String[] indexKeys() {
+    return new String[]{
+      WxMessageRouterRuleIndex.ignoreCaseKey(this.msgType),
+      WxMessageRouterRuleIndex.ignoreCaseKey(this.event),
+      WxMessageRouterRuleIndex.ignoreCaseKey(this.eventKey),
+      this.content
+    };
+  }
+
+  private static Pattern compile(String regex) {
+    return regex == null ? null : Pattern.compile(regex);
+  }
+
+  private void ruleChanged() {
+    if (this.routerBuilder != null) {
+      this.routerBuilder.ruleChanged();
+    }
+  }
+
   /**
    * 处理微信推送过来的消息
    *
@@ -264,6 +297,7 @@ public class WxMpMessageRouterRule {
 
   public void setMsgType(String msgType) {
     this.msgType = msgType;
+    this.ruleChanged();
   }
 
   public String getEvent() {
@@ -272,6 +306,7 @@ public class WxMpMessageRouterRule {
 
   public void setEvent(String event) {
     this.event = event;
+    this.ruleChanged();
   }
 
   public String getEventKey() {
@@ -280,6 +315,7 @@ public class WxMpMessageRouterRule {
 
   public void setEventKey(String eventKey) {
     this.eventKey = eventKey;
+    this.ruleChanged();
   }
 
   public String getContent() {
@@ -288,6 +324,7 @@ public class WxMpMessageRouterRule {
 
   public void setContent(String content) {
     this.content = content;
+    this.ruleChanged();
   }
 
   public String getrContent() {
@@ -296,6 +333,7 @@ public class WxMpMessageRouterRule {
 
   public void setrContent(String rContent) {
     this.rContent = rContent;
+    this.rContentPattern = compile(rContent);
   }
 
   public WxMpMessageMatcher getMatcher() {
@@ -0,0 +1,381 @@
+package me.chanjar.weixin.mp.api;
+
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.mp.bean.WxMpUserQuery;
+import me.chanjar.weixin.mp.bean.result.WxMpUser;
+import me.chanjar.weixin.mp.bean.result.WxMpUserList;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * <pre>
+ * 公众号关注者信息批量导出器.
+ * 按页拉取关注者openid列表（每页最多10000个），再按每100个一组并发调用批量获取用户基本信息接口，
+ * 并将获取到的用户信息按照openid列表的顺序逐个交给调用方处理：
+ * 1. 下一页openid列表在处理当前页时提前拉取，批量获取用户信息的请求最多同时进行concurrency个，各页之间不会停顿等待；
+ * 2. 可以限制每秒批量获取用户信息的请求数，遇到系统繁忙（-1）或者分钟级频率限制（45011）时等待后重试；
+ * 3. access token的获取及过期刷新由公众号服务统一处理；
+ * 4. 每处理完一页，会通过检查点回调告知该页最后一个openid，中断后以它作为nextOpenid重新导出即可从下一页继续；
+ * 5. 导出过程中可以通过{@link #getStats()}获取进度和吞吐量.
+ *
+ * 用户信息的处理回调及检查点回调都在调用{@link #export(String, Consumer, Consumer)}的线程中执行，无需考虑线程安全.
+ * 同一个导出器同一时间只能执行一个导出任务.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Slf4j
+public class WxMpUserExporter {
+  /**
+   * 批量获取用户基本信息接口一次最多获取的用户数.
+   */
+  private static final int BATCH_SIZE = 100;
+
+  private final WxMpService wxMpService;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  private int concurrency = 4;
+  private double permitsPerSecond;
+  private String lang;
+  private int maxRetries = 3;
+  private long retryDelayMillis = 1000L;
+  private Set<Integer> retryableErrorCodes = new HashSet<>(Arrays.asList(-1, 45011));
+
+  private volatile Progress progress = new Progress(null);
+
+  public WxMpUserExporter(WxMpService wxMpService) {
+    this.wxMpService = wxMpService;
+  }
+
+  /**
+   * @param concurrency 同时进行的批量获取用户信息请求数，默认为4
+   */
+  public void setConcurrency(int concurrency) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("并发数必须大于0");
+    }
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * @param permitsPerSecond 每秒最多发起的批量获取用户信息请求数，小于等于0时不限制（默认）
+   */
+  public void setPermitsPerSecond(double permitsPerSecond) {
+    this.permitsPerSecond = permitsPerSecond;
+  }
+
+  /**
+   * @param lang 返回用户信息的语言，zh_CN 简体(默认)，zh_TW 繁体，en 英语
+   */
+  public void setLang(String lang) {
+    this.lang = lang;
+  }
+
+  /**
+   * @param maxRetries 单个请求遇到可重试错误时的最大重试次数，默认为3
+   */
+  public void setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+  }
+
+  /**
+   * @param retryDelayMillis 重试前的等待时间（毫秒），之后每次重试翻倍，默认为1秒
+   */
+  public void setRetryDelayMillis(long retryDelayMillis) {
+    this.retryDelayMillis = retryDelayMillis;
+  }
+
+  /**
+   * @param retryableErrorCodes 需要重试的错误码，默认为-1（系统繁忙）和45011（频率限制）
+   */
+  public void setRetryableErrorCodes(Set<Integer> retryableErrorCodes) {
+    this.retryableErrorCodes = new HashSet<>(retryableErrorCodes);
+  }
+
+  /**
+   * 从头开始导出所有关注者的信息.
+   *
+   * @param consumer 用户信息的处理回调
+   * @return 导出结束时的统计信息
+   * @throws WxErrorException 请求出错且重试后仍然失败
+   */
+  public Stats export(Consumer<WxMpUser> consumer) throws WxErrorException {
+    return this.export(null, consumer, null);
+  }
+
+  /**
+   * 导出关注者的信息.
+   *
+   * @param nextOpenid 从该openid之后开始导出，为null时从头开始，断点续传时传入最近一次检查点回调得到的openid
+   * @param consumer   用户信息的处理回调
+   * @param checkpoint 检查点回调，每处理完一页后以该页最后一个openid调用，可以为null
+   * @return 导出结束时的统计信息
+   * @throws WxErrorException 请求出错且重试后仍然失败
+   */
+  public Stats export(String nextOpenid, Consumer<WxMpUser> consumer, Consumer<String> checkpoint)
+    throws WxErrorException {
+    if (!this.running.compareAndSet(false, true)) {
+      throw new IllegalStateException("已有导出任务正在执行");
+    }
+
+    final Progress current = new Progress(nextOpenid);
+    this.progress = current;
+    final RateLimiter rateLimiter = this.permitsPerSecond > 0 ? RateLimiter.create(this.permitsPerSecond) : null;
+    final AtomicInteger threadNumber = new AtomicInteger();
+    // 多出的一个线程用于提前拉取下一页openid列表
+    ExecutorService executor = Executors.newFixedThreadPool(this.concurrency + 1, r -> {
+      Thread thread = new Thread(r, "WxMpUserExporter-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    ArrayDeque<Batch> inflight = new ArrayDeque<>();
+    try {
+      Future<WxMpUserList> nextPage = executor.submit(() -> this.fetchPage(nextOpenid, current));
+      while (nextPage != null) {
+        WxMpUserList page = await(nextPage);
+        List<String> openids = page.getOpenids() == null ? Collections.emptyList() : page.getOpenids();
+        current.pages.incrementAndGet();
+        if (page.getTotal() >= 0) {
+          current.total = page.getTotal();
+        }
+        if (openids.isEmpty()) {
+          break;
+        }
+
+        final String pageNextOpenid = StringUtils.isNotBlank(page.getNextOpenid()) ? page.getNextOpenid()
+          : openids.get(openids.size() - 1);
+        nextPage = StringUtils.isBlank(page.getNextOpenid()) ? null
+          : executor.submit(() -> this.fetchPage(pageNextOpenid, current));
+
+        for (int from = 0; from < openids.size(); from += BATCH_SIZE) {
+          while (inflight.size() >= this.concurrency) {
+            this.drain(inflight.poll(), consumer, checkpoint, current);
+          }
+
+          final List<String> chunk = openids.subList(from, Math.min(from + BATCH_SIZE, openids.size()));
+          Future<List<WxMpUser>> users = executor.submit(() -> this.fetchUsers(chunk, rateLimiter, current));
+          boolean lastOfPage = from + BATCH_SIZE >= openids.size();
+          inflight.add(new Batch(users, lastOfPage ? pageNextOpenid : null));
+        }
+      }
+
+      while (!inflight.isEmpty()) {
+        this.drain(inflight.poll(), consumer, checkpoint, current);
+      }
+
+      current.finishTime = System.currentTimeMillis();
+      return current.toStats();
+    } finally {
+      executor.shutdownNow();
+      if (current.finishTime == 0) {
+        current.finishTime = System.currentTimeMillis();
+      }
+      this.running.set(false);
+    }
+  }
+
+  /**
+   * 获取当前（或最近一次）导出任务的统计信息.
+   */
+  public Stats getStats() {
+    return this.progress.toStats();
+  }
+
+  private void drain(Batch batch, Consumer<WxMpUser> consumer, Consumer<String> checkpoint, Progress current)
+    throws WxErrorException {
+    for (WxMpUser user : await(batch.users)) {
+      consumer.accept(user);
+      current.users.incrementAndGet();
+    }
+
+    if (batch.checkpoint != null) {
+      current.checkpoint = batch.checkpoint;
+      if (checkpoint != null) {
+        checkpoint.accept(batch.checkpoint);
+      }
+    }
+  }
+
+  private WxMpUserList fetchPage(String nextOpenid, Progress current) throws WxErrorException {
+    return this.withRetry(() -> this.wxMpService.getUserService().userList(nextOpenid), current);
+  }
+
+  private List<WxMpUser> fetchUsers(List<String> openids, RateLimiter rateLimiter, Progress current)
+    throws WxErrorException {
+    final WxMpUserQuery query = new WxMpUserQuery();
+    for (String openid : openids) {
+      query.add(openid, this.lang);
+    }
+
+    return this.withRetry(() -> {
+      if (rateLimiter != null) {
+        rateLimiter.acquire();
+      }
+      current.requests.incrementAndGet();
+      List<WxMpUser> users = this.wxMpService.getUserService().userInfoList(query);
+      return users == null ? Collections.<WxMpUser>emptyList() : users;
+    }, current);
+  }
+
+  private <T> T withRetry(Call<T> call, Progress current) throws WxErrorException {
+    long delay = this.retryDelayMillis;
+    for (int retries = 0; ; retries++) {
+      try {
+        return call.call();
+      } catch (WxErrorException e) {
+        if (retries >= this.maxRetries || !this.retryableErrorCodes.contains(e.getError().getErrorCode())) {
+          throw e;
+        }
+
+        current.retries.incrementAndGet();
+        log.warn("导出关注者信息时出错，{}毫秒后进行第{}次重试：{}", delay, retries + 1, e.getError());
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+        delay *= 2;
+      }
+    }
+  }
+
+  private static <T> T await(Future<T> future) throws WxErrorException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg("导出关注者信息时线程被中断").build(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof WxErrorException) {
+        throw (WxErrorException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg(cause.getMessage()).build(), cause);
+    }
+  }
+
+  private interface Call<T> {
+    T call() throws WxErrorException;
+  }
+
+  private static class Batch {
+    private final Future<List<WxMpUser>> users;
+    /**
+     * 该批次是某页的最后一批时，为该页最后一个openid.
+     */
+    private final String checkpoint;
+
+    private Batch(Future<List<WxMpUser>> users, String checkpoint) {
+      this.users = users;
+      this.checkpoint = checkpoint;
+    }
+  }
+
+  /**
+   * 一次导出任务的实时进度.
+   */
+  private static class Progress {
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong users = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private volatile long total = -1;
+    private volatile String checkpoint;
+    private volatile long finishTime;
+
+    private Progress(String startOpenid) {
+      this.checkpoint = startOpenid;
+    }
+
+    private Stats toStats() {
+      Stats stats = new Stats();
+      stats.setPages(this.pages.get());
+      stats.setUsers(this.users.get());
+      stats.setRequests(this.requests.get());
+      stats.setRetries(this.retries.get());
+      stats.setTotal(this.total);
+      stats.setCheckpoint(this.checkpoint);
+      stats.setFinished(this.finishTime != 0);
+      stats.setElapsedMillis((this.finishTime != 0 ? this.finishTime : System.currentTimeMillis()) - this.startTime);
+      return stats;
+    }
+  }
+
+  /**
+   * 导出统计信息.
+   */
+  @Data
+  public static class Stats {
+    /**
+     * 已拉取的openid列表页数.
+     */
+    private long pages;
+
+    /**
+     * 已交给调用方处理的用户数.
+     */
+    private long users;
+
+    /**
+     * 已发起的批量获取用户信息请求数（含重试）.
+     */
+    private long requests;
+
+    /**
+     * 重试次数.
+     */
+    private long retries;
+
+    /**
+     * 关注者总数，尚未拉取到openid列表时为-1.
+     */
+    private long total;
+
+    /**
+     * 最近一次检查点，即已处理完的最后一页的最后一个openid.
+     */
+    private String checkpoint;
+
+    /**
+     * 是否已结束.
+     */
+    private boolean finished;
+
+    /**
+     * 已耗费的时间（毫秒）.
+     */
+    private long elapsedMillis;
+
+    /**
+     * @return 每秒处理的用户数
+     */
+    public double getUsersPerSecond() {
+      return this.elapsedMillis <= 0 ? 0 : this.users * 1000.0 / this.elapsedMillis;
+    }
+  }
+
+}
@@ -8,6 +8,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.api.WxAccessTokenRefresher;
 import me.chanjar.weixin.common.bean.WxJsapiSignature;
 import me.chanjar.weixin.common.bean.WxNetCheckResult;
 import me.chanjar.weixin.common.error.WxError;
@@ -32,7 +33,10 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
 import static me.chanjar.weixin.mp.enums.WxMpApiUrl.Other.*;
 
@@ -46,31 +50,19 @@ public abstract class BaseWxMpServiceImpl<H, P> implements WxMpService, RequestH
   private static final JsonParser JSON_PARSER = new JsonParser();
 
   protected WxSessionManager sessionManager = new StandardSessionManager();
-  private WxMpKefuService kefuService = new WxMpKefuServiceImpl(this);
-  private WxMpMaterialService materialService = new WxMpMaterialServiceImpl(this);
-  private WxMpMenuService menuService = new WxMpMenuServiceImpl(this);
-  private WxMpUserService userService = new WxMpUserServiceImpl(this);
-  private WxMpUserTagService tagService = new WxMpUserTagServiceImpl(this);
-  private WxMpQrcodeService qrCodeService = new WxMpQrcodeServiceImpl(this);
-  private WxMpCardService cardService = new WxMpCardServiceImpl(this);
-  private WxMpStoreService storeService = new WxMpStoreServiceImpl(this);
-  private WxMpDataCubeService dataCubeService = new WxMpDataCubeServiceImpl(this);
-  private WxMpUserBlacklistService blackListService = new WxMpUserBlacklistServiceImpl(this);
-  private WxMpTemplateMsgService templateMsgService = new WxMpTemplateMsgServiceImpl(this);
-  private WxMpSubscribeMsgService subscribeMsgService = new WxMpSubscribeMsgServiceImpl(this);
-  private WxMpDeviceService deviceService = new WxMpDeviceServiceImpl(this);
-  private WxMpShakeService shakeService = new WxMpShakeServiceImpl(this);
-  private WxMpMemberCardService memberCardService = new WxMpMemberCardServiceImpl(this);
-  private WxMpMassMessageService massMessageService = new WxMpMassMessageServiceImpl(this);
-  private WxMpAiOpenService aiOpenService = new WxMpAiOpenServiceImpl(this);
-  private WxMpWifiService wifiService = new WxMpWifiServiceImpl(this);
-  private WxMpMarketingService marketingService = new WxMpMarketingServiceImpl(this);
-  private WxMpCommentService commentService = new WxMpCommentServiceImpl(this);
-  private WxMpOcrService ocrService = new WxMpOcrServiceImpl(this);
-  private WxMpImgProcService imgProcService = new WxMpImgProcServiceImpl(this);
+  /**
+   * 以下各接口服务均在首次获取时才创建，开放平台等持有大量service实例的场景下可以节省内存.
+   * 以接口类型为key，并发首次获取时只会保留一个实例，且不会覆盖通过setXxxService设置的实现.
+   */
+  private final ConcurrentMap<Class<?>, Object> services = new ConcurrentHashMap<>();
 
   private Map<String, WxMpConfigStorage> configStorageMap;
 
+  /**
+   * access token后台主动刷新器，为null时只在请求时按需刷新.
+   */
+  private volatile WxAccessTokenRefresher accessTokenRefresher;
+
   private int retrySleepMillis = 1000;
   private int maxRetryTimes = 5;
 
@@ -309,7 +301,8 @@ public abstract class BaseWxMpServiceImpl<H, P> implements WxMpService, RequestH
 
         WxError error = e.getError();
         // -1 系统繁忙, 1000ms后重试
-        if (error.getErrorCode() == -1) {
+        // 只能读取一次的数据已经发送过，无法重试
+        if (error.getErrorCode() == -1 && MediaUploadSource.isRetryable(data)) {
           int sleepMillis = this.retrySleepMillis * (1 << retryTimes);
           try {
             log.warn("微信系统繁忙，{} ms 后重试(第{}次)", sleepMillis, retryTimes + 1);
@@ -352,7 +345,7 @@ public abstract class BaseWxMpServiceImpl<H, P> implements WxMpService, RequestH
       if (error.getErrorCode() == 42001 || error.getErrorCode() == 40001 || error.getErrorCode() == 40014) {
         // 强制设置wxMpConfigStorage它的access token过期了，这样在下一次请求里就会刷新access token
         this.getWxMpConfigStorage().expireAccessToken();
-        if (this.getWxMpConfigStorage().autoRefreshToken()) {
+        if (this.getWxMpConfigStorage().autoRefreshToken() && MediaUploadSource.isRetryable(data)) {
           return this.execute(executor, uri, data);
         }
       }
@@ -391,9 +384,19 @@ public abstract class BaseWxMpServiceImpl<H, P> implements WxMpService, RequestH
 
   @Override
   public void setMultiConfigStorages(Map<String, WxMpConfigStorage> configStorages, String defaultMpId) {
+    if (this.configStorageMap != null) {
+      for (WxMpConfigStorage configStorage : this.configStorageMap.values()) {
+        this.unregisterAccessTokenRefresh(configStorage);
+      }
+    }
+
     this.configStorageMap = Maps.newHashMap(configStorages);
     WxMpConfigStorageHolder.set(defaultMpId);
     this.initHttp();
+
+    for (Map.Entry<String, WxMpConfigStorage> entry : this.configStorageMap.entrySet()) {
+      this.registerAccessTokenRefresh(entry.getKey(), entry.getValue());
+    }
   }
 
   @Override
@@ -404,15 +407,80 @@ public abstract class BaseWxMpServiceImpl<H, P> implements WxMpService, RequestH
       }
       this.configStorageMap.put(mpId, configStorages);
     }
+    this.registerAccessTokenRefresh(mpId, configStorages);
   }
 
   @Override
   public void removeConfigStorage(String mpId) {
+    WxMpConfigStorage configStorage;
+    synchronized (this) {
+      configStorage = this.configStorageMap.remove(mpId);
+    }
+
+    if (configStorage != null) {
+      this.unregisterAccessTokenRefresh(configStorage);
+    }
+  }
+
+  /**
+   * 设置access token后台主动刷新器，设置后当前及之后添加的所有公众号都会在token过期前由后台线程主动刷新.
+   *
+   * @param accessTokenRefresher 主动刷新器，为null时取消主动刷新
+   */
+  public void setAccessTokenRefresher(WxAccessTokenRefresher accessTokenRefresher) {
+    Map<String, WxMpConfigStorage> storages;
     synchronized (this) {
-      this.configStorageMap.remove(mpId);
+      storages = this.configStorageMap == null ? ImmutableMap.<String, WxMpConfigStorage>of()
+        : ImmutableMap.copyOf(this.configStorageMap);
+    }
+
+    for (WxMpConfigStorage configStorage : storages.values()) {
+      this.unregisterAccessTokenRefresh(configStorage);
+    }
+
+    this.accessTokenRefresher = accessTokenRefresher;
+    for (Map.Entry<String, WxMpConfigStorage> entry : storages.entrySet()) {
+      this.registerAccessTokenRefresh(entry.getKey(), entry.getValue());
+    }
+  }
+
+  public WxAccessTokenRefresher getAccessTokenRefresher() {
+    return this.accessTokenRefresher;
+  }
+
+  private void registerAccessTokenRefresh(final String mpId, final WxMpConfigStorage configStorage) {
+    WxAccessTokenRefresher refresher = this.accessTokenRefresher;
+    if (refresher == null) {
+      return;
+    }
+
+    refresher.register(getAccessTokenRefreshAccountId(configStorage), new WxAccessTokenRefresher.Target() {
+      @Override
+      public long getExpiresTime() {
+        return configStorage.getExpiresTime();
+      }
+
+      @Override
+      public void refreshAccessToken() throws WxErrorException {
+        switchoverTo(mpId).getAccessToken(true);
+      }
+    });
+  }
+
+  private void unregisterAccessTokenRefresh(WxMpConfigStorage configStorage) {
+    WxAccessTokenRefresher refresher = this.accessTokenRefresher;
+    if (refresher != null) {
+      refresher.unregister(getAccessTokenRefreshAccountId(configStorage));
     }
   }
 
+  /**
+   * 公众号在刷新器中的账号标识，同一个刷新器可能同时被公众号、企业微信及小程序使用，故而加上前缀.
+   */
+  private static String getAccessTokenRefreshAccountId(WxMpConfigStorage configStorage) {
+    return "mp:" + configStorage.getAppId();
+  }
+
   @Override
   public WxMpService switchoverTo(String mpId) {
     if (this.configStorageMap.containsKey(mpId)) {
@@ -444,79 +512,101 @@ public abstract class BaseWxMpServiceImpl<H, P> implements WxMpService, RequestH
     this.maxRetryTimes = maxRetryTimes;
   }
 
+  /**
+   * 获取指定类型的接口服务，尚未创建时用factory创建，已有实例（包括setXxxService设置的）时直接返回.
+   */
+  private <T> T getOrCreateService(Class<T> type, Function<WxMpService, ? extends T> factory) {
+    Object service = this.services.get(type);
+    if (service == null) {
+      service = this.services.computeIfAbsent(type, k -> factory.apply(this));
+    }
+    return type.cast(service);
+  }
+
+  /**
+   * 替换指定类型的接口服务，设置为null时在下次获取时重新创建默认实现.
+   */
+  private <T> void setService(Class<T> type, T service) {
+    if (service == null) {
+      this.services.remove(type);
+    } else {
+      this.services.put(type, service);
+    }
+  }
+
   @Override
   public WxMpKefuService getKefuService() {
-    return this.kefuService;
+    return this.getOrCreateService(WxMpKefuService.class, WxMpKefuServiceImpl::new);
   }
 
   @Override
   public WxMpMaterialService getMaterialService() {
-    return this.materialService;
+    return this.getOrCreateService(WxMpMaterialService.class, WxMpMaterialServiceImpl::new);
   }
 
   @Override
   public WxMpMenuService getMenuService() {
-    return this.menuService;
+    return this.getOrCreateService(WxMpMenuService.class, WxMpMenuServiceImpl::new);
   }
 
   @Override
   public WxMpUserService getUserService() {
-    return this.userService;
+    return this.getOrCreateService(WxMpUserService.class, WxMpUserServiceImpl::new);
   }
 
   @Override
   public WxMpUserTagService getUserTagService() {
-    return this.tagService;
+    return this.getOrCreateService(WxMpUserTagService.class, WxMpUserTagServiceImpl::new);
   }
 
   @Override
   public WxMpQrcodeService getQrcodeService() {
-    return this.qrCodeService;
+    return this.getOrCreateService(WxMpQrcodeService.class, WxMpQrcodeServiceImpl::new);
   }
 
   @Override
   public WxMpCardService getCardService() {
-    return this.cardService;
+    return this.getOrCreateService(WxMpCardService.class, WxMpCardServiceImpl::new);
   }
 
   @Override
   public WxMpDataCubeService getDataCubeService() {
-    return this.dataCubeService;
+    return this.getOrCreateService(WxMpDataCubeService.class, WxMpDataCubeServiceImpl::new);
   }
 
   @Override
   public WxMpUserBlacklistService getBlackListService() {
-    return this.blackListService;
+    return this.getOrCreateService(WxMpUserBlacklistService.class, WxMpUserBlacklistServiceImpl::new);
   }
 
   @Override
   public WxMpStoreService getStoreService() {
-    return this.storeService;
+    return this.getOrCreateService(WxMpStoreService.class, WxMpStoreServiceImpl::new);
   }
 
   @Override
   public WxMpTemplateMsgService getTemplateMsgService() {
-    return this.templateMsgService;
+    return this.getOrCreateService(WxMpTemplateMsgService.class, WxMpTemplateMsgServiceImpl::new);
   }
 
   @Override
   public WxMpSubscribeMsgService getSubscribeMsgService() {
-    return this.subscribeMsgService;
+    return this.getOrCreateService(WxMpSubscribeMsgService.class, WxMpSubscribeMsgServiceImpl::new);
   }
 
   @Override
   public WxMpDeviceService getDeviceService() {
-    return this.deviceService;
+    return this.getOrCreateService(WxMpDeviceService.class, WxMpDeviceServiceImpl::new);
   }
 
   @Override
   public WxMpShakeService getShakeService() {
-    return this.shakeService;
+    return this.getOrCreateService(WxMpShakeService.class, WxMpShakeServiceImpl::new);
   }
 
   @Override
   public WxMpMemberCardService getMemberCardService() {
-    return this.memberCardService;
+    return this.getOrCreateService(WxMpMemberCardService.class, WxMpMemberCardServiceImpl::new);
   }
 
   @Override
@@ -526,136 +616,136 @@ public abstract class BaseWxMpServiceImpl<H, P> implements WxMpService, RequestH
 
   @Override
   public WxMpMassMessageService getMassMessageService() {
-    return this.massMessageService;
+    return this.getOrCreateService(WxMpMassMessageService.class, WxMpMassMessageServiceImpl::new);
   }
 
   @Override
   public void setKefuService(WxMpKefuService kefuService) {
-    this.kefuService = kefuService;
+    this.setService(WxMpKefuService.class, kefuService);
   }
 
   @Override
   public void setMaterialService(WxMpMaterialService materialService) {
-    this.materialService = materialService;
+    this.setService(WxMpMaterialService.class, materialService);
   }
 
   @Override
   public void setMenuService(WxMpMenuService menuService) {
-    this.menuService = menuService;
+    this.setService(WxMpMenuService.class, menuService);
   }
 
   @Override
   public void setUserService(WxMpUserService userService) {
-    this.userService = userService;
+    this.setService(WxMpUserService.class, userService);
   }
 
   @Override
   public void setTagService(WxMpUserTagService tagService) {
-    this.tagService = tagService;
+    this.setService(WxMpUserTagService.class, tagService);
   }
 
   @Override
   public void setQrCodeService(WxMpQrcodeService qrCodeService) {
-    this.qrCodeService = qrCodeService;
+    this.setService(WxMpQrcodeService.class, qrCodeService);
   }
 
   @Override
   public void setCardService(WxMpCardService cardService) {
-    this.cardService = cardService;
+    this.setService(WxMpCardService.class, cardService);
   }
 
   @Override
   public void setStoreService(WxMpStoreService storeService) {
-    this.storeService = storeService;
+    this.setService(WxMpStoreService.class, storeService);
   }
 
   @Override
   public void setDataCubeService(WxMpDataCubeService dataCubeService) {
-    this.dataCubeService = dataCubeService;
+    this.setService(WxMpDataCubeService.class, dataCubeService);
   }
 
   @Override
   public void setBlackListService(WxMpUserBlacklistService blackListService) {
-    this.blackListService = blackListService;
+    this.setService(WxMpUserBlacklistService.class, blackListService);
   }
 
   @Override
   public void setTemplateMsgService(WxMpTemplateMsgService templateMsgService) {
-    this.templateMsgService = templateMsgService;
+    this.setService(WxMpTemplateMsgService.class, templateMsgService);
   }
 
   @Override
   public void setDeviceService(WxMpDeviceService deviceService) {
-    this.deviceService = deviceService;
+    this.setService(WxMpDeviceService.class, deviceService);
   }
 
   @Override
   public void setShakeService(WxMpShakeService shakeService) {
-    this.shakeService = shakeService;
+    this.setService(WxMpShakeService.class, shakeService);
   }
 
   @Override
   public void setMemberCardService(WxMpMemberCardService memberCardService) {
-    this.memberCardService = memberCardService;
+    this.setService(WxMpMemberCardService.class, memberCardService);
   }
 
   @Override
   public void setMassMessageService(WxMpMassMessageService massMessageService) {
-    this.massMessageService = massMessageService;
+    this.setService(WxMpMassMessageService.class, massMessageService);
   }
 
   @Override
   public WxMpAiOpenService getAiOpenService() {
-    return this.aiOpenService;
+    return this.getOrCreateService(WxMpAiOpenService.class, WxMpAiOpenServiceImpl::new);
   }
 
   @Override
   public void setAiOpenService(WxMpAiOpenService aiOpenService) {
-    this.aiOpenService = aiOpenService;
+    this.setService(WxMpAiOpenService.class, aiOpenService);
   }
 
   @Override
   public WxMpWifiService getWifiService() {
-    return this.wifiService;
+    return this.getOrCreateService(WxMpWifiService.class, WxMpWifiServiceImpl::new);
   }
 
   @Override
   public WxMpOcrService getOcrService() {
-    return this.ocrService;
+    return this.getOrCreateService(WxMpOcrService.class, WxMpOcrServiceImpl::new);
   }
 
   @Override
   public WxMpMarketingService getMarketingService() {
-    return this.marketingService;
+    return this.getOrCreateService(WxMpMarketingService.class, WxMpMarketingServiceImpl::new);
   }
 
   @Override
   public void setMarketingService(WxMpMarketingService marketingService) {
-    this.marketingService = marketingService;
+    this.setService(WxMpMarketingService.class, marketingService);
   }
 
   @Override
   public void setOcrService(WxMpOcrService ocrService) {
-    this.ocrService = ocrService;
+    this.setService(WxMpOcrService.class, ocrService);
   }
 
   @Override
   public WxMpCommentService getCommentService() {
-    return this.commentService;
+    return this.getOrCreateService(WxMpCommentService.class, WxMpCommentServiceImpl::new);
   }
 
   @Override
   public void setCommentService(WxMpCommentService commentService) {
-    this.commentService = commentService;
+    this.setService(WxMpCommentService.class, commentService);
   }
 
   @Override
   public WxMpImgProcService getImgProcService() {
-    return this.imgProcService;
+    return this.getOrCreateService(WxMpImgProcService.class, WxMpImgProcServiceImpl::new);
   }
 
   @Override
   public void setImgProcService(WxMpImgProcService imgProcService) {
-    this.imgProcService = imgProcService;
+    this.setService(WxMpImgProcService.class, imgProcService);
   }
 }
@@ -0,0 +1,454 @@
+package me.chanjar.weixin.mp.api.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import lombok.extern.slf4j.Slf4j;
+import me.chanjar.weixin.common.WxType;
+import me.chanjar.weixin.common.bean.WxAccessToken;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.DataUtils;
+import me.chanjar.weixin.mp.api.WxMpAsyncService;
+import me.chanjar.weixin.mp.api.WxMpService;
+import me.chanjar.weixin.mp.bean.WxMpUserQuery;
+import me.chanjar.weixin.mp.bean.kefu.WxMpKefuMessage;
+import me.chanjar.weixin.mp.bean.result.WxMpUser;
+import me.chanjar.weixin.mp.bean.result.WxMpUserList;
+import me.chanjar.weixin.mp.bean.template.WxMpTemplateMessage;
+import me.chanjar.weixin.mp.config.WxMpConfigStorage;
+import me.chanjar.weixin.mp.enums.WxMpApiUrl;
+import okhttp3.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static me.chanjar.weixin.mp.enums.WxMpApiUrl.Kefu.MESSAGE_CUSTOM_SEND;
+import static me.chanjar.weixin.mp.enums.WxMpApiUrl.Other.GET_ACCESS_TOKEN_URL;
+import static me.chanjar.weixin.mp.enums.WxMpApiUrl.TemplateMsg.MESSAGE_TEMPLATE_SEND;
+import static me.chanjar.weixin.mp.enums.WxMpApiUrl.User.*;
+
+/**
+ * <pre>
+ * 基于okhttp异步调用（enqueue）的公众号异步API实现.
+ * 请求在okhttp的Dispatcher中排队执行，不会为每个进行中的请求占用一个业务线程.
+ * 微信返回系统繁忙（-1）时通过定时器延时重试（间隔依次翻倍），而不是让线程sleep；
+ * access token失效时只会发起一次刷新请求，并发的请求共享刷新结果.
+ * 刷新请求在刷新线程池中持有{@link WxMpConfigStorage#getAccessTokenLock()}同步执行，与同步API的刷新互斥，
+ * 不会出现两边各自刷新、旧token覆盖新token的情况.
+ * 同一公众号同时只有一个刷新请求，不同公众号的刷新在线程池中并行，某个公众号刷新缓慢或者锁被其他节点持有时
+ * 只占用其中一个线程，不会阻塞其他公众号；刷新很少发生，空闲的线程会自动回收.
+ * 公众号配置取自传入的{@link WxMpService}，与同步API共享同一个access token.
+ * 需要自行控制重试时使用{@link #withoutBusyRetry()}，其返回的实例与本实例共用所有资源，只是不重试系统繁忙.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Slf4j
+public class WxMpAsyncServiceOkHttpImpl implements WxMpAsyncService, Closeable {
+  private static final JsonParser JSON_PARSER = new JsonParser();
+  private static final MediaType TEXT_PLAIN = MediaType.parse("text/plain; charset=utf-8");
+  private static final int DEFAULT_ACCESS_TOKEN_REFRESH_THREADS = 4;
+
+  private final WxMpService wxMpService;
+  private final OkHttpClient httpClient;
+  private final ScheduledExecutorService retryTimer;
+  private final ThreadPoolExecutor accessTokenExecutor;
+
+  /**
+   * 公众号appId->进行中的access token刷新请求.
+   */
+  private final ConcurrentHashMap<String, CompletableFuture<String>> accessTokenRefreshes;
+  /**
+   * 持有上述资源及重试设置的实例，{@link #withoutBusyRetry()}返回的实例与其共用.
+   */
+  private final WxMpAsyncServiceOkHttpImpl root;
+  private final boolean busyRetry;
+  private final WxMpAsyncServiceOkHttpImpl withoutBusyRetry;
+
+  private volatile int retrySleepMillis = 1000;
+  private volatile int maxRetryTimes = 5;
+
+  /**
+   * 使用默认的okhttp客户端，最多同时执行256个请求.
+   *
+   * @param wxMpService 同步API，用于获取公众号配置
+   */
+  public WxMpAsyncServiceOkHttpImpl(WxMpService wxMpService) {
+    this(wxMpService, defaultHttpClient(wxMpService.getWxMpConfigStorage()));
+  }
+
+  /**
+   * 最多同时刷新4个公众号的access token.
+   *
+   * @param wxMpService 同步API，用于获取公众号配置
+   * @param httpClient  okhttp客户端，可通过其Dispatcher控制最大并发请求数
+   */
+  public WxMpAsyncServiceOkHttpImpl(WxMpService wxMpService, OkHttpClient httpClient) {
+    this(wxMpService, httpClient, DEFAULT_ACCESS_TOKEN_REFRESH_THREADS);
+  }
+
+  /**
+   * @param wxMpService               同步API，用于获取公众号配置
+   * @param httpClient                okhttp客户端，可通过其Dispatcher控制最大并发请求数
+   * @param accessTokenRefreshThreads 刷新access token的线程数，即最多同时刷新的公众号数，多公众号时可适当调大
+   */
+  public WxMpAsyncServiceOkHttpImpl(WxMpService wxMpService, OkHttpClient httpClient, int accessTokenRefreshThreads) {
+    if (accessTokenRefreshThreads <= 0) {
+      throw new IllegalArgumentException("刷新access token的线程数必须大于0");
+    }
+
+    this.wxMpService = wxMpService;
+    this.httpClient = httpClient;
+    this.accessTokenRefreshes = new ConcurrentHashMap<>();
+    this.root = this;
+    this.busyRetry = true;
+    this.retryTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "WxMpAsyncService-retry");
+      thread.setDaemon(true);
+      return thread;
+    });
+    final AtomicInteger threadNumber = new AtomicInteger();
+    this.accessTokenExecutor = new ThreadPoolExecutor(accessTokenRefreshThreads, accessTokenRefreshThreads,
+      60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+      Thread thread = new Thread(r, "WxMpAsyncService-token-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.accessTokenExecutor.allowCoreThreadTimeOut(true);
+    this.withoutBusyRetry = new WxMpAsyncServiceOkHttpImpl(this);
+  }
+
+  /**
+   * 创建与root共用所有资源、不重试系统繁忙的实例.
+   */
+  private WxMpAsyncServiceOkHttpImpl(WxMpAsyncServiceOkHttpImpl root) {
+    this.wxMpService = root.wxMpService;
+    this.httpClient = root.httpClient;
+    this.retryTimer = root.retryTimer;
+    this.accessTokenExecutor = root.accessTokenExecutor;
+    this.accessTokenRefreshes = root.accessTokenRefreshes;
+    this.root = root;
+    this.busyRetry = false;
+    this.withoutBusyRetry = this;
+  }
+
+  private static OkHttpClient defaultHttpClient(WxMpConfigStorage config) {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(256);
+    dispatcher.setMaxRequestsPerHost(256);
+
+    OkHttpClient.Builder clientBuilder = new OkHttpClient.Builder()
+      .dispatcher(dispatcher)
+      .connectionPool(new ConnectionPool(64, 5, TimeUnit.MINUTES));
+    if (config.getHttpProxyHost() != null && config.getHttpProxyPort() > 0) {
+      clientBuilder.proxy(new Proxy(Proxy.Type.HTTP,
+        new InetSocketAddress(config.getHttpProxyHost(), config.getHttpProxyPort())));
+      if (config.getHttpProxyUsername() != null) {
+        final String credential = Credentials.basic(config.getHttpProxyUsername(), config.getHttpProxyPassword());
+        clientBuilder.proxyAuthenticator((route, response) -> response.request().newBuilder()
+          .header("Proxy-Authorization", credential)
+          .build());
+      }
+    }
+    return clientBuilder.build();
+  }
+
+  public void setRetrySleepMillis(int retrySleepMillis) {
+    this.root.retrySleepMillis = retrySleepMillis;
+  }
+
+  public void setMaxRetryTimes(int maxRetryTimes) {
+    this.root.maxRetryTimes = maxRetryTimes;
+  }
+
+  /**
+   * <pre>
+   * 返回微信系统繁忙（-1）时不自动重试的实例，与本实例共用http客户端、定时器、access token刷新及重试设置，
+   * access token失效时仍会刷新后重新发送，关闭本实例后也不再可用.
+   * 调用方自行重试时应使用该实例，否则一次-1会在内部再重试maxRetryTimes次，这些重试不受调用方的限速控制，
+   * 并且在长达数十秒的退避期间一直占用调用方的并发名额.
+   * </pre>
+   */
+  @Override
+  public WxMpAsyncServiceOkHttpImpl withoutBusyRetry() {
+    return this.withoutBusyRetry;
+  }
+
+  @Override
+  public CompletableFuture<String> getAccessToken(boolean forceRefresh) {
+    return this.getAccessToken(this.wxMpService.getWxMpConfigStorage(), forceRefresh);
+  }
+
+  private CompletableFuture<String> getAccessToken(final WxMpConfigStorage config, boolean forceRefresh) {
+    if (!forceRefresh && !config.isAccessTokenExpired()) {
+      return CompletableFuture.completedFuture(config.getAccessToken());
+    }
+
+    final String appId = config.getAppId();
+    final CompletableFuture<String> refresh = new CompletableFuture<>();
+    CompletableFuture<String> existing = this.accessTokenRefreshes.putIfAbsent(appId, refresh);
+    if (existing != null) {
+      return existing;
+    }
+
+    try {
+      this.accessTokenExecutor.execute(() -> {
+        // 先更新配置再完成，最后移除，保证等待方拿到结果时配置中已经是新的token
+        try {
+          refresh.complete(this.refreshAccessToken(config, forceRefresh));
+        } catch (Throwable e) {
+          refresh.completeExceptionally(e);
+        } finally {
+          this.accessTokenRefreshes.remove(appId, refresh);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      this.accessTokenRefreshes.remove(appId, refresh);
+      refresh.completeExceptionally(e);
+    }
+    return refresh;
+  }
+
+  /**
+   * 持有access token锁同步刷新，获取锁之后再次检查，同步API已经刷新过时直接使用其结果.
+   */
+  private String refreshAccessToken(WxMpConfigStorage config, boolean forceRefresh) throws WxErrorException {
+    Lock lock = config.getAccessTokenLock();
+    lock.lock();
+    try {
+      if (!forceRefresh && !config.isAccessTokenExpired()) {
+        return config.getAccessToken();
+      }
+
+      String url = String.format(GET_ACCESS_TOKEN_URL.getUrl(config), config.getAppId(), config.getSecret());
+      try (Response response = this.httpClient.newCall(new Request.Builder().url(url).get().build()).execute()) {
+        WxAccessToken accessToken = WxAccessToken.fromJson(handleResponse(response));
+        config.updateAccessToken(accessToken.getAccessToken(), accessToken.getExpiresIn());
+        return accessToken.getAccessToken();
+      } catch (WxErrorException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new WxErrorException(WxError.builder().errorMsg(e.getMessage()).build(), e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public CompletableFuture<String> get(WxMpApiUrl url, String queryParam) {
+    WxMpConfigStorage config = this.wxMpService.getWxMpConfigStorage();
+    String uri = url.getUrl(config);
+    if (queryParam != null) {
+      uri += (uri.indexOf('?') == -1 ? "?" : "&") + queryParam;
+    }
+    return this.execute(config, uri, null);
+  }
+
+  @Override
+  public CompletableFuture<String> post(WxMpApiUrl url, String postData) {
+    WxMpConfigStorage config = this.wxMpService.getWxMpConfigStorage();
+    return this.execute(config, url.getUrl(config), postData);
+  }
+
+  @Override
+  public CompletableFuture<String> sendTemplateMsg(WxMpTemplateMessage templateMessage) {
+    return this.post(MESSAGE_TEMPLATE_SEND, templateMessage.toJson())
+      .thenApply(responseContent -> {
+        JsonObject jsonObject = JSON_PARSER.parse(responseContent).getAsJsonObject();
+        return jsonObject.get("msgid").getAsString();
+      });
+  }
+
+  @Override
+  public CompletableFuture<Boolean> sendKefuMessage(WxMpKefuMessage message) {
+    return this.post(MESSAGE_CUSTOM_SEND, message.toJson()).thenApply(responseContent -> responseContent != null);
+  }
+
+  @Override
+  public CompletableFuture<WxMpUser> userInfo(String openid, String lang) {
+    lang = lang == null ? "zh_CN" : lang;
+    return this.get(USER_INFO_URL, "openid=" + openid + "&lang=" + lang).thenApply(WxMpUser::fromJson);
+  }
+
+  @Override
+  public CompletableFuture<List<WxMpUser>> userInfoList(List<String> openidList) {
+    return this.userInfoList(new WxMpUserQuery(openidList));
+  }
+
+  @Override
+  public CompletableFuture<List<WxMpUser>> userInfoList(WxMpUserQuery userQuery) {
+    return this.post(USER_INFO_BATCH_GET_URL, userQuery.toJsonString()).thenApply(WxMpUser::fromJsonList);
+  }
+
+  @Override
+  public CompletableFuture<WxMpUserList> userList(String nextOpenid) {
+    return this.get(USER_GET_URL, nextOpenid == null ? null : "next_openid=" + nextOpenid)
+      .thenApply(WxMpUserList::fromJson);
+  }
+
+  /**
+   * 附带access_token执行请求，access token失效时刷新后重新执行，系统繁忙时延时重试.
+   */
+  private CompletableFuture<String> execute(WxMpConfigStorage config, String uri, String postData) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    if (uri.contains("access_token=")) {
+      result.completeExceptionally(new IllegalArgumentException("uri参数中不允许有access_token: " + uri));
+      return result;
+    }
+
+    this.execute(config, uri, postData, 0, result);
+    return result;
+  }
+
+  private void execute(final WxMpConfigStorage config, final String uri, final String postData, final int retryTimes,
+                       final CompletableFuture<String> result) {
+    this.getAccessToken(config, false).whenComplete((accessToken, tokenError) -> {
+      if (tokenError != null) {
+        result.completeExceptionally(unwrap(tokenError));
+        return;
+      }
+
+      final String uriWithAccessToken = uri + (uri.contains("?") ? "&" : "?") + "access_token=" + accessToken;
+      Request.Builder requestBuilder = new Request.Builder().url(uriWithAccessToken);
+      if (postData != null) {
+        requestBuilder.post(RequestBody.create(TEXT_PLAIN, postData));
+      }
+
+      this.call(requestBuilder.build()).whenComplete((content, e) -> {
+        if (e == null) {
+          log.debug("\n【请求地址】: {}\n【请求参数】：{}\n【响应数据】：{}", uriWithAccessToken,
+            DataUtils.handleDataWithSecret(postData), content);
+          result.complete(content);
+          return;
+        }
+
+        Throwable cause = unwrap(e);
+        if (cause instanceof WxErrorException && this.retry(config, uri, postData, retryTimes, result, accessToken,
+          ((WxErrorException) cause).getError())) {
+          return;
+        }
+
+        log.error("\n【请求地址】: {}\n【请求参数】：{}\n【错误信息】：{}", uriWithAccessToken,
+          DataUtils.handleDataWithSecret(postData), cause.getMessage());
+        result.completeExceptionally(cause);
+      });
+    });
+  }
+
+  /**
+   * 根据错误码决定是否重试.
+   *
+   * @return 是否已经安排重试
+   */
+  private boolean retry(final WxMpConfigStorage config, final String uri, final String postData, final int retryTimes,
+                        final CompletableFuture<String> result, String accessToken, WxError error) {
+    int maxRetryTimes = this.root.maxRetryTimes;
+    if (retryTimes >= maxRetryTimes) {
+      if (error.getErrorCode() == -1) {
+        log.warn("重试达到最大次数【{}】", maxRetryTimes);
+      }
+      return false;
+    }
+
+    /*
+     * 发生以下情况时尝试刷新access_token
+     * 40001 获取access_token时AppSecret错误，或者access_token无效
+     * 42001 access_token超时
+     * 40014 不合法的access_token，请开发者认真比对access_token的有效性（如是否过期），或查看是否正在为恰当的公众号调用接口
+     */
+    if (error.getErrorCode() == 42001 || error.getErrorCode() == 40001 || error.getErrorCode() == 40014) {
+      // 其他并发请求可能已经刷新过token，只有当前token仍是失效的那个时才将其过期
+      if (accessToken.equals(config.getAccessToken())) {
+        config.expireAccessToken();
+      }
+      if (!config.autoRefreshToken()) {
+        return false;
+      }
+
+      this.execute(config, uri, postData, retryTimes + 1, result);
+      return true;
+    }
+
+    // -1 系统繁忙, 延时重试
+    if (error.getErrorCode() == -1 && this.busyRetry) {
+      int sleepMillis = this.root.retrySleepMillis * (1 << retryTimes);
+      log.warn("微信系统繁忙，{} ms 后重试(第{}次)", sleepMillis, retryTimes + 1);
+      try {
+        this.retryTimer.schedule(() -> this.execute(config, uri, postData, retryTimes + 1, result),
+          sleepMillis, TimeUnit.MILLISECONDS);
+        return true;
+      } catch (RejectedExecutionException e) {
+        return false;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * 异步执行请求，响应中的errcode不为0时以WxErrorException完成.
+   */
+  private CompletableFuture<String> call(Request request) {
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    this.httpClient.newCall(request).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        future.completeExceptionally(new WxErrorException(WxError.builder().errorMsg(e.getMessage()).build(), e));
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        try {
+          future.complete(handleResponse(response));
+        } catch (WxErrorException e) {
+          future.completeExceptionally(e);
+        } catch (Exception e) {
+          future.completeExceptionally(new WxErrorException(WxError.builder().errorMsg(e.getMessage()).build(), e));
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * 读取响应内容，errcode不为0时抛出WxErrorException.
+   */
+  private static String handleResponse(Response response) throws WxErrorException, IOException {
+    try (ResponseBody body = response.body()) {
+      String responseContent = body == null ? "" : body.string();
+      WxError error = WxError.fromJson(responseContent, WxType.MP);
+      if (error.getErrorCode() != 0) {
+        throw new WxErrorException(error);
+      }
+      return responseContent;
+    }
+  }
+
+  private static Throwable unwrap(Throwable e) {
+    while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+      e = e.getCause();
+    }
+    return e;
+  }
+
+  /**
+   * 停止重试定时器及刷新access token的线程，okhttp客户端由调用方管理.
+   * {@link #withoutBusyRetry()}返回的实例不持有这些资源，关闭时不做任何操作.
+   */
+  @Override
+  public void close() {
+    if (this.root != this) {
+      return;
+    }
+    this.retryTimer.shutdownNow();
+    this.accessTokenExecutor.shutdownNow();
+  }
+}
@@ -6,9 +6,12 @@ import me.chanjar.weixin.common.api.WxConsts;
 import me.chanjar.weixin.common.bean.result.WxMediaUploadResult;
 import me.chanjar.weixin.common.error.WxError;
 import me.chanjar.weixin.common.error.WxErrorException;
-import me.chanjar.weixin.common.util.fs.FileUtils;
 import me.chanjar.weixin.common.util.http.BaseMediaDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.BaseMediaStreamDownloadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaDownloadStream;
+import me.chanjar.weixin.common.util.http.MediaStreamUploadRequestExecutor;
 import me.chanjar.weixin.common.util.http.MediaUploadRequestExecutor;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 import me.chanjar.weixin.common.util.json.WxGsonBuilder;
 import me.chanjar.weixin.mp.api.WxMpMaterialService;
 import me.chanjar.weixin.mp.api.WxMpService;
@@ -19,7 +22,6 @@ import me.chanjar.weixin.mp.util.requestexecuter.material.*;
 import me.chanjar.weixin.mp.util.requestexecuter.media.MediaImgUploadRequestExecutor;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
@@ -38,17 +40,13 @@ public class WxMpMaterialServiceImpl implements WxMpMaterialService {
 
   @Override
   public WxMediaUploadResult mediaUpload(String mediaType, String fileType, InputStream inputStream) throws WxErrorException {
-    File tmpFile = null;
-    try {
-      tmpFile = FileUtils.createTmpFile(inputStream, UUID.randomUUID().toString(), fileType);
-      return this.mediaUpload(mediaType, tmpFile);
-    } catch (IOException e) {
-      throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg(e.getMessage()).build(), e);
-    } finally {
-      if (tmpFile != null) {
-        tmpFile.delete();
-      }
-    }
+    return this.mediaUpload(mediaType, MediaUploadSource.of(inputStream, UUID.randomUUID().toString() + "." + fileType));
+  }
+
+  @Override
+  public WxMediaUploadResult mediaUpload(String mediaType, MediaUploadSource source) throws WxErrorException {
+    String url = String.format(MEDIA_UPLOAD_URL.getUrl(this.wxMpService.getWxMpConfigStorage()), mediaType);
+    return this.wxMpService.execute(MediaStreamUploadRequestExecutor.create(this.wxMpService.getRequestHttp()), url, source);
   }
 
   @Override
@@ -65,6 +63,12 @@ public class WxMpMaterialServiceImpl implements WxMpMaterialService {
       "media_id=" + mediaId);
   }
 
+  @Override
+  public MediaDownloadStream mediaDownloadStream(String mediaId) throws WxErrorException {
+    return this.wxMpService.execute(BaseMediaStreamDownloadRequestExecutor.create(this.wxMpService.getRequestHttp()),
+      MEDIA_GET_URL, "media_id=" + mediaId);
+  }
+
   @Override
   public File jssdkMediaDownload(String mediaId) throws WxErrorException {
     return this.wxMpService.execute(
@@ -27,6 +27,7 @@ import static me.chanjar.weixin.mp.enums.WxMpApiUrl.Other.GET_ACCESS_TOKEN_URL;
  */
 public class WxMpServiceHttpClientImpl extends BaseWxMpServiceImpl<CloseableHttpClient, HttpHost> {
   private CloseableHttpClient httpClient;
+  private CloseableHttpClient mediaHttpClient;
   private HttpHost httpProxy;
 
   @Override
@@ -34,6 +35,11 @@ public class WxMpServiceHttpClientImpl extends BaseWxMpServiceImpl<CloseableHttp
     return httpClient;
   }
 
+  @Override
+  public CloseableHttpClient getMediaRequestHttpClient() {
+    return mediaHttpClient;
+  }
+
   @Override
   public HttpHost getRequestHttpProxy() {
     return httpProxy;
@@ -62,6 +68,7 @@ public class WxMpServiceHttpClientImpl extends BaseWxMpServiceImpl<CloseableHttp
     }
 
     this.httpClient = apacheHttpClientBuilder.build();
+    this.mediaHttpClient = apacheHttpClientBuilder.buildMediaClient();
   }
 
   @Override
@@ -0,0 +1,406 @@
+package me.chanjar.weixin.mp.config.impl;
+
+import me.chanjar.weixin.common.bean.WxAccessToken;
+import me.chanjar.weixin.common.util.http.apache.ApacheHttpClientBuilder;
+import me.chanjar.weixin.mp.bean.WxMpHostConfig;
+import me.chanjar.weixin.mp.config.WxMpConfigStorage;
+import me.chanjar.weixin.mp.enums.TicketType;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <pre>
+ * 带本地近端缓存的微信配置provider，可包装任意{@link WxMpConfigStorage}实现，比如{@link WxMpRedisConfigImpl}.
+ * access token及各类ticket连同其绝对过期时间保存在进程内存中，缓存有效期内的读取不再访问被包装的存储，
+ * 只有以下情况才会重新从被包装的存储中读取：
+ * 1. 本地缓存超过最大有效时间（默认60秒）或者临近过期；
+ * 2. 调用了expireAccessToken/expireTicket；
+ * 3. 收到了其他节点发出的失效通知，参考{@link WxMpRedisNearCacheInvalidator}.
+ *
+ * 微信在刷新access token后的5分钟内旧的token依然可用，所以即使未配置跨节点失效通知，
+ * 只要最大有效时间不超过5分钟，读到其他节点刚刚替换掉的旧token也不会导致接口调用失败.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMpNearCacheConfigImpl implements WxMpConfigStorage {
+  /**
+   * access token对应的缓存key，用于跨节点失效通知.
+   */
+  public static final String ACCESS_TOKEN_CACHE_KEY = "access_token";
+  /**
+   * ticket对应的缓存key前缀，后接{@link TicketType#name()}.
+   */
+  public static final String TICKET_CACHE_KEY_PREFIX = "ticket:";
+
+  private static final long DEFAULT_MAX_LOCAL_TTL_MILLIS = 60 * 1000L;
+
+  private final WxMpConfigStorage delegate;
+  private final Slot accessTokenSlot = new Slot();
+  private final Map<TicketType, Slot> ticketSlots = new EnumMap<>(TicketType.class);
+
+  private volatile long maxLocalTtlMillis = DEFAULT_MAX_LOCAL_TTL_MILLIS;
+  private volatile InvalidationPublisher invalidationPublisher;
+
+  /**
+   * @param delegate 实际保存配置的存储
+   */
+  public WxMpNearCacheConfigImpl(WxMpConfigStorage delegate) {
+    this.delegate = delegate;
+    for (TicketType type : TicketType.values()) {
+      this.ticketSlots.put(type, new Slot());
+    }
+  }
+
+  public WxMpConfigStorage getDelegate() {
+    return this.delegate;
+  }
+
+  public long getMaxLocalTtlMillis() {
+    return this.maxLocalTtlMillis;
+  }
+
+  /**
+   * 设置本地缓存的最大有效时间.
+   *
+   * @param maxLocalTtlMillis 最大有效时间（毫秒），建议不超过5分钟
+   */
+  public void setMaxLocalTtlMillis(long maxLocalTtlMillis) {
+    this.maxLocalTtlMillis = maxLocalTtlMillis;
+  }
+
+  /**
+   * 设置跨节点失效通知的发布者，本节点更新或者强制过期token/ticket时会通过它通知其他节点.
+   *
+   * @param invalidationPublisher 失效通知发布者
+   */
+  public void setInvalidationPublisher(InvalidationPublisher invalidationPublisher) {
+    this.invalidationPublisher = invalidationPublisher;
+  }
+
+  /**
+   * 使本地缓存失效，不会通知其他节点，一般由收到失效通知的订阅者调用.
+   *
+   * @param cacheKey 缓存key，无法识别时使所有缓存失效
+   */
+  public void invalidate(String cacheKey) {
+    if (ACCESS_TOKEN_CACHE_KEY.equals(cacheKey)) {
+      this.accessTokenSlot.invalidate();
+      return;
+    }
+
+    if (cacheKey != null && cacheKey.startsWith(TICKET_CACHE_KEY_PREFIX)) {
+      for (Map.Entry<TicketType, Slot> entry : this.ticketSlots.entrySet()) {
+        if (cacheKey.equals(ticketCacheKey(entry.getKey()))) {
+          entry.getValue().invalidate();
+          return;
+        }
+      }
+    }
+
+    this.invalidateAll();
+  }
+
+  /**
+   * 使所有本地缓存失效，不会通知其他节点.
+   */
+  public void invalidateAll() {
+    this.accessTokenSlot.invalidate();
+    for (Slot slot : this.ticketSlots.values()) {
+      slot.invalidate();
+    }
+  }
+
+  private static String ticketCacheKey(TicketType type) {
+    return TICKET_CACHE_KEY_PREFIX + type.name();
+  }
+
+  private void publish(String cacheKey) {
+    InvalidationPublisher publisher = this.invalidationPublisher;
+    if (publisher != null) {
+      publisher.publish(this.getAppId(), cacheKey);
+    }
+  }
+
+  /**
+   * 计算新写入的token/ticket在本地的过期时间，不超过最大有效时间，并与默认实现一样预留200秒.
+   */
+  private long localExpiresTime(long now, int expiresInSeconds) {
+    return Math.min(now + this.maxLocalTtlMillis, now + (expiresInSeconds - 200) * 1000L);
+  }
+
+  private Entry loadAccessToken() {
+    Entry entry = this.accessTokenSlot.current();
+    if (entry != null) {
+      return entry;
+    }
+
+    synchronized (this.accessTokenSlot) {
+      entry = this.accessTokenSlot.current();
+      if (entry != null) {
+        return entry;
+      }
+
+      long version = this.accessTokenSlot.version.get();
+      if (this.delegate.isAccessTokenExpired()) {
+        return null;
+      }
+
+      String accessToken = this.delegate.getAccessToken();
+      if (accessToken == null) {
+        return null;
+      }
+
+      long now = System.currentTimeMillis();
+      long expiresTime = now + this.maxLocalTtlMillis;
+      long delegateExpiresTime = this.delegate.getExpiresTime();
+      if (delegateExpiresTime > now) {
+        expiresTime = Math.min(expiresTime, delegateExpiresTime);
+      }
+
+      entry = new Entry(accessToken, expiresTime);
+      this.accessTokenSlot.putIfUnchanged(version, entry);
+      return entry;
+    }
+  }
+
+  private Entry loadTicket(TicketType type) {
+    Slot slot = this.ticketSlots.get(type);
+    Entry entry = slot.current();
+    if (entry != null) {
+      return entry;
+    }
+
+    synchronized (slot) {
+      entry = slot.current();
+      if (entry != null) {
+        return entry;
+      }
+
+      long version = slot.version.get();
+      if (this.delegate.isTicketExpired(type)) {
+        return null;
+      }
+
+      String ticket = this.delegate.getTicket(type);
+      if (ticket == null) {
+        return null;
+      }
+
+      entry = new Entry(ticket, System.currentTimeMillis() + this.maxLocalTtlMillis);
+      slot.putIfUnchanged(version, entry);
+      return entry;
+    }
+  }
+
+  @Override
+  public String getAccessToken() {
+    Entry entry = this.loadAccessToken();
+    return entry == null ? this.delegate.getAccessToken() : entry.value;
+  }
+
+  @Override
+  public Lock getAccessTokenLock() {
+    return this.delegate.getAccessTokenLock();
+  }
+
+  @Override
+  public boolean isAccessTokenExpired() {
+    return this.loadAccessToken() == null;
+  }
+
+  @Override
+  public void expireAccessToken() {
+    this.delegate.expireAccessToken();
+    this.accessTokenSlot.invalidate();
+    this.publish(ACCESS_TOKEN_CACHE_KEY);
+  }
+
+  @Override
+  public void updateAccessToken(WxAccessToken accessToken) {
+    this.delegate.updateAccessToken(accessToken);
+    this.accessTokenSlot.put(new Entry(accessToken.getAccessToken(),
+      this.localExpiresTime(System.currentTimeMillis(), accessToken.getExpiresIn())));
+    this.publish(ACCESS_TOKEN_CACHE_KEY);
+  }
+
+  @Override
+  public void updateAccessToken(String accessToken, int expiresInSeconds) {
+    this.delegate.updateAccessToken(accessToken, expiresInSeconds);
+    this.accessTokenSlot.put(new Entry(accessToken,
+      this.localExpiresTime(System.currentTimeMillis(), expiresInSeconds)));
+    this.publish(ACCESS_TOKEN_CACHE_KEY);
+  }
+
+  @Override
+  public String getTicket(TicketType type) {
+    Entry entry = this.loadTicket(type);
+    return entry == null ? this.delegate.getTicket(type) : entry.value;
+  }
+
+  @Override
+  public Lock getTicketLock(TicketType type) {
+    return this.delegate.getTicketLock(type);
+  }
+
+  @Override
+  public boolean isTicketExpired(TicketType type) {
+    return this.loadTicket(type) == null;
+  }
+
+  @Override
+  public void expireTicket(TicketType type) {
+    this.delegate.expireTicket(type);
+    this.ticketSlots.get(type).invalidate();
+    this.publish(ticketCacheKey(type));
+  }
+
+  @Override
+  public void updateTicket(TicketType type, String ticket, int expiresInSeconds) {
+    this.delegate.updateTicket(type, ticket, expiresInSeconds);
+    this.ticketSlots.get(type).put(new Entry(ticket,
+      this.localExpiresTime(System.currentTimeMillis(), expiresInSeconds)));
+    this.publish(ticketCacheKey(type));
+  }
+
+  @Override
+  public String getAppId() {
+    return this.delegate.getAppId();
+  }
+
+  @Override
+  public String getSecret() {
+    return this.delegate.getSecret();
+  }
+
+  @Override
+  public String getToken() {
+    return this.delegate.getToken();
+  }
+
+  @Override
+  public String getAesKey() {
+    return this.delegate.getAesKey();
+  }
+
+  @Override
+  public String getTemplateId() {
+    return this.delegate.getTemplateId();
+  }
+
+  @Override
+  public long getExpiresTime() {
+    return this.delegate.getExpiresTime();
+  }
+
+  @Override
+  public String getOauth2redirectUri() {
+    return this.delegate.getOauth2redirectUri();
+  }
+
+  @Override
+  public String getHttpProxyHost() {
+    return this.delegate.getHttpProxyHost();
+  }
+
+  @Override
+  public int getHttpProxyPort() {
+    return this.delegate.getHttpProxyPort();
+  }
+
+  @Override
+  public String getHttpProxyUsername() {
+    return this.delegate.getHttpProxyUsername();
+  }
+
+  @Override
+  public String getHttpProxyPassword() {
+    return this.delegate.getHttpProxyPassword();
+  }
+
+  @Override
+  public File getTmpDirFile() {
+    return this.delegate.getTmpDirFile();
+  }
+
+  @Override
+  public ApacheHttpClientBuilder getApacheHttpClientBuilder() {
+    return this.delegate.getApacheHttpClientBuilder();
+  }
+
+  @Override
+  public boolean autoRefreshToken() {
+    return this.delegate.autoRefreshToken();
+  }
+
+  @Override
+  public WxMpHostConfig getHostConfig() {
+    return this.delegate.getHostConfig();
+  }
+
+  @Override
+  public String toString() {
+    return "WxMpNearCacheConfigImpl{delegate=" + this.delegate + "}";
+  }
+
+  /**
+   * 跨节点失效通知的发布者.
+   */
+  public interface InvalidationPublisher {
+    /**
+     * 通知其他节点使指定的本地缓存失效.
+     *
+     * @param appId    公众号appId
+     * @param cacheKey 缓存key
+     */
+    void publish(String appId, String cacheKey);
+  }
+
+  /**
+   * 缓存的值及其本地过期时间.
+   */
+  private static class Entry {
+    private final String value;
+    private final long expiresTime;
+
+    private Entry(String value, long expiresTime) {
+      this.value = value;
+      this.expiresTime = expiresTime;
+    }
+  }
+
+  /**
+   * 单个缓存项，版本号在每次写入或失效时递增，用于丢弃加载过程中已被失效的旧值.
+   */
+  private static class Slot {
+    private final AtomicReference<Entry> entry = new AtomicReference<>();
+    private final AtomicLong version = new AtomicLong();
+
+    private Entry current() {
+      Entry current = this.entry.get();
+      return current != null && System.currentTimeMillis() < current.expiresTime ? current : null;
+    }
+
+    private void put(Entry newEntry) {
+      this.version.incrementAndGet();
+      this.entry.set(newEntry);
+    }
+
+    private void invalidate() {
+      this.version.incrementAndGet();
+      this.entry.set(null);
+    }
+
+    private void putIfUnchanged(long expectedVersion, Entry newEntry) {
+      this.entry.set(newEntry);
+      if (this.version.get() != expectedVersion) {
+        this.entry.compareAndSet(newEntry, null);
+      }
+    }
+  }
+}
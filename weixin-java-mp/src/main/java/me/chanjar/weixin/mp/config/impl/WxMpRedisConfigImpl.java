@@ -56,6 +56,17 @@ public class WxMpRedisConfigImpl extends WxMpDefaultConfigImpl {
     }
   }
 
+  /**
+   * 根据Redis中access token剩余的有效时间计算其过期时间，不存在时返回0.
+   */
+  @Override
+  public long getExpiresTime() {
+    try (Jedis jedis = this.jedisPool.getResource()) {
+      long ttl = jedis.pttl(this.accessTokenKey);
+      return ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+    }
+  }
+
   @Override
   public synchronized void updateAccessToken(String accessToken, int expiresInSeconds) {
     try (Jedis jedis = this.jedisPool.getResource()) {
@@ -0,0 +1,162 @@
+package me.chanjar.weixin.mp.config.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <pre>
+ * 基于Redis发布订阅的近端缓存跨节点失效通知.
+ * 注册到本对象的{@link WxMpNearCacheConfigImpl}在更新或者强制过期token/ticket时会发布一条消息，
+ * 其他节点收到后使对应公众号的本地缓存失效，下次读取时重新从Redis获取.
+ * 订阅占用一个独立的Redis连接及一个后台线程，连接断开后会自动重新订阅，重新订阅时会使所有本地缓存失效以免错过通知.
+ *
+ * 使用示例：
+ *   WxMpRedisNearCacheInvalidator invalidator = new WxMpRedisNearCacheInvalidator(jedisPool);
+ *   WxMpNearCacheConfigImpl config = new WxMpNearCacheConfigImpl(new WxMpRedisConfigImpl(jedisPool));
+ *   invalidator.register(config);
+ *   invalidator.start();
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMpRedisNearCacheInvalidator implements WxMpNearCacheConfigImpl.InvalidationPublisher, Closeable {
+  private static final Logger log = LoggerFactory.getLogger(WxMpRedisNearCacheInvalidator.class);
+
+  private static final String DEFAULT_CHANNEL = "wx:near_cache:invalidate";
+  private static final String SEPARATOR = "|";
+  private static final long RESUBSCRIBE_INTERVAL_MILLIS = 1000L;
+
+  private final JedisPool jedisPool;
+  private final String channel;
+  /**
+   * 本节点的标识，用于忽略自己发出的消息.
+   */
+  private final String nodeId = UUID.randomUUID().toString();
+  private final ConcurrentHashMap<String, List<WxMpNearCacheConfigImpl>> configs = new ConcurrentHashMap<>();
+  private final JedisPubSub subscriber = new JedisPubSub() {
+    @Override
+    public void onSubscribe(String channel, int subscribedChannels) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+      handleMessage(message);
+    }
+  };
+
+  private volatile boolean closed;
+  private Thread subscribeThread;
+
+  public WxMpRedisNearCacheInvalidator(JedisPool jedisPool) {
+    this(jedisPool, DEFAULT_CHANNEL);
+  }
+
+  /**
+   * @param jedisPool Redis连接池
+   * @param channel   发布订阅使用的频道
+   */
+  public WxMpRedisNearCacheInvalidator(JedisPool jedisPool, String channel) {
+    this.jedisPool = jedisPool;
+    this.channel = channel;
+  }
+
+  /**
+   * 注册近端缓存，使其能够发出及接收失效通知.
+   *
+   * @param config 近端缓存配置
+   */
+  public void register(WxMpNearCacheConfigImpl config) {
+    this.configs.computeIfAbsent(config.getAppId(), k -> new CopyOnWriteArrayList<>()).add(config);
+    config.setInvalidationPublisher(this);
+  }
+
+  /**
+   * 启动后台订阅线程.
+   */
+  public synchronized void start() {
+    if (this.subscribeThread != null) {
+      return;
+    }
+
+    this.subscribeThread = new Thread(this::subscribeLoop, "WxMpRedisNearCacheInvalidator");
+    this.subscribeThread.setDaemon(true);
+    this.subscribeThread.start();
+  }
+
+  private void subscribeLoop() {
+    while (!this.closed) {
+      try (Jedis jedis = this.jedisPool.getResource()) {
+        jedis.subscribe(this.subscriber, this.channel);
+      } catch (Exception e) {
+        if (this.closed) {
+          return;
+        }
+
+        log.warn("订阅近端缓存失效通知失败，稍后重试：{}", e.getMessage());
+      }
+
+      // 订阅中断期间可能错过了通知
+      this.invalidateAll();
+      try {
+        Thread.sleep(RESUBSCRIBE_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  @Override
+  public void publish(String appId, String cacheKey) {
+    try (Jedis jedis = this.jedisPool.getResource()) {
+      jedis.publish(this.channel, this.nodeId + SEPARATOR + appId + SEPARATOR + cacheKey);
+    } catch (Exception e) {
+      log.warn("发布近端缓存失效通知失败，appId={}，key={}：{}", appId, cacheKey, e.getMessage());
+    }
+  }
+
+  private void handleMessage(String message) {
+    String[] parts = message.split("\\|", 3);
+    if (parts.length != 3 || this.nodeId.equals(parts[0])) {
+      return;
+    }
+
+    List<WxMpNearCacheConfigImpl> list = this.configs.get(parts[1]);
+    if (list != null) {
+      for (WxMpNearCacheConfigImpl config : list) {
+        config.invalidate(parts[2]);
+      }
+    }
+  }
+
+  private void invalidateAll() {
+    for (List<WxMpNearCacheConfigImpl> list : this.configs.values()) {
+      for (WxMpNearCacheConfigImpl config : list) {
+        config.invalidateAll();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    this.closed = true;
+    if (this.subscriber.isSubscribed()) {
+      this.subscriber.unsubscribe();
+    }
+
+    if (this.subscribeThread != null) {
+      this.subscribeThread.interrupt();
+      this.subscribeThread = null;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import me.chanjar.weixin.mp.bean.template.WxMpTemplateMessage;
 public class WxMpGsonBuilder {
 
   private static final GsonBuilder INSTANCE = new GsonBuilder();
+  private static final Gson GSON_INSTANCE;
 
   static {
     INSTANCE.disableHtmlEscaping();
@@ -63,10 +64,12 @@ public class WxMpGsonBuilder {
     INSTANCE.registerTypeAdapter(WxMpMemberCardUserInfoResult.class, new WxMpMemberCardUserInfoResultGsonAdapter());
     INSTANCE.registerTypeAdapter(WxMpMemberCardUpdateResult.class, new WxMpMemberCardUpdateResultGsonAdapter());
     INSTANCE.registerTypeAdapter(WxMpMemberCardActivateTempInfoResult.class, new WxMpMemberCardActivateTempInfoResultGsonAdapter());
+
+    GSON_INSTANCE = INSTANCE.create();
   }
 
   public static Gson create() {
-    return INSTANCE.create();
+    return GSON_INSTANCE;
   }
 
 }
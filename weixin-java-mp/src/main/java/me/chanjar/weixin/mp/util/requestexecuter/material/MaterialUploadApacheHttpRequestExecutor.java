@@ -62,7 +62,7 @@ public class MaterialUploadApacheHttpRequestExecutor extends MaterialUploadReque
     httpPost.setEntity(multipartEntityBuilder.build());
     httpPost.setHeader("Content-Type", ContentType.MULTIPART_FORM_DATA.toString());
 
-    try (CloseableHttpResponse response = requestHttp.getRequestHttpClient().execute(httpPost)) {
+    try (CloseableHttpResponse response = requestHttp.getMediaRequestHttpClient().execute(httpPost)) {
       String responseContent = Utf8ResponseHandler.INSTANCE.handleResponse(response);
       WxError error = WxError.fromJson(responseContent, WxType.MP);
       if (error.getErrorCode() != 0) {
@@ -41,7 +41,7 @@ public class MaterialVoiceAndImageDownloadApacheHttpRequestExecutor extends Mate
     Map<String, String> params = new HashMap<>();
     params.put("media_id", materialId);
     httpPost.setEntity(new StringEntity(WxGsonBuilder.create().toJson(params)));
-    try (CloseableHttpResponse response = requestHttp.getRequestHttpClient().execute(httpPost);
+    try (CloseableHttpResponse response = requestHttp.getMediaRequestHttpClient().execute(httpPost);
          InputStream inputStream = InputStreamResponseHandler.INSTANCE.handleResponse(response)) {
       // 下载媒体文件出错
       byte[] responseContent = IOUtils.toByteArray(inputStream);
@@ -47,7 +47,7 @@ public class QrCodeApacheHttpRequestExecutor extends QrCodeRequestExecutor<Close
       httpGet.setConfig(config);
     }
 
-    try (CloseableHttpResponse response = requestHttp.getRequestHttpClient().execute(httpGet);
+    try (CloseableHttpResponse response = requestHttp.getMediaRequestHttpClient().execute(httpGet);
          InputStream inputStream = InputStreamResponseHandler.INSTANCE.handleResponse(response);) {
       Header[] contentTypeHeader = response.getHeaders("Content-Type");
       if (contentTypeHeader != null && contentTypeHeader.length > 0) {
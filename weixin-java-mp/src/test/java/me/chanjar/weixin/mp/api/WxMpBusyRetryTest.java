@@ -3,14 +3,20 @@ package me.chanjar.weixin.mp.api;
 import lombok.extern.slf4j.Slf4j;
 import me.chanjar.weixin.common.error.WxError;
 import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 import me.chanjar.weixin.common.util.http.RequestExecutor;
 import me.chanjar.weixin.mp.api.impl.WxMpServiceHttpClientImpl;
 import org.testng.annotations.*;
 
+import java.io.ByteArrayInputStream;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
 
 @Test
 @Slf4j
@@ -64,4 +70,27 @@ public class WxMpBusyRetryTest {
     submit2.get();
   }
 
+  @Test
+  public void testNoRetryForOneShotUpload() throws WxErrorException {
+    final AtomicInteger executions = new AtomicInteger();
+    WxMpService service = new WxMpServiceHttpClientImpl() {
+      @Override
+      public <T, E> T executeInternal(RequestExecutor<T, E> executor, String uri, E data) throws WxErrorException {
+        executions.incrementAndGet();
+        throw new WxErrorException(WxError.builder().errorCode(-1).build());
+      }
+    };
+    service.setRetrySleepMillis(10);
+
+    // 输入流已经发送过，重试只会得到“只能读取一次”的错误，应直接抛出原始错误
+    MediaUploadSource source = MediaUploadSource.of(new ByteArrayInputStream(new byte[10]), "a.jpg");
+    try {
+      service.execute(null, (String) null, source);
+      fail("应该抛出异常");
+    } catch (WxErrorException e) {
+      assertEquals(e.getError().getErrorCode(), -1);
+    }
+    assertEquals(executions.get(), 1);
+  }
+
 }
@@ -0,0 +1,128 @@
+package me.chanjar.weixin.mp.api;
+
+import me.chanjar.weixin.common.api.WxConsts;
+import me.chanjar.weixin.common.session.WxSessionManager;
+import me.chanjar.weixin.mp.bean.message.WxMpXmlMessage;
+import me.chanjar.weixin.mp.bean.message.WxMpXmlOutMessage;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * <pre>
+ * 1000条规则时消息路由的开销对比.
+ * legacyScan 模拟之前逐条规则匹配且每次都重新编译正则表达式的做法，
+ * compiledScan 为逐条规则匹配但正则表达式已预先编译，
+ * indexedMatch 为路由时通过规则索引只匹配候选规则的做法.
+ * 规则包括500条菜单点击事件规则、400条关键词规则、99条正则规则以及1条兜底规则.
+ * 运行main方法即可执行.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WxMpMessageRouterBenchmark {
+  private static final WxMpMessageHandler HANDLER = new WxMpMessageHandler() {
+    @Override
+    public WxMpXmlOutMessage handle(WxMpXmlMessage wxMessage, Map<String, Object> context, WxMpService wxMpService,
+                                    WxSessionManager sessionManager) {
+      return null;
+    }
+  };
+
+  @Param({"click", "keyword", "regex"})
+  private String messageType;
+
+  private WxMpMessageRouter router;
+  private WxMpXmlMessage message;
+
+  @Setup
+  public void setup() {
+    this.router = new WxMpMessageRouter(null);
+
+    for (int i = 0; i < 500; i++) {
+      this.router.rule().async(false).msgType(WxConsts.XmlMsgType.EVENT).event(WxConsts.EventType.CLICK)
+        .eventKey("MENU_" + i).handler(HANDLER).end();
+    }
+    for (int i = 0; i < 400; i++) {
+      this.router.rule().async(false).msgType(WxConsts.XmlMsgType.TEXT).content("keyword" + i)
+        .handler(HANDLER).end();
+    }
+    for (int i = 0; i < 99; i++) {
+      this.router.rule().async(false).msgType(WxConsts.XmlMsgType.TEXT).rContent("^order" + i + "-\\d+$")
+        .handler(HANDLER).end();
+    }
+    this.router.rule().async(false).handler(HANDLER).end();
+
+    this.message = new WxMpXmlMessage();
+    this.message.setFromUser("oUpF8uMuAJO_M2pxb1Q9zNjWeS6o");
+    switch (this.messageType) {
+      case "click":
+        this.message.setMsgType("event");
+        this.message.setEvent("CLICK");
+        this.message.setEventKey("MENU_450");
+        break;
+      case "keyword":
+        this.message.setMsgType("text");
+        this.message.setContent("keyword350");
+        break;
+      default:
+        this.message.setMsgType("text");
+        this.message.setContent("order90-20200101");
+    }
+
+    if (this.legacyScan() != this.compiledScan() || this.legacyScan() != this.indexedMatch().get(0)) {
+      throw new IllegalStateException("两种方式匹配到的规则不一致");
+    }
+  }
+
+  @Benchmark
+  public WxMpMessageRouterRule legacyScan() {
+    for (WxMpMessageRouterRule rule : this.router.getRules()) {
+      if (legacyTest(rule, this.message)) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public WxMpMessageRouterRule compiledScan() {
+    for (WxMpMessageRouterRule rule : this.router.getRules()) {
+      if (rule.test(this.message)) {
+        return rule;
+      }
+    }
+    return null;
+  }
+
+  @Benchmark
+  public List<WxMpMessageRouterRule> indexedMatch() {
+    return this.router.matchRules(this.message);
+  }
+
+  private static boolean legacyTest(WxMpMessageRouterRule rule, WxMpXmlMessage wxMessage) {
+    return (rule.getFromUser() == null || rule.getFromUser().equals(wxMessage.getFromUser()))
+      && (rule.getMsgType() == null || rule.getMsgType().equalsIgnoreCase(wxMessage.getMsgType()))
+      && (rule.getEvent() == null || rule.getEvent().equalsIgnoreCase(wxMessage.getEvent()))
+      && (rule.getEventKey() == null || rule.getEventKey().equalsIgnoreCase(wxMessage.getEventKey()))
+      && (rule.getContent() == null || rule.getContent().equals(StringUtils.trimToNull(wxMessage.getContent())))
+      && (rule.getrContent() == null
+      || Pattern.matches(rule.getrContent(), StringUtils.trimToEmpty(wxMessage.getContent())));
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(WxMpMessageRouterBenchmark.class.getSimpleName()).build()).run();
+  }
+}
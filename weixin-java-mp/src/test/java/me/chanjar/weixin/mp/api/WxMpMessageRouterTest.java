@@ -114,6 +114,29 @@ public class WxMpMessageRouterTest {
     Thread.sleep(2000);
   }
 
+  public void testReEnterAndRuleChanged() {
+    StringBuffer sb = new StringBuffer();
+    WxMpMessageRouter router = new WxMpMessageRouter(null);
+    WxMpMessageRouterRule clickRule = router.rule().async(false);
+    clickRule.event(WxConsts.EventType.CLICK).eventKey("KEY_1").handler(new WxEchoMpMessageHandler(sb, "KEY_1")).next()
+      .rule().async(false).rContent("KEY.*").handler(new WxEchoMpMessageHandler(sb, "rContent")).end()
+      .rule().async(false).event(WxConsts.EventType.CLICK).handler(new WxEchoMpMessageHandler(sb, "CLICK")).end()
+      .rule().async(false).handler(new WxEchoMpMessageHandler(sb, "ALL")).end();
+
+    WxMpXmlMessage message = new WxMpXmlMessage();
+    message.setEvent("CLICK");
+    message.setEventKey("KEY_1");
+    router.route(message);
+    Assert.assertEquals(sb.toString(), "KEY_1,CLICK,");
+
+    // 已注册规则的匹配条件变化后，索引需要重建
+    sb.setLength(0);
+    clickRule.setEventKey("KEY_2");
+    message.setCreateTime(1L);
+    router.route(message);
+    Assert.assertEquals(sb.toString(), "CLICK,");
+  }
+
   @DataProvider(name = "messages-1")
   public Object[][] messages2() {
     WxMpXmlMessage message1 = new WxMpXmlMessage();
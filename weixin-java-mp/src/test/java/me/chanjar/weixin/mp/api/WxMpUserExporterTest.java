@@ -0,0 +1,195 @@
+package me.chanjar.weixin.mp.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.mp.api.impl.WxMpServiceImpl;
+import me.chanjar.weixin.mp.bean.WxMpHostConfig;
+import me.chanjar.weixin.mp.bean.result.WxMpUser;
+import me.chanjar.weixin.mp.config.impl.WxMpDefaultConfigImpl;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMpUserExporterTest {
+  /**
+   * 模拟的关注者列表，共250人，每页120个.
+   */
+  private static final int TOTAL = 250;
+  private static final int PAGE_SIZE = 120;
+
+  private HttpServer server;
+  private WxMpService wxMpService;
+  private final AtomicInteger batchRequests = new AtomicInteger();
+  private final AtomicInteger busyResponses = new AtomicInteger();
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    this.batchRequests.set(0);
+    this.busyResponses.set(0);
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/cgi-bin/token",
+      exchange -> respond(exchange, "{\"access_token\":\"token\",\"expires_in\":7200}"));
+    this.server.createContext("/cgi-bin/user/get", exchange -> {
+      String query = exchange.getRequestURI().getQuery();
+      int from = 0;
+      for (String param : query.split("&")) {
+        if (param.startsWith("next_openid=") && param.length() > "next_openid=".length()) {
+          from = Integer.parseInt(param.substring("next_openid=o".length())) + 1;
+        }
+      }
+
+      int to = Math.min(from + PAGE_SIZE, TOTAL);
+      JsonArray openids = new JsonArray();
+      for (int i = from; i < to; i++) {
+        openids.add("o" + i);
+      }
+      JsonObject data = new JsonObject();
+      data.add("openid", openids);
+      JsonObject page = new JsonObject();
+      page.addProperty("total", TOTAL);
+      page.addProperty("count", openids.size());
+      page.add("data", data);
+      page.addProperty("next_openid", to > from ? "o" + (to - 1) : "");
+      respond(exchange, page.toString());
+    });
+    this.server.createContext("/cgi-bin/user/info/batchget", exchange -> {
+      this.batchRequests.incrementAndGet();
+      if (this.busyResponses.getAndDecrement() > 0) {
+        respond(exchange, "{\"errcode\":45011,\"errmsg\":\"api minute-quota reach limit\"}");
+        return;
+      }
+
+      String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+      JsonArray users = new JsonArray();
+      for (JsonElement user : new JsonParser().parse(body).getAsJsonObject().getAsJsonArray("user_list")) {
+        JsonObject info = new JsonObject();
+        info.addProperty("subscribe", 1);
+        info.addProperty("openid", user.getAsJsonObject().get("openid").getAsString());
+        users.add(info);
+      }
+      JsonObject result = new JsonObject();
+      result.add("user_info_list", users);
+      respond(exchange, result.toString());
+    });
+    this.server.start();
+
+    final WxMpHostConfig hostConfig = new WxMpHostConfig();
+    hostConfig.setApiHost("http://127.0.0.1:" + this.server.getAddress().getPort());
+    WxMpDefaultConfigImpl config = new WxMpDefaultConfigImpl() {
+      @Override
+      public WxMpHostConfig getHostConfig() {
+        return hostConfig;
+      }
+    };
+    config.setAppId("appid");
+    config.setSecret("secret");
+
+    this.wxMpService = new WxMpServiceImpl();
+    this.wxMpService.setWxMpConfigStorage(config);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    this.server.stop(0);
+  }
+
+  private static void respond(HttpExchange exchange, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bytes);
+    }
+  }
+
+  @Test
+  public void testExport() throws WxErrorException {
+    WxMpUserExporter exporter = new WxMpUserExporter(this.wxMpService);
+    exporter.setConcurrency(3);
+    List<String> openids = new ArrayList<>();
+    List<String> checkpoints = new ArrayList<>();
+
+    WxMpUserExporter.Stats stats = exporter.export(null, user -> openids.add(user.getOpenId()), checkpoints::add);
+
+    assertEquals(openids.size(), TOTAL);
+    for (int i = 0; i < TOTAL; i++) {
+      assertEquals(openids.get(i), "o" + i);
+    }
+    assertEquals(checkpoints.toString(), "[o119, o239, o249]");
+    // 每页按100个一组：120 = 100 + 20，120 = 100 + 20，10
+    assertEquals(this.batchRequests.get(), 5);
+    assertEquals(stats.getUsers(), TOTAL);
+    assertEquals(stats.getTotal(), TOTAL);
+    assertEquals(stats.getPages(), 4);
+    assertEquals(stats.getRequests(), 5);
+    assertEquals(stats.getCheckpoint(), "o249");
+    assertTrue(stats.isFinished());
+    assertEquals(exporter.getStats().getUsers(), TOTAL);
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws WxErrorException {
+    WxMpUserExporter exporter = new WxMpUserExporter(this.wxMpService);
+    List<String> openids = new ArrayList<>();
+
+    WxMpUserExporter.Stats stats = exporter.export("o119", user -> openids.add(user.getOpenId()), null);
+
+    assertEquals(openids.size(), TOTAL - PAGE_SIZE);
+    assertEquals(openids.get(0), "o120");
+    assertEquals(stats.getCheckpoint(), "o249");
+  }
+
+  @Test
+  public void testRetryWhenRateLimited() throws WxErrorException {
+    this.busyResponses.set(2);
+    WxMpUserExporter exporter = new WxMpUserExporter(this.wxMpService);
+    exporter.setConcurrency(1);
+    exporter.setRetryDelayMillis(10);
+    List<String> openids = new ArrayList<>();
+
+    WxMpUserExporter.Stats stats = exporter.export(user -> openids.add(user.getOpenId()));
+
+    assertEquals(openids.size(), TOTAL);
+    assertEquals(stats.getRetries(), 2);
+    assertEquals(stats.getRequests(), 7);
+  }
+
+  @Test
+  public void testFailAfterMaxRetries() {
+    this.busyResponses.set(Integer.MAX_VALUE);
+    WxMpUserExporter exporter = new WxMpUserExporter(this.wxMpService);
+    exporter.setMaxRetries(1);
+    exporter.setRetryDelayMillis(10);
+    List<WxMpUser> users = new ArrayList<>();
+
+    try {
+      exporter.export(users::add);
+      fail("应该抛出异常");
+    } catch (WxErrorException e) {
+      assertEquals(e.getError().getErrorCode(), 45011);
+    }
+    assertTrue(users.isEmpty());
+    assertTrue(exporter.getStats().isFinished());
+  }
+
+}
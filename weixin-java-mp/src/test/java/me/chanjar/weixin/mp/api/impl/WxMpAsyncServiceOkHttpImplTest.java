@@ -0,0 +1,229 @@
+package me.chanjar.weixin.mp.api.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.mp.bean.WxMpHostConfig;
+import me.chanjar.weixin.mp.bean.template.WxMpTemplateMessage;
+import me.chanjar.weixin.mp.config.WxMpConfigStorage;
+import me.chanjar.weixin.mp.config.impl.WxMpDefaultConfigImpl;
+import me.chanjar.weixin.mp.util.WxMpConfigStorageHolder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMpAsyncServiceOkHttpImplTest {
+  private HttpServer server;
+  private WxMpServiceImpl wxMpService;
+  private WxMpAsyncServiceOkHttpImpl asyncService;
+  private final AtomicInteger tokenRequests = new AtomicInteger();
+  private final Queue<String> tokenResponses = new ConcurrentLinkedQueue<>();
+  private final Queue<String> sendResponses = new ConcurrentLinkedQueue<>();
+  private final Queue<String> sendQueries = new ConcurrentLinkedQueue<>();
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    this.tokenRequests.set(0);
+    this.tokenResponses.clear();
+    this.sendResponses.clear();
+    this.sendQueries.clear();
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/cgi-bin/token", exchange -> {
+      int n = this.tokenRequests.incrementAndGet();
+      String response = this.tokenResponses.poll();
+      String appId = exchange.getRequestURI().getQuery().replaceAll(".*appid=([^&]*).*", "$1");
+      String token = "appid".equals(appId) ? "token" + n : appId + "-token" + n;
+      respond(exchange, response != null ? response : "{\"access_token\":\"" + token + "\",\"expires_in\":7200}");
+    });
+    this.server.createContext("/cgi-bin/message/template/send", exchange -> {
+      this.sendQueries.add(exchange.getRequestURI().getQuery());
+      String response = this.sendResponses.poll();
+      respond(exchange, response != null ? response : "{\"errcode\":0,\"errmsg\":\"ok\",\"msgid\":200228332}");
+    });
+    this.server.start();
+
+    final WxMpHostConfig hostConfig = new WxMpHostConfig();
+    hostConfig.setApiHost("http://127.0.0.1:" + this.server.getAddress().getPort());
+    WxMpDefaultConfigImpl config = new WxMpDefaultConfigImpl() {
+      @Override
+      public WxMpHostConfig getHostConfig() {
+        return hostConfig;
+      }
+    };
+    config.setAppId("appid");
+    config.setSecret("secret");
+    WxMpDefaultConfigImpl otherConfig = new WxMpDefaultConfigImpl() {
+      @Override
+      public WxMpHostConfig getHostConfig() {
+        return hostConfig;
+      }
+    };
+    otherConfig.setAppId("other");
+    otherConfig.setSecret("secret");
+
+    this.wxMpService = new WxMpServiceImpl();
+    Map<String, WxMpConfigStorage> configs = new LinkedHashMap<>();
+    configs.put("appid", config);
+    configs.put("other", otherConfig);
+    this.wxMpService.setMultiConfigStorages(configs, "appid");
+    this.asyncService = new WxMpAsyncServiceOkHttpImpl(this.wxMpService);
+    this.asyncService.setRetrySleepMillis(10);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    WxMpConfigStorageHolder.set("default");
+    this.asyncService.close();
+    this.server.stop(0);
+  }
+
+  private static void respond(com.sun.net.httpserver.HttpExchange exchange, String body) throws java.io.IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bytes);
+    }
+  }
+
+  private static WxMpTemplateMessage message() {
+    return WxMpTemplateMessage.builder().toUser("openid").templateId("templateId").build();
+  }
+
+  @Test
+  public void testConcurrentRequestsShareTokenRefresh() throws Exception {
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(this.asyncService.sendTemplateMsg(message()));
+    }
+
+    for (CompletableFuture<String> future : futures) {
+      assertEquals(future.get(5, TimeUnit.SECONDS), "200228332");
+    }
+    assertEquals(this.tokenRequests.get(), 1);
+    for (String query : this.sendQueries) {
+      assertEquals(query, "access_token=token1");
+    }
+  }
+
+  @Test
+  public void testRetryOnBusyAndExpiredToken() throws Exception {
+    this.sendResponses.add("{\"errcode\":-1,\"errmsg\":\"system error\"}");
+    this.sendResponses.add("{\"errcode\":42001,\"errmsg\":\"access_token expired\"}");
+
+    assertEquals(this.asyncService.sendTemplateMsg(message()).get(5, TimeUnit.SECONDS), "200228332");
+    assertEquals(this.tokenRequests.get(), 2);
+    assertEquals(new ArrayList<>(this.sendQueries).get(2), "access_token=token2");
+  }
+
+  @Test
+  public void testWithoutBusyRetry() throws Exception {
+    this.sendResponses.add("{\"errcode\":42001,\"errmsg\":\"access_token expired\"}");
+    this.sendResponses.add("{\"errcode\":-1,\"errmsg\":\"system error\"}");
+
+    // access token失效仍会刷新后重发，系统繁忙则直接失败，交给调用方重试
+    try {
+      this.asyncService.withoutBusyRetry().sendTemplateMsg(message()).get(5, TimeUnit.SECONDS);
+      fail("应该抛出异常");
+    } catch (ExecutionException e) {
+      assertEquals(((WxErrorException) e.getCause()).getError().getErrorCode(), -1);
+    }
+    assertEquals(this.sendQueries.size(), 2);
+    assertEquals(this.tokenRequests.get(), 2);
+
+    // 与原实例共用access token
+    assertEquals(this.asyncService.getAccessToken(false).get(5, TimeUnit.SECONDS), "token2");
+    this.asyncService.withoutBusyRetry().close();
+    assertEquals(this.asyncService.sendTemplateMsg(message()).get(5, TimeUnit.SECONDS), "200228332");
+  }
+
+  @Test
+  public void testTokenParseFailureCompletesWaiters() throws Exception {
+    this.tokenResponses.add("<html>502 Bad Gateway</html>");
+
+    List<CompletableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(this.asyncService.sendTemplateMsg(message()));
+    }
+    for (CompletableFuture<String> future : futures) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail("应该抛出异常");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof WxErrorException);
+      }
+    }
+
+    // 失败的刷新不会残留，之后的请求重新刷新
+    assertEquals(this.asyncService.sendTemplateMsg(message()).get(5, TimeUnit.SECONDS), "200228332");
+    assertEquals(new ArrayList<>(this.sendQueries), Collections.singletonList("access_token=token2"));
+  }
+
+  @Test
+  public void testSlowRefreshDoesNotBlockOtherAccounts() throws Exception {
+    // 模拟其他节点持有appid的access token锁，其刷新会一直等待
+    final Lock lock = this.wxMpService.getWxMpConfigStorage().getAccessTokenLock();
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread(() -> {
+      lock.lock();
+      try {
+        locked.countDown();
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        lock.unlock();
+      }
+    });
+    holder.start();
+    locked.await();
+
+    try {
+      CompletableFuture<String> blocked = this.asyncService.sendTemplateMsg(message());
+      this.wxMpService.switchover("other");
+      assertEquals(this.asyncService.sendTemplateMsg(message()).get(5, TimeUnit.SECONDS), "200228332");
+      assertEquals(new ArrayList<>(this.sendQueries), Collections.singletonList("access_token=other-token1"));
+      assertFalse(blocked.isDone());
+
+      release.countDown();
+      assertEquals(blocked.get(5, TimeUnit.SECONDS), "200228332");
+    } finally {
+      release.countDown();
+      holder.join();
+    }
+  }
+
+  @Test
+  public void testErrorCompletesExceptionally() throws Exception {
+    this.sendResponses.add("{\"errcode\":40003,\"errmsg\":\"invalid openid\"}");
+
+    try {
+      this.asyncService.sendTemplateMsg(message()).get(5, TimeUnit.SECONDS);
+      fail("应该抛出异常");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof WxErrorException);
+      assertEquals(((WxErrorException) e.getCause()).getError().getErrorCode(), 40003);
+    }
+  }
+}
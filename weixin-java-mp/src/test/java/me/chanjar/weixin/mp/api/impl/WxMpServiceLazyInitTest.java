@@ -0,0 +1,66 @@
+package me.chanjar.weixin.mp.api.impl;
+
+import me.chanjar.weixin.mp.api.WxMpKefuService;
+import me.chanjar.weixin.mp.api.WxMpQrcodeService;
+import me.chanjar.weixin.mp.api.WxMpService;
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * 接口服务按需创建的测试.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Test
+public class WxMpServiceLazyInitTest {
+
+  public void testConcurrentFirstAccess() throws Exception {
+    final WxMpService service = new WxMpServiceHttpClientImpl();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      Set<Future<WxMpKefuService>> futures = new HashSet<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<WxMpKefuService>() {
+          @Override
+          public WxMpKefuService call() throws Exception {
+            start.await();
+            return service.getKefuService();
+          }
+        }));
+      }
+      start.countDown();
+
+      for (Future<WxMpKefuService> future : futures) {
+        assertSame(future.get(), service.getKefuService());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public void testSetterWinsOverDefault() {
+    WxMpService service = new WxMpServiceHttpClientImpl();
+    WxMpQrcodeService custom = new WxMpQrcodeServiceImpl(service);
+
+    service.setQrCodeService(custom);
+    assertSame(service.getQrcodeService(), custom);
+
+    service.setQrCodeService(null);
+    WxMpQrcodeService created = service.getQrcodeService();
+    assertNotSame(created, custom);
+    assertTrue(created instanceof WxMpQrcodeServiceImpl);
+    assertSame(service.getQrcodeService(), created);
+  }
+}
@@ -0,0 +1,121 @@
+package me.chanjar.weixin.mp.config.impl;
+
+import me.chanjar.weixin.mp.enums.TicketType;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 近端缓存配置测试，使用统计读取次数的内存配置模拟Redis配置.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxMpNearCacheConfigImplTest {
+  private CountingConfig delegate;
+  private WxMpNearCacheConfigImpl config;
+
+  @BeforeMethod
+  public void setUp() {
+    this.delegate = new CountingConfig();
+    this.delegate.setAppId("appid");
+    this.delegate.updateAccessToken("token1", 7200);
+    this.delegate.updateTicket(TicketType.JSAPI, "ticket1", 7200);
+    this.config = new WxMpNearCacheConfigImpl(this.delegate);
+  }
+
+  @Test
+  public void testAccessTokenServedFromMemory() {
+    for (int i = 0; i < 100; i++) {
+      assertThat(this.config.isAccessTokenExpired()).isFalse();
+      assertThat(this.config.getAccessToken()).isEqualTo("token1");
+    }
+
+    assertThat(this.delegate.reads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testUpdateAndExpire() {
+    final StringBuilder published = new StringBuilder();
+    this.config.setInvalidationPublisher((appId, cacheKey) -> published.append(appId).append(':').append(cacheKey));
+
+    this.config.updateAccessToken("token2", 7200);
+    assertThat(published.toString()).isEqualTo("appid:" + WxMpNearCacheConfigImpl.ACCESS_TOKEN_CACHE_KEY);
+    assertThat(this.config.getAccessToken()).isEqualTo("token2");
+    assertThat(this.delegate.reads.get()).isEqualTo(0);
+
+    this.config.expireAccessToken();
+    assertThat(this.config.isAccessTokenExpired()).isTrue();
+    assertThat(this.delegate.reads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testInvalidate() {
+    assertThat(this.config.getAccessToken()).isEqualTo("token1");
+
+    // 其他节点刷新了token
+    this.delegate.updateAccessToken("token2", 7200);
+    assertThat(this.config.getAccessToken()).isEqualTo("token1");
+
+    this.config.invalidate(WxMpNearCacheConfigImpl.ACCESS_TOKEN_CACHE_KEY);
+    assertThat(this.config.getAccessToken()).isEqualTo("token2");
+  }
+
+  @Test
+  public void testMaxLocalTtl() throws InterruptedException {
+    this.config.setMaxLocalTtlMillis(50);
+    assertThat(this.config.getAccessToken()).isEqualTo("token1");
+    this.delegate.updateAccessToken("token2", 7200);
+    Thread.sleep(100);
+    assertThat(this.config.getAccessToken()).isEqualTo("token2");
+  }
+
+  @Test
+  public void testTicket() {
+    for (int i = 0; i < 10; i++) {
+      assertThat(this.config.isTicketExpired(TicketType.JSAPI)).isFalse();
+      assertThat(this.config.getTicket(TicketType.JSAPI)).isEqualTo("ticket1");
+    }
+    assertThat(this.delegate.reads.get()).isEqualTo(2);
+
+    assertThat(this.config.isTicketExpired(TicketType.WX_CARD)).isTrue();
+
+    this.delegate.updateTicket(TicketType.JSAPI, "ticket2", 7200);
+    this.config.invalidate(WxMpNearCacheConfigImpl.TICKET_CACHE_KEY_PREFIX + TicketType.JSAPI.name());
+    assertThat(this.config.getTicket(TicketType.JSAPI)).isEqualTo("ticket2");
+
+    this.config.expireTicket(TicketType.JSAPI);
+    assertThat(this.config.isTicketExpired(TicketType.JSAPI)).isTrue();
+  }
+
+  private static class CountingConfig extends WxMpDefaultConfigImpl {
+    private static final long serialVersionUID = 2947463598536424436L;
+    private final AtomicInteger reads = new AtomicInteger();
+
+    @Override
+    public boolean isAccessTokenExpired() {
+      this.reads.incrementAndGet();
+      return super.isAccessTokenExpired();
+    }
+
+    @Override
+    public String getAccessToken() {
+      this.reads.incrementAndGet();
+      return super.getAccessToken();
+    }
+
+    @Override
+    public boolean isTicketExpired(TicketType type) {
+      this.reads.incrementAndGet();
+      return super.isTicketExpired(type);
+    }
+
+    @Override
+    public String getTicket(TicketType type) {
+      this.reads.incrementAndGet();
+      return super.getTicket(type);
+    }
+  }
+}
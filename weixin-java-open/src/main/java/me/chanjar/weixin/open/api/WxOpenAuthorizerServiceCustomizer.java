@@ -0,0 +1,39 @@
+package me.chanjar.weixin.open.api;
+
+import me.chanjar.weixin.mp.api.WxMpService;
+
+/**
+ * <pre>
+ * 授权方service的定制回调，每次创建授权方service（包括被缓存淘汰后重新创建）时调用.
+ * 重试参数、小程序码缓存等需要在service上设置的内容应当放在这里，而不是在获取到service后手动设置，
+ * 否则service被淘汰重建后这些设置会丢失.
+ * 不需要的方法留空即可.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public interface WxOpenAuthorizerServiceCustomizer {
+  /**
+   * 定制授权方公众号的service.
+   *
+   * @param appId   授权方appId
+   * @param service 新创建的service
+   */
+  void customize(String appId, WxMpService service);
+
+  /**
+   * 定制授权方小程序的service.
+   *
+   * @param appId   授权方appId
+   * @param service 新创建的service
+   */
+  void customize(String appId, WxOpenMaService service);
+
+  /**
+   * 定制快速创建的小程序的service.
+   *
+   * @param appId   授权方appId
+   * @param service 新创建的service
+   */
+  void customize(String appId, WxOpenFastMaService service);
+}
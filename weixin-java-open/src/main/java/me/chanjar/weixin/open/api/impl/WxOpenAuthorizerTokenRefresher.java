@@ -0,0 +1,494 @@
+package me.chanjar.weixin.open.api.impl;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.open.api.WxOpenComponentService;
+import me.chanjar.weixin.open.api.WxOpenConfigStorage;
+import me.chanjar.weixin.open.bean.result.WxOpenAuthorizerListResult;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 第三方平台授权方access token后台批量刷新器.
+ * 1. 分页拉取{@link WxOpenComponentService#getAuthorizerList(int, int)}得到所有授权方，之后定期重新拉取，
+ *    以便加入新的授权方、移除已取消授权的授权方，也可以在收到授权事件时通过{@link #register(String)}立即加入；
+ * 2. 所有授权方按照计划刷新时间（过期前refreshAheadMillis）放入优先级队列，由固定数量的工作线程依次取出刷新，
+ *    因此同时进行的刷新请求数不会超过工作线程数；
+ * 3. 多个节点共享Redis存储时，通过{@link Lease}保证同一时间只有一个节点刷新同一个授权方，
+ *    其他节点取到该授权方时会发现token已经被刷新，直接按照新的过期时间重新排队；
+ *    获取到租约后会再次检查过期时间，避免检查之后、获取租约之前其他节点刚好刷新完成导致重复刷新；
+ * 4. 通过{@link #getStats()}获取队列长度、已到期未刷新的数量以及实际刷新时间相对计划的延迟.
+ *
+ * 过期时间取自{@link WxOpenInMemoryConfigStorage#getAuthorizerAccessTokenExpiresTime(String)}（Redis存储同样支持），
+ * 其他存储实现无法得知过期时间，会在每次刷新后按照微信默认的7200秒有效期估算下次刷新时间.
+ * 授权已取消（61003）或者refresh token失效（61023）的授权方不再刷新，其他错误每隔retryDelayMillis重试.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Slf4j
+public class WxOpenAuthorizerTokenRefresher implements Closeable {
+  /**
+   * 授权方access token默认的有效时间，已减去存储实现预留的200秒.
+   */
+  private static final long DEFAULT_EXPIRES_IN_MILLIS = (7200 - 200) * 1000L;
+  /**
+   * getAuthorizerList每次最多拉取的数量.
+   */
+  private static final int PAGE_SIZE = 500;
+  private static final Set<Integer> ABANDON_ERROR_CODES = new HashSet<>(Arrays.asList(61003, 61023));
+
+  private final WxOpenComponentService componentService;
+  private final Lease lease;
+  private final int concurrency;
+  private final DelayQueue<Entry> queue = new DelayQueue<>();
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final ExecutorService workers;
+  private final ScheduledExecutorService syncer;
+
+  private final AtomicLong successCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong leaseMissCount = new AtomicLong();
+  private final AtomicLong totalLagMillis = new AtomicLong();
+  private volatile long maxLagMillis;
+  private volatile long lastLagMillis;
+  private volatile long lastSyncTime;
+  private volatile String lastError;
+
+  private volatile long refreshAheadMillis = 5 * 60 * 1000L;
+  private volatile long retryDelayMillis = 30 * 1000L;
+  private volatile long leaseMillis = 60 * 1000L;
+  private volatile long syncIntervalMillis = 60 * 60 * 1000L;
+  private volatile boolean closed;
+
+  /**
+   * @param componentService 第三方平台服务
+   * @param lease            多节点间的刷新租约，单节点时可以为null
+   * @param concurrency      工作线程数，即同时进行的刷新请求数上限
+   */
+  public WxOpenAuthorizerTokenRefresher(WxOpenComponentService componentService, Lease lease, int concurrency) {
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("工作线程数必须大于0");
+    }
+
+    this.componentService = componentService;
+    this.lease = lease;
+    this.concurrency = concurrency;
+    this.workers = Executors.newFixedThreadPool(concurrency, daemonThreadFactory("WxOpenAuthorizerTokenRefresher-"));
+    this.syncer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("WxOpenAuthorizerTokenRefresher-sync-"));
+  }
+
+  private static ThreadFactory daemonThreadFactory(final String namePrefix) {
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, namePrefix + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * @param refreshAheadMillis 在过期前多久刷新（毫秒），默认为5分钟
+   */
+  public void setRefreshAheadMillis(long refreshAheadMillis) {
+    this.refreshAheadMillis = refreshAheadMillis;
+  }
+
+  /**
+   * @param retryDelayMillis 刷新失败后的重试间隔（毫秒），默认为30秒
+   */
+  public void setRetryDelayMillis(long retryDelayMillis) {
+    this.retryDelayMillis = retryDelayMillis;
+  }
+
+  /**
+   * @param leaseMillis 租约的有效时间（毫秒），应大于一次刷新请求的最长耗时，默认为60秒
+   */
+  public void setLeaseMillis(long leaseMillis) {
+    this.leaseMillis = leaseMillis;
+  }
+
+  /**
+   * @param syncIntervalMillis 重新拉取授权方列表的间隔（毫秒），默认为1小时
+   */
+  public void setSyncIntervalMillis(long syncIntervalMillis) {
+    this.syncIntervalMillis = syncIntervalMillis;
+  }
+
+  /**
+   * 启动工作线程，并立即开始拉取授权方列表，之后按syncIntervalMillis定期拉取.
+   */
+  public void start() {
+    for (int i = 0; i < this.concurrency; i++) {
+      this.workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          work();
+        }
+      });
+    }
+
+    this.syncer.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          syncAuthorizers();
+        } catch (Exception e) {
+          lastError = e.getMessage();
+          log.warn("拉取授权方列表失败：{}", e.getMessage());
+        }
+      }
+    }, 0, this.syncIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 分页拉取所有授权方并加入刷新队列，拉取完成后移除已不在列表中的授权方.
+   *
+   * @return 授权方数量
+   * @throws WxErrorException 拉取出错，此时不会移除任何授权方
+   */
+  public int syncAuthorizers() throws WxErrorException {
+    Set<String> appIds = new HashSet<>();
+    for (int begin = 0; ; begin += PAGE_SIZE) {
+      WxOpenAuthorizerListResult page = this.componentService.getAuthorizerList(begin, PAGE_SIZE);
+      List<Map<String, String>> list = page == null ? null : page.getList();
+      if (list == null || list.isEmpty()) {
+        break;
+      }
+
+      for (Map<String, String> authorizer : list) {
+        String appId = authorizer.get("authorizer_appid");
+        if (appId != null) {
+          appIds.add(appId);
+          this.register(appId);
+        }
+      }
+      if (list.size() < PAGE_SIZE || begin + list.size() >= page.getTotalCount()) {
+        break;
+      }
+    }
+
+    for (String appId : this.entries.keySet()) {
+      if (!appIds.contains(appId)) {
+        this.unregister(appId);
+      }
+    }
+    this.lastSyncTime = System.currentTimeMillis();
+    return appIds.size();
+  }
+
+  /**
+   * 加入刷新队列，已存在时忽略.
+   *
+   * @param appId 授权方appId
+   */
+  public void register(String appId) {
+    if (this.entries.containsKey(appId)) {
+      return;
+    }
+
+    long expiresTime;
+    try {
+      expiresTime = this.getExpiresTime(appId);
+    } catch (RuntimeException e) {
+      // 存储暂时不可用时立即排队，由工作线程读取过期时间并在失败时重试
+      log.warn("读取授权方【{}】的access token过期时间失败：{}", appId, e.getMessage());
+      expiresTime = 0;
+    }
+    Entry entry = new Entry(appId, expiresTime > 0 ? expiresTime - this.refreshAheadMillis : System.currentTimeMillis());
+    if (this.entries.putIfAbsent(appId, entry) == null) {
+      this.queue.add(entry);
+    }
+  }
+
+  /**
+   * 移除出刷新队列，例如收到取消授权事件时.
+   *
+   * @param appId 授权方appId
+   */
+  public void unregister(String appId) {
+    Entry entry = this.entries.remove(appId);
+    if (entry != null) {
+      this.queue.remove(entry);
+    }
+  }
+
+  private long getExpiresTime(String appId) {
+    WxOpenConfigStorage storage = this.componentService.getWxOpenConfigStorage();
+    if (storage instanceof WxOpenInMemoryConfigStorage) {
+      return ((WxOpenInMemoryConfigStorage) storage).getAuthorizerAccessTokenExpiresTime(appId);
+    }
+    return 0;
+  }
+
+  private void work() {
+    while (!this.closed) {
+      Entry entry;
+      try {
+        entry = this.queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+
+      if (this.entries.get(entry.appId) != entry) {
+        continue;
+      }
+      try {
+        this.refresh(entry);
+      } catch (Throwable e) {
+        // 工作线程退出后不会重建，无论出现什么错误都要继续处理队列，并让该授权方重新排队
+        this.lastError = e.getMessage();
+        log.error("刷新授权方【{}】的access token出现未预期的错误", entry.appId, e);
+        this.reschedule(entry, System.currentTimeMillis() + this.retryDelayMillis);
+      }
+    }
+  }
+
+  /**
+   * 存储和租约都可能因为Redis的临时故障抛出异常，此时与刷新失败一样在retryDelayMillis后重试.
+   */
+  private void refresh(Entry entry) {
+    long now = System.currentTimeMillis();
+    boolean leased = false;
+    try {
+      long expiresTime = this.getExpiresTime(entry.appId);
+      if (expiresTime > 0 && expiresTime - this.refreshAheadMillis > now) {
+        // 其他节点或者业务请求已经刷新过了
+        this.reschedule(entry, expiresTime - this.refreshAheadMillis);
+        return;
+      }
+
+      if (this.lease != null) {
+        if (!this.lease.tryAcquire(entry.appId, this.leaseMillis)) {
+          this.leaseMissCount.incrementAndGet();
+          this.reschedule(entry, now + this.leaseMillis);
+          return;
+        }
+        leased = true;
+
+        // 其他节点可能在上面检查之后刚刚刷新完成并释放了租约，获取租约后再检查一次
+        expiresTime = this.getExpiresTime(entry.appId);
+        if (expiresTime > 0 && expiresTime - this.refreshAheadMillis > System.currentTimeMillis()) {
+          this.reschedule(entry, expiresTime - this.refreshAheadMillis);
+          return;
+        }
+      }
+
+      this.recordLag(Math.max(0, now - entry.refreshTime));
+      this.componentService.getAuthorizerAccessToken(entry.appId, true);
+      this.successCount.incrementAndGet();
+
+      long newExpiresTime = this.getExpiresTime(entry.appId);
+      if (newExpiresTime <= now) {
+        newExpiresTime = now + DEFAULT_EXPIRES_IN_MILLIS;
+      }
+      this.reschedule(entry, newExpiresTime - this.refreshAheadMillis);
+    } catch (WxErrorException e) {
+      this.failureCount.incrementAndGet();
+      this.lastError = e.getMessage();
+      if (ABANDON_ERROR_CODES.contains(e.getError().getErrorCode())) {
+        log.warn("授权方【{}】已无法刷新access token，不再刷新：{}", entry.appId, e.getMessage());
+        this.entries.remove(entry.appId, entry);
+        return;
+      }
+
+      log.warn("刷新授权方【{}】的access token失败，{}毫秒后重试：{}", entry.appId, this.retryDelayMillis, e.getMessage());
+      this.reschedule(entry, now + this.retryDelayMillis);
+    } catch (RuntimeException e) {
+      this.failureCount.incrementAndGet();
+      this.lastError = e.getMessage();
+      log.warn("刷新授权方【{}】的access token失败，{}毫秒后重试", entry.appId, this.retryDelayMillis, e);
+      this.reschedule(entry, now + this.retryDelayMillis);
+    } finally {
+      if (leased) {
+        this.releaseLease(entry.appId);
+      }
+    }
+  }
+
+  /**
+   * 释放失败时租约会在leaseMillis后自动过期，不影响本次刷新结果.
+   */
+  private void releaseLease(String appId) {
+    try {
+      this.lease.release(appId);
+    } catch (RuntimeException e) {
+      log.warn("释放授权方【{}】的刷新租约失败：{}", appId, e.getMessage());
+    }
+  }
+
+  private void recordLag(long lagMillis) {
+    this.totalLagMillis.addAndGet(lagMillis);
+    this.lastLagMillis = lagMillis;
+    if (lagMillis > this.maxLagMillis) {
+      this.maxLagMillis = lagMillis;
+    }
+  }
+
+  /**
+   * 以新的计划刷新时间重新排队，期间被移除或者被重新注册时放弃.
+   */
+  private void reschedule(Entry entry, long refreshTime) {
+    Entry next = new Entry(entry.appId, refreshTime);
+    if (this.entries.replace(entry.appId, entry, next)) {
+      this.queue.add(next);
+    }
+  }
+
+  /**
+   * 获取刷新统计信息.
+   */
+  public Stats getStats() {
+    long now = System.currentTimeMillis();
+    long due = 0;
+    for (Entry entry : this.entries.values()) {
+      if (entry.refreshTime <= now) {
+        due++;
+      }
+    }
+
+    Stats stats = new Stats();
+    stats.setQueueDepth(this.entries.size());
+    stats.setDueCount(due);
+    stats.setSuccessCount(this.successCount.get());
+    stats.setFailureCount(this.failureCount.get());
+    stats.setLeaseMissCount(this.leaseMissCount.get());
+    stats.setTotalLagMillis(this.totalLagMillis.get());
+    stats.setLastLagMillis(this.lastLagMillis);
+    stats.setMaxLagMillis(this.maxLagMillis);
+    stats.setLastSyncTime(this.lastSyncTime);
+    stats.setLastError(this.lastError);
+    return stats;
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    this.syncer.shutdownNow();
+    this.workers.shutdownNow();
+  }
+
+  /**
+   * 多节点间的刷新租约，同一时间只有获得租约的节点会刷新该授权方.
+   *
+   * @see WxOpenJedisAuthorizerLease
+   * @see WxOpenRedissonAuthorizerLease
+   */
+  public interface Lease {
+    /**
+     * 尝试获取租约.
+     *
+     * @param appId       授权方appId
+     * @param leaseMillis 租约有效时间（毫秒），到期后即使未释放也会自动失效
+     * @return 是否获取成功
+     */
+    boolean tryAcquire(String appId, long leaseMillis);
+
+    /**
+     * 释放本节点持有的租约，租约已过期或者被其他节点持有时不做任何操作.
+     *
+     * @param appId 授权方appId
+     */
+    void release(String appId);
+  }
+
+  /**
+   * 刷新统计信息.
+   */
+  @Data
+  public static class Stats {
+    /**
+     * 刷新队列中的授权方数量.
+     */
+    private long queueDepth;
+    /**
+     * 已到计划刷新时间但还未刷新的授权方数量，持续增长说明工作线程数不足.
+     */
+    private long dueCount;
+    /**
+     * 成功刷新次数.
+     */
+    private long successCount;
+    /**
+     * 刷新失败次数.
+     */
+    private long failureCount;
+    /**
+     * 因为租约被其他节点持有而跳过的次数.
+     */
+    private long leaseMissCount;
+    /**
+     * 实际开始刷新的时间相对计划刷新时间的累计延迟（毫秒）.
+     */
+    private long totalLagMillis;
+    /**
+     * 最近一次刷新的延迟（毫秒）.
+     */
+    private long lastLagMillis;
+    /**
+     * 刷新的最大延迟（毫秒）.
+     */
+    private long maxLagMillis;
+    /**
+     * 最近一次成功拉取授权方列表的时间.
+     */
+    private long lastSyncTime;
+    /**
+     * 最近一次出错的原因.
+     */
+    private String lastError;
+
+    /**
+     * @return 平均刷新延迟（毫秒）
+     */
+    public long getAverageLagMillis() {
+      long count = this.successCount + this.failureCount;
+      return count == 0 ? 0 : this.totalLagMillis / count;
+    }
+  }
+
+  private static class Entry implements Delayed {
+    private final String appId;
+    /**
+     * 计划刷新时间.
+     */
+    private final long refreshTime;
+
+    private Entry(String appId, long refreshTime) {
+      this.appId = appId;
+      this.refreshTime = refreshTime;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(this.refreshTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      long other = ((Entry) o).refreshTime;
+      return this.refreshTime < other ? -1 : (this.refreshTime == other ? 0 : 1);
+    }
+  }
+
+}
@@ -1,6 +1,11 @@
 package me.chanjar.weixin.open.api.impl;
 
 import cn.binarywang.wx.miniapp.bean.WxMaJscode2SessionResult;
+import cn.binarywang.wx.miniapp.util.cache.WxMaQrcodeCache;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
@@ -23,68 +28,160 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * <pre>
+ * 第三方平台服务.
+ * 授权方service默认按appId一直缓存，不会被淘汰，与之前的行为一致.
+ * 授权方很多时可以通过{@link #WxOpenComponentServiceImpl(WxOpenService, long, long)}限制缓存的数量和闲置时间，
+ * 代价是被淘汰的service在下次获取时重新创建，获取到service后手动做的设置（重试参数、setAccessTokenRefresher等）都会丢失，
+ * 因此这些设置需要通过{@link #setServiceCustomizer(WxOpenAuthorizerServiceCustomizer)}在创建时设置；
+ * 另外不要把授权方service注册到{@link me.chanjar.weixin.common.api.WxAccessTokenRefresher}，
+ * 它会一直引用被淘汰的service，应当使用按appId刷新的{@link WxOpenAuthorizerTokenRefresher}.
+ * </pre>
+ *
  * @author <a href="https://github.com/007gzs">007</a>
  */
 public class WxOpenComponentServiceImpl implements WxOpenComponentService {
   private static final JsonParser JSON_PARSER = new JsonParser();
-  private static final Map<String, WxOpenMaService> WX_OPEN_MA_SERVICE_MAP = new ConcurrentHashMap<>();
-  private static final Map<String, WxMpService> WX_OPEN_MP_SERVICE_MAP = new ConcurrentHashMap<>();
-  private static final Map<String, WxOpenFastMaService> WX_OPEN_FAST_MA_SERVICE_MAP = new ConcurrentHashMap<>();
 
   protected final Logger log = LoggerFactory.getLogger(this.getClass());
   private WxOpenService wxOpenService;
 
+  /**
+   * 授权方appId->对应的service，设置了数量或闲置时间上限时，被淘汰的service在下次获取时重新创建.
+   */
+  private final Cache<String, WxMpService> wxOpenMpServices;
+  private final Cache<String, WxOpenMaService> wxOpenMaServices;
+  private final Cache<String, WxOpenFastMaService> wxOpenFastMaServices;
+
+  /**
+   * 授权方appId->进行中的authorizer_access_token刷新，并发的调用共享同一个刷新结果.
+   */
+  private final ConcurrentHashMap<String, FutureTask<String>> authorizerAccessTokenRefreshes = new ConcurrentHashMap<>();
+
+  private volatile WxOpenAuthorizerServiceCustomizer serviceCustomizer;
+  private volatile WxMaQrcodeCache testQrcodeCache;
+
+  /**
+   * 授权方service一直缓存，不会被淘汰.
+   *
+   * @param wxOpenService 开放平台服务
+   */
   public WxOpenComponentServiceImpl(WxOpenService wxOpenService) {
+    this(wxOpenService, 0, 0);
+  }
+
+  /**
+   * 限制授权方service缓存的数量和闲置时间，被淘汰的service在下次获取时重新创建，参考类的说明.
+   *
+   * @param wxOpenService      开放平台服务
+   * @param serviceCacheSize   每类授权方service（公众号、小程序、快速创建的小程序）最多缓存的数量，不大于0时不限制
+   * @param serviceIdleMinutes 授权方service闲置多久（分钟）后从缓存中移除，不大于0时不移除
+   */
+  public WxOpenComponentServiceImpl(WxOpenService wxOpenService, long serviceCacheSize, long serviceIdleMinutes) {
     this.wxOpenService = wxOpenService;
+    this.wxOpenMpServices = buildServiceCache(serviceCacheSize, serviceIdleMinutes);
+    this.wxOpenMaServices = buildServiceCache(serviceCacheSize, serviceIdleMinutes);
+    this.wxOpenFastMaServices = buildServiceCache(serviceCacheSize, serviceIdleMinutes);
   }
 
-  @Override
-  public WxMpService getWxMpServiceByAppid(String appId) {
-    WxMpService wxMpService = WX_OPEN_MP_SERVICE_MAP.get(appId);
-    if (wxMpService == null) {
-      synchronized (WX_OPEN_MP_SERVICE_MAP) {
-        wxMpService = WX_OPEN_MP_SERVICE_MAP.get(appId);
-        if (wxMpService == null) {
-          wxMpService = new WxOpenMpServiceImpl(this, appId, getWxOpenConfigStorage().getWxMpConfigStorage(appId));
+  private static <T> Cache<String, T> buildServiceCache(long maximumSize, long idleMinutes) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (maximumSize > 0) {
+      builder.maximumSize(maximumSize);
+    }
+    if (idleMinutes > 0) {
+      builder.expireAfterAccess(idleMinutes, TimeUnit.MINUTES);
+    }
+    return builder.build();
+  }
+
+  /**
+   * 设置授权方service的定制回调，每次创建授权方service时调用，已经创建的service不受影响.
+   *
+   * @param serviceCustomizer 定制回调，为null时不定制
+   */
+  public void setServiceCustomizer(WxOpenAuthorizerServiceCustomizer serviceCustomizer) {
+    this.serviceCustomizer = serviceCustomizer;
+  }
+
+  /**
+   * <pre>
+   * 设置所有授权方小程序体验二维码的缓存，缓存键包含授权方appId.
+   * 设置在这里而不是各个小程序service上，授权方service被淘汰重建后仍然生效.
+   * </pre>
+   *
+   * @param testQrcodeCache 缓存，为null时不缓存
+   */
+  public void setTestQrcodeCache(WxMaQrcodeCache testQrcodeCache) {
+    this.testQrcodeCache = testQrcodeCache;
+  }
+
+  public WxMaQrcodeCache getTestQrcodeCache() {
+    return this.testQrcodeCache;
+  }
+
+  private static <T> T getService(Cache<String, T> cache, String appId, Callable<T> loader) {
+    try {
+      return cache.get(appId, loader);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    }
+  }
 
-          WX_OPEN_MP_SERVICE_MAP.put(appId, wxMpService);
+  @Override
+  public WxMpService getWxMpServiceByAppid(final String appId) {
+    return getService(this.wxOpenMpServices, appId, new Callable<WxMpService>() {
+      @Override
+      public WxMpService call() {
+        WxMpService service = new WxOpenMpServiceImpl(WxOpenComponentServiceImpl.this, appId,
+          getWxOpenConfigStorage().getWxMpConfigStorage(appId));
+        WxOpenAuthorizerServiceCustomizer customizer = serviceCustomizer;
+        if (customizer != null) {
+          customizer.customize(appId, service);
         }
+        return service;
       }
-    }
-    return wxMpService;
+    });
   }
 
   @Override
-  public WxOpenMaService getWxMaServiceByAppid(String appId) {
-    WxOpenMaService wxOpenMaService = WX_OPEN_MA_SERVICE_MAP.get(appId);
-    if (wxOpenMaService == null) {
-      synchronized (WX_OPEN_MA_SERVICE_MAP) {
-        wxOpenMaService = WX_OPEN_MA_SERVICE_MAP.get(appId);
-        if (wxOpenMaService == null) {
-          wxOpenMaService = new WxOpenMaServiceImpl(this, appId, getWxOpenConfigStorage().getWxMaConfig(appId));
-          WX_OPEN_MA_SERVICE_MAP.put(appId, wxOpenMaService);
+  public WxOpenMaService getWxMaServiceByAppid(final String appId) {
+    return getService(this.wxOpenMaServices, appId, new Callable<WxOpenMaService>() {
+      @Override
+      public WxOpenMaService call() {
+        WxOpenMaService service = new WxOpenMaServiceImpl(WxOpenComponentServiceImpl.this, appId,
+          getWxOpenConfigStorage().getWxMaConfig(appId));
+        WxOpenAuthorizerServiceCustomizer customizer = serviceCustomizer;
+        if (customizer != null) {
+          customizer.customize(appId, service);
         }
+        return service;
       }
-    }
-    return wxOpenMaService;
+    });
   }
 
   @Override
-  public WxOpenFastMaService getWxFastMaServiceByAppid(String appId) {
-    WxOpenFastMaService fastMaService = WX_OPEN_FAST_MA_SERVICE_MAP.get(appId);
-    if (fastMaService == null) {
-      synchronized (WX_OPEN_FAST_MA_SERVICE_MAP) {
-        fastMaService = WX_OPEN_FAST_MA_SERVICE_MAP.get(appId);
-        if (fastMaService == null) {
-          fastMaService = new WxOpenFastMaServiceImpl(this, appId, getWxOpenConfigStorage().getWxMaConfig(appId));
-          WX_OPEN_FAST_MA_SERVICE_MAP.put(appId, fastMaService);
+  public WxOpenFastMaService getWxFastMaServiceByAppid(final String appId) {
+    return getService(this.wxOpenFastMaServices, appId, new Callable<WxOpenFastMaService>() {
+      @Override
+      public WxOpenFastMaService call() {
+        WxOpenFastMaService service = new WxOpenFastMaServiceImpl(WxOpenComponentServiceImpl.this, appId,
+          getWxOpenConfigStorage().getWxMaConfig(appId));
+        WxOpenAuthorizerServiceCustomizer customizer = serviceCustomizer;
+        if (customizer != null) {
+          customizer.customize(appId, service);
         }
+        return service;
       }
-    }
-    return fastMaService;
+    });
   }
 
   public WxOpenService getWxOpenService() {
@@ -345,18 +442,57 @@ public class WxOpenComponentServiceImpl implements WxOpenComponentService {
   }
 
   @Override
-  public String getAuthorizerAccessToken(String appId, boolean forceRefresh) throws WxErrorException {
+  public String getAuthorizerAccessToken(final String appId, final boolean forceRefresh) throws WxErrorException {
+    if (!forceRefresh && !this.getWxOpenConfigStorage().isAuthorizerAccessTokenExpired(appId)) {
+      return this.getWxOpenConfigStorage().getAuthorizerAccessToken(appId);
+    }
 
-    if (this.getWxOpenConfigStorage().isAuthorizerAccessTokenExpired(appId) || forceRefresh) {
-      JsonObject jsonObject = new JsonObject();
-      jsonObject.addProperty("component_appid", getWxOpenConfigStorage().getComponentAppId());
-      jsonObject.addProperty("authorizer_appid", appId);
-      jsonObject.addProperty("authorizer_refresh_token", getWxOpenConfigStorage().getAuthorizerRefreshToken(appId));
-      String responseContent = post(API_AUTHORIZER_TOKEN_URL, jsonObject.toString());
+    // 同一授权方同时只发起一个刷新请求，其他线程等待并共享其结果
+    FutureTask<String> refresh = new FutureTask<>(new Callable<String>() {
+      @Override
+      public String call() throws WxErrorException {
+        return refreshAuthorizerAccessToken(appId, forceRefresh);
+      }
+    });
+    FutureTask<String> inFlight = this.authorizerAccessTokenRefreshes.putIfAbsent(appId, refresh);
+    if (inFlight == null) {
+      inFlight = refresh;
+      try {
+        refresh.run();
+      } finally {
+        this.authorizerAccessTokenRefreshes.remove(appId, refresh);
+      }
+    }
 
-      WxOpenAuthorizerAccessToken wxOpenAuthorizerAccessToken = WxOpenAuthorizerAccessToken.fromJson(responseContent);
-      getWxOpenConfigStorage().updateAuthorizerAccessToken(appId, wxOpenAuthorizerAccessToken);
+    try {
+      return inFlight.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg("等待刷新authorizer_access_token时线程被中断").build(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof WxErrorException) {
+        throw (WxErrorException) cause;
+      }
+      Throwables.throwIfUnchecked(cause);
+      throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg(cause.getMessage()).build(), cause);
     }
+  }
+
+  private String refreshAuthorizerAccessToken(String appId, boolean forceRefresh) throws WxErrorException {
+    // 在前一个刷新刚完成时发起的非强制刷新，直接使用其结果
+    if (!forceRefresh && !this.getWxOpenConfigStorage().isAuthorizerAccessTokenExpired(appId)) {
+      return this.getWxOpenConfigStorage().getAuthorizerAccessToken(appId);
+    }
+
+    JsonObject jsonObject = new JsonObject();
+    jsonObject.addProperty("component_appid", getWxOpenConfigStorage().getComponentAppId());
+    jsonObject.addProperty("authorizer_appid", appId);
+    jsonObject.addProperty("authorizer_refresh_token", getWxOpenConfigStorage().getAuthorizerRefreshToken(appId));
+    String responseContent = post(API_AUTHORIZER_TOKEN_URL, jsonObject.toString());
+
+    WxOpenAuthorizerAccessToken wxOpenAuthorizerAccessToken = WxOpenAuthorizerAccessToken.fromJson(responseContent);
+    getWxOpenConfigStorage().updateAuthorizerAccessToken(appId, wxOpenAuthorizerAccessToken);
     return this.getWxOpenConfigStorage().getAuthorizerAccessToken(appId);
   }
 
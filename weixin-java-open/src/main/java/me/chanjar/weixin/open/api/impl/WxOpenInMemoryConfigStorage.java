@@ -144,6 +144,17 @@ public class WxOpenInMemoryConfigStorage implements WxOpenConfigStorage {
     expireToken(authorizerAccessTokens, appId);
   }
 
+  /**
+   * 获取授权方access token的过期时间，供{@link WxOpenAuthorizerTokenRefresher}安排刷新时间.
+   *
+   * @param appId 授权方appId
+   * @return 过期时间（毫秒），没有access token时返回0
+   */
+  public long getAuthorizerAccessTokenExpiresTime(String appId) {
+    Token token = authorizerAccessTokens.get(appId);
+    return token == null || token.expiresTime == null ? 0 : token.expiresTime;
+  }
+
   @Override
   public void updateAuthorizerAccessToken(String appId, WxOpenAuthorizerAccessToken authorizerAccessToken) {
     updateAuthorizerAccessToken(appId, authorizerAccessToken.getAuthorizerAccessToken(), authorizerAccessToken.getExpiresIn());
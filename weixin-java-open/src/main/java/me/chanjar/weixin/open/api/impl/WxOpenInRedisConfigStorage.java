@@ -24,6 +24,10 @@ public class WxOpenInRedisConfigStorage extends AbstractWxOpenInRedisConfigStora
     this.jedisPool = jedisPool;
   }
 
+  public Pool<Jedis> getJedisPool() {
+    return this.jedisPool;
+  }
+
   @Override
   public String getComponentVerifyTicket() {
     try (Jedis jedis = this.jedisPool.getResource()) {
@@ -101,6 +105,14 @@ public class WxOpenInRedisConfigStorage extends AbstractWxOpenInRedisConfigStora
     }
   }
 
+  @Override
+  public long getAuthorizerAccessTokenExpiresTime(String appId) {
+    try (Jedis jedis = this.jedisPool.getResource()) {
+      Long ttl = jedis.pttl(this.getKey(this.authorizerAccessTokenKey, appId));
+      return ttl == null || ttl < 0 ? 0 : System.currentTimeMillis() + ttl;
+    }
+  }
+
   @Override
   public void updateAuthorizerAccessToken(String appId, String authorizerAccessToken, int expiresInSeconds) {
     try (Jedis jedis = this.jedisPool.getResource()) {
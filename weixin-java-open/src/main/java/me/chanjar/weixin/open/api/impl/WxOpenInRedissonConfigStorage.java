@@ -20,6 +20,10 @@ public class WxOpenInRedissonConfigStorage extends AbstractWxOpenInRedisConfigSt
         this.redissonClient = redissonClient;
     }
 
+    public RedissonClient getRedissonClient() {
+        return this.redissonClient;
+    }
+
     @Override
     public String getComponentVerifyTicket() {
         Object value = redissonClient.getBucket(this.componentVerifyTicketKey).get();
@@ -79,6 +83,12 @@ public class WxOpenInRedissonConfigStorage extends AbstractWxOpenInRedisConfigSt
         redissonClient.getBucket(this.getKey(this.authorizerAccessTokenKey, appId)).expire(0, TimeUnit.SECONDS);
     }
 
+    @Override
+    public long getAuthorizerAccessTokenExpiresTime(String appId) {
+        long ttl = redissonClient.getBucket(this.getKey(this.authorizerAccessTokenKey, appId)).remainTimeToLive();
+        return ttl < 0 ? 0 : System.currentTimeMillis() + ttl;
+    }
+
     @Override
     public void updateAuthorizerAccessToken(String appId, String authorizerAccessToken, int expiresInSeconds) {
         redissonClient.getBucket(this.getKey(this.authorizerAccessTokenKey, appId)).set(authorizerAccessToken, expiresInSeconds - 200, TimeUnit.SECONDS);
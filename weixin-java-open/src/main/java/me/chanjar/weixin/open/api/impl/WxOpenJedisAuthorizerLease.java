@@ -0,0 +1,50 @@
+package me.chanjar.weixin.open.api.impl;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * <pre>
+ * 基于Jedis的授权方刷新租约，使用 SET key value NX PX 获取，释放时只删除本节点持有的租约.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxOpenJedisAuthorizerLease implements WxOpenAuthorizerTokenRefresher.Lease {
+  private static final String RELEASE_SCRIPT =
+    "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+  private final Pool<Jedis> jedisPool;
+  private final String keyPrefix;
+  /**
+   * 本节点的标识，作为租约的值.
+   */
+  private final String owner = UUID.randomUUID().toString();
+
+  /**
+   * @param jedisPool jedis连接池，一般与{@link WxOpenInRedisConfigStorage}共用
+   * @param keyPrefix 租约key的前缀，例如 wechat_authorizer_refresh_lease:{componentAppId}:
+   */
+  public WxOpenJedisAuthorizerLease(Pool<Jedis> jedisPool, String keyPrefix) {
+    this.jedisPool = jedisPool;
+    this.keyPrefix = keyPrefix;
+  }
+
+  @Override
+  public boolean tryAcquire(String appId, long leaseMillis) {
+    try (Jedis jedis = this.jedisPool.getResource()) {
+      return "OK".equals(jedis.set(this.keyPrefix + appId, this.owner, "NX", "PX", leaseMillis));
+    }
+  }
+
+  @Override
+  public void release(String appId) {
+    try (Jedis jedis = this.jedisPool.getResource()) {
+      jedis.eval(RELEASE_SCRIPT, Collections.singletonList(this.keyPrefix + appId),
+        Collections.singletonList(this.owner));
+    }
+  }
+}
@@ -3,10 +3,13 @@ package me.chanjar.weixin.open.api.impl;
 import cn.binarywang.wx.miniapp.api.impl.WxMaServiceImpl;
 import cn.binarywang.wx.miniapp.bean.WxMaJscode2SessionResult;
 import cn.binarywang.wx.miniapp.config.WxMaConfig;
+import cn.binarywang.wx.miniapp.util.cache.WxMaQrcodeCache;
 import cn.binarywang.wx.miniapp.util.json.WxMaGsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import me.chanjar.weixin.common.error.WxError;
 import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.common.util.fs.FileUtils;
 import me.chanjar.weixin.open.api.WxOpenComponentService;
 import me.chanjar.weixin.open.api.WxOpenMaService;
 import me.chanjar.weixin.open.bean.ma.WxMaOpenCommitExtInfo;
@@ -15,9 +18,15 @@ import me.chanjar.weixin.open.bean.message.WxOpenMaSubmitAuditMessage;
 import me.chanjar.weixin.open.bean.result.*;
 import me.chanjar.weixin.open.executor.MaQrCodeRequestExecutor;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
 
 /**
  * @author <a href="https://github.com/007gzs">007</a>
@@ -32,6 +41,7 @@ public class WxOpenMaServiceImpl extends WxMaServiceImpl implements WxOpenMaServ
   private WxOpenComponentService wxOpenComponentService;
   private WxMaConfig wxMaConfig;
   private String appId;
+  private volatile WxMaQrcodeCache testQrcodeCache;
 
   public WxOpenMaServiceImpl(WxOpenComponentService wxOpenComponentService, String appId, WxMaConfig wxMaConfig) {
     this.wxOpenComponentService = wxOpenComponentService;
@@ -290,9 +300,59 @@ public class WxOpenMaServiceImpl extends WxMaServiceImpl implements WxOpenMaServ
    */
   @Override
   public File getTestQrcode(String pagePath, Map<String, String> params) throws WxErrorException {
-    WxMaQrcodeParam qrcodeParam = WxMaQrcodeParam.create(pagePath);
+    final WxMaQrcodeParam qrcodeParam = WxMaQrcodeParam.create(pagePath);
     qrcodeParam.addPageParam(params);
-    return execute(MaQrCodeRequestExecutor.create(getRequestHttp()), API_TEST_QRCODE, qrcodeParam);
+    WxMaQrcodeCache cache = this.testQrcodeCache;
+    if (cache == null && wxOpenComponentService instanceof WxOpenComponentServiceImpl) {
+      cache = ((WxOpenComponentServiceImpl) wxOpenComponentService).getTestQrcodeCache();
+    }
+    if (cache == null) {
+      return execute(MaQrCodeRequestExecutor.create(getRequestHttp()), API_TEST_QRCODE, qrcodeParam);
+    }
+
+    // 页面参数的顺序不影响扫码结果，排序后参与缓存键
+    List<String> keyParts = new ArrayList<>();
+    keyParts.add(appId);
+    keyParts.add(API_TEST_QRCODE);
+    keyParts.add(pagePath);
+    if (qrcodeParam.getPageParams() != null) {
+      for (Map.Entry<String, String> entry : new TreeMap<>(qrcodeParam.getPageParams()).entrySet()) {
+        keyParts.add(entry.getKey());
+        keyParts.add(entry.getValue());
+      }
+    }
+
+    byte[] bytes = cache.get(WxMaQrcodeCache.key(keyParts.toArray(new String[0])), new WxMaQrcodeCache.Loader() {
+      @Override
+      public byte[] load() throws WxErrorException {
+        File file = execute(MaQrCodeRequestExecutor.create(getRequestHttp()), API_TEST_QRCODE, qrcodeParam);
+        try {
+          return Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+          throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg(e.getMessage()).build(), e);
+        } finally {
+          file.delete();
+        }
+      }
+    });
+    try {
+      return FileUtils.createTmpFile(new ByteArrayInputStream(bytes), UUID.randomUUID().toString(), "jpg");
+    } catch (IOException e) {
+      throw new WxErrorException(WxError.builder().errorCode(-1).errorMsg(e.getMessage()).build(), e);
+    }
+  }
+
+  /**
+   * <pre>
+   * 设置体验二维码的缓存，体验二维码只与页面路径和参数有关，设置后相同参数只向微信请求一次.
+   * 未设置时使用{@link WxOpenComponentServiceImpl#setTestQrcodeCache(WxMaQrcodeCache)}设置的缓存；
+   * 本service被淘汰重建后这里的设置会丢失，一般应当设置在第三方平台服务上.
+   * </pre>
+   *
+   * @param testQrcodeCache 缓存，为null时不缓存
+   */
+  public void setTestQrcodeCache(WxMaQrcodeCache testQrcodeCache) {
+    this.testQrcodeCache = testQrcodeCache;
   }
 
   /**
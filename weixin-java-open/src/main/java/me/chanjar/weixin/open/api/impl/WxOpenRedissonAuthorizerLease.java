@@ -0,0 +1,45 @@
+package me.chanjar.weixin.open.api.impl;
+
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 基于Redisson的授权方刷新租约.
+ * 租约只是一个带过期时间、以节点标识为值的key，不需要RLock的可重入和看门狗续期.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxOpenRedissonAuthorizerLease implements WxOpenAuthorizerTokenRefresher.Lease {
+  private final RedissonClient redissonClient;
+  private final String keyPrefix;
+  /**
+   * 本节点的标识，作为租约的值.
+   */
+  private final String owner = UUID.randomUUID().toString();
+
+  /**
+   * @param redissonClient redisson客户端，一般与{@link WxOpenInRedissonConfigStorage}共用
+   * @param keyPrefix      租约key的前缀，例如 wechat_authorizer_refresh_lease:{componentAppId}:
+   */
+  public WxOpenRedissonAuthorizerLease(RedissonClient redissonClient, String keyPrefix) {
+    this.redissonClient = redissonClient;
+    this.keyPrefix = keyPrefix;
+  }
+
+  @Override
+  public boolean tryAcquire(String appId, long leaseMillis) {
+    RBucket<String> bucket = this.redissonClient.getBucket(this.keyPrefix + appId);
+    return bucket.trySet(this.owner, leaseMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void release(String appId) {
+    RBucket<String> bucket = this.redissonClient.getBucket(this.keyPrefix + appId);
+    bucket.compareAndSet(this.owner, null);
+  }
+}
@@ -17,6 +17,7 @@ import org.apache.http.impl.client.CloseableHttpClient;
  */
 public class WxOpenServiceApacheHttpClientImpl extends WxOpenServiceAbstractImpl<CloseableHttpClient, HttpHost> {
   private CloseableHttpClient httpClient;
+  private CloseableHttpClient mediaHttpClient;
   private HttpHost httpProxy;
 
   @Override
@@ -37,6 +38,7 @@ public class WxOpenServiceApacheHttpClientImpl extends WxOpenServiceAbstractImpl
     }
 
     this.httpClient = apacheHttpClientBuilder.build();
+    this.mediaHttpClient = apacheHttpClientBuilder.buildMediaClient();
 
   }
 
@@ -45,6 +47,11 @@ public class WxOpenServiceApacheHttpClientImpl extends WxOpenServiceAbstractImpl
     return httpClient;
   }
 
+  @Override
+  public CloseableHttpClient getMediaRequestHttpClient() {
+    return mediaHttpClient;
+  }
+
   @Override
   public HttpHost getRequestHttpProxy() {
     return httpProxy;
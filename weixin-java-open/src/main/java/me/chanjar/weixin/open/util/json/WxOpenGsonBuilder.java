@@ -14,6 +14,7 @@ import me.chanjar.weixin.open.bean.result.*;
 public class WxOpenGsonBuilder {
 
   private static final GsonBuilder INSTANCE = new GsonBuilder();
+  private static final Gson GSON_INSTANCE;
 
   static {
     INSTANCE.disableHtmlEscaping();
@@ -27,10 +28,11 @@ public class WxOpenGsonBuilder {
     INSTANCE.registerTypeAdapter(WxFastMaAccountBasicInfoResult.class, new WxFastMaAccountBasicInfoGsonAdapter());
     INSTANCE.registerTypeAdapter(WxOpenAuthorizerListResult.class, new WxOpenAuthorizerListResultGsonAdapter());
 
+    GSON_INSTANCE = INSTANCE.create();
   }
 
   public static Gson create() {
-    return INSTANCE.create();
+    return GSON_INSTANCE;
   }
 
 }
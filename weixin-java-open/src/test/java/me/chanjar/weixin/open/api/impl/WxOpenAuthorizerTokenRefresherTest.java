@@ -0,0 +1,200 @@
+package me.chanjar.weixin.open.api.impl;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import me.chanjar.weixin.common.error.WxError;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.open.api.WxOpenConfigStorage;
+import me.chanjar.weixin.open.bean.result.WxOpenAuthorizerListResult;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxOpenAuthorizerTokenRefresherTest {
+  private WxOpenConfigStorage configStorage;
+  private WxOpenComponentServiceImpl componentService;
+  private WxOpenAuthorizerTokenRefresher refresher;
+  private final List<String> authorizers = Collections.synchronizedList(new ArrayList<String>());
+  private final Map<String, AtomicInteger> refreshes = new ConcurrentHashMap<>();
+  /**
+   * 模拟其他节点持有的租约.
+   */
+  private final Set<String> leasedByOthers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  /**
+   * 模拟其他节点刚刚刷新完成并释放了租约.
+   */
+  private final Set<String> refreshedByOthers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  /**
+   * 模拟Redis临时故障，获取租约时抛出异常的剩余次数.
+   */
+  private final AtomicInteger leaseFailures = new AtomicInteger();
+
+  @BeforeMethod
+  public void setUp() {
+    this.authorizers.clear();
+    this.refreshes.clear();
+    this.leasedByOthers.clear();
+    this.refreshedByOthers.clear();
+    this.leaseFailures.set(0);
+    this.configStorage = new WxOpenInMemoryConfigStorage();
+    this.configStorage.setWxOpenInfo("componentAppId", "componentSecret", "token", "aesKey");
+
+    WxOpenServiceImpl wxOpenService = new WxOpenServiceImpl();
+    wxOpenService.setWxOpenConfigStorage(this.configStorage);
+    this.componentService = new WxOpenComponentServiceImpl(wxOpenService) {
+      @Override
+      public WxOpenAuthorizerListResult getAuthorizerList(int begin, int len) {
+        List<Map<String, String>> list = new ArrayList<>();
+        for (String appId : authorizers) {
+          Map<String, String> authorizer = new HashMap<>();
+          authorizer.put("authorizer_appid", appId);
+          list.add(authorizer);
+        }
+        WxOpenAuthorizerListResult result = new WxOpenAuthorizerListResult();
+        result.setTotalCount(list.size());
+        result.setList(begin == 0 ? list : Collections.<Map<String, String>>emptyList());
+        return result;
+      }
+
+      @Override
+      public String post(String uri, String postData) throws WxErrorException {
+        JsonObject request = new JsonParser().parse(postData).getAsJsonObject();
+        String appId = request.get("authorizer_appid").getAsString();
+        if ("invalid".equals(appId)) {
+          throw new WxErrorException(WxError.builder().errorCode(61023).errorMsg("invalid refresh_token").build());
+        }
+
+        refreshes.putIfAbsent(appId, new AtomicInteger());
+        int n = refreshes.get(appId).incrementAndGet();
+        return "{\"authorizer_access_token\":\"" + appId + "-" + n + "\",\"expires_in\":7200}";
+      }
+    };
+
+    this.refresher = new WxOpenAuthorizerTokenRefresher(this.componentService,
+      new WxOpenAuthorizerTokenRefresher.Lease() {
+        @Override
+        public boolean tryAcquire(String appId, long leaseMillis) {
+          if (leaseFailures.getAndDecrement() > 0) {
+            throw new IllegalStateException("Could not get a resource from the pool");
+          }
+          if (refreshedByOthers.contains(appId)) {
+            configStorage.updateAuthorizerAccessToken(appId, "other-node", 7200);
+          }
+          return !leasedByOthers.contains(appId);
+        }
+
+        @Override
+        public void release(String appId) {
+        }
+      }, 2);
+    this.refresher.setLeaseMillis(10 * 60 * 1000L);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    this.refresher.close();
+  }
+
+  private void waitUntilIdle() throws InterruptedException {
+    for (int i = 0; i < 100 && this.refresher.getStats().getDueCount() > 0; i++) {
+      Thread.sleep(20);
+    }
+    Thread.sleep(50);
+  }
+
+  @Test
+  public void testRefreshAuthorizers() throws Exception {
+    this.authorizers.addAll(Arrays.asList("appid1", "appid2", "leased", "invalid"));
+    this.leasedByOthers.add("leased");
+    this.configStorage.updateAuthorizerAccessToken("appid2", "existing", 7200);
+
+    assertEquals(this.refresher.syncAuthorizers(), 4);
+    this.refresher.start();
+    this.waitUntilIdle();
+
+    // appid2的token还远未过期，不会刷新
+    assertEquals(this.configStorage.getAuthorizerAccessToken("appid1"), "appid1-1");
+    assertEquals(this.configStorage.getAuthorizerAccessToken("appid2"), "existing");
+    assertFalse(this.refreshes.containsKey("leased"));
+
+    WxOpenAuthorizerTokenRefresher.Stats stats = this.refresher.getStats();
+    assertEquals(stats.getSuccessCount(), 1);
+    assertEquals(stats.getFailureCount(), 1);
+    assertEquals(stats.getLeaseMissCount(), 1);
+    // invalid的refresh token失效后不再刷新
+    assertEquals(stats.getQueueDepth(), 3);
+    assertEquals(stats.getDueCount(), 0);
+  }
+
+  @Test
+  public void testSkipRefreshDoneByOtherNodeBeforeLease() throws Exception {
+    this.authorizers.addAll(Arrays.asList("appid1", "racy"));
+    this.refreshedByOthers.add("racy");
+
+    this.refresher.syncAuthorizers();
+    this.refresher.start();
+    this.waitUntilIdle();
+
+    assertEquals(this.configStorage.getAuthorizerAccessToken("appid1"), "appid1-1");
+    assertEquals(this.configStorage.getAuthorizerAccessToken("racy"), "other-node");
+    assertFalse(this.refreshes.containsKey("racy"));
+    assertEquals(this.refresher.getStats().getSuccessCount(), 1);
+  }
+
+  @Test
+  public void testRetryAfterLeaseFailure() throws Exception {
+    // 失败次数多于工作线程数，工作线程不能因此退出
+    this.leaseFailures.set(3);
+    this.refresher.setRetryDelayMillis(50);
+    this.authorizers.add("flaky");
+
+    this.refresher.syncAuthorizers();
+    this.refresher.start();
+    for (int i = 0; i < 100 && !this.refreshes.containsKey("flaky"); i++) {
+      Thread.sleep(20);
+    }
+
+    assertEquals(this.configStorage.getAuthorizerAccessToken("flaky"), "flaky-1");
+    WxOpenAuthorizerTokenRefresher.Stats stats = this.refresher.getStats();
+    assertEquals(stats.getFailureCount(), 3);
+    assertEquals(stats.getSuccessCount(), 1);
+    assertEquals(stats.getQueueDepth(), 1);
+
+    // 之后注册的授权方仍然会被刷新
+    this.refresher.register("appid1");
+    for (int i = 0; i < 100 && !this.refreshes.containsKey("appid1"); i++) {
+      Thread.sleep(20);
+    }
+    assertEquals(this.configStorage.getAuthorizerAccessToken("appid1"), "appid1-1");
+  }
+
+  @Test
+  public void testSyncRemovesDeauthorizedAuthorizers() throws Exception {
+    this.authorizers.addAll(Arrays.asList("appid1", "appid2"));
+    this.refresher.syncAuthorizers();
+    assertEquals(this.refresher.getStats().getQueueDepth(), 2);
+
+    this.authorizers.remove("appid2");
+    this.refresher.syncAuthorizers();
+    assertEquals(this.refresher.getStats().getQueueDepth(), 1);
+    assertTrue(this.refresher.getStats().getLastSyncTime() > 0);
+  }
+
+}
@@ -0,0 +1,170 @@
+package me.chanjar.weixin.open.api.impl;
+
+import cn.binarywang.wx.miniapp.util.cache.WxMaQrcodeCache;
+import me.chanjar.weixin.common.error.WxErrorException;
+import me.chanjar.weixin.mp.api.WxMpService;
+import me.chanjar.weixin.open.api.WxOpenAuthorizerServiceCustomizer;
+import me.chanjar.weixin.open.api.WxOpenConfigStorage;
+import me.chanjar.weixin.open.api.WxOpenFastMaService;
+import me.chanjar.weixin.open.api.WxOpenMaService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxOpenComponentServiceImplTest {
+  private WxOpenServiceImpl wxOpenService;
+  private final AtomicInteger tokenRequests = new AtomicInteger();
+  private volatile CountDownLatch release;
+
+  @BeforeMethod
+  public void setUp() {
+    this.tokenRequests.set(0);
+    this.release = new CountDownLatch(0);
+    WxOpenConfigStorage configStorage = new WxOpenInMemoryConfigStorage();
+    configStorage.setWxOpenInfo("componentAppId", "componentSecret", "token", "aesKey");
+    configStorage.setAuthorizerRefreshToken("appid1", "refreshToken");
+    this.wxOpenService = new WxOpenServiceImpl();
+    this.wxOpenService.setWxOpenConfigStorage(configStorage);
+  }
+
+  private WxOpenComponentServiceImpl newComponentService(long serviceCacheSize) {
+    return new WxOpenComponentServiceImpl(this.wxOpenService, serviceCacheSize, 30) {
+      @Override
+      public String post(String uri, String postData) throws WxErrorException {
+        int n = tokenRequests.incrementAndGet();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return "{\"authorizer_access_token\":\"token" + n + "\",\"expires_in\":7200,"
+          + "\"authorizer_refresh_token\":\"refreshToken\"}";
+      }
+    };
+  }
+
+  @Test
+  public void testConcurrentRefreshSharesOneRequest() throws Exception {
+    final WxOpenComponentServiceImpl componentService = this.newComponentService(10);
+    this.release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return componentService.getAuthorizerAccessToken("appid1", false);
+          }
+        }));
+      }
+
+      Thread.sleep(200);
+      this.release.countDown();
+      for (Future<String> future : futures) {
+        assertEquals(future.get(5, TimeUnit.SECONDS), "token1");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(this.tokenRequests.get(), 1);
+    assertEquals(componentService.getAuthorizerAccessToken("appid1", false), "token1");
+    assertEquals(this.tokenRequests.get(), 1);
+    assertEquals(componentService.getAuthorizerAccessToken("appid1", true), "token2");
+  }
+
+  @Test
+  public void testServiceCacheIsBounded() {
+    WxOpenComponentServiceImpl componentService = this.newComponentService(1);
+    WxMpService first = componentService.getWxMpServiceByAppid("appid1");
+    assertSame(componentService.getWxMpServiceByAppid("appid1"), first);
+
+    componentService.getWxMpServiceByAppid("appid2");
+    assertNotSame(componentService.getWxMpServiceByAppid("appid1"), first);
+  }
+
+  @Test
+  public void testServiceCacheIsUnboundedByDefault() {
+    WxOpenComponentServiceImpl componentService = new WxOpenComponentServiceImpl(this.wxOpenService);
+    WxMpService first = componentService.getWxMpServiceByAppid("appid1");
+    for (int i = 0; i < 100; i++) {
+      componentService.getWxMpServiceByAppid("appid" + (i + 2));
+    }
+    assertSame(componentService.getWxMpServiceByAppid("appid1"), first);
+  }
+
+  @Test
+  public void testCustomizerIsAppliedToRecreatedService() {
+    WxOpenComponentServiceImpl componentService = this.newComponentService(1);
+    final List<String> customized = new ArrayList<>();
+    componentService.setServiceCustomizer(new WxOpenAuthorizerServiceCustomizer() {
+      @Override
+      public void customize(String appId, WxMpService service) {
+        customized.add(appId);
+        service.setMaxRetryTimes(0);
+      }
+
+      @Override
+      public void customize(String appId, WxOpenMaService service) {
+      }
+
+      @Override
+      public void customize(String appId, WxOpenFastMaService service) {
+      }
+    });
+
+    componentService.getWxMpServiceByAppid("appid1");
+    componentService.getWxMpServiceByAppid("appid2");
+    componentService.getWxMpServiceByAppid("appid1");
+    assertEquals(customized, Arrays.asList("appid1", "appid2", "appid1"));
+  }
+
+  @Test
+  public void testTestQrcodeCacheSurvivesServiceEviction() throws Exception {
+    final byte[] qrcode = {1, 2, 3};
+    WxMaQrcodeCache cache = new WxMaQrcodeCache();
+    cache.get(WxMaQrcodeCache.key("appid1", WxOpenMaService.API_TEST_QRCODE, "pages/index"),
+      new WxMaQrcodeCache.Loader() {
+        @Override
+        public byte[] load() {
+          return qrcode;
+        }
+      });
+
+    WxOpenComponentServiceImpl componentService = this.newComponentService(1);
+    componentService.setTestQrcodeCache(cache);
+    WxOpenMaService first = componentService.getWxMaServiceByAppid("appid1");
+    componentService.getWxMaServiceByAppid("appid2");
+    WxOpenMaService recreated = componentService.getWxMaServiceByAppid("appid1");
+    assertNotSame(recreated, first);
+
+    File file = recreated.getTestQrcode("pages/index", null);
+    try {
+      assertTrue(Arrays.equals(Files.readAllBytes(file.toPath()), qrcode));
+    } finally {
+      file.delete();
+    }
+  }
+
+}
@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.coupon;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -229,22 +230,22 @@ public class WxPayCouponInfoQueryResult extends BaseWxPayResult {
   private String isPartialUse;
 
   @Override
-  protected void loadXML(Document d) {
-    deviceInfo = readXMLString(d, "device_info");
-    couponStockId = readXMLString(d, "coupon_stock_id");
-    couponId = readXMLString(d, "coupon_id");
-    couponValue = readXMLInteger(d, "coupon_value");
-    couponMinimum = readXMLInteger(d, "coupon_minimum");
-    couponName = readXMLString(d, "coupon_name");
-    couponState = readXMLString(d, "coupon_state");
-    couponDesc = readXMLString(d, "coupon_desc");
-    couponUseValue = readXMLInteger(d, "coupon_use_value");
-    couponRemainValue = readXMLInteger(d, "coupon_remain_value");
-    beginTime = readXMLString(d, "begin_time");
-    endTime = readXMLString(d, "end_time");
-    sendTime = readXMLString(d, "send_time");
-    consumerMchId = readXMLString(d, "consumer_mch_id");
-    sendSource = readXMLString(d, "send_source");
-    isPartialUse = readXMLString(d, "is_partial_use");
+  protected void loadXML(Map<String, String> values) {
+    deviceInfo = readXMLString(values, "device_info");
+    couponStockId = readXMLString(values, "coupon_stock_id");
+    couponId = readXMLString(values, "coupon_id");
+    couponValue = readXMLInteger(values, "coupon_value");
+    couponMinimum = readXMLInteger(values, "coupon_minimum");
+    couponName = readXMLString(values, "coupon_name");
+    couponState = readXMLString(values, "coupon_state");
+    couponDesc = readXMLString(values, "coupon_desc");
+    couponUseValue = readXMLInteger(values, "coupon_use_value");
+    couponRemainValue = readXMLInteger(values, "coupon_remain_value");
+    beginTime = readXMLString(values, "begin_time");
+    endTime = readXMLString(values, "end_time");
+    sendTime = readXMLString(values, "send_time");
+    consumerMchId = readXMLString(values, "consumer_mch_id");
+    sendSource = readXMLString(values, "send_source");
+    isPartialUse = readXMLString(values, "is_partial_use");
   }
 }
@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.coupon;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -138,15 +139,15 @@ public class WxPayCouponSendResult extends BaseWxPayResult {
   private String retMsg;
 
   @Override
-  protected void loadXML(Document d) {
-    deviceInfo = readXMLString(d, "device_info");
-    couponStockId = readXMLString(d, "coupon_stock_id");
-    respCount = readXMLInteger(d, "resp_count");
-    successCount = readXMLInteger(d, "success_count");
-    failedCount = readXMLInteger(d, "failed_count");
-    openid = readXMLString(d, "openid");
-    retCode = readXMLString(d, "ret_code");
-    couponId = readXMLString(d, "coupon_id");
-    retMsg = readXMLString(d, "ret_msg");
+  protected void loadXML(Map<String, String> values) {
+    deviceInfo = readXMLString(values, "device_info");
+    couponStockId = readXMLString(values, "coupon_stock_id");
+    respCount = readXMLInteger(values, "resp_count");
+    successCount = readXMLInteger(values, "success_count");
+    failedCount = readXMLInteger(values, "failed_count");
+    openid = readXMLString(values, "openid");
+    retCode = readXMLString(values, "ret_code");
+    couponId = readXMLString(values, "coupon_id");
+    retMsg = readXMLString(values, "ret_msg");
   }
 }
@@ -1,12 +1,13 @@
 package com.github.binarywang.wxpay.bean.coupon;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -193,19 +194,19 @@ public class WxPayCouponStockQueryResult extends BaseWxPayResult {
   private Integer couponBudget;
 
   @Override
-  protected void loadXML(Document d) {
-    deviceInfo = readXMLString(d, "device_info");
-    couponStockId = readXMLString(d, "coupon_stock_id");
-    couponName = readXMLString(d, "coupon_name");
-    couponValue = readXMLInteger(d, "coupon_value");
-    couponMinimum = readXMLInteger(d, "coupon_mininumn");
-    couponStockStatus = readXMLInteger(d, "coupon_stock_status");
-    couponTotal = readXMLInteger(d, "coupon_total");
-    maxQuota = readXMLInteger(d, "max_quota");
-    isSendNum = readXMLInteger(d, "is_send_num");
-    beginTime = readXMLString(d, "begin_time");
-    endTime = readXMLString(d, "end_time");
-    createTime = readXMLString(d, "create_time");
-    couponBudget = readXMLInteger(d, "coupon_budget");
+  protected void loadXML(Map<String, String> values) {
+    deviceInfo = readXMLString(values, "device_info");
+    couponStockId = readXMLString(values, "coupon_stock_id");
+    couponName = readXMLString(values, "coupon_name");
+    couponValue = readXMLInteger(values, "coupon_value");
+    couponMinimum = readXMLInteger(values, "coupon_mininumn");
+    couponStockStatus = readXMLInteger(values, "coupon_stock_status");
+    couponTotal = readXMLInteger(values, "coupon_total");
+    maxQuota = readXMLInteger(values, "max_quota");
+    isSendNum = readXMLInteger(values, "is_send_num");
+    beginTime = readXMLString(values, "begin_time");
+    endTime = readXMLString(values, "end_time");
+    createTime = readXMLString(values, "create_time");
+    couponBudget = readXMLInteger(values, "coupon_budget");
   }
 }
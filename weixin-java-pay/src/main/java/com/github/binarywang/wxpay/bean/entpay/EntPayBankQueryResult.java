@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.entpay;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -95,16 +96,16 @@ public class EntPayBankQueryResult extends BaseWxPayResult {
   private String failReason;
 
   @Override
-  protected void loadXML(Document d) {
-    partnerTradeNo = readXMLString(d, "partner_trade_no");
-    paymentNo = readXMLString(d, "payment_no");
-    bankNoMd5 = readXMLString(d, "bank_no_md5");
-    trueNameMd5 = readXMLString(d, "true_name_md5");
-    amount = readXMLInteger(d, "amount");
-    status = readXMLString(d, "status");
-    cmmsAmount = readXMLInteger(d, "cmms_amt");
-    createTime = readXMLString(d, "create_time");
-    paySuccessTime = readXMLString(d, "pay_succ_time");
-    failReason = readXMLString(d, "reason");
+  protected void loadXML(Map<String, String> values) {
+    partnerTradeNo = readXMLString(values, "partner_trade_no");
+    paymentNo = readXMLString(values, "payment_no");
+    bankNoMd5 = readXMLString(values, "bank_no_md5");
+    trueNameMd5 = readXMLString(values, "true_name_md5");
+    amount = readXMLInteger(values, "amount");
+    status = readXMLString(values, "status");
+    cmmsAmount = readXMLInteger(values, "cmms_amt");
+    createTime = readXMLString(values, "create_time");
+    paySuccessTime = readXMLString(values, "pay_succ_time");
+    failReason = readXMLString(values, "reason");
   }
 }
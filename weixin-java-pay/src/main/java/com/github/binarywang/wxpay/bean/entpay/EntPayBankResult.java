@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.entpay;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -50,10 +51,10 @@ public class EntPayBankResult extends BaseWxPayResult {
   private Integer cmmsAmount;
 
   @Override
-  protected void loadXML(Document d) {
-    amount = readXMLInteger(d, "amount");
-    partnerTradeNo = readXMLString(d, "partner_trade_no");
-    paymentNo = readXMLString(d, "payment_no");
-    cmmsAmount = readXMLInteger(d, "cmms_amt");
+  protected void loadXML(Map<String, String> values) {
+    amount = readXMLInteger(values, "amount");
+    partnerTradeNo = readXMLString(values, "partner_trade_no");
+    paymentNo = readXMLString(values, "payment_no");
+    cmmsAmount = readXMLInteger(values, "cmms_amt");
   }
 }
@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.entpay;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -83,16 +84,16 @@ public class EntPayQueryResult extends BaseWxPayResult {
   private String desc;
 
   @Override
-  protected void loadXML(Document d) {
-    partnerTradeNo = readXMLString(d, "partner_trade_no");
-    detailId = readXMLString(d, "detail_id");
-    status = readXMLString(d, "status");
-    reason = readXMLString(d, "reason");
-    openid = readXMLString(d, "openid");
-    transferName = readXMLString(d, "transfer_name");
-    paymentAmount = readXMLInteger(d, "payment_amount");
-    transferTime = readXMLString(d, "transfer_time");
-    paymentTime = readXMLString(d, "payment_time");
-    desc = readXMLString(d, "desc");
+  protected void loadXML(Map<String, String> values) {
+    partnerTradeNo = readXMLString(values, "partner_trade_no");
+    detailId = readXMLString(values, "detail_id");
+    status = readXMLString(values, "status");
+    reason = readXMLString(values, "reason");
+    openid = readXMLString(values, "openid");
+    transferName = readXMLString(values, "transfer_name");
+    paymentAmount = readXMLInteger(values, "payment_amount");
+    transferTime = readXMLString(values, "transfer_time");
+    paymentTime = readXMLString(values, "payment_time");
+    desc = readXMLString(values, "desc");
   }
 }
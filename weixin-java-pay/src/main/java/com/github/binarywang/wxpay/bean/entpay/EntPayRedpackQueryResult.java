@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.entpay;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * 红包发送记录查询返回
@@ -132,23 +133,23 @@ public class EntPayRedpackQueryResult extends BaseWxPayResult {
   private Integer senderHeaderMediaId;
 
   @Override
-  protected void loadXML(Document d) {
-    mchBillNo = readXMLString(d, "mch_billno");
-    detailId = readXMLString(d, "detailId");
-    status = readXMLString(d, "status");
-    sendType = readXMLString(d, "send_type");
-    totalAmount = readXMLInteger(d, "total_amount");
-    reason = readXMLInteger(d, "reason");
-    sendTime = readXMLString(d, "send_time");
-    refundTime = readXMLString(d, "refund_time");
-    refundAmount = readXMLInteger(d, "refund_amount");
-    wishing = readXMLString(d, "wishing");
-    remark = readXMLString(d, "remark");
-    actName = readXMLString(d, "act_name");
-    openid = readXMLString(d, "openid");
-    amount = readXMLInteger(d, "amount");
-    rcvTime = readXMLInteger(d, "rcv_time");
-    senderName = readXMLInteger(d, "sender_name");
-    senderHeaderMediaId = readXMLInteger(d, "sender_header_media_id");
+  protected void loadXML(Map<String, String> values) {
+    mchBillNo = readXMLString(values, "mch_billno");
+    detailId = readXMLString(values, "detailId");
+    status = readXMLString(values, "status");
+    sendType = readXMLString(values, "send_type");
+    totalAmount = readXMLInteger(values, "total_amount");
+    reason = readXMLInteger(values, "reason");
+    sendTime = readXMLString(values, "send_time");
+    refundTime = readXMLString(values, "refund_time");
+    refundAmount = readXMLInteger(values, "refund_amount");
+    wishing = readXMLString(values, "wishing");
+    remark = readXMLString(values, "remark");
+    actName = readXMLString(values, "act_name");
+    openid = readXMLString(values, "openid");
+    amount = readXMLInteger(values, "amount");
+    rcvTime = readXMLInteger(values, "rcv_time");
+    senderName = readXMLInteger(values, "sender_name");
+    senderHeaderMediaId = readXMLInteger(values, "sender_header_media_id");
   }
 }
@@ -5,9 +5,9 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * 企业微信红包返回
@@ -80,14 +80,14 @@ public class EntPayRedpackResult extends BaseWxPayResult implements Serializable
   private String senderHeaderMediaId;
 
   @Override
-  protected void loadXML(Document d) {
-    mchBillNo = readXMLString(d, "mch_billno");
-    mchId = readXMLString(d, "mch_id");
-    wxAppId = readXMLString(d, "wxappid");
-    reOpenid = readXMLString(d, "re_openid");
-    totalAmount = readXMLString(d, "totalAmount");
-    sendListId = readXMLString(d, "sendListid");
-    senderName = readXMLString(d, "sender_name");
-    senderHeaderMediaId = readXMLString(d, "sender_header_media_id");
+  protected void loadXML(Map<String, String> values) {
+    mchBillNo = readXMLString(values, "mch_billno");
+    mchId = readXMLString(values, "mch_id");
+    wxAppId = readXMLString(values, "wxappid");
+    reOpenid = readXMLString(values, "re_openid");
+    totalAmount = readXMLString(values, "totalAmount");
+    sendListId = readXMLString(values, "sendListid");
+    senderName = readXMLString(values, "sender_name");
+    senderHeaderMediaId = readXMLString(values, "sender_header_media_id");
   }
 }
@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.entpay;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -58,12 +59,12 @@ public class EntPayResult extends BaseWxPayResult {
   private String paymentTime;
 
   @Override
-  protected void loadXML(Document d) {
-    mchId = readXMLString(d, "mchid");
-    mchAppid = readXMLString(d, "mch_appid");
-    deviceInfo = readXMLString(d, "device_info");
-    partnerTradeNo = readXMLString(d, "partner_trade_no");
-    paymentNo = readXMLString(d, "payment_no");
-    paymentTime = readXMLString(d, "payment_time");
+  protected void loadXML(Map<String, String> values) {
+    mchId = readXMLString(values, "mchid");
+    mchAppid = readXMLString(values, "mch_appid");
+    deviceInfo = readXMLString(values, "device_info");
+    partnerTradeNo = readXMLString(values, "partner_trade_no");
+    paymentNo = readXMLString(values, "payment_no");
+    paymentTime = readXMLString(values, "payment_time");
   }
 }
@@ -1,10 +1,11 @@
 package com.github.binarywang.wxpay.bean.entpay;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -31,8 +32,8 @@ public class GetPublicKeyResult extends BaseWxPayResult {
   private String pubKey;
 
   @Override
-  protected void loadXML(Document d) {
-    mchId = readXMLString(d, "mch_id");
-    pubKey = readXMLString(d, "pub_key");
+  protected void loadXML(Map<String, String> values) {
+    mchId = readXMLString(values, "mch_id");
+    pubKey = readXMLString(values, "pub_key");
   }
 }
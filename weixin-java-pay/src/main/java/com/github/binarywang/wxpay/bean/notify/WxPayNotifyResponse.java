@@ -1,6 +1,6 @@
 package com.github.binarywang.wxpay.bean.notify;
 
-import com.thoughtworks.xstream.XStream;
+import com.github.binarywang.wxpay.util.XStreamTransformer;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamConverter;
 import com.thoughtworks.xstream.annotations.XStreamOmitField;
@@ -9,7 +9,6 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import me.chanjar.weixin.common.util.xml.XStreamCDataConverter;
-import me.chanjar.weixin.common.util.xml.XStreamInitializer;
 
 /**
  * 微信支付订单和退款的异步通知共用的响应类.
@@ -42,9 +41,7 @@ public class WxPayNotifyResponse {
    */
   public static String fail(String msg) {
     WxPayNotifyResponse response = new WxPayNotifyResponse(FAIL, msg);
-    XStream xstream = XStreamInitializer.getInstance();
-    xstream.autodetectAnnotations(true);
-    return xstream.toXML(response).replace("\n", "").replace("  ", "");
+    return XStreamTransformer.toXml(response).replace("\n", "").replace("  ", "");
   }
 
   /**
@@ -55,9 +52,7 @@ public class WxPayNotifyResponse {
    */
   public static String success(String msg) {
     WxPayNotifyResponse response = new WxPayNotifyResponse(SUCCESS, msg);
-    XStream xstream = XStreamInitializer.getInstance();
-    xstream.autodetectAnnotations(true);
-    return xstream.toXML(response).replace("\n", "").replace("  ", "");
+    return XStreamTransformer.toXml(response).replace("\n", "").replace("  ", "");
   }
 
 }
@@ -2,20 +2,18 @@ package com.github.binarywang.wxpay.bean.notify;
 
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.github.binarywang.wxpay.constant.WxPayConstants;
-import com.github.binarywang.wxpay.converter.WxPayOrderNotifyResultConverter;
 import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.binarywang.wxpay.service.WxPayService;
 import com.github.binarywang.wxpay.util.SignUtils;
-import com.thoughtworks.xstream.XStream;
+import com.github.binarywang.wxpay.util.XStreamTransformer;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import me.chanjar.weixin.common.util.json.WxGsonBuilder;
-import me.chanjar.weixin.common.util.xml.XStreamInitializer;
-import org.w3c.dom.Document;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -331,10 +329,7 @@ public class WxPayOrderNotifyResult extends BaseWxPayResult {
    * @return the wx pay order notify result
    */
   public static WxPayOrderNotifyResult fromXML(String xmlString) {
-    XStream xstream = XStreamInitializer.getInstance();
-    xstream.processAnnotations(WxPayOrderNotifyResult.class);
-    xstream.registerConverter(new WxPayOrderNotifyResultConverter(xstream.getMapper(), xstream.getReflectionProvider()));
-    WxPayOrderNotifyResult result = (WxPayOrderNotifyResult) xstream.fromXML(xmlString);
+    WxPayOrderNotifyResult result = XStreamTransformer.fromXml(WxPayOrderNotifyResult.class, xmlString);
     result.setXmlString(xmlString);
     return result;
   }
@@ -342,39 +337,53 @@ public class WxPayOrderNotifyResult extends BaseWxPayResult {
   @Override
   public Map<String, String> toMap() {
     Map<String, String> resultMap = SignUtils.xmlBean2Map(this);
+    resultMap.putAll(this.couponParams());
+    return resultMap;
+  }
+
+  /**
+   * 通知的属性已经解析到对象中，直接按照对象属性及代金券信息校验签名，无需先转换为map.
+   */
+  @Override
+  protected boolean checkSign(String signType, String signKey) {
+    return SignUtils.checkSign(this, this.couponParams(), signType, signKey);
+  }
+
+  private Map<String, String> couponParams() {
+    Map<String, String> params = new HashMap<>();
     if (this.getCouponCount() != null && this.getCouponCount() > 0) {
       for (int i = 0; i < this.getCouponCount(); i++) {
         WxPayOrderNotifyCoupon coupon = couponList.get(i);
-        resultMap.putAll(coupon.toMap(i));
+        params.putAll(coupon.toMap(i));
       }
     }
-    return resultMap;
+    return params;
   }
 
   @Override
-  protected void loadXML(Document d) {
-    promotionDetail = readXMLString(d, "promotion_detail");
-    deviceInfo = readXMLString(d, "device_info");
-    openid = readXMLString(d, "openid");
-    isSubscribe = readXMLString(d, "is_subscribe");
-    subOpenid = readXMLString(d, "sub_openid");
-    subIsSubscribe = readXMLString(d, "sub_is_subscribe");
-    tradeType = readXMLString(d, "trade_type");
-    bankType = readXMLString(d, "bank_type");
-    totalFee = readXMLInteger(d, "total_fee");
-    settlementTotalFee = readXMLInteger(d, "settlement_total_fee");
-    feeType = readXMLString(d, "fee_type");
-    cashFee = readXMLInteger(d, "cash_fee");
-    cashFeeType = readXMLString(d, "cash_fee_type");
-    couponFee = readXMLInteger(d, "coupon_fee");
-    couponCount = readXMLInteger(d, "coupon_count");
-    transactionId = readXMLString(d, "transaction_id");
-    outTradeNo = readXMLString(d, "out_trade_no");
-    attach = readXMLString(d, "attach");
-    timeEnd = readXMLString(d, "time_end");
-    version = readXMLString(d, "version");
-    rateValue = readXMLString(d, "rate_value");
-    signType = readXMLString(d, "sign_type");
+  protected void loadXML(Map<String, String> values) {
+    promotionDetail = readXMLString(values, "promotion_detail");
+    deviceInfo = readXMLString(values, "device_info");
+    openid = readXMLString(values, "openid");
+    isSubscribe = readXMLString(values, "is_subscribe");
+    subOpenid = readXMLString(values, "sub_openid");
+    subIsSubscribe = readXMLString(values, "sub_is_subscribe");
+    tradeType = readXMLString(values, "trade_type");
+    bankType = readXMLString(values, "bank_type");
+    totalFee = readXMLInteger(values, "total_fee");
+    settlementTotalFee = readXMLInteger(values, "settlement_total_fee");
+    feeType = readXMLString(values, "fee_type");
+    cashFee = readXMLInteger(values, "cash_fee");
+    cashFeeType = readXMLString(values, "cash_fee_type");
+    couponFee = readXMLInteger(values, "coupon_fee");
+    couponCount = readXMLInteger(values, "coupon_count");
+    transactionId = readXMLString(values, "transaction_id");
+    outTradeNo = readXMLString(values, "out_trade_no");
+    attach = readXMLString(values, "attach");
+    timeEnd = readXMLString(values, "time_end");
+    version = readXMLString(values, "version");
+    rateValue = readXMLString(values, "rate_value");
+    signType = readXMLString(values, "sign_type");
 
     composeCoupons();
   }
@@ -2,6 +2,7 @@ package com.github.binarywang.wxpay.bean.notify;
 
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -11,14 +12,13 @@ import org.apache.commons.codec.digest.DigestUtils;
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.github.binarywang.wxpay.constant.WxPayConstants;
 import com.github.binarywang.wxpay.exception.WxPayException;
-import com.thoughtworks.xstream.XStream;
+import com.github.binarywang.wxpay.util.XStreamTransformer;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import me.chanjar.weixin.common.util.json.WxGsonBuilder;
-import me.chanjar.weixin.common.util.xml.XStreamInitializer;
 import org.w3c.dom.Document;
 
 /**
@@ -85,8 +85,8 @@ public class WxPayRefundNotifyResult extends BaseWxPayResult implements Serializ
   private transient String decryptedReqInfo;
 
   @Override
-  protected void loadXML(Document d) {
-    reqInfoString = readXMLString(d, "req_info");
+  protected void loadXML(Map<String, String> values) {
+    reqInfoString = readXMLString(values, "req_info");
   }
 
   /**
@@ -308,9 +308,7 @@ public class WxPayRefundNotifyResult extends BaseWxPayResult implements Serializ
      * @return ReqInfo对象
      */
     public static ReqInfo fromXML(String xmlString) {
-      XStream xstream = XStreamInitializer.getInstance();
-      xstream.processAnnotations(ReqInfo.class);
-      return (ReqInfo) xstream.fromXML(xmlString);
+      return XStreamTransformer.fromXml(ReqInfo.class, xmlString);
     }
 
     public void loadXML(Document d) {
@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.notify;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -47,10 +48,10 @@ public class WxScanPayNotifyResult extends BaseWxPayResult {
   private String productId;
 
   @Override
-  protected void loadXML(Document d) {
-    openid = readXMLString(d, "openid");
-    isSubscribe = readXMLString(d, "is_subscribe");
-    productId = readXMLString(d, "product_id");
+  protected void loadXML(Map<String, String> values) {
+    openid = readXMLString(values, "openid");
+    isSubscribe = readXMLString(values, "is_subscribe");
+    productId = readXMLString(values, "product_id");
   }
 
 }
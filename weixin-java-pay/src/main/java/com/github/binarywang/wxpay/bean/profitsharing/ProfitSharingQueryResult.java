@@ -1,5 +1,7 @@
 package com.github.binarywang.wxpay.bean.profitsharing;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
@@ -8,7 +10,6 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * @author Wang GuangXin 2019/10/22 15:51
@@ -69,15 +70,15 @@ public class ProfitSharingQueryResult extends BaseWxPayResult {
   }
 
   @Override
-  protected void loadXML(Document d) {
-    transactionId = readXMLString(d, "transaction_id");
-    outOrderNo = readXMLString(d, "out_order_no");
-    orderId = readXMLString(d, "orderId");
-    status = readXMLString(d, "status");
-    closeReason = readXMLString(d, "close_reason");
-    receivers = readXMLString(d, "receivers");
-    amount = readXMLInteger(d, "amount");
-    description = readXMLString(d, "description");
+  protected void loadXML(Map<String, String> values) {
+    transactionId = readXMLString(values, "transaction_id");
+    outOrderNo = readXMLString(values, "out_order_no");
+    orderId = readXMLString(values, "orderId");
+    status = readXMLString(values, "status");
+    closeReason = readXMLString(values, "close_reason");
+    receivers = readXMLString(values, "receivers");
+    amount = readXMLInteger(values, "amount");
+    description = readXMLString(values, "description");
   }
 
   @Data
@@ -1,12 +1,13 @@
 package com.github.binarywang.wxpay.bean.profitsharing;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.request.BaseWxPayRequest;
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * @author Wang GuangXin 2019/10/22 14:54
@@ -25,7 +26,7 @@ public class ProfitSharingReceiverResult extends BaseWxPayResult {
   private String receiver;
 
   @Override
-  protected void loadXML(Document d) {
-    receiver = readXMLString(d, "receiver");
+  protected void loadXML(Map<String, String> values) {
+    receiver = readXMLString(values, "receiver");
   }
 }
@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.profitsharing;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * @author Wang GuangXin 2019/10/22 10:06
@@ -33,9 +34,9 @@ public class ProfitSharingResult extends BaseWxPayResult {
   private String orderId;
 
   @Override
-  protected void loadXML(Document d) {
-    transactionId = readXMLString(d, "transaction_id");
-    outOrderNo = readXMLString(d, "out_order_no");
-    orderId = readXMLString(d, "order_id");
+  protected void loadXML(Map<String, String> values) {
+    transactionId = readXMLString(values, "transaction_id");
+    outOrderNo = readXMLString(values, "out_order_no");
+    orderId = readXMLString(values, "order_id");
   }
 }
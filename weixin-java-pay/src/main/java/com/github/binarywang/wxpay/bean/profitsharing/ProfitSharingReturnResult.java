@@ -1,11 +1,12 @@
 package com.github.binarywang.wxpay.bean.profitsharing;
 
+import java.util.Map;
+
 import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * @author Wang GuangXin 2019/10/23 14:41
@@ -74,17 +75,17 @@ public class ProfitSharingReturnResult extends BaseWxPayResult {
   private String finishTime;
 
   @Override
-  protected void loadXML(Document d) {
-    orderId = readXMLString(d, "order_id");
-    outOrderNo = readXMLString(d, "out_order_no");
-    outReturnNo = readXMLString(d, "out_return_no");
-    returnNo = readXMLString(d, "return_no");
-    returnAccountType = readXMLString(d, "return_account_type");
-    returnAccount = readXMLString(d, "return_account");
-    returnAmount = readXMLInteger(d, "return_amount");
-    description = readXMLString(d, "description");
-    result = readXMLString(d, "result");
-    failReason = readXMLString(d, "fail_reason");
-    finishTime = readXMLString(d, "finish_time");
+  protected void loadXML(Map<String, String> values) {
+    orderId = readXMLString(values, "order_id");
+    outOrderNo = readXMLString(values, "out_order_no");
+    outReturnNo = readXMLString(values, "out_return_no");
+    returnNo = readXMLString(values, "return_no");
+    returnAccountType = readXMLString(values, "return_account_type");
+    returnAccount = readXMLString(values, "return_account");
+    returnAmount = readXMLInteger(values, "return_amount");
+    description = readXMLString(values, "description");
+    result = readXMLString(values, "result");
+    failReason = readXMLString(values, "fail_reason");
+    finishTime = readXMLString(values, "finish_time");
   }
 }
@@ -11,7 +11,9 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
+import com.github.binarywang.wxpay.util.XStreamTransformer;
 import com.github.binarywang.wxpay.util.XmlConfig;
+import com.github.binarywang.wxpay.util.XmlValueReader;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,11 +27,9 @@ import com.github.binarywang.wxpay.util.SignUtils;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import me.chanjar.weixin.common.util.json.WxGsonBuilder;
-import me.chanjar.weixin.common.util.xml.XStreamInitializer;
 
 import org.w3c.dom.*;
 
@@ -114,6 +114,11 @@ public abstract class BaseWxPayResult implements Serializable {
    */
   private transient Document xmlDoc;
 
+  /**
+   * xml根元素下各子元素的值，用于快速读取元素值，避免构建DOM.
+   */
+  private transient Map<String, String> xmlValues;
+
   /**
    * 将单位分转换成单位圆.
    *
@@ -137,45 +142,64 @@ public abstract class BaseWxPayResult implements Serializable {
       try {
         BaseWxPayResult t = clz.newInstance();
         t.setXmlString(xmlString);
-        Document doc = t.getXmlDoc();
-        t.loadBasicXML(doc);
-        t.loadXML(doc);
+        Map<String, String> values = XmlValueReader.readFirstValues(xmlString);
+        t.loadBasicXML(values);
+        t.loadXML(values);
         return (T) t;
       } catch (Exception e) {
         throw new RuntimeException("parse xml error", e);
       }
     }
-    XStream xstream = XStreamInitializer.getInstance();
-    xstream.processAnnotations(clz);
-    T result = (T) xstream.fromXML(xmlString);
+    T result = XStreamTransformer.fromXml(clz, xmlString);
     result.setXmlString(xmlString);
     return result;
   }
 
   /**
-   * 从XML文档中加载属性,供子类覆盖加载额外的属性
+   * 从xml各元素的值中加载属性,供子类覆盖加载额外的属性.
+   * 默认通过DOM解析后调用{@link #loadXML(Document)}，子类覆盖本方法即可避免构建DOM.
    *
-   * @param d Document
+   * @param values xml中各元素的值，同名元素只取第一个
    */
-  protected abstract void loadXML(Document d);
+  protected void loadXML(Map<String, String> values) {
+    this.loadXML(this.getXmlDoc());
+  }
 
   /**
-   * 从XML文档中加载基础属性
+   * 从XML文档中加载属性,供需要读取嵌套结构的子类覆盖加载额外的属性
    *
    * @param d Document
    */
-  private void loadBasicXML(Document d) {
-    returnCode = readXMLString(d, "return_code");
-    returnMsg = readXMLString(d, "return_msg");
-    resultCode = readXMLString(d, "result_code");
-    errCode = readXMLString(d, "err_code");
-    errCodeDes = readXMLString(d, "err_code_des");
-    appid = readXMLString(d, "appid");
-    mchId = readXMLString(d, "mch_id");
-    subAppId = readXMLString(d, "sub_appid");
-    subMchId = readXMLString(d, "sub_mch_id");
-    nonceStr = readXMLString(d, "nonce_str");
-    sign = readXMLString(d, "sign");
+  protected void loadXML(Document d) {
+  }
+
+  /**
+   * 从xml各元素的值中加载基础属性
+   *
+   * @param values xml中各元素的值
+   */
+  private void loadBasicXML(Map<String, String> values) {
+    returnCode = readXMLString(values, "return_code");
+    returnMsg = readXMLString(values, "return_msg");
+    resultCode = readXMLString(values, "result_code");
+    errCode = readXMLString(values, "err_code");
+    errCodeDes = readXMLString(values, "err_code_des");
+    appid = readXMLString(values, "appid");
+    mchId = readXMLString(values, "mch_id");
+    subAppId = readXMLString(values, "sub_appid");
+    subMchId = readXMLString(values, "sub_mch_id");
+    nonceStr = readXMLString(values, "nonce_str");
+    sign = readXMLString(values, "sign");
+  }
+
+  public static String readXMLString(Map<String, String> values, String tagName) {
+    return values.get(tagName);
+  }
+
+  public static Integer readXMLInteger(Map<String, String> values, String tagName) {
+    String content = readXMLString(values, tagName);
+    if (content == null || content.trim().length() == 0) return null;
+    return Integer.parseInt(content);
   }
 
   public static Integer readXMLInteger(Node d, String tagName) {
@@ -240,22 +264,17 @@ public abstract class BaseWxPayResult implements Serializable {
       throw new RuntimeException("xml数据有问题，请核实！");
     }
 
-    Map<String, String> result = Maps.newHashMap();
-    Document doc = this.getXmlDoc();
+    return Maps.newHashMap(this.getXmlValues());
+  }
 
-    try {
-      NodeList list = (NodeList) XPathFactory.newInstance().newXPath()
-        .compile("/xml/*")
-        .evaluate(doc, XPathConstants.NODESET);
-      int len = list.getLength();
-      for (int i = 0; i < len; i++) {
-        result.put(list.item(i).getNodeName(), list.item(i).getTextContent());
-      }
-    } catch (XPathExpressionException e) {
-      throw new RuntimeException("非法的xml文本内容：" + xmlString);
+  /**
+   * 读取xml根元素下各子元素的值，只解析一次.
+   */
+  private Map<String, String> getXmlValues() {
+    if (this.xmlValues == null) {
+      this.xmlValues = XmlValueReader.readChildValues(this.xmlString, "xml");
     }
-
-    return result;
+    return this.xmlValues;
   }
 
   /**
@@ -287,8 +306,15 @@ public abstract class BaseWxPayResult implements Serializable {
    * @return the xml value
    */
   protected String getXmlValue(String... path) {
+    String joinedPath = Joiner.on("/").join(path);
+    if (joinedPath.startsWith("xml/") && joinedPath.indexOf('/', 4) < 0) {
+      // 根元素下的子元素，直接读取，无需构建DOM
+      String value = this.getXmlValues().get(joinedPath.substring(4));
+      return value == null ? "" : value;
+    }
+
     Document doc = this.getXmlDoc();
-    String expression = String.format("/%s//text()", Joiner.on("/").join(path));
+    String expression = String.format("/%s//text()", joinedPath);
     try {
       return (String) XPathFactory
         .newInstance()
@@ -315,6 +341,17 @@ public abstract class BaseWxPayResult implements Serializable {
     return Integer.valueOf(result);
   }
 
+  /**
+   * 校验返回结果的签名，默认使用返回的xml中的所有元素进行校验.
+   *
+   * @param signType 签名类型
+   * @param signKey  签名Key
+   * @return 签名是否正确
+   */
+  protected boolean checkSign(String signType, String signKey) {
+    return SignUtils.checkSign(toMap(), signType, signKey);
+  }
+
   /**
    * 校验返回结果签名.
    *
@@ -325,9 +362,8 @@ public abstract class BaseWxPayResult implements Serializable {
    */
   public void checkResult(WxPayService wxPayService, String signType, boolean checkSuccess) throws WxPayException {
     //校验返回结果签名
-    Map<String, String> map = toMap();
-    if (getSign() != null && !SignUtils.checkSign(map, signType, wxPayService.getConfig().getMchKey())) {
-      this.getLogger().debug("校验结果签名失败，参数：{}", map);
+    if (getSign() != null && !this.checkSign(signType, wxPayService.getConfig().getMchKey())) {
+      this.getLogger().debug("校验结果签名失败，参数：{}", toMap());
       throw new WxPayException("参数格式校验错误！");
     }
 
@@ -353,7 +389,7 @@ public abstract class BaseWxPayResult implements Serializable {
           errorMsg.append("，错误详情：").append(getErrCodeDes());
         }
 
-        this.getLogger().error("\n结果业务代码异常，返回结果：{},\n{}", map, errorMsg.toString());
+        this.getLogger().error("\n结果业务代码异常，返回结果：{},\n{}", toMap(), errorMsg.toString());
         throw WxPayException.from(this);
       }
     }
@@ -4,9 +4,12 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import me.chanjar.weixin.common.util.json.WxGsonBuilder;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 微信对账单结果类.
@@ -65,29 +68,10 @@ public class WxPayBillResult implements Serializable {
    * @return WxPayBillResult对象
    */
   public static WxPayBillResult fromRawBillResultString(String responseContent, String billType) {
-    switch (billType) {
-      case "ALL": {
-        return fromRawBillResultString(responseContent);
-      }
-      case "SUCCESS": {
-        return fromRawBillResultStringToSuccess(responseContent);
-      }
-      case "REFUND": {
-        return fromRawBillResultStringToRefund(responseContent);
-      }
-      case "RECHARGE_REFUND": {
-        return fromRawBillResultStringToRechargeRefund(responseContent);
-      }
-      default: {
-        return null;
-      }
+    if (!isSupportedBillType(billType)) {
+      return null;
     }
-  }
 
-  /**
-   * 从原始对账单字符串里构造出WxPayBillResult对象，用于构建当日所有订单信息
-   */
-  private static WxPayBillResult fromRawBillResultString(String responseContent) {
     String listStr = "";
     String objStr = "";
     if (responseContent.contains(TOTAL_DEAL_COUNT)) {
@@ -106,292 +90,187 @@ public class WxPayBillResult implements Serializable {
     int j = tempStr.length / t.length;
     // 纪录数组下标
     int k = 1;
-    // 交易时间,公众账号ID,商户号,特约商户号,设备号,微信订单号,商户订单号,用户标识,交易类型,交易状态,付款银行,货币种类,
-    // 应结订单金额,代金券金额,微信退款单号,商户退款单号,退款金额,充值券退款金额,退款类型,退款状态,商品名称,商户数据包,手续费,费率,
-    // 订单金额,申请退款金额,费率备注  （开通免充值券后的结算对账单专有的三个字段）
     for (int i = 0; i < j; i++) {
-      WxPayBillInfo result = new WxPayBillInfo();
-      result.setTradeTime(tempStr[k].trim());
-      result.setAppId(tempStr[k + 1].trim());
-      result.setMchId(tempStr[k + 2].trim());
-      result.setSubMchId(tempStr[k + 3].trim());
-      result.setDeviceInfo(tempStr[k + 4].trim());
-      result.setTransactionId(tempStr[k + 5].trim());
-      result.setOutTradeNo(tempStr[k + 6].trim());
-      result.setOpenId(tempStr[k + 7].trim());
-      result.setTradeType(tempStr[k + 8].trim());
-      result.setTradeState(tempStr[k + 9].trim());
-      result.setBankType(tempStr[k + 10].trim());
-      result.setFeeType(tempStr[k + 11].trim());
-      result.setTotalFee(tempStr[k + 12].trim());
-      result.setCouponFee(tempStr[k + 13].trim());
-      result.setRefundId(tempStr[k + 14].trim());
-      result.setOutRefundNo(tempStr[k + 15].trim());
-      result.setSettlementRefundFee(tempStr[k + 16].trim());
-      result.setCouponRefundFee(tempStr[k + 17].trim());
-      result.setRefundChannel(tempStr[k + 18].trim());
-      result.setRefundState(tempStr[k + 19].trim());
-      result.setBody(tempStr[k + 20].trim());
-      result.setAttach(tempStr[k + 21].trim());
-      result.setPoundage(tempStr[k + 22].trim());
-      result.setPoundageRate(tempStr[k + 23].trim());
-
-      if (t.length > 24) {
-        // 开通免充值券后的结算对账单
-        result.setTotalAmount(tempStr[k + 24].trim());
-        result.setAppliedRefundAmount(tempStr[k + 25].trim());
-        result.setFeeRemark(tempStr[k + 26].trim());
-      }
-
-      results.add(result);
+      results.add(toBillInfo(billType, tempStr, k, t.length));
       k += t.length;
     }
 
     WxPayBillResult billResult = new WxPayBillResult();
     billResult.setBillInfoList(results);
-
-    /*
-     * 总交易单数,应结订单总金额,退款总金额,充值券退款总金额,手续费总金额,订单总金额,申请退款总金额 `48,`5.76,`1.42,`0.00,`0.01000,`5.76,`1.42
-     * 参考以上格式进行取值
-     */
-    String[] totalTempStr = objStr.replaceAll(",", " ").split("`");
-    billResult.setTotalRecord(totalTempStr[1].trim());
-    billResult.setTotalFee(totalTempStr[2].trim());
-    billResult.setTotalRefundFee(totalTempStr[3].trim());
-    billResult.setTotalCouponFee(totalTempStr[4].trim());
-    billResult.setTotalPoundageFee(totalTempStr[5].trim());
-    billResult.setTotalAmount(get(totalTempStr, 6));
-    billResult.setTotalAppliedRefundFee(get(totalTempStr, 7));
-
+    billResult.fillSummary(objStr);
     return billResult;
   }
 
   /**
-   * 从原始对账单字符串里构造出WxPayBillResult对象，用于构建当日成功支付的订单
+   * <pre>
+   * 从原始对账单数据流中逐行解析，每解析出一条对账明细即交给consumer处理，不在内存中保留明细数据.
+   * 返回的对象中仅包含汇总数据，billInfoList为空列表.
+   * </pre>
+   *
+   * @param reader   原始对账单数据流
+   * @param billType 账单类型
+   * @param consumer 对账明细处理器
+   * @return 只包含汇总数据的WxPayBillResult对象，账单类型不支持时返回null
+   * @throws IOException 读取数据流出错时抛出
    */
-  private static WxPayBillResult fromRawBillResultStringToSuccess(String responseContent) {
-    String listStr = "";
-    String objStr = "";
-    if (responseContent.contains(TOTAL_DEAL_COUNT)) {
-      listStr = responseContent.substring(0, responseContent.indexOf(TOTAL_DEAL_COUNT));
-      objStr = responseContent.substring(responseContent.indexOf(TOTAL_DEAL_COUNT));
-    }
-
-    List<WxPayBillInfo> results = new ArrayList<>();
-    // 去空格
-    String newStr = listStr.replaceAll(",", " ");
-    // 数据分组
-    String[] tempStr = newStr.split("`");
-    // 分组标题
-    String[] t = tempStr[0].split(" ");
-    // 计算循环次数
-    int j = tempStr.length / t.length;
-    // 纪录数组下标
-    int k = 1;
-    // 交易时间,公众账号ID,商户号,特约商户号,设备号,微信订单号,商户订单号,用户标识,交易类型,交易状态,付款银行,货币种类,
-    // 应结订单金额,代金券金额,商品名称,商户数据包,手续费,费率,订单金额,费率备注
-    for (int i = 0; i < j; i++) {
-      WxPayBillInfo result = new WxPayBillInfo();
-      result.setTradeTime(tempStr[k].trim());
-      result.setAppId(tempStr[k + 1].trim());
-      result.setMchId(tempStr[k + 2].trim());
-      result.setSubMchId(tempStr[k + 3].trim());
-      result.setDeviceInfo(tempStr[k + 4].trim());
-      result.setTransactionId(tempStr[k + 5].trim());
-      result.setOutTradeNo(tempStr[k + 6].trim());
-      result.setOpenId(tempStr[k + 7].trim());
-      result.setTradeType(tempStr[k + 8].trim());
-      result.setTradeState(tempStr[k + 9].trim());
-      result.setBankType(tempStr[k + 10].trim());
-      result.setFeeType(tempStr[k + 11].trim());
-      result.setTotalFee(tempStr[k + 12].trim());
-      result.setCouponFee(tempStr[k + 13].trim());
-      result.setBody(tempStr[k + 14].trim());
-      result.setAttach(tempStr[k + 15].trim());
-      result.setPoundage(tempStr[k + 16].trim());
-      result.setPoundageRate(tempStr[k + 17].trim());
-      result.setTotalAmount(tempStr[k + 18].trim());
-      result.setFeeRemark(tempStr[k + 19].trim());
-      results.add(result);
-      k += t.length;
+  public static WxPayBillResult fromRawBillResultStream(BufferedReader reader, String billType,
+                                                        Consumer<WxPayBillInfo> consumer) throws IOException {
+    if (!isSupportedBillType(billType)) {
+      return null;
     }
 
     WxPayBillResult billResult = new WxPayBillResult();
-    billResult.setBillInfoList(results);
+    billResult.setBillInfoList(new ArrayList<WxPayBillInfo>());
+    int columnCount = -1;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+
+      if (columnCount < 0) {
+        // 分组标题
+        columnCount = line.split(",").length;
+      } else if (line.startsWith(TOTAL_DEAL_COUNT)) {
+        String totalLine = reader.readLine();
+        billResult.fillSummary(line + "\n" + (totalLine == null ? "" : totalLine));
+        break;
+      } else {
+        // 每行以`开头，第一个分组为空
+        consumer.accept(toBillInfo(billType, line.split("`", -1), 1, columnCount));
+      }
+    }
 
-    /*
-     * 总交易单数,应结订单总金额,退款总金额,充值券退款总金额,手续费总金额,订单总金额,申请退款总金额 `31,`3.05,`0.00,`0.00,`0.02000,`3.05,`0.00
-     * 参考以上格式进行取值
-     */
-    String[] totalTempStr = objStr.replaceAll(",", " ").split("`");
-    billResult.setTotalRecord(totalTempStr[1].trim());
-    billResult.setTotalFee(totalTempStr[2].trim());
-    billResult.setTotalRefundFee(totalTempStr[3].trim());
-    billResult.setTotalCouponFee(totalTempStr[4].trim());
-    billResult.setTotalPoundageFee(totalTempStr[5].trim());
-    billResult.setTotalAmount(get(totalTempStr, 6));
-    billResult.setTotalAppliedRefundFee(get(totalTempStr, 7));
     return billResult;
   }
 
+  private static boolean isSupportedBillType(String billType) {
+    switch (billType) {
+      case "ALL":
+      case "SUCCESS":
+      case "REFUND":
+      case "RECHARGE_REFUND":
+        return true;
+      default:
+        return false;
+    }
+  }
+
   /**
-   * 从原始对账单字符串里构造出WxPayBillResult对象，用于构建当日退款的订单
+   * 根据账单类型将一条记录的各个字段转换为WxPayBillInfo对象.
+   *
+   * @param billType    账单类型
+   * @param fields      字段数组
+   * @param offset      该记录第一个字段在数组中的下标
+   * @param columnCount 标题的字段数
    */
-  private static WxPayBillResult fromRawBillResultStringToRefund(String responseContent) {
-    String listStr = "";
-    String objStr = "";
-    if (responseContent.contains(TOTAL_DEAL_COUNT)) {
-      listStr = responseContent.substring(0, responseContent.indexOf(TOTAL_DEAL_COUNT));
-      objStr = responseContent.substring(responseContent.indexOf(TOTAL_DEAL_COUNT));
-    }
+  private static WxPayBillInfo toBillInfo(String billType, String[] fields, int offset, int columnCount) {
+    WxPayBillInfo result = new WxPayBillInfo();
+    // 以下为各类账单共有的字段：
+    // 交易时间,公众账号ID,商户号,特约商户号,设备号,微信订单号,商户订单号,用户标识,交易类型,交易状态,付款银行,货币种类,应结订单金额,代金券金额
+    result.setTradeTime(field(fields, offset));
+    result.setAppId(field(fields, offset + 1));
+    result.setMchId(field(fields, offset + 2));
+    result.setSubMchId(field(fields, offset + 3));
+    result.setDeviceInfo(field(fields, offset + 4));
+    result.setTransactionId(field(fields, offset + 5));
+    result.setOutTradeNo(field(fields, offset + 6));
+    result.setOpenId(field(fields, offset + 7));
+    result.setTradeType(field(fields, offset + 8));
+    result.setTradeState(field(fields, offset + 9));
+    result.setBankType(field(fields, offset + 10));
+    result.setFeeType(field(fields, offset + 11));
+    result.setTotalFee(field(fields, offset + 12));
+    result.setCouponFee(field(fields, offset + 13));
 
-    List<WxPayBillInfo> results = new ArrayList<>();
-    // 去空格
-    String newStr = listStr.replaceAll(",", " ");
-    // 数据分组
-    String[] tempStr = newStr.split("`");
-    // 分组标题
-    String[] t = tempStr[0].split(" ");
-    // 计算循环次数
-    int j = tempStr.length / t.length;
-    // 纪录数组下标
-    int k = 1;
-    // 交易时间,公众账号ID,商户号,子商户号,设备号,微信订单号,商户订单号,用户标识,交易类型,交易状态,付款银行,货币种类,总金额,代金券或立减优惠金额,
-    // 退款申请时间,退款成功时间,微信退款单号,商户退款单号,退款金额,代金券或立减优惠退款金额,退款类型,退款状态,商品名称,商户数据包,手续费,费率
-    for (int i = 0; i < j; i++) {
-      WxPayBillInfo result = new WxPayBillInfo();
-      result.setTradeTime(tempStr[k].trim());
-      result.setAppId(tempStr[k + 1].trim());
-      result.setMchId(tempStr[k + 2].trim());
-      result.setSubMchId(tempStr[k + 3].trim());
-      result.setDeviceInfo(tempStr[k + 4].trim());
-      result.setTransactionId(tempStr[k + 5].trim());
-      result.setOutTradeNo(tempStr[k + 6].trim());
-      result.setOpenId(tempStr[k + 7].trim());
-      result.setTradeType(tempStr[k + 8].trim());
-      result.setTradeState(tempStr[k + 9].trim());
-      result.setBankType(tempStr[k + 10].trim());
-      result.setFeeType(tempStr[k + 11].trim());
-      result.setTotalFee(tempStr[k + 12].trim());
-      result.setCouponFee(tempStr[k + 13].trim());
-      result.setRefundTime(tempStr[k + 14].trim());
-      result.setRefundSuccessTime(tempStr[k + 15].trim());
-      result.setRefundId(tempStr[k + 16].trim());
-      result.setOutRefundNo(tempStr[k + 17].trim());
-      result.setSettlementRefundFee(tempStr[k + 18].trim());
-      result.setCouponRefundFee(tempStr[k + 19].trim());
-      result.setRefundChannel(tempStr[k + 20].trim());
-      result.setRefundState(tempStr[k + 21].trim());
-      result.setBody(tempStr[k + 22].trim());
-      result.setAttach(tempStr[k + 23].trim());
-      result.setPoundage(tempStr[k + 24].trim());
-      result.setPoundageRate(tempStr[k + 25].trim());
-      results.add(result);
-      k += t.length;
+    switch (billType) {
+      case "ALL": {
+        // 微信退款单号,商户退款单号,退款金额,充值券退款金额,退款类型,退款状态,商品名称,商户数据包,手续费,费率,
+        // 订单金额,申请退款金额,费率备注  （开通免充值券后的结算对账单专有的三个字段）
+        result.setRefundId(field(fields, offset + 14));
+        result.setOutRefundNo(field(fields, offset + 15));
+        result.setSettlementRefundFee(field(fields, offset + 16));
+        result.setCouponRefundFee(field(fields, offset + 17));
+        result.setRefundChannel(field(fields, offset + 18));
+        result.setRefundState(field(fields, offset + 19));
+        result.setBody(field(fields, offset + 20));
+        result.setAttach(field(fields, offset + 21));
+        result.setPoundage(field(fields, offset + 22));
+        result.setPoundageRate(field(fields, offset + 23));
+        if (columnCount > 24) {
+          // 开通免充值券后的结算对账单
+          result.setTotalAmount(field(fields, offset + 24));
+          result.setAppliedRefundAmount(field(fields, offset + 25));
+          result.setFeeRemark(field(fields, offset + 26));
+        }
+        break;
+      }
+      case "SUCCESS": {
+        // 商品名称,商户数据包,手续费,费率,订单金额,费率备注
+        result.setBody(field(fields, offset + 14));
+        result.setAttach(field(fields, offset + 15));
+        result.setPoundage(field(fields, offset + 16));
+        result.setPoundageRate(field(fields, offset + 17));
+        result.setTotalAmount(field(fields, offset + 18));
+        result.setFeeRemark(field(fields, offset + 19));
+        break;
+      }
+      default: {
+        // REFUND及RECHARGE_REFUND：
+        // 退款申请时间,退款成功时间,微信退款单号,商户退款单号,退款金额,充值券退款金额,退款类型,退款状态,商品名称,商户数据包,手续费,费率
+        result.setRefundTime(field(fields, offset + 14));
+        result.setRefundSuccessTime(field(fields, offset + 15));
+        result.setRefundId(field(fields, offset + 16));
+        result.setOutRefundNo(field(fields, offset + 17));
+        result.setSettlementRefundFee(field(fields, offset + 18));
+        result.setCouponRefundFee(field(fields, offset + 19));
+        result.setRefundChannel(field(fields, offset + 20));
+        result.setRefundState(field(fields, offset + 21));
+        result.setBody(field(fields, offset + 22));
+        result.setAttach(field(fields, offset + 23));
+        result.setPoundage(field(fields, offset + 24));
+        result.setPoundageRate(field(fields, offset + 25));
+        if ("RECHARGE_REFUND".equals(billType)) {
+          // 订单金额,申请退款金额
+          result.setTotalAmount(columnCount > 26 ? field(fields, offset + 26) : null);
+          result.setAppliedRefundAmount(columnCount > 27 ? field(fields, offset + 27) : null);
+        }
+      }
     }
 
-    WxPayBillResult billResult = new WxPayBillResult();
-    billResult.setBillInfoList(results);
+    return result;
+  }
 
-    /*
-     * 总交易单数,应结订单总金额,退款总金额,充值券退款总金额,手续费总金额,订单总金额,申请退款总金额 `2,`0.02,`0.0,`0.0,`0
-     * 参考以上格式进行取值
-     */
+  /**
+   * <pre>
+   * 填充汇总数据.
+   * 总交易单数,应结订单总金额,退款总金额,充值券退款总金额,手续费总金额,订单总金额,申请退款总金额 `48,`5.76,`1.42,`0.00,`0.01000,`5.76,`1.42
+   * 参考以上格式进行取值
+   * </pre>
+   */
+  private void fillSummary(String objStr) {
     String[] totalTempStr = objStr.replaceAll(",", " ").split("`");
-    billResult.setTotalRecord(totalTempStr[1].trim());
-    billResult.setTotalFee(totalTempStr[2].trim());
-    billResult.setTotalRefundFee(totalTempStr[3].trim());
-    billResult.setTotalCouponFee(totalTempStr[4].trim());
-    billResult.setTotalPoundageFee(totalTempStr[5].trim());
-    billResult.setTotalAmount(get(totalTempStr, 6));
-    billResult.setTotalAppliedRefundFee(get(totalTempStr, 7));
-
-    return billResult;
+    this.setTotalRecord(totalTempStr[1].trim());
+    this.setTotalFee(totalTempStr[2].trim());
+    this.setTotalRefundFee(totalTempStr[3].trim());
+    this.setTotalCouponFee(totalTempStr[4].trim());
+    this.setTotalPoundageFee(totalTempStr[5].trim());
+    this.setTotalAmount(get(totalTempStr, 6));
+    this.setTotalAppliedRefundFee(get(totalTempStr, 7));
   }
 
   /**
-   * 从原始对账单字符串里构造出WxPayBillResult对象，用于构建当日充值退款订单
+   * 获取字段值，字段中的逗号替换为空格并去掉首尾空白.
    */
-  private static WxPayBillResult fromRawBillResultStringToRechargeRefund(String responseContent) {
-    String listStr = "";
-    String objStr = "";
-    if (responseContent.contains(TOTAL_DEAL_COUNT)) {
-      listStr = responseContent.substring(0, responseContent.indexOf(TOTAL_DEAL_COUNT));
-      objStr = responseContent.substring(responseContent.indexOf(TOTAL_DEAL_COUNT));
-    }
-
-    List<WxPayBillInfo> results = new ArrayList<>();
-    // 去空格
-    String newStr = listStr.replaceAll(",", " ");
-    // 数据分组
-    String[] tempStr = newStr.split("`");
-    // 分组标题
-    String[] t = tempStr[0].split(" ");
-    // 计算循环次数
-    int j = tempStr.length / t.length;
-    // 纪录数组下标
-    int k = 1;
-    // 交易时间,公众账号ID,商户号,子商户号,设备号,微信订单号,商户订单号,用户标识,交易类型,交易状态,付款银行,货币种类,应结订单金额,代金券金额,
-    // 退款申请时间,退款成功时间,微信退款单号,商户退款单号,退款金额,充值券退款金额,退款类型,退款状态,商品名称,商户数据包,返还手续费,费率,订单金额,申请退款金额
-    for (int i = 0; i < j; i++) {
-      WxPayBillInfo result = new WxPayBillInfo();
-      result.setTradeTime(tempStr[k].trim());
-      result.setAppId(tempStr[k + 1].trim());
-      result.setMchId(tempStr[k + 2].trim());
-      result.setSubMchId(tempStr[k + 3].trim());
-      result.setDeviceInfo(tempStr[k + 4].trim());
-      result.setTransactionId(tempStr[k + 5].trim());
-      result.setOutTradeNo(tempStr[k + 6].trim());
-      result.setOpenId(tempStr[k + 7].trim());
-      result.setTradeType(tempStr[k + 8].trim());
-      result.setTradeState(tempStr[k + 9].trim());
-      result.setBankType(tempStr[k + 10].trim());
-      result.setFeeType(tempStr[k + 11].trim());
-      result.setTotalFee(tempStr[k + 12].trim());
-      result.setCouponFee(tempStr[k + 13].trim());
-      result.setRefundTime(tempStr[k + 14].trim());
-      result.setRefundSuccessTime(tempStr[k + 15].trim());
-      result.setRefundId(tempStr[k + 16].trim());
-      result.setOutRefundNo(tempStr[k + 17].trim());
-      result.setSettlementRefundFee(tempStr[k + 18].trim());
-      result.setCouponRefundFee(tempStr[k + 19].trim());
-      result.setRefundChannel(tempStr[k + 20].trim());
-      result.setRefundState(tempStr[k + 21].trim());
-      result.setBody(tempStr[k + 22].trim());
-      result.setAttach(tempStr[k + 23].trim());
-      result.setPoundage(tempStr[k + 24].trim());
-      result.setPoundageRate(tempStr[k + 25].trim());
-      result.setTotalAmount(get(tempStr, k + 26, t.length));
-      result.setAppliedRefundAmount(get(tempStr, k + 27, t.length));
-      results.add(result);
-      k += t.length;
+  private static String field(String[] fields, int idx) {
+    if (idx >= fields.length) {
+      return null;
     }
-
-    WxPayBillResult billResult = new WxPayBillResult();
-    billResult.setBillInfoList(results);
-
-    /*
-     * 总交易单数,应结订单总金额,退款总金额,充值券退款总金额,手续费总金额,订单总金额,申请退款总金额 `2,`0.02,`0.0,`0.0,`0
-     * 参考以上格式进行取值
-     */
-    String[] totalTempStr = objStr.replaceAll(",", " ").split("`");
-    billResult.setTotalRecord(totalTempStr[1].trim());
-    billResult.setTotalFee(totalTempStr[2].trim());
-    billResult.setTotalRefundFee(totalTempStr[3].trim());
-    billResult.setTotalCouponFee(totalTempStr[4].trim());
-    billResult.setTotalPoundageFee(totalTempStr[5].trim());
-    billResult.setTotalAmount(get(totalTempStr, 6));
-    billResult.setTotalAppliedRefundFee(get(totalTempStr, 7));
-
-    return billResult;
+    return fields[idx].replace(',', ' ').trim();
   }
 
   private static String get(String[] array, int idx) {
-    return get(array, idx, array.length);
-  }
-
-  private static String get(String[] array, int idx, int length) {
-    if (length > idx) {
+    if (array.length > idx) {
       return array[idx].trim();
     }
     return null;
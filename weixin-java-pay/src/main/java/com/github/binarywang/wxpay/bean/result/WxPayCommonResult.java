@@ -1,7 +1,8 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.util.Map;
+
 import com.thoughtworks.xstream.annotations.XStreamAlias;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -14,6 +15,6 @@ import org.w3c.dom.Document;
 @XStreamAlias("xml")
 public class WxPayCommonResult extends BaseWxPayResult {
   @Override
-  protected void loadXML(Document d) {
+  protected void loadXML(Map<String, String> values) {
   }
 }
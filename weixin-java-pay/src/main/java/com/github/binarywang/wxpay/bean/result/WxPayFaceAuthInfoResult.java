@@ -4,9 +4,9 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * <pre>
@@ -39,12 +39,12 @@ public class WxPayFaceAuthInfoResult extends BaseWxPayResult implements Serializ
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    authinfo = readXMLString(d, "authinfo");
-    expiresIn = readXMLString(d, "expires_in");
+  protected void loadXML(Map<String, String> values) {
+    authinfo = readXMLString(values, "authinfo");
+    expiresIn = readXMLString(values, "expires_in");
   }
 
 }
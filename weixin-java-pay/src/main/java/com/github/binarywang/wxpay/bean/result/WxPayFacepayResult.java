@@ -1,10 +1,11 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.util.Map;
+
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -246,27 +247,27 @@ public class WxPayFacepayResult extends BaseWxPayResult {
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    deviceInfo = readXMLString(d, "device_info");
-    openid = readXMLString(d, "openid");
-    isSubscribe = readXMLString(d, "is_subscribe");
-    subOpenid = readXMLString(d, "sub_openid");
-    subsSubscribe = readXMLString(d, "sub_is_subscribe");
-    tradeType = readXMLString(d, "trade_type");
-    bankType = readXMLString(d, "bank_type");
-    feeType = readXMLString(d, "fee_type");
-    totalFee = readXMLInteger(d, "total_fee");
-    cashFeeType = readXMLString(d, "cash_fee_type");
-    cashFee = readXMLInteger(d, "cash_fee");
-    transactionId = readXMLString(d, "transaction_id");
-    outTradeNo = readXMLString(d, "out_trade_no");
-    detail = readXMLString(d, "detail");
-    attach = readXMLString(d, "attach");
-    promotionDetail = readXMLString(d, "promotion_detail");
-    timeEnd = readXMLString(d, "time_end");
+  protected void loadXML(Map<String, String> values) {
+    deviceInfo = readXMLString(values, "device_info");
+    openid = readXMLString(values, "openid");
+    isSubscribe = readXMLString(values, "is_subscribe");
+    subOpenid = readXMLString(values, "sub_openid");
+    subsSubscribe = readXMLString(values, "sub_is_subscribe");
+    tradeType = readXMLString(values, "trade_type");
+    bankType = readXMLString(values, "bank_type");
+    feeType = readXMLString(values, "fee_type");
+    totalFee = readXMLInteger(values, "total_fee");
+    cashFeeType = readXMLString(values, "cash_fee_type");
+    cashFee = readXMLInteger(values, "cash_fee");
+    transactionId = readXMLString(values, "transaction_id");
+    outTradeNo = readXMLString(values, "out_trade_no");
+    detail = readXMLString(values, "detail");
+    attach = readXMLString(values, "attach");
+    promotionDetail = readXMLString(values, "promotion_detail");
+    timeEnd = readXMLString(values, "time_end");
   }
 
 }
@@ -1,11 +1,16 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import me.chanjar.weixin.common.util.json.WxGsonBuilder;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * <pre>
@@ -19,6 +24,7 @@ import me.chanjar.weixin.common.util.json.WxGsonBuilder;
 @NoArgsConstructor
 public class WxPayFundFlowResult implements Serializable {
   private static final long serialVersionUID = 8371500036495349207L;
+  private static final String TOTAL_FUND_COUNT = "资金流水总笔数";
 
   @Override
   public String toString() {
@@ -55,4 +61,128 @@ public class WxPayFundFlowResult implements Serializable {
    */
   private String expenditureAmount;
 
+  /**
+   * 从原始资金账单字符串里构造出WxPayFundFlowResult对象.
+   *
+   * @param responseContent 原始资金账单字符串
+   * @return WxPayFundFlowResult对象
+   */
+  public static WxPayFundFlowResult fromRawFundFlowString(String responseContent) {
+    WxPayFundFlowResult wxPayFundFlowResult = new WxPayFundFlowResult();
+
+    String listStr = "";
+    String objStr = "";
+
+    if (StringUtils.isNotBlank(responseContent) && responseContent.contains(TOTAL_FUND_COUNT)) {
+      listStr = responseContent.substring(0, responseContent.indexOf(TOTAL_FUND_COUNT));
+      objStr = responseContent.substring(responseContent.indexOf(TOTAL_FUND_COUNT));
+    }
+    List<WxPayFundFlowBaseResult> wxPayFundFlowBaseResultList = new LinkedList<>();
+    // 去空格
+    String newStr = listStr.replaceAll(",", " ");
+    // 数据分组
+    String[] tempStr = newStr.split("`");
+    // 分组标题
+    String[] t = tempStr[0].split(" ");
+    // 计算循环次数
+    int j = tempStr.length / t.length;
+    // 纪录数组下标
+    int k = 1;
+    for (int i = 0; i < j; i++) {
+      wxPayFundFlowBaseResultList.add(toFundFlowBaseResult(tempStr, k));
+      k += t.length;
+    }
+    wxPayFundFlowResult.setWxPayFundFlowBaseResultList(wxPayFundFlowBaseResultList);
+    wxPayFundFlowResult.fillSummary(objStr);
+    return wxPayFundFlowResult;
+  }
+
+  /**
+   * <pre>
+   * 从原始资金账单数据流中逐行解析，每解析出一条资金流水即交给consumer处理，不在内存中保留流水数据.
+   * 返回的对象中仅包含汇总数据，wxPayFundFlowBaseResultList为空列表.
+   * </pre>
+   *
+   * @param reader   原始资金账单数据流
+   * @param consumer 资金流水处理器
+   * @return 只包含汇总数据的WxPayFundFlowResult对象
+   * @throws IOException 读取数据流出错时抛出
+   */
+  public static WxPayFundFlowResult fromRawFundFlowStream(BufferedReader reader,
+                                                          Consumer<WxPayFundFlowBaseResult> consumer)
+    throws IOException {
+    WxPayFundFlowResult wxPayFundFlowResult = new WxPayFundFlowResult();
+    wxPayFundFlowResult.setWxPayFundFlowBaseResultList(new LinkedList<WxPayFundFlowBaseResult>());
+    boolean headerRead = false;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+
+      if (!headerRead) {
+        // 分组标题
+        headerRead = true;
+      } else if (line.startsWith(TOTAL_FUND_COUNT)) {
+        String totalLine = reader.readLine();
+        wxPayFundFlowResult.fillSummary(line + "\n" + (totalLine == null ? "" : totalLine));
+        break;
+      } else {
+        // 每行以`开头，第一个分组为空
+        consumer.accept(toFundFlowBaseResult(line.split("`", -1), 1));
+      }
+    }
+
+    return wxPayFundFlowResult;
+  }
+
+  /**
+   * <pre>
+   * 记账时间:2018-02-01 04:21:23 微信支付业务单号:50000305742018020103387128253 资金流水单号:1900009231201802015884652186 业务名称:退款
+   * 业务类型:退款 收支类型:支出 收支金额（元）:0.02 账户结余（元）:0.17 资金变更提交申请人:system 备注:缺货 业务凭证号:REF4200000068201801293084726067
+   * 参考以上格式进行取值
+   * </pre>
+   */
+  private static WxPayFundFlowBaseResult toFundFlowBaseResult(String[] fields, int offset) {
+    WxPayFundFlowBaseResult wxPayFundFlowBaseResult = new WxPayFundFlowBaseResult();
+    wxPayFundFlowBaseResult.setBillingTime(field(fields, offset));
+    wxPayFundFlowBaseResult.setBizTransactionId(field(fields, offset + 1));
+    wxPayFundFlowBaseResult.setFundFlowId(field(fields, offset + 2));
+    wxPayFundFlowBaseResult.setBizName(field(fields, offset + 3));
+    wxPayFundFlowBaseResult.setBizType(field(fields, offset + 4));
+    wxPayFundFlowBaseResult.setFinancialType(field(fields, offset + 5));
+    wxPayFundFlowBaseResult.setFinancialFee(field(fields, offset + 6));
+    wxPayFundFlowBaseResult.setAccountBalance(field(fields, offset + 7));
+    wxPayFundFlowBaseResult.setFundApplicant(field(fields, offset + 8));
+    wxPayFundFlowBaseResult.setMemo(field(fields, offset + 9));
+    wxPayFundFlowBaseResult.setBizVoucherId(field(fields, offset + 10));
+    return wxPayFundFlowBaseResult;
+  }
+
+  /**
+   * <pre>
+   * 资金流水总笔数,收入笔数,收入金额,支出笔数,支出金额 `20.0,`17.0,`0.35,`3.0,`0.18
+   * 参考以上格式进行取值
+   * </pre>
+   */
+  private void fillSummary(String objStr) {
+    String totalStr = objStr.replaceAll(",", " ");
+    String[] totalTempStr = totalStr.split("`");
+    this.setTotalRecord(totalTempStr[1]);
+    this.setIncomeRecord(totalTempStr[2]);
+    this.setIncomeAmount(totalTempStr[3]);
+    this.setExpenditureRecord(totalTempStr[4]);
+    this.setExpenditureAmount(totalTempStr[5]);
+  }
+
+  /**
+   * 获取字段值，字段中的逗号替换为空格并去掉首尾空白.
+   */
+  private static String field(String[] fields, int idx) {
+    if (idx >= fields.length) {
+      return null;
+    }
+    return fields[idx].replace(',', ' ').trim();
+  }
+
 }
@@ -1,10 +1,11 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.util.Map;
+
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -219,25 +220,25 @@ public class WxPayMicropayResult extends BaseWxPayResult {
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    openid = readXMLString(d, "openid");
-    isSubscribe = readXMLString(d, "is_subscribe");
-    tradeType = readXMLString(d, "trade_type");
-    bankType = readXMLString(d, "bank_type");
-    feeType = readXMLString(d, "fee_type");
-    totalFee = readXMLInteger(d, "total_fee");
-    settlementTotalFee = readXMLInteger(d, "settlement_total_fee");
-    couponFee = readXMLInteger(d, "coupon_fee");
-    cashFeeType = readXMLString(d, "cash_fee_type");
-    cashFee = readXMLInteger(d, "cash_fee");
-    transactionId = readXMLString(d, "transaction_id");
-    outTradeNo = readXMLString(d, "out_trade_no");
-    attach = readXMLString(d, "attach");
-    timeEnd = readXMLString(d, "time_end");
-    promotionDetail = readXMLString(d, "promotion_detail");
+  protected void loadXML(Map<String, String> values) {
+    openid = readXMLString(values, "openid");
+    isSubscribe = readXMLString(values, "is_subscribe");
+    tradeType = readXMLString(values, "trade_type");
+    bankType = readXMLString(values, "bank_type");
+    feeType = readXMLString(values, "fee_type");
+    totalFee = readXMLInteger(values, "total_fee");
+    settlementTotalFee = readXMLInteger(values, "settlement_total_fee");
+    couponFee = readXMLInteger(values, "coupon_fee");
+    cashFeeType = readXMLString(values, "cash_fee_type");
+    cashFee = readXMLInteger(values, "cash_fee");
+    transactionId = readXMLString(values, "transaction_id");
+    outTradeNo = readXMLString(values, "out_trade_no");
+    attach = readXMLString(values, "attach");
+    timeEnd = readXMLString(values, "time_end");
+    promotionDetail = readXMLString(values, "promotion_detail");
   }
 
 }
@@ -2,6 +2,7 @@ package com.github.binarywang.wxpay.bean.result;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
@@ -10,7 +11,6 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -294,24 +294,24 @@ public class WxPayOrderQueryResult extends BaseWxPayResult {
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    promotionDetail = readXMLString(d, "promotion_detail");
-    deviceInfo = readXMLString(d, "device_info");
-    openid = readXMLString(d, "openid");
-    isSubscribe = readXMLString(d, "is_subscribe");
-    tradeType = readXMLString(d, "trade_type");
-    tradeState = readXMLString(d, "trade_state");
-    bankType = readXMLString(d, "bank_type");
-    totalFee = readXMLInteger(d, "total_fee");
-    settlementTotalFee = readXMLInteger(d, "settlement_total_fee");
-    feeType = readXMLString(d, "fee_type");
-    cashFee = readXMLInteger(d, "cash_fee");
-    cashFeeType = readXMLString(d, "cash_fee_type");
-    couponFee = readXMLInteger(d, "coupon_fee");
-    couponCount = readXMLInteger(d, "coupon_count");
+  protected void loadXML(Map<String, String> values) {
+    promotionDetail = readXMLString(values, "promotion_detail");
+    deviceInfo = readXMLString(values, "device_info");
+    openid = readXMLString(values, "openid");
+    isSubscribe = readXMLString(values, "is_subscribe");
+    tradeType = readXMLString(values, "trade_type");
+    tradeState = readXMLString(values, "trade_state");
+    bankType = readXMLString(values, "bank_type");
+    totalFee = readXMLInteger(values, "total_fee");
+    settlementTotalFee = readXMLInteger(values, "settlement_total_fee");
+    feeType = readXMLString(values, "fee_type");
+    cashFee = readXMLInteger(values, "cash_fee");
+    cashFeeType = readXMLString(values, "cash_fee_type");
+    couponFee = readXMLInteger(values, "coupon_fee");
+    couponCount = readXMLInteger(values, "coupon_count");
   }
 
   /**
@@ -1,10 +1,11 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.util.Map;
+
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -29,7 +30,7 @@ public class WxPayProfitSharingAddReceiverResult extends BaseWxPayResult {
   private String receiver;
 
   @Override
-  protected void loadXML(Document d) {
-    receiver = readXMLString(d, "receiver");
+  protected void loadXML(Map<String, String> values) {
+    receiver = readXMLString(values, "receiver");
   }
 }
@@ -1,10 +1,11 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.util.Map;
+
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -39,9 +40,9 @@ public class WxPayProfitSharingResult extends BaseWxPayResult {
   private String orderId;
 
   @Override
-  protected void loadXML(Document d) {
-    transactionId = readXMLString(d, "transaction_id");
-    outOrderNo = readXMLString(d, "out_order_no");
-    orderId = readXMLString(d, "order_id");
+  protected void loadXML(Map<String, String> values) {
+    transactionId = readXMLString(values, "transaction_id");
+    outOrderNo = readXMLString(values, "out_order_no");
+    orderId = readXMLString(values, "order_id");
   }
 }
@@ -1,6 +1,7 @@
 package com.github.binarywang.wxpay.bean.result;
 
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
@@ -9,7 +10,6 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -176,18 +176,18 @@ public class WxPayRefundQueryResult extends BaseWxPayResult {
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    deviceInfo = readXMLString(d, "device_info");
-    transactionId = readXMLString(d, "transaction_id");
-    outTradeNo = readXMLString(d, "out_trade_no");
-    totalFee = readXMLInteger(d, "total_fee");
-    settlementTotalFee = readXMLInteger(d, "settlement_total_fee");
-    feeType = readXMLString(d, "fee_type");
-    cashFee = readXMLInteger(d, "cash_fee");
-    refundCount = readXMLInteger(d, "refund_count");
+  protected void loadXML(Map<String, String> values) {
+    deviceInfo = readXMLString(values, "device_info");
+    transactionId = readXMLString(values, "transaction_id");
+    outTradeNo = readXMLString(values, "out_trade_no");
+    totalFee = readXMLInteger(values, "total_fee");
+    settlementTotalFee = readXMLInteger(values, "settlement_total_fee");
+    feeType = readXMLString(values, "fee_type");
+    cashFee = readXMLInteger(values, "cash_fee");
+    refundCount = readXMLInteger(values, "refund_count");
   }
 
   /**
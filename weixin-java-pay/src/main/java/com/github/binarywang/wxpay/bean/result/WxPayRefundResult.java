@@ -2,13 +2,13 @@ package com.github.binarywang.wxpay.bean.result;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.collect.Lists;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -144,24 +144,24 @@ public class WxPayRefundResult extends BaseWxPayResult implements Serializable {
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    transactionId = readXMLString(d, "transaction_id");
-    outTradeNo = readXMLString(d, "out_trade_no");
-    outRefundNo = readXMLString(d, "out_refund_no");
-    refundId = readXMLString(d, "refund_id");
-    refundFee = readXMLInteger(d, "refund_fee");
-    settlementRefundFee = readXMLInteger(d, "settlement_refund_fee");
-    totalFee = readXMLInteger(d, "total_fee");
-    settlementTotalFee = readXMLInteger(d, "settlement_total_fee");
-    feeType = readXMLString(d, "fee_type");
-    cashFee = readXMLInteger(d, "cash_fee");
-    cashFeeType = readXMLString(d, "cash_fee_type");
-    cashRefundFee = readXMLInteger(d, "cash_refund_fee");
-    couponRefundCount = readXMLInteger(d, "coupon_refund_count");
-    couponRefundFee = readXMLInteger(d, "coupon_refund_fee");
+  protected void loadXML(Map<String, String> values) {
+    transactionId = readXMLString(values, "transaction_id");
+    outTradeNo = readXMLString(values, "out_trade_no");
+    outRefundNo = readXMLString(values, "out_refund_no");
+    refundId = readXMLString(values, "refund_id");
+    refundFee = readXMLInteger(values, "refund_fee");
+    settlementRefundFee = readXMLInteger(values, "settlement_refund_fee");
+    totalFee = readXMLInteger(values, "total_fee");
+    settlementTotalFee = readXMLInteger(values, "settlement_total_fee");
+    feeType = readXMLString(values, "fee_type");
+    cashFee = readXMLInteger(values, "cash_fee");
+    cashFeeType = readXMLString(values, "cash_fee_type");
+    cashRefundFee = readXMLInteger(values, "cash_refund_fee");
+    couponRefundCount = readXMLInteger(values, "coupon_refund_count");
+    couponRefundFee = readXMLInteger(values, "coupon_refund_fee");
   }
 
 }
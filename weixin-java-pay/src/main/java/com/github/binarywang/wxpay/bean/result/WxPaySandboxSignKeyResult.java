@@ -1,10 +1,11 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.util.Map;
+
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -35,11 +36,11 @@ public class WxPaySandboxSignKeyResult extends BaseWxPayResult {
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    sandboxSignKey = readXMLString(d, "sandbox_signkey");
+  protected void loadXML(Map<String, String> values) {
+    sandboxSignKey = readXMLString(values, "sandbox_signkey");
   }
 
 }
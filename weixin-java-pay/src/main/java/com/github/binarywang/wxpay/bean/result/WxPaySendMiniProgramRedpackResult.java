@@ -4,9 +4,9 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * 发送小程序红包的返回结果
@@ -55,12 +55,12 @@ public class WxPaySendMiniProgramRedpackResult extends BaseWxPayResult implement
   private String sendListId;
 
   @Override
-  protected void loadXML(Document d) {
-    mchBillNo = readXMLString(d, "mch_billno");
-    wxAppid = readXMLString(d, "wxappid");
-    reOpenid = readXMLString(d, "re_openid");
-    totalAmount = readXMLInteger(d, "total_amount");
-    packageName = readXMLString(d, "package");
-    sendListId = readXMLString(d, "send_listid");
+  protected void loadXML(Map<String, String> values) {
+    mchBillNo = readXMLString(values, "mch_billno");
+    wxAppid = readXMLString(values, "wxappid");
+    reOpenid = readXMLString(values, "re_openid");
+    totalAmount = readXMLInteger(values, "total_amount");
+    packageName = readXMLString(values, "package");
+    sendListId = readXMLString(values, "send_listid");
   }
 }
@@ -4,9 +4,9 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * 向微信用户个人发现金红包返回结果
@@ -42,16 +42,16 @@ public class WxPaySendRedpackResult extends BaseWxPayResult implements Serializa
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    mchBillno = readXMLString(d, "mch_billno");
-    wxappid = readXMLString(d, "wxappid");
-    reOpenid = readXMLString(d, "re_openid");
-    totalAmount = readXMLInteger(d, "total_amount");
-    sendTime = readXMLString(d, "send_time");
-    sendListid = readXMLString(d, "send_listid");
+  protected void loadXML(Map<String, String> values) {
+    mchBillno = readXMLString(values, "mch_billno");
+    wxappid = readXMLString(values, "wxappid");
+    reOpenid = readXMLString(values, "re_openid");
+    totalAmount = readXMLInteger(values, "total_amount");
+    sendTime = readXMLString(values, "send_time");
+    sendListid = readXMLString(values, "send_listid");
   }
 
 }
@@ -1,10 +1,11 @@
 package com.github.binarywang.wxpay.bean.result;
 
+import java.util.Map;
+
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
-import org.w3c.dom.Document;
 
 /**
  * <pre>
@@ -47,14 +48,14 @@ public class WxPayUnifiedOrderResult extends BaseWxPayResult {
   /**
    * 从XML结构中加载额外的熟悉
    *
-   * @param d Document
+   * @param values xml中各元素的值
    */
   @Override
-  protected void loadXML(Document d) {
-    prepayId = readXMLString(d, "prepay_id");
-    tradeType = readXMLString(d, "trade_type");
-    mwebUrl = readXMLString(d, "mweb_url");
-    codeURL = readXMLString(d, "code_url");
+  protected void loadXML(Map<String, String> values) {
+    prepayId = readXMLString(values, "prepay_id");
+    tradeType = readXMLString(values, "trade_type");
+    mwebUrl = readXMLString(values, "mweb_url");
+    codeURL = readXMLString(values, "code_url");
   }
 
 }
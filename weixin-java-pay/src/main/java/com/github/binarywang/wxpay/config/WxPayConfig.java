@@ -2,7 +2,11 @@ package com.github.binarywang.wxpay.config;
 
 import com.github.binarywang.wxpay.bean.result.WxPayV3CertificatesResult;
 import com.github.binarywang.wxpay.exception.WxPayException;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.ssl.SSLContexts;
@@ -21,6 +25,7 @@ import java.security.*;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Enumeration;
 
@@ -32,6 +37,10 @@ import java.util.Enumeration;
 @Data
 public class WxPayConfig {
   private static final String DEFAULT_PAY_BASE_URL = "https://api.mch.weixin.qq.com";
+  /**
+   * 检查本地证书文件是否被修改的间隔时间（毫秒）.
+   */
+  private static final long KEY_FILE_CHECK_INTERVAL = 10000;
 
   /**
    * 微信支付接口请求地址域名部分.
@@ -48,6 +57,26 @@ public class WxPayConfig {
    */
   private int httpTimeout = 10000;
 
+  /**
+   * http连接池每个路由的最大连接数.
+   */
+  private int httpMaxConnPerRoute = 20;
+
+  /**
+   * http连接池最大总连接数.
+   */
+  private int httpMaxTotalConn = 50;
+
+  /**
+   * http连接在服务端未指定keep-alive时间时的默认存活时间（毫秒）.
+   */
+  private long httpKeepAliveTime = 60000;
+
+  /**
+   * http连接池中空闲连接的回收时间（毫秒）.
+   */
+  private long httpIdleConnTimeout = 30000;
+
   /**
    * 公众号appid.
    */
@@ -92,7 +121,7 @@ public class WxPayConfig {
    * @see com.github.binarywang.wxpay.constant.WxPayConstants.SignType
    */
   private String signType;
-  private SSLContext sslContext;
+  private volatile SSLContext sslContext;
   /**
    * p12证书文件的绝对路径或者以classpath:开头的类路径.
    */
@@ -119,6 +148,14 @@ public class WxPayConfig {
   private String httpProxyUsername;
   private String httpProxyPassword;
 
+  /**
+   * 缓存的商户私钥及证书.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @ToString.Exclude
+  private transient volatile MerchantKeyMaterial merchantKeyMaterial;
+
   /**
    * 返回所设置的微信支付接口请求地址域名.
    * @return 微信支付接口请求地址域名
@@ -131,6 +168,37 @@ public class WxPayConfig {
     return this.payBaseUrl;
   }
 
+  /**
+   * 商户号同时是p12证书的密码，修改后丢弃之前解析的证书.
+   */
+  public synchronized void setMchId(String mchId) {
+    if (this.mchId != null && !this.mchId.equals(mchId)) {
+      this.sslContext = null;
+    }
+    this.mchId = mchId;
+    this.merchantKeyMaterial = null;
+  }
+
+  /**
+   * 修改证书路径后丢弃之前从原路径读取的证书内容及解析结果，下次使用时从新的路径读取.
+   */
+  public synchronized void setKeyPath(String keyPath) {
+    if (this.keyPath != null && !this.keyPath.equals(keyPath)) {
+      this.keyContent = null;
+      this.sslContext = null;
+    }
+    this.keyPath = keyPath;
+    this.merchantKeyMaterial = null;
+  }
+
+  public synchronized void setKeyContent(byte[] keyContent) {
+    if (this.keyContent != null && !Arrays.equals(this.keyContent, keyContent)) {
+      this.sslContext = null;
+    }
+    this.keyContent = keyContent;
+    this.merchantKeyMaterial = null;
+  }
+
   private InputStream getKeyData() throws WxPayException {
     if (StringUtils.isBlank(this.getMchId())) {
       throw new WxPayException("请确保商户号mchId已设置");
@@ -217,29 +285,42 @@ public class WxPayConfig {
 
 
   /**
-   * 获取私钥。
+   * <pre>
+   * 获取带商户证书的SSLContext，用于双向认证的请求.
+   * 本地证书文件被修改，或者商户号、证书路径、证书内容被修改后返回新的实例，
+   * 调用方可以据此判断是否需要重建带证书的连接池.
+   * 没有配置证书而是直接设置了sslContext时返回设置的sslContext.
+   * </pre>
    *
-   * @return 私钥对象
+   * @return the ssl context
+   * @throws WxPayException the wx pay exception
    */
-  public PrivateKey getPrivateKey() throws WxPayException {
-    InputStream inputStream = getKeyData();
-
-    try {
-      KeyStore keystore = KeyStore.getInstance("PKCS12");
-      char[] partnerId2charArray = this.getMchId().toCharArray();
-      keystore.load(inputStream, partnerId2charArray);
+  public SSLContext getKeySslContext() throws WxPayException {
+    SSLContext context = this.sslContext;
+    if (context != null && this.keyContent == null && StringUtils.isBlank(this.keyPath)) {
+      return context;
+    }
 
-      Enumeration enume = keystore.aliases();
-      String keyAlias = null;
-      if (enume.hasMoreElements()) {
-        keyAlias = (String) enume.nextElement();
+    this.loadMerchantKeyMaterial();
+    context = this.sslContext;
+    if (context == null) {
+      synchronized (this) {
+        context = this.sslContext;
+        if (context == null) {
+          context = this.initSSLContext();
+        }
       }
-      return (PrivateKey) keystore.getKey(keyAlias, partnerId2charArray);
-    } catch (Exception e) {
-      throw new WxPayException("证书文件有问题，请核实！", e);
-    } finally {
-      IOUtils.closeQuietly(inputStream);
     }
+    return context;
+  }
+
+  /**
+   * 获取私钥。
+   *
+   * @return 私钥对象
+   */
+  public PrivateKey getPrivateKey() throws WxPayException {
+    return this.loadMerchantKeyMaterial().privateKey;
   }
 
   /**
@@ -248,24 +329,7 @@ public class WxPayConfig {
    * @throws WxPayException
    */
   public X509Certificate getCert() throws WxPayException {
-    InputStream inputStream = getKeyData();
-
-    try {
-      KeyStore keystore = KeyStore.getInstance("PKCS12");
-      char[] partnerId2charArray = this.getMchId().toCharArray();
-      keystore.load(inputStream, partnerId2charArray);
-
-      Enumeration enume = keystore.aliases();
-      String keyAlias = null;
-      if (enume.hasMoreElements()) {
-        keyAlias = (String) enume.nextElement();
-      }
-      return (X509Certificate) keystore.getCertificate(keyAlias);
-    } catch (Exception e) {
-      throw new WxPayException("证书文件有问题，请核实！", e);
-    } finally {
-      IOUtils.closeQuietly(inputStream);
-    }
+    return this.loadMerchantKeyMaterial().certificate;
   }
 
   /**
@@ -274,7 +338,88 @@ public class WxPayConfig {
    * @throws WxPayException
    */
   public String getSerialNo() throws WxPayException{
-    return this.getCert().getSerialNumber().toString(16).toUpperCase();
+    return this.loadMerchantKeyMaterial().serialNo;
+  }
+
+  /**
+   * 获取缓存的商户私钥、证书及序列号，仅在首次使用或者本地证书文件被修改后才重新解析p12证书.
+   */
+  private MerchantKeyMaterial loadMerchantKeyMaterial() throws WxPayException {
+    MerchantKeyMaterial material = this.merchantKeyMaterial;
+    long now = System.currentTimeMillis();
+    if (material != null && (now < material.nextCheckTime || material.keyFileLastModified == this.getKeyFileLastModified())) {
+      if (now >= material.nextCheckTime) {
+        material.nextCheckTime = now + KEY_FILE_CHECK_INTERVAL;
+      }
+      return material;
+    }
+
+    synchronized (this) {
+      material = this.merchantKeyMaterial;
+      long keyFileLastModified = this.getKeyFileLastModified();
+      if (material != null && material.keyFileLastModified == keyFileLastModified) {
+        return material;
+      }
+
+      if (material != null) {
+        // 证书文件已更新，丢弃之前读取的证书内容以便重新读取
+        this.keyContent = null;
+        this.sslContext = null;
+      }
+
+      InputStream inputStream = getKeyData();
+      try {
+        KeyStore keystore = KeyStore.getInstance("PKCS12");
+        char[] partnerId2charArray = this.getMchId().toCharArray();
+        keystore.load(inputStream, partnerId2charArray);
+
+        Enumeration enume = keystore.aliases();
+        String keyAlias = null;
+        if (enume.hasMoreElements()) {
+          keyAlias = (String) enume.nextElement();
+        }
+        material = new MerchantKeyMaterial((PrivateKey) keystore.getKey(keyAlias, partnerId2charArray),
+          (X509Certificate) keystore.getCertificate(keyAlias), keyFileLastModified);
+      } catch (Exception e) {
+        throw new WxPayException("证书文件有问题，请核实！", e);
+      } finally {
+        IOUtils.closeQuietly(inputStream);
+      }
+
+      this.merchantKeyMaterial = material;
+      return material;
+    }
+  }
+
+  /**
+   * 本地证书文件的最后修改时间，证书不是来自本地文件时返回0.
+   */
+  private long getKeyFileLastModified() {
+    if (StringUtils.isBlank(this.keyPath) || this.keyPath.startsWith("classpath:")
+      || this.keyPath.startsWith("http://") || this.keyPath.startsWith("https://")) {
+      return 0;
+    }
+
+    return new File(this.keyPath).lastModified();
+  }
+
+  /**
+   * 解析后的商户证书信息.
+   */
+  private static class MerchantKeyMaterial {
+    private final PrivateKey privateKey;
+    private final X509Certificate certificate;
+    private final String serialNo;
+    private final long keyFileLastModified;
+    private volatile long nextCheckTime;
+
+    private MerchantKeyMaterial(PrivateKey privateKey, X509Certificate certificate, long keyFileLastModified) {
+      this.privateKey = privateKey;
+      this.certificate = certificate;
+      this.serialNo = StringUtils.leftPad(certificate.getSerialNumber().toString(16).toUpperCase(), 40, '0');
+      this.keyFileLastModified = keyFileLastModified;
+      this.nextCheckTime = System.currentTimeMillis() + KEY_FILE_CHECK_INTERVAL;
+    }
   }
 
   /**
@@ -292,8 +437,11 @@ public class WxPayConfig {
     }
   }
 
+  /**
+   * 获取证书序列号，微信支付的证书序列号固定为40位十六进制，BigInteger转换时去掉的前导0需要补回.
+   */
   public String getSerialNo(X509Certificate certificate) {
-    return certificate.getSerialNumber().toString(16).toUpperCase();
+    return StringUtils.leftPad(certificate.getSerialNumber().toString(16).toUpperCase(), 40, '0');
   }
 
   public String decryptToString(byte[] associatedData, byte[] nonce, String ciphertext)
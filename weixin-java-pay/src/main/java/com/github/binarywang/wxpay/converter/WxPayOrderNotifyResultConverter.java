@@ -1,6 +1,5 @@
 package com.github.binarywang.wxpay.converter;
 
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -29,6 +28,19 @@ import com.thoughtworks.xstream.mapper.Mapper;
  * @author aimilin
  */
 public class WxPayOrderNotifyResultConverter extends AbstractReflectionConverter {
+  /**
+   * 节点名称与属性的映射，只在类加载时解析一次.
+   */
+  private static final Map<String, Field> FIELD_MAP;
+
+  static {
+    List<Field> fields = new ArrayList<>(Arrays.asList(WxPayOrderNotifyResult.class.getDeclaredFields()));
+    fields.addAll(Arrays.asList(WxPayOrderNotifyResult.class.getSuperclass().getDeclaredFields()));
+    FIELD_MAP = getFieldMap(fields);
+    for (Field field : FIELD_MAP.values()) {
+      field.setAccessible(true);
+    }
+  }
 
   /**
    * Instantiates a new Wx pay order notify result converter.
@@ -80,10 +92,7 @@ public class WxPayOrderNotifyResultConverter extends AbstractReflectionConverter
   @Override
   public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
     WxPayOrderNotifyResult obj = new WxPayOrderNotifyResult();
-
-    List<Field> fields = new ArrayList<>(Arrays.asList(obj.getClass().getDeclaredFields()));
-    fields.addAll(Arrays.asList(obj.getClass().getSuperclass().getDeclaredFields()));
-    Map<String, Field> fieldMap = getFieldMap(fields);
+    Map<String, Field> fieldMap = FIELD_MAP;
 
     Map<Integer, WxPayOrderNotifyCoupon> coupons = Maps.newTreeMap();
     while (reader.hasMoreChildren()) {
@@ -112,14 +121,13 @@ public class WxPayOrderNotifyResultConverter extends AbstractReflectionConverter
     Object val = context.convertAnother(obj, field.getType());
     try {
       if (val != null) {
-        PropertyDescriptor pd = new PropertyDescriptor(field.getName(), obj.getClass());
-        pd.getWriteMethod().invoke(obj, val);
+        field.set(obj, val);
       }
     } catch (Exception ignored) {
     }
   }
 
-  private Map<String, Field> getFieldMap(List<Field> fields) {
+  private static Map<String, Field> getFieldMap(List<Field> fields) {
     return Maps.uniqueIndex(fields, new Function<Field, String>() {
       @Override
       public String apply(Field field) {
@@ -3,6 +3,8 @@ package com.github.binarywang.wxpay.service;
 import com.github.binarywang.wxpay.bean.entpay.*;
 import com.github.binarywang.wxpay.exception.WxPayException;
 
+import java.util.List;
+
 /**
  * <pre>
  *  企业付款相关服务类.
@@ -92,6 +94,33 @@ public interface EntPayService {
    */
   EntPayBankResult payBank(EntPayBankRequest request) throws WxPayException;
 
+  /**
+   * 批量企业付款到银行卡，默认最多同时发起5笔付款.
+   *
+   * @param requests 请求对象列表
+   * @return 与请求一一对应的付款结果
+   * @throws WxPayException 获取加密公钥失败时抛出
+   * @see #payBank(List, int)
+   */
+  List<EntPayBankResult> payBank(List<EntPayBankRequest> requests) throws WxPayException;
+
+  /**
+   * 批量企业付款到银行卡.
+   * <pre>
+   * 所有付款共用同一个缓存的RSA加密公钥，在不超过指定并发数的情况下同时发起付款.
+   * 单笔付款失败不会影响其他付款，其结果中包含错误信息：
+   * result_code为FAIL时表示付款失败；result_code为空时（比如网络异常）付款结果未知，需要调用{@link #queryPayBank(String)}确认.
+   * 调用线程被中断时不再发起尚未开始的付款（其result_code为FAIL），进行中的付款不会被中断，
+   * 等待其完成后照常返回所有结果，并保留线程的中断状态.
+   * </pre>
+   *
+   * @param requests    请求对象列表
+   * @param parallelism 最大并发数
+   * @return 与请求一一对应的付款结果
+   * @throws WxPayException 获取加密公钥失败时抛出
+   */
+  List<EntPayBankResult> payBank(List<EntPayBankRequest> requests, int parallelism) throws WxPayException;
+
   /**
    * 企业付款到银行卡查询.
    * <pre>
@@ -3,7 +3,9 @@ package com.github.binarywang.wxpay.service;
 import java.io.File;
 import java.io.InputStream;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import com.github.binarywang.wxpay.bean.WxPayApiData;
 import com.github.binarywang.wxpay.bean.coupon.*;
@@ -14,6 +16,8 @@ import com.github.binarywang.wxpay.bean.request.*;
 import com.github.binarywang.wxpay.bean.result.*;
 import com.github.binarywang.wxpay.config.WxPayConfig;
 import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.util.QrcodeRenderer;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 
 import java.io.File;
 import java.util.Date;
@@ -68,6 +72,12 @@ public interface WxPayService {
    */
   String postFileV3(String urlSuffix, String fileName, File file) throws WxPayException;
 
+  /**
+   * 发送post V3 file请求，文件名取自数据来源.
+   * 文件的sha256需要放在请求体最前面的meta中并参与签名，因此输入流和通道会在计算sha256的同时读入内存，之后直接上传，只读取一次.
+   */
+  String postFileV3(String urlSuffix, MediaUploadSource source) throws WxPayException;
+
   /**
    * 发送get V3请求，得到响应字符串.
    */
@@ -396,6 +406,36 @@ public interface WxPayService {
    */
   byte[] createScanPayQrcodeMode2(String codeUrl, File logoFile, Integer sideLength);
 
+  /**
+   * <pre>
+   * 扫码支付模式一批量生成二维码的方法，适用于批量打印商品或桌台二维码.
+   * 二维码内容同{@link #createScanPayQrcodeMode1(String)}，多线程并行生成PNG图片，每生成一个即写入sink.
+   * </pre>
+   *
+   * @param productIds 产品Id列表
+   * @param logoFile   商户logo图片的文件对象，可以为空
+   * @param sideLength 要生成的二维码的边长，如果为空，则取默认值400
+   * @param sink       图片的输出目标，下标与productIds对应，会被多个线程同时调用
+   * @throws WxPayException 有二维码生成失败时抛出，其余二维码仍会生成
+   */
+  void createScanPayQrcodesMode1(List<String> productIds, File logoFile, Integer sideLength,
+                                 QrcodeRenderer.Sink sink) throws WxPayException;
+
+  /**
+   * <pre>
+   * 扫码支付模式二批量生成二维码的方法.
+   * 多线程并行生成PNG图片，每生成一个即写入sink.
+   * </pre>
+   *
+   * @param codeUrls   微信返回的交易会话的二维码链接列表
+   * @param logoFile   商户logo图片的文件对象，可以为空
+   * @param sideLength 要生成的二维码的边长，如果为空，则取默认值400
+   * @param sink       图片的输出目标，下标与codeUrls对应，会被多个线程同时调用
+   * @throws WxPayException 有二维码生成失败时抛出，其余二维码仍会生成
+   */
+  void createScanPayQrcodesMode2(List<String> codeUrls, File logoFile, Integer sideLength,
+                                 QrcodeRenderer.Sink sink) throws WxPayException;
+
   /**
    * <pre>
    * 交易保障.
@@ -494,6 +534,23 @@ public interface WxPayService {
    */
   WxPayBillResult downloadBill(WxPayDownloadBillRequest request) throws WxPayException;
 
+  /**
+   * <pre>
+   * 以数据流方式下载对账单.
+   * 边下载边解析（压缩账单会边下载边解压），每解析出一条对账明细即交给consumer处理，
+   * 不会将整个账单读入内存，适用于交易量很大的商户.
+   * 接口链接：https://api.mch.weixin.qq.com/pay/downloadbill
+   * 详情请见: <a href="https://pay.weixin.qq.com/wiki/doc/api/jsapi.php?chapter=9_6">下载对账单</a>
+   * </pre>
+   *
+   * @param request  下载对账单请求
+   * @param consumer 对账明细处理器，按账单中的顺序依次调用
+   * @return 只包含汇总数据的WxPayBillResult对象，在所有明细处理完后返回
+   * @throws WxPayException the wx pay exception
+   */
+  WxPayBillResult downloadBill(WxPayDownloadBillRequest request, Consumer<WxPayBillInfo> consumer)
+    throws WxPayException;
+
   /**
    * <pre>
    * 下载资金账单.
@@ -532,6 +589,23 @@ public interface WxPayService {
    */
   WxPayFundFlowResult downloadFundFlow(WxPayDownloadFundFlowRequest request) throws WxPayException;
 
+  /**
+   * <pre>
+   * 以数据流方式下载资金账单.
+   * 边下载边解析（压缩账单会边下载边解压），每解析出一条资金流水即交给consumer处理，
+   * 不会将整个账单读入内存，适用于流水量很大的商户.
+   * 接口链接：https://api.mch.weixin.qq.com/pay/downloadfundflow
+   * 详情请见: <a href="https://pay.weixin.qq.com/wiki/doc/api/jsapi.php?chapter=9_18">下载对账单</a>
+   * </pre>
+   *
+   * @param request  下载资金流水请求
+   * @param consumer 资金流水处理器，按账单中的顺序依次调用
+   * @return 只包含汇总数据的WxPayFundFlowResult对象，在所有流水处理完后返回
+   * @throws WxPayException the wx pay exception
+   */
+  WxPayFundFlowResult downloadFundFlow(WxPayDownloadFundFlowRequest request,
+                                       Consumer<WxPayFundFlowBaseResult> consumer) throws WxPayException;
+
   /**
    * <pre>
    * 提交付款码支付.
@@ -754,6 +828,11 @@ public interface WxPayService {
    */
   WxPayV3MediaUploadResult v3MediaUpload(String fileName, File file) throws WxPayException;
 
+  /**
+   * 图片上传，直接上传输入流中的内容，不需要先保存为文件
+   */
+  WxPayV3MediaUploadResult v3MediaUpload(String fileName, InputStream inputStream) throws WxPayException;
+
   /**
    * <pre>
    * 获取微信刷脸支付凭证.
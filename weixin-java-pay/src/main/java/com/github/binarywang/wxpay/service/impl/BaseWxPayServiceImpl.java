@@ -1,6 +1,5 @@
 package com.github.binarywang.wxpay.service.impl;
 
-import com.github.binarywang.utils.qrcode.QrcodeUtils;
 import com.github.binarywang.wxpay.bean.WxPayApiData;
 import com.github.binarywang.wxpay.bean.coupon.*;
 import com.github.binarywang.wxpay.bean.notify.WxPayOrderNotifyResult;
@@ -21,24 +20,29 @@ import com.github.binarywang.wxpay.service.EntPayService;
 import com.github.binarywang.wxpay.service.ProfitSharingService;
 import com.github.binarywang.wxpay.service.RedpackService;
 import com.github.binarywang.wxpay.service.WxPayService;
+import com.github.binarywang.wxpay.util.QrcodeRenderer;
 import com.github.binarywang.wxpay.util.SignUtils;
 import com.github.binarywang.wxpay.util.XmlConfig;
-import com.google.common.base.Joiner;
 import com.google.common.collect.Maps;
 import com.google.gson.Gson;
-import jodd.io.ZipUtil;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.security.cert.X509Certificate;
 import java.util.*;
-import java.util.zip.ZipException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static com.github.binarywang.wxpay.constant.WxPayConstants.QUERY_COMMENT_DATE_FORMAT;
 import static com.github.binarywang.wxpay.constant.WxPayConstants.TarType;
@@ -52,8 +56,11 @@ import static com.github.binarywang.wxpay.constant.WxPayConstants.TarType;
  * @author <a href="https://github.com/binarywang">Binary Wang</a>
  */
 public abstract class BaseWxPayServiceImpl implements WxPayService {
-  private static final String TOTAL_FUND_COUNT = "资金流水总笔数";
-
+  private static final int DEFAULT_QRCODE_SIDE_LENGTH = 400;
+  /**
+   * 缓存的二维码生成器数量上限，超出时淘汰最久未使用的.
+   */
+  private static final int MAX_QRCODE_RENDERERS = 8;
   /**
    * The Log.
    */
@@ -66,12 +73,24 @@ public abstract class BaseWxPayServiceImpl implements WxPayService {
   private EntPayService entPayService = new EntPayServiceImpl(this);
   private ProfitSharingService profitSharingService = new ProfitSharingServiceImpl(this);
   private RedpackService redpackService = new RedpackServiceImpl(this);
+  private final Map<String, CachedQrcodeRenderer> qrcodeRenderers =
+    new LinkedHashMap<String, CachedQrcodeRenderer>(MAX_QRCODE_RENDERERS, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedQrcodeRenderer> eldest) {
+        return this.size() > MAX_QRCODE_RENDERERS;
+      }
+    };
 
   /**
    * The Config.
    */
   protected WxPayConfig config;
 
+  /**
+   * V3平台证书验签器，设置后用于验证V3接口应答签名及获取加密用的平台证书.
+   */
+  protected WxPayV3CertificateVerifier v3CertificateVerifier;
+
   @Override
   public EntPayService getEntPayService() {
     return entPayService;
@@ -102,6 +121,14 @@ public abstract class BaseWxPayServiceImpl implements WxPayService {
     this.config = config;
   }
 
+  public WxPayV3CertificateVerifier getV3CertificateVerifier() {
+    return this.v3CertificateVerifier;
+  }
+
+  public void setV3CertificateVerifier(WxPayV3CertificateVerifier v3CertificateVerifier) {
+    this.v3CertificateVerifier = v3CertificateVerifier;
+  }
+
   @Override
   public String getPayBaseUrl() {
     if (this.getConfig().isUseSandboxEnv()) {
@@ -488,12 +515,70 @@ public abstract class BaseWxPayServiceImpl implements WxPayService {
     return this.createQrcode(codeUrl, logoFile, sideLength);
   }
 
+  @Override
+  public void createScanPayQrcodesMode1(List<String> productIds, File logoFile, Integer sideLength,
+                                        QrcodeRenderer.Sink sink) throws WxPayException {
+    List<String> contents = new ArrayList<>(productIds.size());
+    for (String productId : productIds) {
+      contents.add(this.createScanPayQrcodeMode1(productId));
+    }
+    this.createScanPayQrcodesMode2(contents, logoFile, sideLength, sink);
+  }
+
+  @Override
+  public void createScanPayQrcodesMode2(List<String> codeUrls, File logoFile, Integer sideLength,
+                                        QrcodeRenderer.Sink sink) throws WxPayException {
+    this.getQrcodeRenderer(logoFile, "png").renderAll(codeUrls, this.qrcodeSideLength(sideLength),
+      Runtime.getRuntime().availableProcessors(), sink);
+  }
+
   private byte[] createQrcode(String content, File logoFile, Integer sideLength) {
-    if (sideLength == null || sideLength < 1) {
-      return QrcodeUtils.createQrcode(content, logoFile);
+    try {
+      // 与之前使用QrcodeUtils时一致，单个二维码仍生成jpg格式，失败时返回null
+      return this.getQrcodeRenderer(logoFile, "jpg").render(content, this.qrcodeSideLength(sideLength));
+    } catch (WxPayException e) {
+      this.log.warn("生成二维码失败，内容为：{}", content, e);
+      return null;
     }
+  }
 
-    return QrcodeUtils.createQrcode(content, sideLength, logoFile);
+  private int qrcodeSideLength(Integer sideLength) {
+    return sideLength == null || sideLength < 1 ? DEFAULT_QRCODE_SIDE_LENGTH : sideLength;
+  }
+
+  /**
+   * 按logo文件缓存二维码生成器，logo文件修改后重新读取并替换原来的生成器，最多缓存{@link #MAX_QRCODE_RENDERERS}个.
+   */
+  private QrcodeRenderer getQrcodeRenderer(File logoFile, String formatName) throws WxPayException {
+    String key = logoFile == null ? formatName : formatName + ":" + logoFile.getAbsolutePath();
+    long lastModified = logoFile == null ? 0 : logoFile.lastModified();
+    CachedQrcodeRenderer cached;
+    synchronized (this.qrcodeRenderers) {
+      cached = this.qrcodeRenderers.get(key);
+    }
+    if (cached != null && cached.lastModified == lastModified) {
+      return cached.renderer;
+    }
+
+    // 读取logo较慢，不在锁内进行，并发时可能重复创建，以最后放入的为准
+    cached = new CachedQrcodeRenderer(new QrcodeRenderer(logoFile, formatName), lastModified);
+    synchronized (this.qrcodeRenderers) {
+      this.qrcodeRenderers.put(key, cached);
+    }
+    return cached.renderer;
+  }
+
+  /**
+   * 缓存的二维码生成器及其创建时logo文件的修改时间.
+   */
+  private static class CachedQrcodeRenderer {
+    private final QrcodeRenderer renderer;
+    private final long lastModified;
+
+    private CachedQrcodeRenderer(QrcodeRenderer renderer, long lastModified) {
+      this.renderer = renderer;
+      this.lastModified = lastModified;
+    }
   }
 
   @Override
@@ -562,25 +647,18 @@ public abstract class BaseWxPayServiceImpl implements WxPayService {
   }
 
   private String handleGzipBill(String url, String requestStr) throws WxPayException {
-    try {
-      byte[] responseBytes = this.postForBytes(url, requestStr, false);
-      Path tempDirectory = Files.createTempDirectory("bill");
-      Path path = Paths.get(tempDirectory.toString(), System.currentTimeMillis() + ".gzip");
-      Files.write(path, responseBytes);
-      try {
-        List<String> allLines = Files.readAllLines(ZipUtil.ungzip(path.toFile()).toPath(), StandardCharsets.UTF_8);
-        return Joiner.on("\n").join(allLines);
-      } catch (ZipException e) {
-        if (e.getMessage().contains("Not in GZIP format")) {
-          throw WxPayException.from(BaseWxPayResult.fromXML(new String(responseBytes, StandardCharsets.UTF_8),
-            WxPayCommonResult.class));
-        } else {
-          throw new WxPayException("解压zip文件出错！", e);
-        }
-      }
-    } catch (Exception e) {
-      throw new WxPayException("解析对账单文件时出错！", e);
-    }
+    return this.postForStream(url, requestStr, false, in -> this.readAllLines(this.openBillReader(in, true)));
+  }
+
+  @Override
+  public WxPayBillResult downloadBill(WxPayDownloadBillRequest request, Consumer<WxPayBillInfo> consumer)
+    throws WxPayException {
+    request.checkAndSign(this.getConfig());
+
+    String url = this.getPayBaseUrl() + "/pay/downloadbill";
+    final boolean gzip = TarType.GZIP.equals(request.getTarType());
+    return this.postForStream(url, request.toXML(), false, in ->
+      WxPayBillResult.fromRawBillResultStream(this.openBillReader(in, gzip), request.getBillType(), consumer));
   }
 
   @Override
@@ -614,90 +692,87 @@ public abstract class BaseWxPayServiceImpl implements WxPayService {
   }
 
   private String handleGzipFundFlow(String url, String requestStr) throws WxPayException {
-    try {
-      byte[] responseBytes = this.postForBytes(url, requestStr, true);
-      Path tempDirectory = Files.createTempDirectory("fundFlow");
-      Path path = Paths.get(tempDirectory.toString(), System.currentTimeMillis() + ".gzip");
-      Files.write(path, responseBytes);
-
-      try {
-        List<String> allLines = Files.readAllLines(ZipUtil.ungzip(path.toFile()).toPath(), StandardCharsets.UTF_8);
-        return Joiner.on("\n").join(allLines);
-      } catch (ZipException e) {
-        if (e.getMessage().contains("Not in GZIP format")) {
-          throw WxPayException.from(BaseWxPayResult.fromXML(new String(responseBytes, StandardCharsets.UTF_8),
-            WxPayCommonResult.class));
-        } else {
-          throw new WxPayException("解压zip文件出错", e);
-        }
-      }
-    } catch (WxPayException wxPayException) {
-      throw wxPayException;
-    } catch (Exception e) {
-      throw new WxPayException("解压zip文件出错", e);
-    }
+    return this.postForStream(url, requestStr, true, in -> this.readAllLines(this.openBillReader(in, true)));
   }
 
   private WxPayFundFlowResult handleFundFlow(String responseContent) {
-    WxPayFundFlowResult wxPayFundFlowResult = new WxPayFundFlowResult();
+    return WxPayFundFlowResult.fromRawFundFlowString(responseContent);
+  }
 
-    String listStr = "";
-    String objStr = "";
+  @Override
+  public WxPayFundFlowResult downloadFundFlow(WxPayDownloadFundFlowRequest request,
+                                              Consumer<WxPayFundFlowBaseResult> consumer) throws WxPayException {
+    request.checkAndSign(this.getConfig());
+
+    String url = this.getPayBaseUrl() + "/pay/downloadfundflow";
+    final boolean gzip = TarType.GZIP.equals(request.getTarType());
+    return this.postForStream(url, request.toXML(), true, in ->
+      WxPayFundFlowResult.fromRawFundFlowStream(this.openBillReader(in, gzip), consumer));
+  }
 
-    if (StringUtils.isNotBlank(responseContent) && responseContent.contains(TOTAL_FUND_COUNT)) {
-      listStr = responseContent.substring(0, responseContent.indexOf(TOTAL_FUND_COUNT));
-      objStr = responseContent.substring(responseContent.indexOf(TOTAL_FUND_COUNT));
+  /**
+   * 发送post请求，并以数据流方式处理响应.
+   * 默认实现先读取全部响应字节，支持流式读取的子类应覆盖此方法.
+   *
+   * @param url        请求地址
+   * @param requestStr 请求信息
+   * @param useKey     是否使用证书
+   * @param handler    响应数据流处理器
+   * @return 处理器返回的结果
+   * @throws WxPayException the wx pay exception
+   */
+  protected <T> T postForStream(String url, String requestStr, boolean useKey, ResponseStreamHandler<T> handler)
+    throws WxPayException {
+    byte[] responseBytes = this.postForBytes(url, requestStr, useKey);
+    try {
+      return handler.handle(new ByteArrayInputStream(responseBytes));
+    } catch (IOException e) {
+      throw new WxPayException("读取账单数据出错！", e);
     }
-    /*
-     * 记账时间:2018-02-01 04:21:23 微信支付业务单号:50000305742018020103387128253 资金流水单号:1900009231201802015884652186 业务名称:退款
-     * 业务类型:退款 收支类型:支出 收支金额（元）:0.02 账户结余（元）:0.17 资金变更提交申请人:system 备注:缺货 业务凭证号:REF4200000068201801293084726067
-     * 参考以上格式进行取值
-     */
-    List<WxPayFundFlowBaseResult> wxPayFundFlowBaseResultList = new LinkedList<>();
-    // 去空格
-    String newStr = listStr.replaceAll(",", " ");
-    // 数据分组
-    String[] tempStr = newStr.split("`");
-    // 分组标题
-    String[] t = tempStr[0].split(" ");
-    // 计算循环次数
-    int j = tempStr.length / t.length;
-    // 纪录数组下标
-    int k = 1;
-    for (int i = 0; i < j; i++) {
-      WxPayFundFlowBaseResult wxPayFundFlowBaseResult = new WxPayFundFlowBaseResult();
-
-      wxPayFundFlowBaseResult.setBillingTime(tempStr[k].trim());
-      wxPayFundFlowBaseResult.setBizTransactionId(tempStr[k + 1].trim());
-      wxPayFundFlowBaseResult.setFundFlowId(tempStr[k + 2].trim());
-      wxPayFundFlowBaseResult.setBizName(tempStr[k + 3].trim());
-      wxPayFundFlowBaseResult.setBizType(tempStr[k + 4].trim());
-      wxPayFundFlowBaseResult.setFinancialType(tempStr[k + 5].trim());
-      wxPayFundFlowBaseResult.setFinancialFee(tempStr[k + 6].trim());
-      wxPayFundFlowBaseResult.setAccountBalance(tempStr[k + 7].trim());
-      wxPayFundFlowBaseResult.setFundApplicant(tempStr[k + 8].trim());
-      wxPayFundFlowBaseResult.setMemo(tempStr[k + 9].trim());
-      wxPayFundFlowBaseResult.setBizVoucherId(tempStr[k + 10].trim());
-
-      wxPayFundFlowBaseResultList.add(wxPayFundFlowBaseResult);
-      k += t.length;
-    }
-    wxPayFundFlowResult.setWxPayFundFlowBaseResultList(wxPayFundFlowBaseResultList);
-
-    /*
-     * 资金流水总笔数,收入笔数,收入金额,支出笔数,支出金额 `20.0,`17.0,`0.35,`3.0,`0.18
-     * 参考以上格式进行取值
-     */
-    String totalStr = objStr.replaceAll(",", " ");
-    String[] totalTempStr = totalStr.split("`");
-    wxPayFundFlowResult.setTotalRecord(totalTempStr[1]);
-    wxPayFundFlowResult.setIncomeRecord(totalTempStr[2]);
-    wxPayFundFlowResult.setIncomeAmount(totalTempStr[3]);
-    wxPayFundFlowResult.setExpenditureRecord(totalTempStr[4]);
-    wxPayFundFlowResult.setExpenditureAmount(totalTempStr[5]);
+  }
 
-    return wxPayFundFlowResult;
+  /**
+   * 打开账单数据流，返回的若是xml格式的错误信息则直接抛出异常.
+   *
+   * @param inputStream 响应数据流
+   * @param gzip        是否为gzip压缩数据
+   */
+  private BufferedReader openBillReader(InputStream inputStream, boolean gzip) throws IOException, WxPayException {
+    BufferedInputStream in = new BufferedInputStream(inputStream);
+    in.mark(1);
+    int first = in.read();
+    in.reset();
+    if (first == '<') {
+      String responseContent = IOUtils.toString(in, StandardCharsets.UTF_8);
+      throw WxPayException.from(BaseWxPayResult.fromXML(responseContent, WxPayCommonResult.class));
+    }
 
+    return new BufferedReader(new InputStreamReader(gzip ? new GZIPInputStream(in) : in, StandardCharsets.UTF_8));
+  }
+
+  private String readAllLines(BufferedReader reader) throws IOException {
+    StringBuilder content = new StringBuilder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (content.length() > 0) {
+        content.append('\n');
+      }
+      content.append(line);
+    }
+    return content.toString();
+  }
+
+  /**
+   * 响应数据流处理器.
+   */
+  protected interface ResponseStreamHandler<T> {
+    /**
+     * 处理响应数据流，数据流在方法返回后关闭.
+     *
+     * @param inputStream 响应数据流
+     * @return 处理结果
+     */
+    T handle(InputStream inputStream) throws IOException, WxPayException;
   }
 
   @Override
@@ -852,11 +927,15 @@ public abstract class BaseWxPayServiceImpl implements WxPayService {
   public WxPayV3Applyment4SubResult v3Applyment4Sub(WxPayV3Applyment4SubRequest request) throws WxPayException {
     String urlSuffix = "/v3/applyment4sub/applyment/";
 
-    WxPayV3CertificatesResult certificatesResult = this.v3GetCertificates();
-    WxPayV3CertificatesResult.Certificate certificate = certificatesResult.getData()[0];
+    X509Certificate platformCert = this.v3CertificateVerifier == null ? null
+      : this.v3CertificateVerifier.getLatestCertificate();
+    if (platformCert == null) {
+      WxPayV3CertificatesResult certificatesResult = this.v3GetCertificates();
+      platformCert = this.config.getPlatformCert(certificatesResult.getData()[0].getEncryptCertificate());
+    }
     Gson gson = new Gson();
-    request.encryptData(this.config.getPlatformCert(certificate.getEncryptCertificate()).getPublicKey());
-    String responseContent = this.postV3(urlSuffix, gson.toJson(request), certificate.getSerialNo());
+    request.encryptData(platformCert.getPublicKey());
+    String responseContent = this.postV3(urlSuffix, gson.toJson(request), this.config.getSerialNo(platformCert));
     if (StringUtils.isBlank(responseContent)) {
       throw new WxPayException("无响应结果");
     }
@@ -902,8 +981,17 @@ public abstract class BaseWxPayServiceImpl implements WxPayService {
 
   @Override
   public WxPayV3MediaUploadResult v3MediaUpload(String fileName, File file) throws WxPayException {
+    return this.v3MediaUpload(MediaUploadSource.of(file, fileName));
+  }
+
+  @Override
+  public WxPayV3MediaUploadResult v3MediaUpload(String fileName, InputStream inputStream) throws WxPayException {
+    return this.v3MediaUpload(MediaUploadSource.of(inputStream, fileName));
+  }
+
+  private WxPayV3MediaUploadResult v3MediaUpload(MediaUploadSource source) throws WxPayException {
     String url = "/v3/merchant/media/upload";
-    String responseContent = this.postFileV3(url, fileName, file);
+    String responseContent = this.postFileV3(url, source);
     if (StringUtils.isBlank(responseContent)) {
       throw new WxPayException("无响应结果");
     }
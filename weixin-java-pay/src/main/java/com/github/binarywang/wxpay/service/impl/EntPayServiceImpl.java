@@ -10,18 +10,25 @@ import com.github.binarywang.wxpay.service.WxPayService;
 import com.github.binarywang.wxpay.util.SignUtils;
 import org.apache.commons.codec.binary.Base64;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.crypto.Cipher;
-import java.io.File;
-import java.io.FileReader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.security.PublicKey;
-import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <pre>
@@ -31,8 +38,32 @@ import java.security.Security;
  * @author <a href="https://github.com/binarywang">Binary Wang</a>
  */
 public class EntPayServiceImpl implements EntPayService {
+  private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+  /**
+   * 批量付款到银行卡时默认的最大并发数.
+   */
+  private static final int DEFAULT_PAY_BANK_PARALLELISM = 5;
+
+  /**
+   * 被缓存的RSA公钥至少存在这么久之后，付款失败时才会使其失效，避免批量付款中的业务错误导致频繁获取公钥.
+   */
+  private static final long MIN_PUBLIC_KEY_AGE_TO_INVALIDATE_MILLIS = 60 * 1000L;
+
+  /**
+   * 每个线程复用一个加密用的Cipher，每次加密前用公钥重新初始化.
+   */
+  private static final ThreadLocal<Cipher> RSA_CIPHER = new ThreadLocal<>();
+
   private WxPayService payService;
 
+  /**
+   * 商户号->RSA公钥.
+   */
+  private final ConcurrentHashMap<String, CachedPublicKey> publicKeys = new ConcurrentHashMap<>();
+
+  private volatile long publicKeyTtlMillis = 24 * 60 * 60 * 1000L;
+
   /**
    * Instantiates a new Ent pay service.
    *
@@ -42,6 +73,22 @@ public class EntPayServiceImpl implements EntPayService {
     this.payService = payService;
   }
 
+  /**
+   * 设置RSA公钥在内存中的缓存时间.
+   *
+   * @param publicKeyTtlMillis 缓存时间（毫秒），默认24小时
+   */
+  public void setPublicKeyTtlMillis(long publicKeyTtlMillis) {
+    this.publicKeyTtlMillis = publicKeyTtlMillis;
+  }
+
+  /**
+   * 使当前商户缓存的RSA公钥失效，下次付款到银行卡时重新获取.
+   */
+  public void invalidatePublicKey() {
+    this.publicKeys.remove(this.payService.getConfig().getMchId());
+  }
+
   @Override
   public EntPayResult entPay(EntPayRequest request) throws WxPayException {
     request.checkAndSign(this.payService.getConfig());
@@ -94,17 +141,129 @@ public class EntPayServiceImpl implements EntPayService {
 
   @Override
   public EntPayBankResult payBank(EntPayBankRequest request) throws WxPayException {
-    File publicKeyFile = this.buildPublicKeyFile();
-    request.setEncBankNo(this.encryptRSA(publicKeyFile, request.getEncBankNo()));
-    request.setEncTrueName(this.encryptRSA(publicKeyFile, request.getEncTrueName()));
-    publicKeyFile.deleteOnExit();
+    String mchId = this.payService.getConfig().getMchId();
+    CachedPublicKey publicKey = this.getRsaPublicKey(mchId);
+    request.setEncBankNo(this.encryptRSA(publicKey.publicKey, request.getEncBankNo()));
+    request.setEncTrueName(this.encryptRSA(publicKey.publicKey, request.getEncTrueName()));
 
     request.checkAndSign(this.payService.getConfig());
 
     String url = this.payService.getPayBaseUrl() + "/mmpaysptrans/pay_bank";
-    String responseContent = this.payService.post(url, request.toXML(), true);
-    EntPayBankResult result = BaseWxPayResult.fromXML(responseContent, EntPayBankResult.class);
-    result.checkResult(this.payService, request.getSignType(), true);
+    try {
+      String responseContent = this.payService.post(url, request.toXML(), true);
+      EntPayBankResult result = BaseWxPayResult.fromXML(responseContent, EntPayBankResult.class);
+      result.checkResult(this.payService, request.getSignType(), true);
+      return result;
+    } catch (WxPayException e) {
+      // 公钥可能已经更换，下次付款时重新获取
+      if (System.currentTimeMillis() - publicKey.fetchTime >= MIN_PUBLIC_KEY_AGE_TO_INVALIDATE_MILLIS) {
+        this.publicKeys.remove(mchId, publicKey);
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public List<EntPayBankResult> payBank(List<EntPayBankRequest> requests) throws WxPayException {
+    return this.payBank(requests, DEFAULT_PAY_BANK_PARALLELISM);
+  }
+
+  @Override
+  public List<EntPayBankResult> payBank(List<EntPayBankRequest> requests, int parallelism) throws WxPayException {
+    if (requests.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    // 预先获取公钥，所有付款共用
+    this.getRsaPublicKey(this.payService.getConfig().getMchId());
+
+    final AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, requests.size())),
+      r -> {
+        Thread thread = new Thread(r, "EntPayBank-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    // 调用线程被中断后置为true，尚未开始的付款不再发起，进行中的付款不会被中断
+    final AtomicBoolean stopped = new AtomicBoolean();
+    List<Future<EntPayBankResult>> futures = new ArrayList<>(requests.size());
+    try {
+      for (final EntPayBankRequest request : requests) {
+        futures.add(executor.submit(() -> {
+          if (stopped.get()) {
+            return notStartedPayBankResult(request);
+          }
+          try {
+            return this.payBank(request);
+          } catch (WxPayException e) {
+            return failedPayBankResult(request, e);
+          } catch (Exception e) {
+            this.log.error("企业付款到银行卡【{}】时发生异常", request.getPartnerTradeNo(), e);
+            return unknownPayBankResult(request, e);
+          }
+        }));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    boolean interrupted = false;
+    List<EntPayBankResult> results = new ArrayList<>(requests.size());
+    for (int i = 0; i < futures.size(); i++) {
+      while (true) {
+        try {
+          results.add(futures.get(i).get());
+          break;
+        } catch (InterruptedException e) {
+          // 已经发起的付款结果必须返回给调用方，故而继续等待其完成
+          interrupted = true;
+          stopped.set(true);
+        } catch (ExecutionException e) {
+          results.add(unknownPayBankResult(requests.get(i), e.getCause()));
+          break;
+        }
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return results;
+  }
+
+  private static EntPayBankResult failedPayBankResult(EntPayBankRequest request, WxPayException e) {
+    EntPayBankResult result = new EntPayBankResult();
+    result.setPartnerTradeNo(request.getPartnerTradeNo());
+    result.setAmount(request.getAmount());
+    result.setReturnCode(e.getReturnCode());
+    result.setReturnMsg(e.getReturnMsg() != null ? e.getReturnMsg() : e.getMessage());
+    result.setResultCode(e.getResultCode());
+    result.setErrCode(e.getErrCode());
+    result.setErrCodeDes(e.getErrCodeDes());
+    return result;
+  }
+
+  /**
+   * 发生非预期的异常时无法确定付款是否已经发出，result_code为空表示结果未知.
+   */
+  private static EntPayBankResult unknownPayBankResult(EntPayBankRequest request, Throwable e) {
+    EntPayBankResult result = new EntPayBankResult();
+    result.setPartnerTradeNo(request.getPartnerTradeNo());
+    result.setAmount(request.getAmount());
+    result.setReturnMsg(e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+    return result;
+  }
+
+  /**
+   * 批量付款被中断时尚未发起的付款，确定没有付款，可以重新发起.
+   */
+  private static EntPayBankResult notStartedPayBankResult(EntPayBankRequest request) {
+    EntPayBankResult result = new EntPayBankResult();
+    result.setPartnerTradeNo(request.getPartnerTradeNo());
+    result.setAmount(request.getAmount());
+    result.setReturnMsg("批量付款被中断，未发起付款");
+    result.setResultCode(WxPayConstants.ResultCode.FAIL);
+    result.setErrCodeDes("批量付款被中断，未发起付款");
     return result;
   }
 
@@ -158,31 +317,64 @@ public class EntPayServiceImpl implements EntPayService {
     return result;
   }
 
-  private String encryptRSA(File publicKeyFile, String srcString) throws WxPayException {
-    try {
-      Security.addProvider(new BouncyCastleProvider());
-      Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA1AndMGF1Padding");
-      try (PEMParser reader = new PEMParser(new FileReader(publicKeyFile))) {
-        final PublicKey publicKey = new JcaPEMKeyConverter().setProvider("BC")
-          .getPublicKey((SubjectPublicKeyInfo) reader.readObject());
-
-        cipher.init(Cipher.ENCRYPT_MODE, publicKey);
-        byte[] encrypt = cipher.doFinal(srcString.getBytes(StandardCharsets.UTF_8));
-        return Base64.encodeBase64String(encrypt);
+  /**
+   * 获取缓存的RSA公钥，不存在或者已过期时调用接口重新获取.
+   */
+  private CachedPublicKey getRsaPublicKey(String mchId) throws WxPayException {
+    CachedPublicKey publicKey = this.publicKeys.get(mchId);
+    if (publicKey != null && !publicKey.isExpired(this.publicKeyTtlMillis)) {
+      return publicKey;
+    }
+
+    synchronized (this.publicKeys) {
+      publicKey = this.publicKeys.get(mchId);
+      if (publicKey != null && !publicKey.isExpired(this.publicKeyTtlMillis)) {
+        return publicKey;
       }
+
+      publicKey = new CachedPublicKey(parsePublicKey(this.getPublicKey()));
+      this.publicKeys.put(mchId, publicKey);
+      return publicKey;
+    }
+  }
+
+  private static PublicKey parsePublicKey(String publicKeyStr) throws WxPayException {
+    try (PEMParser reader = new PEMParser(new StringReader(publicKeyStr))) {
+      return new JcaPEMKeyConverter().getPublicKey((SubjectPublicKeyInfo) reader.readObject());
     } catch (Exception e) {
-      throw new WxPayException("加密出错", e);
+      throw new WxPayException("解析加密公钥时发生异常", e);
     }
   }
 
-  private File buildPublicKeyFile() throws WxPayException {
+  private String encryptRSA(PublicKey publicKey, String srcString) throws WxPayException {
     try {
-      String publicKeyStr = this.getPublicKey();
-      Path tmpFile = Files.createTempFile("payToBank", ".pem");
-      Files.write(tmpFile, publicKeyStr.getBytes(StandardCharsets.UTF_8));
-      return tmpFile.toFile();
-    } catch (Exception e) {
-      throw new WxPayException("生成加密公钥文件时发生异常", e);
+      Cipher cipher = RSA_CIPHER.get();
+      if (cipher == null) {
+        cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA1AndMGF1Padding");
+        RSA_CIPHER.set(cipher);
+      }
+
+      cipher.init(Cipher.ENCRYPT_MODE, publicKey);
+      byte[] encrypt = cipher.doFinal(srcString.getBytes(StandardCharsets.UTF_8));
+      return Base64.encodeBase64String(encrypt);
+    } catch (GeneralSecurityException e) {
+      throw new WxPayException("加密出错", e);
+    }
+  }
+
+  /**
+   * 缓存的RSA公钥及其获取时间.
+   */
+  private static class CachedPublicKey {
+    private final PublicKey publicKey;
+    private final long fetchTime = System.currentTimeMillis();
+
+    private CachedPublicKey(PublicKey publicKey) {
+      this.publicKey = publicKey;
+    }
+
+    private boolean isExpired(long ttlMillis) {
+      return System.currentTimeMillis() - this.fetchTime >= ttlMillis;
     }
   }
 }
@@ -0,0 +1,277 @@
+package com.github.binarywang.wxpay.service.impl;
+
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import lombok.Data;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <pre>
+ * 微信支付apache httpclient连接池.
+ * 每个实例持有一个长期存活的CloseableHttpClient及其连接池，避免每次请求都重新进行TCP及TLS握手.
+ * 连接池的大小、keep-alive及空闲连接回收时间取自创建时的{@link WxPayConfig}，之后修改配置不会影响已创建的连接池.
+ * 配置或证书变化时通过{@link #retire()}停用旧连接池，进行中的请求可以继续完成，最后一个连接归还后连接池自动关闭.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxPayHttpClientPool implements Closeable {
+  private final CountingConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+  private volatile boolean retired;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /**
+   * 创建连接池.
+   *
+   * @param config                     支付配置
+   * @param sslConnectionSocketFactory https连接工厂，需要商户证书时传入带证书的工厂，否则为null使用默认工厂
+   */
+  public WxPayHttpClientPool(WxPayConfig config, SSLConnectionSocketFactory sslConnectionSocketFactory) {
+    Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+      .register("https", sslConnectionSocketFactory == null
+        ? SSLConnectionSocketFactory.getSocketFactory() : sslConnectionSocketFactory)
+      .build();
+
+    this.connectionManager = new CountingConnectionManager(registry);
+    this.connectionManager.setMaxTotal(config.getHttpMaxTotalConn());
+    this.connectionManager.setDefaultMaxPerRoute(config.getHttpMaxConnPerRoute());
+    this.connectionManager.setDefaultSocketConfig(SocketConfig.copy(SocketConfig.DEFAULT)
+      .setSoTimeout(config.getHttpTimeout())
+      .build());
+
+    HttpClientBuilder httpClientBuilder = HttpClients.custom()
+      .setConnectionManager(this.connectionManager)
+      .setKeepAliveStrategy(new FallbackKeepAliveStrategy(config.getHttpKeepAliveTime()))
+      .evictExpiredConnections()
+      .evictIdleConnections(config.getHttpIdleConnTimeout(), TimeUnit.MILLISECONDS);
+
+    if (sslConnectionSocketFactory != null) {
+      // 双向认证的连接会以证书主体作为连接状态，导致连接无法被后续请求复用；同一个连接池只使用同一个商户证书，故而可以忽略连接状态
+      httpClientBuilder.disableConnectionState();
+    }
+
+    if (StringUtils.isNotBlank(config.getHttpProxyHost()) && config.getHttpProxyPort() != null
+      && config.getHttpProxyPort() > 0) {
+      if (StringUtils.isEmpty(config.getHttpProxyUsername())) {
+        config.setHttpProxyUsername("whatever");
+      }
+
+      // 使用代理服务器 需要用户认证的代理服务器
+      CredentialsProvider provider = new BasicCredentialsProvider();
+      provider.setCredentials(new AuthScope(config.getHttpProxyHost(), config.getHttpProxyPort()),
+        new UsernamePasswordCredentials(config.getHttpProxyUsername(), config.getHttpProxyPassword()));
+      httpClientBuilder.setDefaultCredentialsProvider(provider);
+      httpClientBuilder.setProxy(new HttpHost(config.getHttpProxyHost(), config.getHttpProxyPort()));
+    }
+
+    this.httpClient = httpClientBuilder.build();
+  }
+
+  public CloseableHttpClient getHttpClient() {
+    return this.httpClient;
+  }
+
+  /**
+   * 获取连接池当前的统计信息.
+   *
+   * @return 统计信息
+   */
+  public Stats getStats() {
+    PoolStats poolStats = this.connectionManager.getTotalStats();
+    Stats stats = new Stats();
+    stats.setLeased(poolStats.getLeased());
+    stats.setPending(poolStats.getPending());
+    stats.setAvailable(poolStats.getAvailable());
+    stats.setMax(poolStats.getMax());
+    stats.setHitCount(this.connectionManager.hitCount.get());
+    stats.setMissCount(this.connectionManager.missCount.get());
+    stats.setTotalLeaseTimeNanos(this.connectionManager.leaseTimeNanos.get());
+    return stats;
+  }
+
+  /**
+   * 关闭池中所有空闲的连接，正在使用的连接不受影响.
+   */
+  public void closeIdleConnections() {
+    this.connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * <pre>
+   * 停用连接池：立即关闭空闲连接，之后进行中的请求归还最后一个连接时关闭连接池.
+   * 停用时不会立即关闭，因为可能有请求已经取得了client但还没有从池中取得连接，
+   * 此时没有请求在使用的连接池由调用方稍后通过{@link #closeIfDrained()}关闭.
+   * </pre>
+   */
+  public void retire() {
+    this.retired = true;
+    this.closeIdleConnections();
+  }
+
+  /**
+   * 没有正在使用及等待获取的连接时关闭连接池.
+   *
+   * @return 连接池是否已关闭
+   */
+  public boolean closeIfDrained() {
+    PoolStats poolStats = this.connectionManager.getTotalStats();
+    if (poolStats.getLeased() == 0 && poolStats.getPending() == 0) {
+      this.closeQuietly();
+    }
+    return this.closed.get();
+  }
+
+  private void closeQuietly() {
+    try {
+      this.close();
+    } catch (IOException e) {
+      // 关闭时只会释放连接，忽略其中的异常
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed.compareAndSet(false, true)) {
+      this.httpClient.close();
+    }
+  }
+
+  /**
+   * 连接池统计信息.
+   */
+  @Data
+  public static class Stats {
+    /**
+     * 正在使用的连接数.
+     */
+    private int leased;
+    /**
+     * 等待获取连接的请求数.
+     */
+    private int pending;
+    /**
+     * 池中空闲可用的连接数.
+     */
+    private int available;
+    /**
+     * 最大连接数.
+     */
+    private int max;
+    /**
+     * 复用了池中已建立连接的次数.
+     */
+    private long hitCount;
+    /**
+     * 需要新建连接的次数.
+     */
+    private long missCount;
+    /**
+     * 从连接池获取连接的累计等待时间（纳秒）.
+     */
+    private long totalLeaseTimeNanos;
+
+    /**
+     * @return 平均获取连接等待时间（纳秒）
+     */
+    public long getAverageLeaseTimeNanos() {
+      long count = this.hitCount + this.missCount;
+      return count == 0 ? 0 : this.totalLeaseTimeNanos / count;
+    }
+  }
+
+  /**
+   * 服务端未返回Keep-Alive头时使用配置的时间作为连接存活时间.
+   */
+  private static class FallbackKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+    private final long keepAliveTime;
+
+    private FallbackKeepAliveStrategy(long keepAliveTime) {
+      this.keepAliveTime = keepAliveTime;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+      long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+      return duration > 0 ? duration : this.keepAliveTime;
+    }
+  }
+
+  /**
+   * 统计连接获取情况的连接管理器，取得的连接若已打开则说明复用了池中的连接.
+   * 连接池停用后，归还最后一个连接时关闭连接池.
+   */
+  private class CountingConnectionManager extends PoolingHttpClientConnectionManager {
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong leaseTimeNanos = new AtomicLong();
+
+    private CountingConnectionManager(Registry<ConnectionSocketFactory> registry) {
+      super(registry);
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+      final ConnectionRequest request = super.requestConnection(route, state);
+      return new ConnectionRequest() {
+        @Override
+        public HttpClientConnection get(long timeout, TimeUnit tunit)
+          throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+          long start = System.nanoTime();
+          HttpClientConnection connection = request.get(timeout, tunit);
+          leaseTimeNanos.addAndGet(System.nanoTime() - start);
+          if (connection.isOpen()) {
+            hitCount.incrementAndGet();
+          } else {
+            missCount.incrementAndGet();
+          }
+          return connection;
+        }
+
+        @Override
+        public boolean cancel() {
+          return request.cancel();
+        }
+      };
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection managedConn, Object state, long keepalive, TimeUnit tunit) {
+      super.releaseConnection(managedConn, state, keepalive, tunit);
+      if (retired) {
+        closeIfDrained();
+      }
+    }
+  }
+}
@@ -1,26 +1,29 @@
 package com.github.binarywang.wxpay.service.impl;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 import javax.net.ssl.SSLContext;
 
 import com.github.binarywang.wxpay.bean.WxPayApiData;
+import com.github.binarywang.wxpay.config.WxPayConfig;
 import com.github.binarywang.wxpay.constant.WxPayConstants;
 import com.github.binarywang.wxpay.exception.WxPayException;
 import com.github.binarywang.wxpay.util.V3Utils;
 import jodd.util.Base64;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
+import me.chanjar.weixin.common.util.http.apache.MediaUploadSourceBody;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -31,10 +34,7 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
 /**
@@ -45,23 +45,56 @@ import org.apache.http.util.EntityUtils;
  *
  * @author <a href="https://github.com/binarywang">Binary Wang</a>
  */
-public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
+public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl implements Closeable {
+  private static final String V3_CERTIFICATES_URL = "/v3/certificates";
+
+  private volatile WxPayHttpClientPool httpClientPool;
+  private volatile WxPayHttpClientPool keyHttpClientPool;
+  /**
+   * 创建带证书的连接池时使用的SSLContext，商户证书变化后重建连接池.
+   */
+  private volatile SSLContext keyHttpClientPoolSslContext;
+  /**
+   * 配置或证书变化后被替换下来、还未关闭的连接池，其中可能还有进行中的请求，
+   * 最后一个请求完成时自动关闭，没有请求时在下次替换时关闭.
+   */
+  private final List<WxPayHttpClientPool> retiredHttpClientPools = new ArrayList<>();
+
   @Override
   public byte[] postForBytes(String url, String requestStr, boolean useKey) throws WxPayException {
     try {
-      HttpClientBuilder httpClientBuilder = createHttpClientBuilder(useKey);
       HttpPost httpPost = this.createHttpPost(url, requestStr);
-      try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
-        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-          final byte[] bytes = EntityUtils.toByteArray(response.getEntity());
-          final String responseData = Base64.encodeToString(bytes);
-          this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据(Base64编码后)】：{}", url, requestStr, responseData);
-          wxApiData.set(new WxPayApiData(url, requestStr, responseData, null));
-          return bytes;
-        }
+      try (CloseableHttpResponse response = this.getHttpClient(useKey).execute(httpPost)) {
+        final byte[] bytes = EntityUtils.toByteArray(response.getEntity());
+        final String responseData = Base64.encodeToString(bytes);
+        this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据(Base64编码后)】：{}", url, requestStr, responseData);
+        wxApiData.set(new WxPayApiData(url, requestStr, responseData, null));
+        return bytes;
+      } finally {
+        httpPost.releaseConnection();
+      }
+    } catch (Exception e) {
+      this.log.error("\n【请求地址】：{}\n【请求数据】：{}\n【异常信息】：{}", url, requestStr, e.getMessage());
+      wxApiData.set(new WxPayApiData(url, requestStr, null, e.getMessage()));
+      throw new WxPayException(e.getMessage(), e);
+    }
+  }
+
+  @Override
+  protected <T> T postForStream(String url, String requestStr, boolean useKey, ResponseStreamHandler<T> handler)
+    throws WxPayException {
+    try {
+      HttpPost httpPost = this.createHttpPost(url, requestStr);
+      try (CloseableHttpResponse response = this.getHttpClient(useKey).execute(httpPost);
+           InputStream inputStream = response.getEntity().getContent()) {
+        this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据】：以数据流方式处理", url, requestStr);
+        return handler.handle(inputStream);
       } finally {
         httpPost.releaseConnection();
       }
+    } catch (WxPayException e) {
+      this.log.error("\n【请求地址】：{}\n【请求数据】：{}\n【异常信息】：{}", url, requestStr, e.getMessage());
+      throw e;
     } catch (Exception e) {
       this.log.error("\n【请求地址】：{}\n【请求数据】：{}\n【异常信息】：{}", url, requestStr, e.getMessage());
       wxApiData.set(new WxPayApiData(url, requestStr, null, e.getMessage()));
@@ -72,17 +105,14 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
   @Override
   public String post(String url, String requestStr, boolean useKey) throws WxPayException {
     try {
-      HttpClientBuilder httpClientBuilder = this.createHttpClientBuilder(useKey);
       HttpPost httpPost = this.createHttpPost(url, requestStr);
-      try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
-        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-          String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-          this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据】：{}", url, requestStr, responseString);
-          if (this.getConfig().isIfSaveApiData()) {
-            wxApiData.set(new WxPayApiData(url, requestStr, responseString, null));
-          }
-          return responseString;
+      try (CloseableHttpResponse response = this.getHttpClient(useKey).execute(httpPost)) {
+        String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据】：{}", url, requestStr, responseString);
+        if (this.getConfig().isIfSaveApiData()) {
+          wxApiData.set(new WxPayApiData(url, requestStr, responseString, null));
         }
+        return responseString;
       } finally {
         httpPost.releaseConnection();
       }
@@ -95,17 +125,15 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
   @Override
   public String postV3(String urlSuffix, String body, String serialNo) throws WxPayException {
     try {
-      HttpClientBuilder httpClientBuilder = this.createHttpClientBuilder(false);
       HttpPost httpPost = this.createHttpPostV3(this.getPayBaseUrl().concat(urlSuffix), this.getAuthorization(WxPayConstants.RequestMethod.POST, urlSuffix, body), body, serialNo);
-      try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
-        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-          String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-          this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据】：{}", urlSuffix, body, responseString);
-          if (response.getStatusLine().getStatusCode() != 200) {
-            throw new WxPayException(responseString);
-          }
-          return responseString;
+      try (CloseableHttpResponse response = this.getHttpClient(false).execute(httpPost)) {
+        String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据】：{}", urlSuffix, body, responseString);
+        if (response.getStatusLine().getStatusCode() != 200) {
+          throw new WxPayException(responseString);
         }
+        this.verifyV3Response(urlSuffix, response, responseString);
+        return responseString;
       } finally {
         httpPost.releaseConnection();
       }
@@ -117,21 +145,28 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
 
   @Override
   public String postFileV3(String urlSuffix, String fileName, File file) throws WxPayException {
+    return this.postFileV3(urlSuffix, MediaUploadSource.of(file, fileName));
+  }
+
+  @Override
+  public String postFileV3(String urlSuffix, MediaUploadSource source) throws WxPayException {
+    String fileName = source.getFileName();
     try {
-      String fileSha256 = DigestUtils.sha256Hex(new FileInputStream(file));//文件sha256
+      MessageDigest digest = DigestUtils.getSha256Digest();
+      // 输入流和通道在计算sha256的同时读入内存，返回的数据来源可以直接上传
+      MediaUploadSource uploadSource = source.digest(digest);
+      String fileSha256 = Hex.encodeHexString(digest.digest());
       String meta = "{\"filename\":\""+fileName+"\",\"sha256\":\""+fileSha256+"\"}";
 
-      HttpClientBuilder httpClientBuilder = this.createHttpClientBuilder(false);
-      HttpPost httpPost = this.createHttpPostFileV3(this.getPayBaseUrl().concat(urlSuffix), this.getAuthorization(WxPayConstants.RequestMethod.POST, urlSuffix, meta), this.getFileHttpEntity(fileName, file, meta));
-      try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
-        try (CloseableHttpResponse response = httpClient.execute(httpPost)) {
-          String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-          this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据】：{}", urlSuffix, fileName, responseString);
-          if (response.getStatusLine().getStatusCode() != 200) {
-            throw new WxPayException(responseString);
-          }
-          return responseString;
+      HttpPost httpPost = this.createHttpPostFileV3(this.getPayBaseUrl().concat(urlSuffix), this.getAuthorization(WxPayConstants.RequestMethod.POST, urlSuffix, meta), this.getFileHttpEntity(uploadSource, meta));
+      try (CloseableHttpResponse response = this.getHttpClient(false).execute(httpPost)) {
+        String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        this.log.info("\n【请求地址】：{}\n【请求数据】：{}\n【响应数据】：{}", urlSuffix, fileName, responseString);
+        if (response.getStatusLine().getStatusCode() != 200) {
+          throw new WxPayException(responseString);
         }
+        this.verifyV3Response(urlSuffix, response, responseString);
+        return responseString;
       } finally {
         httpPost.releaseConnection();
       }
@@ -144,17 +179,15 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
   @Override
   public String getV3(String urlSuffix) throws WxPayException {
     try {
-      HttpClientBuilder httpClientBuilder = this.createHttpClientBuilder(false);
       HttpGet httpGet = this.createHttpGetV3(this.getPayBaseUrl().concat(urlSuffix), this.getAuthorization(WxPayConstants.RequestMethod.GET, urlSuffix, ""));
-      try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
-        try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-          String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-          this.log.info("\n【请求地址】：{}\n【响应数据】：{}", urlSuffix, responseString);
-          if (response.getStatusLine().getStatusCode() != 200) {
-            throw new WxPayException(responseString);
-          }
-          return responseString;
+      try (CloseableHttpResponse response = this.getHttpClient(false).execute(httpGet)) {
+        String responseString = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        this.log.info("\n【请求地址】：{}\n【响应数据】：{}", urlSuffix, responseString);
+        if (response.getStatusLine().getStatusCode() != 200) {
+          throw new WxPayException(responseString);
         }
+        this.verifyV3Response(urlSuffix, response, responseString);
+        return responseString;
       } finally {
         httpGet.releaseConnection();
       }
@@ -177,25 +210,103 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
     }
   }
 
-  private HttpClientBuilder createHttpClientBuilder(boolean useKey) throws WxPayException {
-    HttpClientBuilder httpClientBuilder = HttpClients.custom();
-    if (useKey) {
-      this.initSSLContext(httpClientBuilder);
+  /**
+   * 获取长期存活的连接池client，useKey为true时使用带商户证书的连接池.
+   */
+  private CloseableHttpClient getHttpClient(boolean useKey) throws WxPayException {
+    return useKey ? this.getKeyHttpClientPool().getHttpClient() : this.getHttpClientPool().getHttpClient();
+  }
+
+  private WxPayHttpClientPool getHttpClientPool() {
+    WxPayHttpClientPool pool = this.httpClientPool;
+    if (pool == null) {
+      synchronized (this) {
+        pool = this.httpClientPool;
+        if (pool == null) {
+          this.httpClientPool = pool = new WxPayHttpClientPool(this.getConfig(), null);
+        }
+      }
     }
+    return pool;
+  }
 
-    if (StringUtils.isNotBlank(this.getConfig().getHttpProxyHost()) && this.getConfig().getHttpProxyPort() > 0) {
-      if (StringUtils.isEmpty(this.getConfig().getHttpProxyUsername())) {
-        this.getConfig().setHttpProxyUsername("whatever");
+  private WxPayHttpClientPool getKeyHttpClientPool() throws WxPayException {
+    SSLContext sslContext = this.getConfig().getKeySslContext();
+    WxPayHttpClientPool pool = this.keyHttpClientPool;
+    if (pool == null || this.keyHttpClientPoolSslContext != sslContext) {
+      synchronized (this) {
+        pool = this.keyHttpClientPool;
+        if (pool == null || this.keyHttpClientPoolSslContext != sslContext) {
+          // 商户证书已变化，进行中的请求继续使用旧连接池直到完成
+          this.retire(pool);
+          pool = new WxPayHttpClientPool(this.getConfig(), this.createSSLConnectionSocketFactory(sslContext));
+          this.keyHttpClientPoolSslContext = sslContext;
+          this.keyHttpClientPool = pool;
+        }
       }
+    }
+    return pool;
+  }
+
+  /**
+   * 获取连接池统计信息，连接池尚未创建时返回null.
+   *
+   * @param useKey 是否为带商户证书的连接池
+   * @return 连接池统计信息
+   */
+  public WxPayHttpClientPool.Stats getHttpClientPoolStats(boolean useKey) {
+    WxPayHttpClientPool pool = useKey ? this.keyHttpClientPool : this.httpClientPool;
+    return pool == null ? null : pool.getStats();
+  }
 
-      // 使用代理服务器 需要用户认证的代理服务器
-      CredentialsProvider provider = new BasicCredentialsProvider();
-      provider.setCredentials(new AuthScope(this.getConfig().getHttpProxyHost(), this.getConfig().getHttpProxyPort()),
-        new UsernamePasswordCredentials(this.getConfig().getHttpProxyUsername(), this.getConfig().getHttpProxyPassword()));
-      httpClientBuilder.setDefaultCredentialsProvider(provider);
-      httpClientBuilder.setProxy(new HttpHost(this.getConfig().getHttpProxyHost(), this.getConfig().getHttpProxyPort()));
+  /**
+   * 设置配置后停用之前配置对应的连接池，进行中的请求完成后关闭，新的连接池在下次请求时按新配置创建.
+   */
+  @Override
+  public void setConfig(WxPayConfig config) {
+    synchronized (this) {
+      super.setConfig(config);
+      this.retire(this.httpClientPool);
+      this.retire(this.keyHttpClientPool);
+      this.httpClientPool = null;
+      this.keyHttpClientPool = null;
+      this.keyHttpClientPoolSslContext = null;
+    }
+  }
+
+  /**
+   * 停用连接池，之前停用的连接池中已经没有请求的一并关闭，调用时需持有this的锁.
+   */
+  private void retire(WxPayHttpClientPool pool) {
+    Iterator<WxPayHttpClientPool> iterator = this.retiredHttpClientPools.iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().closeIfDrained()) {
+        iterator.remove();
+      }
+    }
+
+    if (pool != null) {
+      pool.retire();
+      this.retiredHttpClientPools.add(pool);
+    }
+  }
+
+  /**
+   * 关闭所有连接池，释放其中的所有连接，应在不再发起请求时调用.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      IOUtils.closeQuietly(this.httpClientPool);
+      IOUtils.closeQuietly(this.keyHttpClientPool);
+      for (WxPayHttpClientPool pool : this.retiredHttpClientPools) {
+        IOUtils.closeQuietly(pool);
+      }
+      this.httpClientPool = null;
+      this.keyHttpClientPool = null;
+      this.keyHttpClientPoolSslContext = null;
+      this.retiredHttpClientPools.clear();
     }
-    return httpClientBuilder;
   }
 
   private HttpPost createHttpPost(String url, String requestStr) {
@@ -231,12 +342,12 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
     return httpPost;
   }
 
-  private HttpEntity getFileHttpEntity(String fileName, File file, String meta) {
+  private HttpEntity getFileHttpEntity(MediaUploadSource source, String meta) {
     MultipartEntityBuilder multipartEntityBuilder = MultipartEntityBuilder.create().setMode(HttpMultipartMode.RFC6532);
     multipartEntityBuilder.setBoundary("boundary");
     multipartEntityBuilder.setCharset(Charset.forName("UTF-8"));
     multipartEntityBuilder.addTextBody("meta", meta, ContentType.APPLICATION_JSON);
-    multipartEntityBuilder.addBinaryBody("file", file, ContentType.create("image/jpg"), fileName);
+    multipartEntityBuilder.addPart("file", new MediaUploadSourceBody(source, ContentType.create("image/jpg")));
     return multipartEntityBuilder.build();
   }
 
@@ -273,15 +384,9 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
     return httpGet;
   }
 
-  private void initSSLContext(HttpClientBuilder httpClientBuilder) throws WxPayException {
-    SSLContext sslContext = this.getConfig().getSslContext();
-    if (null == sslContext) {
-      sslContext = this.getConfig().initSSLContext();
-    }
-
-    SSLConnectionSocketFactory connectionSocketFactory = new SSLConnectionSocketFactory(sslContext,
+  private SSLConnectionSocketFactory createSSLConnectionSocketFactory(SSLContext sslContext) {
+    return new SSLConnectionSocketFactory(sslContext,
       new String[]{"TLSv1"}, null, new DefaultHostnameVerifier());
-    httpClientBuilder.setSSLSocketFactory(connectionSocketFactory);
   }
 
   private String getAuthorization(String requestMethod, String urlSuffix, String body) throws WxPayException{
@@ -289,15 +394,34 @@ public class WxPayServiceApacheHttpImpl extends BaseWxPayServiceImpl {
     String nonceStr = String.valueOf(System.currentTimeMillis());
     // 构建签名参数
     String buildSignMessage = V3Utils.buildSignMessage(requestMethod, urlSuffix, timestamp, nonceStr, body);
-    // 获取商户私钥
-    String key = this.config.getPrivateKeyStr();
-    // 生成签名
-    String signature = V3Utils.encryptByPrivateKey(buildSignMessage, key);
+    // 生成签名，商户私钥由配置缓存
+    String signature = V3Utils.encryptByPrivateKey(buildSignMessage, this.config.getPrivateKey());
     // 根据平台规则生成请求头 authorization
     String authType = "WECHATPAY2-SHA256-RSA2048";
     return V3Utils.getAuthorization(this.config.getMchId(), this.config.getSerialNo(), nonceStr, String.valueOf(timestamp), signature, authType);
   }
 
+  /**
+   * 设置了平台证书验签器时验证V3应答签名，下载平台证书的接口本身不做验证.
+   */
+  private void verifyV3Response(String urlSuffix, CloseableHttpResponse response, String responseString)
+    throws WxPayException {
+    if (this.v3CertificateVerifier == null || V3_CERTIFICATES_URL.equals(urlSuffix)) {
+      return;
+    }
+
+    if (!this.v3CertificateVerifier.verify(this.getHeaderValue(response, "Wechatpay-Serial"),
+      this.getHeaderValue(response, "Wechatpay-Timestamp"), this.getHeaderValue(response, "Wechatpay-Nonce"),
+      responseString, this.getHeaderValue(response, "Wechatpay-Signature"))) {
+      throw new WxPayException("应答签名验证失败");
+    }
+  }
+
+  private String getHeaderValue(CloseableHttpResponse response, String name) {
+    Header header = response.getFirstHeader(name);
+    return header == null ? null : header.getValue();
+  }
+
   private Map<String, String> getHeadersV3(String authorization) {
     Map<String, String> headers = new HashMap<>();
     headers.put("Charset", "UTF-8");
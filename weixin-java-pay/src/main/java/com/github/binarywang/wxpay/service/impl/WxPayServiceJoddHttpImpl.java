@@ -21,6 +21,7 @@ import jodd.http.ProxyInfo.ProxyType;
 import jodd.http.net.SSLSocketHttpConnectionProvider;
 import jodd.http.net.SocketHttpConnectionProvider;
 import jodd.util.Base64;
+import me.chanjar.weixin.common.util.http.MediaUploadSource;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.net.ssl.SSLContext;
@@ -79,6 +80,11 @@ public class WxPayServiceJoddHttpImpl extends BaseWxPayServiceImpl {
     return null;
   }
 
+  @Override
+  public String postFileV3(String urlSuffix, MediaUploadSource source) throws WxPayException {
+    return null;
+  }
+
   @Override
   public String getV3(String urlSuffix) throws WxPayException {
     return null;
@@ -92,10 +98,7 @@ public class WxPayServiceJoddHttpImpl extends BaseWxPayServiceImpl {
       .bodyText(requestStr);
 
     if (useKey) {
-      SSLContext sslContext = this.getConfig().getSslContext();
-      if (null == sslContext) {
-        sslContext = this.getConfig().initSSLContext();
-      }
+      SSLContext sslContext = this.getConfig().getKeySslContext();
       final SSLSocketHttpConnectionProvider provider = new SSLSocketHttpConnectionProvider(sslContext);
       request.withConnectionProvider(provider);
     }
@@ -0,0 +1,224 @@
+package com.github.binarywang.wxpay.service.impl;
+
+import com.github.binarywang.wxpay.bean.result.WxPayV3CertificatesResult;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.service.WxPayService;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <pre>
+ * 微信支付V3平台证书验签器.
+ * 后台定时下载平台证书，并以证书序列号为key保存在不可变的map中，刷新时整体替换，
+ * 验签时只读取当前的map，不加锁也不会在请求线程中下载证书.
+ * 遇到未知序列号的证书时验签失败，同时在后台触发一次刷新.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxPayV3CertificateVerifier implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(WxPayV3CertificateVerifier.class);
+
+  /**
+   * 遇到未知证书序列号时触发刷新的最小间隔，避免伪造的序列号导致频繁下载证书.
+   */
+  private static final long MIN_ON_DEMAND_REFRESH_INTERVAL = 60 * 1000L;
+
+  private static final ThreadLocal<Signature> SHA256_WITH_RSA = new ThreadLocal<Signature>() {
+    @Override
+    protected Signature initialValue() {
+      try {
+        return Signature.getInstance("SHA256WithRSA");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  };
+
+  private final WxPayService payService;
+  private final long refreshPeriod;
+  private final ScheduledExecutorService scheduler;
+  private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+  private volatile long lastRefreshTime;
+
+  /**
+   * 证书序列号->平台证书，每次刷新整体替换.
+   */
+  private volatile Map<String, X509Certificate> certificates = Collections.emptyMap();
+
+  /**
+   * 默认每12小时刷新一次平台证书.
+   *
+   * @param payService 微信支付服务
+   */
+  public WxPayV3CertificateVerifier(WxPayService payService) {
+    this(payService, TimeUnit.HOURS.toMillis(12));
+  }
+
+  /**
+   * @param payService    微信支付服务
+   * @param refreshPeriod 刷新平台证书的间隔时间（毫秒）
+   */
+  public WxPayV3CertificateVerifier(WxPayService payService, long refreshPeriod) {
+    this.payService = payService;
+    this.refreshPeriod = refreshPeriod;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "WxPayV3CertificateVerifier");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 同步下载一次平台证书，然后开始后台定时刷新.
+   *
+   * @throws WxPayException 首次下载失败时抛出
+   */
+  public void start() throws WxPayException {
+    this.refresh();
+    this.scheduler.scheduleWithFixedDelay(this::refreshQuietly, this.refreshPeriod, this.refreshPeriod,
+      TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 下载平台证书并替换当前的证书map.
+   *
+   * @throws WxPayException 下载或解密证书失败时抛出
+   */
+  public void refresh() throws WxPayException {
+    WxPayV3CertificatesResult result = this.payService.v3GetCertificates();
+    if (result.getData() == null || result.getData().length == 0) {
+      throw new WxPayException("未获取到平台证书");
+    }
+
+    Map<String, X509Certificate> newCertificates = new HashMap<>(result.getData().length);
+    for (WxPayV3CertificatesResult.Certificate certificate : result.getData()) {
+      X509Certificate x509Certificate = this.payService.getConfig()
+        .getPlatformCert(certificate.getEncryptCertificate());
+      String serialNo = StringUtils.isNotBlank(certificate.getSerialNo()) ? certificate.getSerialNo()
+        : this.payService.getConfig().getSerialNo(x509Certificate);
+      newCertificates.put(normalizeSerialNo(serialNo), x509Certificate);
+    }
+
+    this.certificates = Collections.unmodifiableMap(newCertificates);
+    this.lastRefreshTime = System.currentTimeMillis();
+  }
+
+  private void refreshQuietly() {
+    this.refreshScheduled.set(false);
+    try {
+      this.refresh();
+    } catch (Exception e) {
+      this.lastRefreshTime = System.currentTimeMillis();
+      log.error("刷新微信支付平台证书失败", e);
+    }
+  }
+
+  /**
+   * 根据序列号获取平台证书.
+   *
+   * @param serialNo 证书序列号
+   * @return 平台证书，不存在时返回null
+   */
+  public X509Certificate getCertificate(String serialNo) {
+    return serialNo == null ? null : this.certificates.get(normalizeSerialNo(serialNo));
+  }
+
+  /**
+   * 序列号不区分大小写，并忽略前导0，使Wechatpay-Serial中的40位序列号与证书中解析出的序列号一致.
+   */
+  private static String normalizeSerialNo(String serialNo) {
+    String normalized = StringUtils.stripStart(serialNo.trim().toUpperCase(), "0");
+    return normalized.isEmpty() ? "0" : normalized;
+  }
+
+  /**
+   * 获取当前任意一个可用的平台证书，用于敏感信息加密.
+   *
+   * @return 平台证书，尚未下载时返回null
+   */
+  public X509Certificate getLatestCertificate() {
+    X509Certificate latest = null;
+    for (X509Certificate certificate : this.certificates.values()) {
+      if (latest == null || certificate.getNotAfter().after(latest.getNotAfter())) {
+        latest = certificate;
+      }
+    }
+    return latest;
+  }
+
+  /**
+   * <pre>
+   * 验证应答或者回调通知的签名.
+   * 验签串为：应答时间戳\n应答随机串\n应答报文主体\n
+   * 对应请求头：Wechatpay-Serial、Wechatpay-Timestamp、Wechatpay-Nonce、Wechatpay-Signature
+   * </pre>
+   *
+   * @param serialNo  平台证书序列号
+   * @param timestamp 应答时间戳
+   * @param nonce     应答随机串
+   * @param body      应答报文主体
+   * @param signature Base64编码的签名
+   * @return 验签是否通过
+   */
+  public boolean verify(String serialNo, String timestamp, String nonce, String body, String signature) {
+    if (StringUtils.isAnyBlank(serialNo, timestamp, nonce, signature)) {
+      return false;
+    }
+
+    X509Certificate certificate = this.getCertificate(serialNo);
+    if (certificate == null) {
+      this.scheduleRefresh();
+      return false;
+    }
+
+    try {
+      Signature verifier = SHA256_WITH_RSA.get();
+      verifier.initVerify(certificate.getPublicKey());
+      verifier.update((timestamp + "\n" + nonce + "\n" + StringUtils.defaultString(body) + "\n")
+        .getBytes(StandardCharsets.UTF_8));
+      return verifier.verify(Base64.getDecoder().decode(signature));
+    } catch (Exception e) {
+      log.warn("微信支付V3签名验证异常：{}", e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * 在后台尽快刷新一次证书，已有待执行的刷新或者距上次刷新不足一分钟时不重复提交.
+   */
+  private void scheduleRefresh() {
+    if (System.currentTimeMillis() - this.lastRefreshTime < MIN_ON_DEMAND_REFRESH_INTERVAL) {
+      return;
+    }
+
+    if (this.refreshScheduled.compareAndSet(false, true)) {
+      try {
+        this.scheduler.execute(this::refreshQuietly);
+      } catch (Exception e) {
+        this.refreshScheduled.set(false);
+        log.warn("提交平台证书刷新任务失败：{}", e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    this.scheduler.shutdownNow();
+  }
+}
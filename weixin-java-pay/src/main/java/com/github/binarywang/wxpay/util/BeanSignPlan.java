@@ -0,0 +1,228 @@
+package com.github.binarywang.wxpay.util;
+
+import com.github.binarywang.wxpay.bean.request.BaseWxPayRequest;
+import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * <pre>
+ * xml bean的签名计划.
+ * 每个类只在第一次使用时解析一次字段，按照参数名（@XStreamAlias的值，没有时为变量名）排序，
+ * 并缓存各字段的MethodHandle，之后签名时按顺序遍历一次即可拼接出待签名串，不再反射取值，也不再构造map和TreeMap.
+ * 字段的选取规则与之前的{@link SignUtils#xmlBean2Map(Object)}保持一致.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+final class BeanSignPlan {
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private static final ClassValue<BeanSignPlan> PLANS = new ClassValue<BeanSignPlan>() {
+    @Override
+    protected BeanSignPlan computeValue(Class<?> type) {
+      return new BeanSignPlan(type);
+    }
+  };
+
+  /**
+   * 按参数名排序的参数列表.
+   */
+  private final Param[] params;
+
+  private BeanSignPlan(Class<?> type) {
+    List<Field> fields = new ArrayList<>(Arrays.asList(type.getDeclaredFields()));
+    if (type.getSuperclass() != null) {
+      fields.addAll(Arrays.asList(type.getSuperclass().getDeclaredFields()));
+      if (type.getSuperclass().getSuperclass() == BaseWxPayRequest.class) {
+        fields.addAll(Arrays.asList(BaseWxPayRequest.class.getDeclaredFields()));
+      }
+
+      if (type.getSuperclass().getSuperclass() == BaseWxPayResult.class) {
+        fields.addAll(Arrays.asList(BaseWxPayResult.class.getDeclaredFields()));
+      }
+    }
+
+    // 同名参数以最后一个不为null的字段值为准，故而逆序保存
+    Map<String, List<MethodHandle>> getters = new TreeMap<>();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    for (Field field : fields) {
+      String name;
+      if (field.isAnnotationPresent(XStreamAlias.class)) {
+        name = field.getAnnotation(XStreamAlias.class).value();
+      } else if (!Modifier.isStatic(field.getModifiers())) {
+        name = field.getName();
+      } else {
+        //忽略掉静态成员变量
+        continue;
+      }
+
+      List<MethodHandle> handles = getters.get(name);
+      if (handles == null) {
+        handles = new ArrayList<>(1);
+        getters.put(name, handles);
+      }
+      handles.add(0, toGetter(lookup, field));
+    }
+
+    this.params = new Param[getters.size()];
+    int i = 0;
+    for (Map.Entry<String, List<MethodHandle>> entry : getters.entrySet()) {
+      this.params[i++] = new Param(entry.getKey(), entry.getValue().toArray(new MethodHandle[0]),
+        !SignUtils.NO_SIGN_PARAMS.contains(entry.getKey()));
+    }
+  }
+
+  private static MethodHandle toGetter(MethodHandles.Lookup lookup, Field field) {
+    try {
+      field.setAccessible(true);
+      MethodHandle getter = lookup.unreflectGetter(field);
+      if (Modifier.isStatic(field.getModifiers())) {
+        getter = MethodHandles.dropArguments(getter, 0, Object.class);
+      }
+      return getter.asType(GETTER_TYPE);
+    } catch (SecurityException | IllegalAccessException e) {
+      throw new IllegalStateException("无法读取字段" + field, e);
+    }
+  }
+
+  /**
+   * 获取指定类的签名计划.
+   *
+   * @param type bean的类型
+   * @return 签名计划
+   */
+  static BeanSignPlan of(Class<?> type) {
+    return PLANS.get(type);
+  }
+
+  /**
+   * 按参数名顺序拼接待签名串，不包含最后的key=签名Key.
+   *
+   * @param toSign        待签名串
+   * @param bean          bean对象
+   * @param extraParams   bean属性之外的额外参数，与bean属性同名时以额外参数为准，可为null
+   * @param ignoredParams 签名时需要忽略的特殊参数，可为null
+   */
+  void appendSignString(StringBuilder toSign, Object bean, Map<String, String> extraParams, String[] ignoredParams) {
+    Iterator<Map.Entry<String, String>> extras = extraParams == null || extraParams.isEmpty()
+      ? Collections.<Map.Entry<String, String>>emptyIterator()
+      : new TreeMap<>(extraParams).entrySet().iterator();
+    Map.Entry<String, String> extra = extras.hasNext() ? extras.next() : null;
+
+    for (Param param : this.params) {
+      while (extra != null && extra.getKey().compareTo(param.name) < 0) {
+        appendParam(toSign, extra.getKey(), extra.getValue(), ignoredParams);
+        extra = extras.hasNext() ? extras.next() : null;
+      }
+
+      if (extra != null && extra.getKey().equals(param.name)) {
+        appendParam(toSign, extra.getKey(), extra.getValue(), ignoredParams);
+        extra = extras.hasNext() ? extras.next() : null;
+        continue;
+      }
+
+      if (param.signed && !ArrayUtils.contains(ignoredParams, param.name)) {
+        String value = param.value(bean);
+        if (StringUtils.isNotEmpty(value)) {
+          toSign.append(param.name).append('=').append(value).append('&');
+        }
+      }
+    }
+
+    while (extra != null) {
+      appendParam(toSign, extra.getKey(), extra.getValue(), ignoredParams);
+      extra = extras.hasNext() ? extras.next() : null;
+    }
+  }
+
+  private static void appendParam(StringBuilder toSign, String name, String value, String[] ignoredParams) {
+    if (StringUtils.isNotEmpty(value) && !ArrayUtils.contains(ignoredParams, name)
+      && !SignUtils.NO_SIGN_PARAMS.contains(name)) {
+      toSign.append(name).append('=').append(value).append('&');
+    }
+  }
+
+  /**
+   * 获取指定参数的值.
+   *
+   * @param bean bean对象
+   * @param name 参数名
+   * @return 参数值，不存在或者为null时返回null
+   */
+  String getValue(Object bean, String name) {
+    int low = 0;
+    int high = this.params.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = this.params[mid].name.compareTo(name);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return this.params[mid].value(bean);
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * 将bean转换为以参数名为key的map，值为null的参数不会放入map中.
+   *
+   * @param bean bean对象
+   * @return map对象
+   */
+  Map<String, String> toMap(Object bean) {
+    Map<String, String> result = new HashMap<>(this.params.length * 2);
+    for (Param param : this.params) {
+      String value = param.value(bean);
+      if (value != null) {
+        result.put(param.name, value);
+      }
+    }
+
+    return result;
+  }
+
+  private static final class Param {
+    private final String name;
+    private final MethodHandle[] getters;
+    /**
+     * 是否参与签名，即不在{@link SignUtils#NO_SIGN_PARAMS}中.
+     */
+    private final boolean signed;
+
+    private Param(String name, MethodHandle[] getters, boolean signed) {
+      this.name = name;
+      this.getters = getters;
+      this.signed = signed;
+    }
+
+    private String value(Object bean) {
+      for (MethodHandle getter : this.getters) {
+        Object value;
+        try {
+          value = (Object) getter.invokeExact(bean);
+        } catch (Throwable e) {
+          throw new IllegalStateException("读取参数" + this.name + "失败", e);
+        }
+
+        if (value != null) {
+          return value.toString();
+        }
+      }
+
+      return null;
+    }
+  }
+}
@@ -0,0 +1,417 @@
+package com.github.binarywang.wxpay.util;
+
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.google.common.collect.Maps;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <pre>
+ * 二维码图片生成器，用于批量生成扫码支付二维码.
+ * 生成的图片与{@link com.github.binarywang.utils.qrcode.QrcodeUtils}一致：纠错等级H，logo缩放至边长的1/5居中，并加红色边框.
+ * 与QrcodeUtils每次都读取logo文件、经临时文件写出图片不同：
+ * 1. logo只在创建时解码一次，并按二维码边长缓存缩放好的logo；
+ * 2. 复用图像缓冲区和图片编码器，直接写入调用方的输出流，png格式使用针对二维码优化的编码方式，
+ *    单个生成时从少量空闲缓冲区中借用，不会在调用方的每个线程上各留一份；
+ * 3. {@link #renderAll(List, int, int, Sink)}在多个线程中并行生成一批二维码.
+ * 实例是线程安全的，同一logo应共用一个实例.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@Slf4j
+public class QrcodeRenderer {
+  private static final Map<EncodeHintType, Object> HINTS;
+  private static final String PNG = "png";
+  private static final int LOGO_PART = 5;
+  private static final int LOGO_BORDER = 2;
+  private static final Color LOGO_BORDER_COLOR = Color.RED;
+  private static final int BLACK = 0xFF000000;
+  private static final int WHITE = 0xFFFFFFFF;
+  /**
+   * 单个生成时保留的空闲缓冲区数量上限，400边长的缓冲区约640KB.
+   */
+  private static final int MAX_IDLE_CANVASES = 2;
+
+  static {
+    Map<EncodeHintType, Object> hints = Maps.newEnumMap(EncodeHintType.class);
+    hints.put(EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
+    hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+    HINTS = Collections.unmodifiableMap(hints);
+  }
+
+  private final BufferedImage logo;
+  private final String formatName;
+  private final Map<Long, BufferedImage> scaledLogos = new ConcurrentHashMap<>();
+  private final BlockingQueue<Canvas> idleCanvases = new ArrayBlockingQueue<>(MAX_IDLE_CANVASES);
+
+  /**
+   * 生成PNG格式的图片.
+   *
+   * @param logoFile logo图片文件，可以为空
+   */
+  public QrcodeRenderer(File logoFile) throws WxPayException {
+    this(logoFile, PNG);
+  }
+
+  /**
+   * @param logoFile   logo图片文件，可以为空
+   * @param formatName 图片格式，如png、jpg
+   */
+  public QrcodeRenderer(File logoFile, String formatName) throws WxPayException {
+    if (logoFile != null && !logoFile.exists()) {
+      throw new IllegalArgumentException("请提供正确的logo文件！");
+    }
+    if (!PNG.equals(formatName) && !ImageIO.getImageWritersByFormatName(formatName).hasNext()) {
+      throw new IllegalArgumentException("不支持的图片格式：" + formatName);
+    }
+
+    this.formatName = formatName;
+    try {
+      this.logo = logoFile == null ? null : ImageIO.read(logoFile);
+    } catch (IOException e) {
+      throw new WxPayException("读取logo文件失败：" + logoFile, e);
+    }
+    if (logoFile != null && this.logo == null) {
+      throw new IllegalArgumentException("无法识别的logo文件：" + logoFile);
+    }
+  }
+
+  /**
+   * 生成二维码图片.
+   *
+   * @param content    二维码内容
+   * @param sideLength 边长
+   * @return 图片内容
+   */
+  public byte[] render(String content, int sideLength) throws WxPayException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(sideLength * sideLength / 8);
+    this.render(content, sideLength, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * 生成二维码图片并写入输出流，输出流不会被关闭.
+   *
+   * @param content    二维码内容
+   * @param sideLength 边长
+   * @param out        输出流
+   */
+  public void render(String content, int sideLength, OutputStream out) throws WxPayException {
+    BitMatrix matrix = this.encode(content, sideLength);
+    Canvas canvas = this.canvas(this.idleCanvases.poll(), matrix);
+    try {
+      this.paint(canvas, matrix, content, out);
+    } finally {
+      if (!this.idleCanvases.offer(canvas)) {
+        canvas.dispose();
+      }
+    }
+  }
+
+  private BitMatrix encode(String content, int sideLength) throws WxPayException {
+    try {
+      return new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, sideLength, sideLength, HINTS);
+    } catch (WriterException | IllegalArgumentException e) {
+      throw new WxPayException("生成二维码失败：" + content, e);
+    }
+  }
+
+  private void paint(Canvas canvas, BitMatrix matrix, String content, OutputStream out) throws WxPayException {
+    canvas.draw(matrix);
+    if (this.logo != null) {
+      BufferedImage scaledLogo = this.scaledLogo(canvas.image.getWidth(), canvas.image.getHeight());
+      canvas.graphics.drawImage(scaledLogo, (canvas.image.getWidth() - scaledLogo.getWidth()) / 2,
+        (canvas.image.getHeight() - scaledLogo.getHeight()) / 2, null);
+    }
+
+    try {
+      canvas.write(out);
+    } catch (IOException e) {
+      throw new WxPayException("写入二维码图片失败：" + content, e);
+    }
+  }
+
+  /**
+   * <pre>
+   * 使用parallelism个线程并行生成一批二维码，每生成一个即写入sink，全部生成后返回.
+   * 每个线程使用各自的缓冲区，生成结束后即释放.
+   * 单个二维码失败不影响其他二维码，全部结束后如有失败则抛出异常，异常中包含失败数量及第一个失败的原因.
+   * </pre>
+   *
+   * @param contents    二维码内容列表
+   * @param sideLength  边长
+   * @param parallelism 并行线程数
+   * @param sink        图片的输出目标，会被多个线程同时调用
+   */
+  public void renderAll(final List<String> contents, final int sideLength, int parallelism, final Sink sink)
+    throws WxPayException {
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicInteger failures = new AtomicInteger();
+    final AtomicReference<Exception> firstFailure = new AtomicReference<>();
+    int threads = Math.max(1, Math.min(parallelism, contents.size()));
+    ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "wxpay-qrcode-renderer");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      for (int i = 0; i < threads; i++) {
+        executor.execute(() -> {
+          Canvas canvas = null;
+          try {
+            for (int index = next.getAndIncrement(); index < contents.size(); index = next.getAndIncrement()) {
+              String content = contents.get(index);
+              try (OutputStream out = sink.open(index, content)) {
+                BitMatrix matrix = this.encode(content, sideLength);
+                canvas = this.canvas(canvas, matrix);
+                this.paint(canvas, matrix, content, out);
+              } catch (Exception e) {
+                failures.incrementAndGet();
+                firstFailure.compareAndSet(null, e);
+                log.warn("生成第{}个二维码失败：{}", index, content, e);
+              }
+            }
+          } finally {
+            if (canvas != null) {
+              canvas.dispose();
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+        log.debug("已生成{}个二维码，共{}个", Math.min(next.get(), contents.size()), contents.size());
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new WxPayException("批量生成二维码被中断", e);
+    }
+
+    if (failures.get() > 0) {
+      throw new WxPayException(failures.get() + "个二维码生成失败", firstFailure.get());
+    }
+  }
+
+  /**
+   * 尺寸与二维码一致时复用已有的缓冲区，否则释放后重新分配.
+   */
+  private Canvas canvas(Canvas canvas, BitMatrix matrix) {
+    int width = matrix.getWidth();
+    int height = matrix.getHeight();
+    if (canvas != null && canvas.image.getWidth() == width && canvas.image.getHeight() == height) {
+      return canvas;
+    }
+    if (canvas != null) {
+      canvas.dispose();
+    }
+    ImageWriter writer = PNG.equals(this.formatName) ? null
+      : ImageIO.getImageWritersByFormatName(this.formatName).next();
+    return new Canvas(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), writer);
+  }
+
+  /**
+   * 空闲缓冲区的数量，用于测试.
+   */
+  int idleCanvasCount() {
+    return this.idleCanvases.size();
+  }
+
+  /**
+   * 按二维码边长缩放logo并画好边框，与QrcodeUtils的效果一致，边框向外超出logo的部分一并保留.
+   */
+  private BufferedImage scaledLogo(final int width, final int height) {
+    return this.scaledLogos.computeIfAbsent(((long) width << 32) | height, k -> {
+      int logoWidth = width / LOGO_PART;
+      int logoHeight = height / LOGO_PART;
+      int pad = LOGO_BORDER / 2;
+      BufferedImage image = new BufferedImage(logoWidth + 2 * pad, logoHeight + 2 * pad, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D graphics = image.createGraphics();
+      try {
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        graphics.drawImage(this.logo, pad, pad, logoWidth, logoHeight, null);
+        graphics.setStroke(new BasicStroke(LOGO_BORDER));
+        graphics.setColor(LOGO_BORDER_COLOR);
+        graphics.drawRect(pad, pad, logoWidth, logoHeight);
+      } finally {
+        graphics.dispose();
+      }
+      return image;
+    });
+  }
+
+  /**
+   * 二维码图片的输出目标.
+   */
+  public interface Sink {
+    /**
+     * 打开第index个二维码的输出流，写入完成后由生成器关闭.
+     *
+     * @param index   二维码在列表中的下标
+     * @param content 二维码内容
+     * @return 输出流
+     * @throws IOException 打开失败时抛出，该二维码计为失败
+     */
+    OutputStream open(int index, String content) throws IOException;
+  }
+
+  /**
+   * 图像缓冲区及编码器，同一时刻只被一个线程使用.
+   */
+  private static class Canvas {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int PNG_FILTER_UP = 2;
+
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final Graphics2D graphics;
+    /**
+     * png格式时为null，使用{@link #writePng(OutputStream)}.
+     */
+    private final ImageWriter writer;
+    private Deflater deflater;
+    private byte[] row;
+    private byte[] buffer;
+    private ByteArrayOutputStream compressed;
+    private CRC32 crc;
+
+    private Canvas(BufferedImage image, ImageWriter writer) {
+      this.image = image;
+      this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+      this.graphics = image.createGraphics();
+      this.writer = writer;
+      if (writer == null) {
+        this.deflater = new Deflater();
+        this.row = new byte[1 + image.getWidth() * 3];
+        this.buffer = new byte[8192];
+        this.compressed = new ByteArrayOutputStream(8192);
+        this.crc = new CRC32();
+      }
+    }
+
+    private void draw(BitMatrix matrix) {
+      int width = matrix.getWidth();
+      int height = matrix.getHeight();
+      for (int y = 0; y < height; y++) {
+        int offset = y * width;
+        for (int x = 0; x < width; x++) {
+          this.pixels[offset + x] = matrix.get(x, y) ? BLACK : WHITE;
+        }
+      }
+    }
+
+    private void write(OutputStream out) throws IOException {
+      if (this.writer == null) {
+        this.writePng(out);
+        return;
+      }
+
+      // 不使用ImageIO.write，避免每次查找编码器以及默认的磁盘缓存
+      try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+        this.writer.setOutput(output);
+        this.writer.write(null, new IIOImage(this.image, null, null), this.writer.getDefaultWriteParam());
+      } finally {
+        this.writer.reset();
+      }
+    }
+
+    /**
+     * <pre>
+     * 输出24位真彩色png.
+     * JDK自带的png编码器每行都尝试所有过滤方式，并使用最高压缩级别，对二维码这类大图较慢.
+     * 二维码的模块放大后连续多行完全相同，统一使用Up过滤后这些行全部为0，默认压缩级别即可得到同样大小的文件.
+     * </pre>
+     */
+    private void writePng(OutputStream out) throws IOException {
+      int width = this.image.getWidth();
+      int height = this.image.getHeight();
+      this.deflater.reset();
+      this.compressed.reset();
+      this.row[0] = PNG_FILTER_UP;
+      for (int y = 0; y < height; y++) {
+        int offset = y * width;
+        for (int x = 0, i = 1; x < width; x++) {
+          int pixel = this.pixels[offset + x];
+          int above = y == 0 ? 0 : this.pixels[offset - width + x];
+          this.row[i++] = (byte) ((pixel >> 16) - (above >> 16));
+          this.row[i++] = (byte) ((pixel >> 8) - (above >> 8));
+          this.row[i++] = (byte) (pixel - above);
+        }
+        this.deflater.setInput(this.row);
+        while (!this.deflater.needsInput()) {
+          this.compressed.write(this.buffer, 0, this.deflater.deflate(this.buffer));
+        }
+      }
+      this.deflater.finish();
+      while (!this.deflater.finished()) {
+        this.compressed.write(this.buffer, 0, this.deflater.deflate(this.buffer));
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(13);
+      header.putInt(width).putInt(height).put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+      out.write(PNG_SIGNATURE);
+      this.writeChunk(out, "IHDR", header.array());
+      this.writeChunk(out, "IDAT", this.compressed.toByteArray());
+      this.writeChunk(out, "IEND", new byte[0]);
+    }
+
+    private void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+      byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+      this.crc.reset();
+      this.crc.update(typeBytes);
+      this.crc.update(data);
+      out.write(ByteBuffer.allocate(8).putInt(data.length).put(typeBytes).array());
+      out.write(data);
+      out.write(ByteBuffer.allocate(4).putInt((int) this.crc.getValue()).array());
+    }
+
+    private void dispose() {
+      this.graphics.dispose();
+      if (this.writer != null) {
+        this.writer.dispose();
+      }
+      if (this.deflater != null) {
+        this.deflater.end();
+      }
+    }
+  }
+
+}
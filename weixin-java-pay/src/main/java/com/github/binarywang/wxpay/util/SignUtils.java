@@ -1,18 +1,13 @@
 package com.github.binarywang.wxpay.util;
 
 import com.github.binarywang.wxpay.bean.request.BaseWxPayRequest;
-import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
 import com.github.binarywang.wxpay.constant.WxPayConstants.SignType;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.thoughtworks.xstream.annotations.XStreamAlias;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.util.*;
 
 /**
@@ -29,7 +24,22 @@ public class SignUtils {
   /**
    * 签名的时候不携带的参数
    */
-  private static List<String> NO_SIGN_PARAMS = Lists.newArrayList("sign", "key", "xmlString", "xmlDoc", "couponList");
+  static final List<String> NO_SIGN_PARAMS = Lists.newArrayList("sign", "key", "xmlString", "xmlDoc", "couponList");
+
+  /**
+   * 待签名串超过此长度时不再缓存其StringBuilder，避免个别超大请求长期占用内存
+   */
+  private static final int MAX_CACHED_BUILDER_CAPACITY = 16 * 1024;
+
+  /**
+   * 每个线程复用的待签名串StringBuilder
+   */
+  private static final ThreadLocal<StringBuilder> SIGN_STRING_BUILDER = new ThreadLocal<StringBuilder>() {
+    @Override
+    protected StringBuilder initialValue() {
+      return new StringBuilder(512);
+    }
+  };
 
   /**
    * 请参考并使用 {@link #createSign(Object, String, String, String[])}.
@@ -65,18 +75,28 @@ public class SignUtils {
    * @return 签名字符串 string
    */
   public static String createSign(Object xmlBean, String signType, String signKey, String[] ignoredParams) {
-    Map<String, String> map = null;
-
-    if (XmlConfig.fastMode) {
-      if (xmlBean instanceof BaseWxPayRequest) {
-        map = ((BaseWxPayRequest) xmlBean).getSignParams();
-      }
-    }
-    if (map == null) {
-      map = xmlBean2Map(xmlBean);
+    if (XmlConfig.fastMode && xmlBean instanceof BaseWxPayRequest) {
+      return createSign(((BaseWxPayRequest) xmlBean).getSignParams(), signType, signKey, ignoredParams);
     }
 
-    return createSign(map, signType, signKey, ignoredParams);
+    return createSign(xmlBean, null, signType, signKey, ignoredParams);
+  }
+
+  /**
+   * 按照bean所属类预先生成的签名计划进行签名，只遍历一次各属性，不再构造中间map.
+   *
+   * @param xmlBean       Bean里的属性如果存在XML注解，则使用其作为key，否则使用变量名
+   * @param extraParams   bean属性之外需要一起签名的参数，可为null
+   * @param signType      签名类型，如果为空，则默认为MD5
+   * @param signKey       签名Key
+   * @param ignoredParams 签名时需要忽略的特殊参数
+   * @return 签名字符串 string
+   */
+  private static String createSign(Object xmlBean, Map<String, String> extraParams, String signType, String signKey,
+                                   String[] ignoredParams) {
+    StringBuilder toSign = borrowSignStringBuilder();
+    BeanSignPlan.of(xmlBean.getClass()).appendSignString(toSign, xmlBean, extraParams, ignoredParams);
+    return sign(toSign, signType, signKey);
   }
 
   /**
@@ -91,7 +111,7 @@ public class SignUtils {
   public static String createSign(Map<String, String> params, String signType, String signKey, String[] ignoredParams) {
     SortedMap<String, String> sortedMap = new TreeMap<>(params);
 
-    StringBuilder toSign = new StringBuilder();
+    StringBuilder toSign = borrowSignStringBuilder();
     for (String key : sortedMap.keySet()) {
       String value = params.get(key);
       boolean shouldSign = false;
@@ -105,6 +125,21 @@ public class SignUtils {
       }
     }
 
+    return sign(toSign, signType, signKey);
+  }
+
+  private static StringBuilder borrowSignStringBuilder() {
+    StringBuilder toSign = SIGN_STRING_BUILDER.get();
+    if (toSign.capacity() > MAX_CACHED_BUILDER_CAPACITY) {
+      toSign = new StringBuilder(512);
+      SIGN_STRING_BUILDER.set(toSign);
+    }
+
+    toSign.setLength(0);
+    return toSign;
+  }
+
+  private static String sign(StringBuilder toSign, String signType, String signKey) {
     toSign.append("key=").append(signKey);
     if (SignType.HMAC_SHA256.equals(signType)) {
       return me.chanjar.weixin.common.util.SignUtils.createHmacSha256Sign(toSign.toString(), signKey);
@@ -166,7 +201,21 @@ public class SignUtils {
    * @return true - 签名校验成功，false - 签名校验失败
    */
   public static boolean checkSign(Object xmlBean, String signType, String signKey) {
-    return checkSign(xmlBean2Map(xmlBean), signType, signKey);
+    return checkSign(xmlBean, null, signType, signKey);
+  }
+
+  /**
+   * 校验签名是否正确.
+   *
+   * @param xmlBean     Bean需要标记有XML注解
+   * @param extraParams bean属性之外需要一起校验的参数，比如通知中的代金券信息，可为null
+   * @param signType    签名类型，如果为空，则默认为MD5
+   * @param signKey     校验的签名Key
+   * @return true - 签名校验成功，false - 签名校验失败
+   */
+  public static boolean checkSign(Object xmlBean, Map<String, String> extraParams, String signType, String signKey) {
+    String sign = createSign(xmlBean, extraParams, signType, signKey, new String[0]);
+    return sign.equals(BeanSignPlan.of(xmlBean.getClass()).getValue(xmlBean, "sign"));
   }
 
   /**
@@ -189,40 +238,6 @@ public class SignUtils {
    * @return map对象 map
    */
   public static Map<String, String> xmlBean2Map(Object bean) {
-    Map<String, String> result = Maps.newHashMap();
-    List<Field> fields = new ArrayList<>(Arrays.asList(bean.getClass().getDeclaredFields()));
-    fields.addAll(Arrays.asList(bean.getClass().getSuperclass().getDeclaredFields()));
-    if (bean.getClass().getSuperclass().getSuperclass() == BaseWxPayRequest.class) {
-      fields.addAll(Arrays.asList(BaseWxPayRequest.class.getDeclaredFields()));
-    }
-
-    if (bean.getClass().getSuperclass().getSuperclass() == BaseWxPayResult.class) {
-      fields.addAll(Arrays.asList(BaseWxPayResult.class.getDeclaredFields()));
-    }
-
-    for (Field field : fields) {
-      try {
-        boolean isAccessible = field.isAccessible();
-        field.setAccessible(true);
-        if (field.get(bean) == null) {
-          field.setAccessible(isAccessible);
-          continue;
-        }
-
-        if (field.isAnnotationPresent(XStreamAlias.class)) {
-          result.put(field.getAnnotation(XStreamAlias.class).value(), field.get(bean).toString());
-        } else if (!Modifier.isStatic(field.getModifiers())) {
-          //忽略掉静态成员变量
-          result.put(field.getName(), field.get(bean).toString());
-        }
-
-        field.setAccessible(isAccessible);
-      } catch (SecurityException | IllegalArgumentException | IllegalAccessException e) {
-        log.error(e.getMessage(), e);
-      }
-
-    }
-
-    return result;
+    return BeanSignPlan.of(bean.getClass()).toMap(bean);
   }
 }
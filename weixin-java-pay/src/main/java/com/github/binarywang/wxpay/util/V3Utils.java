@@ -9,12 +9,23 @@ import javax.crypto.NoSuchPaddingException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.*;
 
 public class V3Utils {
+  private static final ThreadLocal<java.security.Signature> SHA256_WITH_RSA = new ThreadLocal<java.security.Signature>() {
+    @Override
+    protected java.security.Signature initialValue() {
+      try {
+        return java.security.Signature.getInstance("SHA256WithRSA");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  };
 
   /**
    * 构造签名串
@@ -113,18 +124,32 @@ public class V3Utils {
     try {
       PKCS8EncodedKeySpec priPkcs8 = new PKCS8EncodedKeySpec(Base64.getDecoder().decode(privateKey));
       KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-      PrivateKey priKey = keyFactory.generatePrivate(priPkcs8);
-      java.security.Signature signature = java.security.Signature.getInstance("SHA256WithRSA");
-
-      signature.initSign(priKey);
-      signature.update(data.getBytes("UTF-8"));
-      byte[] signed = signature.sign();
-      return Base64.getEncoder().encodeToString(signed);
+      return encryptByPrivateKey(data, keyFactory.generatePrivate(priPkcs8));
+    } catch (WxPayException e) {
+      throw e;
     } catch (Exception e) {
       throw new WxPayException("签名失败");
     }
   }
 
+  /**
+   * 私钥签名，直接使用私钥对象，每个线程复用同一个Signature实例.
+   * @param data       需要加密的数据
+   * @param privateKey 私钥
+   * @return 加密后的数据
+   * @throws WxPayException
+   */
+  public static String encryptByPrivateKey(String data, PrivateKey privateKey) throws WxPayException {
+    try {
+      java.security.Signature signature = SHA256_WITH_RSA.get();
+      signature.initSign(privateKey);
+      signature.update(data.getBytes(StandardCharsets.UTF_8));
+      return Base64.getEncoder().encodeToString(signature.sign());
+    } catch (Exception e) {
+      throw new WxPayException("签名失败", e);
+    }
+  }
+
   /**
    * 加密数据
    * @param message
@@ -0,0 +1,74 @@
+package com.github.binarywang.wxpay.util;
+
+import com.github.binarywang.wxpay.bean.notify.WxPayOrderNotifyResult;
+import com.github.binarywang.wxpay.converter.WxPayOrderNotifyResultConverter;
+import com.thoughtworks.xstream.XStream;
+import me.chanjar.weixin.common.util.xml.XStreamInitializer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <pre>
+ * 支付相关xml bean的XStream实例缓存.
+ * 之前每次转换xml都会通过{@link XStreamInitializer#getInstance()}创建新的XStream实例并处理注解，
+ * 需要重新构建全部转换器及反射缓存，开销很大. 这里每个类只在第一次使用时创建一次，配置完成后的XStream实例是线程安全的，可以共享.
+ * 与公众号、企业微信等模块的XStreamTransformer类似，特殊的类可以通过{@link #register(Class, XStream)}注册自定义的实例.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class XStreamTransformer {
+  private static final Map<Class<?>, XStream> CLASS_2_XSTREAM_INSTANCE = new ConcurrentHashMap<>();
+
+  static {
+    XStream xstream = XStreamInitializer.getInstance();
+    xstream.processAnnotations(WxPayOrderNotifyResult.class);
+    xstream.registerConverter(new WxPayOrderNotifyResultConverter(xstream.getMapper(), xstream.getReflectionProvider()));
+    register(WxPayOrderNotifyResult.class, xstream);
+  }
+
+  /**
+   * 获取指定类对应的XStream实例，不存在时创建并处理该类的注解.
+   *
+   * @param clz 类型
+   * @return XStream实例
+   */
+  public static XStream getInstance(Class<?> clz) {
+    XStream xstream = CLASS_2_XSTREAM_INSTANCE.get(clz);
+    if (xstream != null) {
+      return xstream;
+    }
+
+    return CLASS_2_XSTREAM_INSTANCE.computeIfAbsent(clz, k -> {
+      XStream instance = XStreamInitializer.getInstance();
+      instance.processAnnotations(k);
+      return instance;
+    });
+  }
+
+  /**
+   * xml -> pojo.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T fromXml(Class<T> clz, String xml) {
+    return (T) getInstance(clz).fromXML(xml);
+  }
+
+  /**
+   * pojo -> xml.
+   */
+  public static String toXml(Object object) {
+    return getInstance(object.getClass()).toXML(object);
+  }
+
+  /**
+   * 注册自定义的XStream实例.
+   *
+   * @param clz     类型
+   * @param xStream xml解析器
+   */
+  public static void register(Class<?> clz, XStream xStream) {
+    CLASS_2_XSTREAM_INSTANCE.put(clz, xStream);
+  }
+}
@@ -0,0 +1,133 @@
+package com.github.binarywang.wxpay.util;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <pre>
+ * 基于StAX的xml元素值读取工具，用于快速模式下解析支付结果，不构建DOM.
+ * 支付接口返回的xml基本都是扁平结构，只需要顺序读取一遍各元素的文本即可填充结果对象.
+ * 与之前的DOM解析一致，不允许DOCTYPE声明，同时禁用了外部实体，防止XXE攻击.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class XmlValueReader {
+  private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+  static {
+    FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+  }
+
+  /**
+   * 读取各元素的值，同名元素只取第一个（不论层级），元素的值为其第一个子节点的文本，
+   * 与BaseWxPayResult中基于DOM的readXMLString方法的结果一致.
+   *
+   * @param xml xml字符串
+   * @return 元素名称与值的映射，元素为空或第一个子节点不是文本时值为null
+   */
+  public static Map<String, String> readFirstValues(String xml) {
+    Map<String, String> values = new HashMap<>();
+    XMLStreamReader reader = createReader(xml);
+    try {
+      int event = reader.getEventType();
+      while (reader.hasNext()) {
+        checkNotDtd(event);
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          event = reader.next();
+          continue;
+        }
+
+        String name = reader.getLocalName();
+        event = reader.next();
+        String value = null;
+        if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+          || event == XMLStreamConstants.SPACE) {
+          value = reader.getText();
+          event = reader.next();
+        }
+
+        if (!values.containsKey(name)) {
+          values.put(name, value);
+        }
+      }
+      return values;
+    } catch (XMLStreamException e) {
+      throw new RuntimeException("非法的xml文本内容：\n" + xml, e);
+    } finally {
+      close(reader);
+    }
+  }
+
+  /**
+   * 读取根元素下各子元素的文本内容（包括其所有后代节点的文本），同名元素取最后一个.
+   *
+   * @param xml      xml字符串
+   * @param rootName 根元素名称，实际根元素名称不同时返回空的映射
+   * @return 子元素名称与文本内容的映射
+   */
+  public static Map<String, String> readChildValues(String xml, String rootName) {
+    Map<String, String> values = new HashMap<>();
+    XMLStreamReader reader = createReader(xml);
+    try {
+      int depth = 0;
+      String name = null;
+      StringBuilder text = new StringBuilder();
+      while (reader.hasNext()) {
+        int event = reader.next();
+        checkNotDtd(event);
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (depth == 1 && !rootName.equals(reader.getLocalName())) {
+            return values;
+          }
+          if (depth == 2) {
+            name = reader.getLocalName();
+            text.setLength(0);
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          if (depth == 2) {
+            values.put(name, text.toString());
+          }
+          depth--;
+        } else if (depth >= 2 && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+          || event == XMLStreamConstants.SPACE)) {
+          text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+      }
+      return values;
+    } catch (XMLStreamException e) {
+      throw new RuntimeException("非法的xml文本内容：" + xml, e);
+    } finally {
+      close(reader);
+    }
+  }
+
+  private static XMLStreamReader createReader(String xml) {
+    try {
+      return FACTORY.createXMLStreamReader(new StringReader(xml));
+    } catch (XMLStreamException e) {
+      throw new RuntimeException("非法的xml文本内容：\n" + xml, e);
+    }
+  }
+
+  private static void checkNotDtd(int event) throws XMLStreamException {
+    if (event == XMLStreamConstants.DTD) {
+      throw new XMLStreamException("不允许DOCTYPE声明");
+    }
+  }
+
+  private static void close(XMLStreamReader reader) {
+    try {
+      reader.close();
+    } catch (XMLStreamException ignored) {
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.github.binarywang.wxpay.bean.notify;
+
+import com.github.binarywang.wxpay.bean.result.BaseWxPayResult;
+import com.github.binarywang.wxpay.converter.WxPayOrderNotifyResultConverter;
+import com.github.binarywang.wxpay.util.XmlConfig;
+import com.thoughtworks.xstream.XStream;
+import me.chanjar.weixin.common.util.xml.XStreamInitializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 解析支付结果通知的开销对比，建议加上 -prof gc 参数运行以查看每次解析分配的内存（gc.alloc.rate.norm）.
+ * legacyXStream 模拟之前每次解析都新建XStream实例并处理注解的做法，
+ * cachedXStream 为当前使用缓存的XStream实例的做法（{@link WxPayOrderNotifyResult#fromXML(String)}），
+ * legacyFastMode 模拟之前快速模式下每次新建DocumentBuilderFactory构建DOM后读取各元素的做法，
+ * fastMode 为当前快速模式下使用StAX顺序读取各元素值、不构建DOM的做法.
+ * 运行main方法即可执行.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WxPayOrderNotifyResultBenchmark {
+  private static final String[] TAG_NAMES = {"return_code", "return_msg", "result_code", "err_code", "err_code_des",
+    "appid", "mch_id", "sub_appid", "sub_mch_id", "nonce_str", "sign", "promotion_detail", "device_info", "openid",
+    "is_subscribe", "sub_openid", "sub_is_subscribe", "trade_type", "bank_type", "total_fee", "settlement_total_fee",
+    "fee_type", "cash_fee", "cash_fee_type", "coupon_fee", "coupon_count", "transaction_id", "out_trade_no", "attach",
+    "time_end", "version", "rate_value", "sign_type"};
+
+  private final String xmlString = "<xml>" +
+    "<appid><![CDATA[wx2421b1c4370ec43b]]></appid>" +
+    "<attach><![CDATA[支付测试]]></attach>" +
+    "<bank_type><![CDATA[CFT]]></bank_type>" +
+    "<fee_type><![CDATA[CNY]]></fee_type>" +
+    "<is_subscribe><![CDATA[Y]]></is_subscribe>" +
+    "<mch_id><![CDATA[10000100]]></mch_id>" +
+    "<nonce_str><![CDATA[5d2b6c2a8db53831f7eda20af46e531c]]></nonce_str>" +
+    "<openid><![CDATA[oUpF8uMEb4qRXf22hE3X68TekukE]]></openid>" +
+    "<out_trade_no><![CDATA[1409811653]]></out_trade_no>" +
+    "<result_code><![CDATA[SUCCESS]]></result_code>" +
+    "<return_code><![CDATA[SUCCESS]]></return_code>" +
+    "<sign><![CDATA[B552ED6B279343CB493C5DD0D78AB241]]></sign>" +
+    "<time_end><![CDATA[20140903131540]]></time_end>" +
+    "<total_fee>1</total_fee>" +
+    "<cash_fee>1</cash_fee>" +
+    "<trade_type><![CDATA[JSAPI]]></trade_type>" +
+    "<transaction_id><![CDATA[1004400740201409030005092168]]></transaction_id>" +
+    "</xml>";
+
+  @Setup
+  public void setup() {
+    XmlConfig.fastMode = true;
+    WxPayOrderNotifyResult fast = this.fastMode();
+    if (!fast.getTransactionId().equals(this.cachedXStream().getTransactionId())) {
+      throw new IllegalStateException("两种方式的解析结果不一致");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    XmlConfig.fastMode = false;
+  }
+
+  @Benchmark
+  public WxPayOrderNotifyResult legacyXStream() {
+    XStream xstream = XStreamInitializer.getInstance();
+    xstream.processAnnotations(WxPayOrderNotifyResult.class);
+    xstream.registerConverter(new WxPayOrderNotifyResultConverter(xstream.getMapper(), xstream.getReflectionProvider()));
+    WxPayOrderNotifyResult result = (WxPayOrderNotifyResult) xstream.fromXML(this.xmlString);
+    result.setXmlString(this.xmlString);
+    return result;
+  }
+
+  @Benchmark
+  public WxPayOrderNotifyResult cachedXStream() {
+    return WxPayOrderNotifyResult.fromXML(this.xmlString);
+  }
+
+  @Benchmark
+  public void legacyFastMode(Blackhole blackhole) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setExpandEntityReferences(false);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    Document document = factory.newDocumentBuilder()
+      .parse(new ByteArrayInputStream(this.xmlString.getBytes(StandardCharsets.UTF_8)));
+    for (String tagName : TAG_NAMES) {
+      blackhole.consume(BaseWxPayResult.readXMLString(document, tagName));
+    }
+  }
+
+  @Benchmark
+  public WxPayOrderNotifyResult fastMode() {
+    return BaseWxPayResult.fromXML(this.xmlString, WxPayOrderNotifyResult.class);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(WxPayOrderNotifyResultBenchmark.class.getSimpleName())
+      .addProfiler("gc").build()).run();
+  }
+}
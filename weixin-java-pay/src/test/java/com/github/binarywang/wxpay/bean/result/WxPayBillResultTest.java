@@ -3,8 +3,14 @@ package com.github.binarywang.wxpay.bean.result;
 import com.github.binarywang.wxpay.constant.WxPayConstants;
 import org.testng.annotations.Test;
 
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 /**
  * @author m8cool
@@ -81,4 +87,27 @@ public class WxPayBillResultTest {
     assertEquals(result.getBillInfoList().get(0).getFeeRemark(), "");
 
   }
+
+  /**
+   * 测试以数据流方式解析时，结果与字符串方式解析一致
+   */
+  @Test
+  public void testFromRawBillResultStream() throws Exception {
+    this.assertSameAsString(PAY_BILL_RESULT_ALL_CONTENT, WxPayConstants.BillType.ALL);
+    this.assertSameAsString(PAY_BILL_RESULT_ALL_CONTENT_1, WxPayConstants.BillType.ALL);
+    this.assertSameAsString(PAY_BILL_RESULT_SUCCESS_CONTENT, WxPayConstants.BillType.SUCCESS);
+    this.assertSameAsString(PAY_BILL_RESULT_REFUND_CONTENT, WxPayConstants.BillType.REFUND);
+  }
+
+  private void assertSameAsString(String content, String billType) throws Exception {
+    WxPayBillResult expected = WxPayBillResult.fromRawBillResultString(content, billType);
+    final List<WxPayBillInfo> billInfoList = new ArrayList<>();
+    WxPayBillResult result = WxPayBillResult.fromRawBillResultStream(new BufferedReader(new StringReader(content)),
+      billType, billInfoList::add);
+
+    assertTrue(result.getBillInfoList().isEmpty());
+    assertEquals(billInfoList, expected.getBillInfoList());
+    result.setBillInfoList(billInfoList);
+    assertEquals(result, expected);
+  }
 }
@@ -0,0 +1,49 @@
+package com.github.binarywang.wxpay.bean.result;
+
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * 资金账单解析测试.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxPayFundFlowResultTest {
+  private static final String FUND_FLOW_CONTENT = "记账时间,微信支付业务单号,资金流水单号,业务名称,业务类型,收支类型,收支金额（元）,账户结余（元）,资金变更提交申请人,备注,业务凭证号\n" +
+    "`2018-02-01 04:21:23,`50000305742018020103387128253,`1900009231201802015884652186,`退款,`退款,`支出,`0.02,`0.17,`system,`缺货,`REF4200000068201801293084726067\n" +
+    "`2018-02-01 04:22:23,`50000305742018020103387128254,`1900009231201802015884652187,`交易,`交易,`收入,`0.19,`0.36,`system,`,`4200000068201801293084726068\n" +
+    "资金流水总笔数,收入笔数,收入金额,支出笔数,支出金额\n" +
+    "`2,`1,`0.19,`1,`0.02\n";
+
+  @Test
+  public void testFromRawFundFlowString() {
+    WxPayFundFlowResult result = WxPayFundFlowResult.fromRawFundFlowString(FUND_FLOW_CONTENT);
+
+    assertEquals(result.getWxPayFundFlowBaseResultList().size(), 2);
+    assertEquals(result.getWxPayFundFlowBaseResultList().get(0).getBizVoucherId(), "REF4200000068201801293084726067");
+    assertEquals(result.getWxPayFundFlowBaseResultList().get(1).getFinancialFee(), "0.19");
+    assertEquals(result.getTotalRecord(), "2 ");
+    assertEquals(result.getExpenditureAmount().trim(), "0.02");
+  }
+
+  @Test
+  public void testFromRawFundFlowStream() throws Exception {
+    WxPayFundFlowResult expected = WxPayFundFlowResult.fromRawFundFlowString(FUND_FLOW_CONTENT);
+    List<WxPayFundFlowBaseResult> records = new ArrayList<>();
+    WxPayFundFlowResult result = WxPayFundFlowResult.fromRawFundFlowStream(
+      new BufferedReader(new StringReader(FUND_FLOW_CONTENT)), records::add);
+
+    assertTrue(result.getWxPayFundFlowBaseResultList().isEmpty());
+    assertEquals(records, expected.getWxPayFundFlowBaseResultList());
+    assertEquals(result.getTotalRecord(), expected.getTotalRecord());
+    assertEquals(result.getIncomeAmount(), expected.getIncomeAmount());
+    assertEquals(result.getExpenditureAmount().trim(), expected.getExpenditureAmount().trim());
+  }
+}
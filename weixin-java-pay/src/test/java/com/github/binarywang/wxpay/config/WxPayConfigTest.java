@@ -1,7 +1,16 @@
 package com.github.binarywang.wxpay.config;
 
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.testbase.TestKeyStores;
+import org.apache.commons.lang3.StringUtils;
 import org.testng.annotations.Test;
 
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.nio.file.Files;
+
 import static org.testng.Assert.*;
 
 /**
@@ -28,4 +37,84 @@ public class WxPayConfigTest {
     payConfig.initSSLContext();
   }
 
+  @Test
+  public void testMerchantKeyMaterialCached() throws Exception {
+    WxPayConfig config = new WxPayConfig();
+    config.setMchId("1900000001");
+    config.setKeyContent(TestKeyStores.createPkcs12("1900000001", BigInteger.valueOf(0xABCDEF)));
+
+    assertSame(config.getPrivateKey(), config.getPrivateKey());
+    assertSame(config.getCert(), config.getCert());
+    assertEquals(config.getSerialNo(), StringUtils.leftPad("ABCDEF", 40, '0'));
+
+    config.setKeyContent(TestKeyStores.createPkcs12("1900000001", BigInteger.valueOf(0x123456)));
+    assertEquals(config.getSerialNo(), StringUtils.leftPad("123456", 40, '0'));
+  }
+
+  @Test
+  public void testKeySslContextChangesWithKey() throws Exception {
+    WxPayConfig config = new WxPayConfig();
+    config.setMchId("1900000001");
+    config.setKeyContent(TestKeyStores.createPkcs12("1900000001", BigInteger.valueOf(0xABCDEF)));
+    SSLContext sslContext = config.getKeySslContext();
+    assertSame(config.getKeySslContext(), sslContext);
+
+    config.setKeyContent(TestKeyStores.createPkcs12("1900000001", BigInteger.valueOf(0xABCDEF)));
+    assertNotSame(config.getKeySslContext(), sslContext);
+  }
+
+  @Test
+  public void testKeySslContextChangesWithKeyPathAndMchId() throws Exception {
+    File keyFile1 = File.createTempFile("apiclient_cert", ".p12");
+    keyFile1.deleteOnExit();
+    Files.write(keyFile1.toPath(), TestKeyStores.createPkcs12("1900000001", BigInteger.valueOf(0xABCDEF)));
+    File keyFile2 = File.createTempFile("apiclient_cert", ".p12");
+    keyFile2.deleteOnExit();
+    Files.write(keyFile2.toPath(), TestKeyStores.createPkcs12("1900000002", BigInteger.valueOf(0x123456)));
+
+    WxPayConfig config = new WxPayConfig();
+    config.setMchId("1900000001");
+    config.setKeyPath(keyFile1.getAbsolutePath());
+    SSLContext sslContext = config.getKeySslContext();
+
+    // 修改证书路径及商户号后不再使用之前读取的证书内容
+    config.setKeyPath(keyFile2.getAbsolutePath());
+    config.setMchId("1900000002");
+    assertNotSame(config.getKeySslContext(), sslContext);
+    assertEquals(config.getSerialNo(), StringUtils.leftPad("123456", 40, '0'));
+
+    config.setMchId("1900000001");
+    try {
+      config.getKeySslContext();
+      fail("商户号与证书密码不符，应该抛出异常");
+    } catch (WxPayException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testMerchantKeyMaterialReloadedWhenFileChanged() throws Exception {
+    File keyFile = File.createTempFile("apiclient_cert", ".p12");
+    keyFile.deleteOnExit();
+    Files.write(keyFile.toPath(), TestKeyStores.createPkcs12("1900000001", BigInteger.valueOf(0xABCDEF)));
+
+    WxPayConfig config = new WxPayConfig();
+    config.setMchId("1900000001");
+    config.setKeyPath(keyFile.getAbsolutePath());
+    assertEquals(config.getSerialNo(), StringUtils.leftPad("ABCDEF", 40, '0'));
+
+    Files.write(keyFile.toPath(), TestKeyStores.createPkcs12("1900000001", BigInteger.valueOf(0x123456)));
+    assertTrue(keyFile.setLastModified(keyFile.lastModified() + 60000));
+    // 检查间隔内仍然使用缓存
+    assertEquals(config.getSerialNo(), StringUtils.leftPad("ABCDEF", 40, '0'));
+
+    Field field = WxPayConfig.class.getDeclaredField("merchantKeyMaterial");
+    field.setAccessible(true);
+    Object material = field.get(config);
+    Field nextCheckTime = material.getClass().getDeclaredField("nextCheckTime");
+    nextCheckTime.setAccessible(true);
+    nextCheckTime.setLong(material, 0);
+    assertEquals(config.getSerialNo(), StringUtils.leftPad("123456", 40, '0'));
+  }
+
 }
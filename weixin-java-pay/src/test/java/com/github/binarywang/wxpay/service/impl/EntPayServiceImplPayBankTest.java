@@ -0,0 +1,230 @@
+package com.github.binarywang.wxpay.service.impl;
+
+import com.github.binarywang.wxpay.bean.entpay.EntPayBankRequest;
+import com.github.binarywang.wxpay.bean.entpay.EntPayBankResult;
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import org.apache.commons.codec.binary.Base64;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemWriter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.crypto.Cipher;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.*;
+
+/**
+ * 使用模拟的接口响应测试企业付款到银行卡的公钥缓存及批量付款.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class EntPayServiceImplPayBankTest {
+  private static final Pattern ENC_BANK_NO = Pattern.compile("<enc_bank_no>(?:<!\\[CDATA\\[)?([^<\\]]+)");
+  private static final Pattern PARTNER_TRADE_NO = Pattern.compile("<partner_trade_no>(?:<!\\[CDATA\\[)?([^<\\]]+)");
+
+  private KeyPair keyPair;
+  private String publicKeyPem;
+  private final AtomicInteger publicKeyRequests = new AtomicInteger();
+  private final AtomicInteger concurrentPayments = new AtomicInteger();
+  private final AtomicInteger maxConcurrentPayments = new AtomicInteger();
+  private final AtomicInteger startedPayments = new AtomicInteger();
+  private EntPayServiceImpl entPayService;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    this.keyPair = generator.generateKeyPair();
+
+    // 与微信接口一样输出PKCS#1格式的公钥
+    StringWriter pem = new StringWriter();
+    try (PemWriter writer = new PemWriter(pem)) {
+      writer.writeObject(new PemObject("RSA PUBLIC KEY",
+        SubjectPublicKeyInfo.getInstance(this.keyPair.getPublic().getEncoded()).parsePublicKey().getEncoded()));
+    }
+    this.publicKeyPem = pem.toString();
+    this.publicKeyRequests.set(0);
+    this.maxConcurrentPayments.set(0);
+    this.startedPayments.set(0);
+
+    WxPayConfig config = new WxPayConfig();
+    config.setMchId("1900000109");
+    config.setMchKey("192006250b4c09247ec02edce69f6a2d");
+
+    WxPayServiceApacheHttpImpl payService = new WxPayServiceApacheHttpImpl() {
+      @Override
+      public String post(String url, String requestStr, boolean useKey) throws WxPayException {
+        return EntPayServiceImplPayBankTest.this.respond(url, requestStr);
+      }
+    };
+    payService.setConfig(config);
+    this.entPayService = new EntPayServiceImpl(payService);
+  }
+
+  private String respond(String url, String requestStr) throws WxPayException {
+    if (url.endsWith("/risk/getpublickey")) {
+      this.publicKeyRequests.incrementAndGet();
+      return "<xml><return_code>SUCCESS</return_code><result_code>SUCCESS</result_code>"
+        + "<pub_key><![CDATA[" + this.publicKeyPem + "]]></pub_key></xml>";
+    }
+
+    this.startedPayments.incrementAndGet();
+    int concurrent = this.concurrentPayments.incrementAndGet();
+    this.maxConcurrentPayments.accumulateAndGet(concurrent, Math::max);
+    try {
+      Thread.sleep(20);
+      String partnerTradeNo = find(PARTNER_TRADE_NO, requestStr);
+      if (!"6222020200000000000".equals(this.decrypt(find(ENC_BANK_NO, requestStr)))) {
+        throw new IllegalStateException("银行卡号加密错误");
+      }
+
+      if (partnerTradeNo.startsWith("error")) {
+        throw new IllegalStateException("连接被重置");
+      }
+      if (partnerTradeNo.startsWith("fail")) {
+        return "<xml><return_code>SUCCESS</return_code><result_code>FAIL</result_code>"
+          + "<err_code>NOTENOUGH</err_code><err_code_des>余额不足</err_code_des></xml>";
+      }
+      return "<xml><return_code>SUCCESS</return_code><result_code>SUCCESS</result_code>"
+        + "<partner_trade_no>" + partnerTradeNo + "</partner_trade_no><amount>100</amount>"
+        + "<payment_no>10000600500852017030900000020006012</payment_no></xml>";
+    } catch (InterruptedException e) {
+      throw new WxPayException("interrupted", e);
+    } finally {
+      this.concurrentPayments.decrementAndGet();
+    }
+  }
+
+  private String decrypt(String encrypted) {
+    try {
+      Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPWithSHA1AndMGF1Padding");
+      cipher.init(Cipher.DECRYPT_MODE, this.keyPair.getPrivate());
+      return new String(cipher.doFinal(Base64.decodeBase64(encrypted)), StandardCharsets.UTF_8);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String find(Pattern pattern, String xml) {
+    Matcher matcher = pattern.matcher(xml);
+    assertTrue(matcher.find(), xml);
+    return matcher.group(1);
+  }
+
+  private static EntPayBankRequest request(String partnerTradeNo) {
+    return EntPayBankRequest.builder()
+      .partnerTradeNo(partnerTradeNo)
+      .encBankNo("6222020200000000000")
+      .encTrueName("张三")
+      .bankCode("1002")
+      .amount(100)
+      .description("测试")
+      .build();
+  }
+
+  @Test
+  public void testPublicKeyCached() throws Exception {
+    EntPayBankResult result = this.entPayService.payBank(request("order1"));
+    assertEquals(result.getPartnerTradeNo(), "order1");
+    this.entPayService.payBank(request("order2"));
+    assertEquals(this.publicKeyRequests.get(), 1);
+
+    this.entPayService.invalidatePublicKey();
+    this.entPayService.payBank(request("order3"));
+    assertEquals(this.publicKeyRequests.get(), 2);
+  }
+
+  @Test
+  public void testBatchPayBank() throws Exception {
+    List<EntPayBankRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      requests.add(request((i == 7 ? "fail" : "order") + i));
+    }
+
+    List<EntPayBankResult> results = this.entPayService.payBank(requests, 4);
+    assertEquals(results.size(), 20);
+    for (int i = 0; i < 20; i++) {
+      if (i == 7) {
+        assertEquals(results.get(i).getPartnerTradeNo(), "fail7");
+        assertEquals(results.get(i).getResultCode(), "FAIL");
+        assertEquals(results.get(i).getErrCode(), "NOTENOUGH");
+      } else {
+        assertEquals(results.get(i).getPartnerTradeNo(), "order" + i);
+        assertEquals(results.get(i).getResultCode(), "SUCCESS");
+      }
+    }
+    assertEquals(this.publicKeyRequests.get(), 1);
+    assertTrue(this.maxConcurrentPayments.get() <= 4 && this.maxConcurrentPayments.get() > 1,
+      String.valueOf(this.maxConcurrentPayments.get()));
+  }
+
+  @Test
+  public void testBatchPayBankUnexpectedException() throws Exception {
+    List<EntPayBankRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      requests.add(request((i == 2 ? "error" : "order") + i));
+    }
+
+    List<EntPayBankResult> results = this.entPayService.payBank(requests, 2);
+    assertEquals(results.size(), 5);
+    assertEquals(results.get(2).getPartnerTradeNo(), "error2");
+    // 结果未知，需要查询确认
+    assertNull(results.get(2).getResultCode());
+    assertEquals(results.get(2).getReturnMsg(), "连接被重置");
+    for (int i : new int[]{0, 1, 3, 4}) {
+      assertEquals(results.get(i).getResultCode(), "SUCCESS");
+    }
+  }
+
+  @Test
+  public void testBatchPayBankInterrupted() throws Exception {
+    List<EntPayBankRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      requests.add(request("order" + i));
+    }
+
+    final Thread caller = Thread.currentThread();
+    Thread interrupter = new Thread(() -> {
+      while (this.startedPayments.get() < 2) {
+        Thread.yield();
+      }
+      caller.interrupt();
+    });
+    interrupter.start();
+
+    List<EntPayBankResult> results;
+    try {
+      results = this.entPayService.payBank(requests, 1);
+    } finally {
+      interrupter.join();
+    }
+    assertTrue(Thread.interrupted());
+
+    assertEquals(results.size(), 20);
+    int succeeded = 0;
+    for (int i = 0; i < 20; i++) {
+      EntPayBankResult result = results.get(i);
+      assertEquals(result.getPartnerTradeNo(), "order" + i);
+      if ("SUCCESS".equals(result.getResultCode())) {
+        // 已经完成的付款不会丢失，且都在未发起的付款之前
+        assertEquals(succeeded++, i);
+      } else {
+        assertEquals(result.getResultCode(), "FAIL");
+        assertEquals(result.getErrCodeDes(), "批量付款被中断，未发起付款");
+      }
+    }
+    assertEquals(succeeded, this.startedPayments.get());
+    assertTrue(succeeded >= 2 && succeeded < 20, String.valueOf(succeeded));
+  }
+}
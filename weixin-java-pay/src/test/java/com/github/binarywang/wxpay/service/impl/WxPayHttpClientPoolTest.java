@@ -0,0 +1,193 @@
+package com.github.binarywang.wxpay.service.impl;
+
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.testbase.TestKeyStores;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 连接池测试，使用本地http服务验证连接复用.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxPayHttpClientPoolTest {
+  private HttpServer server;
+  private String url;
+  private String slowUrl;
+  private volatile CountDownLatch slowResponse = new CountDownLatch(0);
+
+  @BeforeClass
+  public void startServer() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.setExecutor(Executors.newCachedThreadPool());
+    this.server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+          try {
+            slowResponse.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        byte[] body = "<xml><return_code>SUCCESS</return_code></xml>".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+          os.write(body);
+        }
+      }
+    });
+    this.server.start();
+    this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/pay/orderquery";
+    this.slowUrl = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/slow/pay/orderquery";
+  }
+
+  @AfterClass
+  public void stopServer() {
+    this.server.stop(0);
+  }
+
+  @Test
+  public void testConnectionReused() throws IOException {
+    WxPayConfig config = new WxPayConfig();
+    config.setHttpMaxConnPerRoute(2);
+    try (WxPayHttpClientPool pool = new WxPayHttpClientPool(config, null)) {
+      for (int i = 0; i < 5; i++) {
+        try (CloseableHttpResponse response = pool.getHttpClient().execute(new HttpGet(this.url))) {
+          assertThat(EntityUtils.toString(response.getEntity())).contains("SUCCESS");
+        }
+      }
+
+      WxPayHttpClientPool.Stats stats = pool.getStats();
+      assertThat(stats.getMissCount()).isEqualTo(1);
+      assertThat(stats.getHitCount()).isEqualTo(4);
+      assertThat(stats.getLeased()).isEqualTo(0);
+      assertThat(stats.getAvailable()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testServiceClose() throws Exception {
+    WxPayServiceApacheHttpImpl payService = new WxPayServiceApacheHttpImpl();
+    payService.setConfig(new WxPayConfig());
+    assertThat(payService.getHttpClientPoolStats(false)).isNull();
+
+    payService.post(this.url, "<xml></xml>", false);
+    payService.post(this.url, "<xml></xml>", false);
+    assertThat(payService.getHttpClientPoolStats(false).getHitCount()).isEqualTo(1);
+
+    payService.close();
+    assertThat(payService.getHttpClientPoolStats(false)).isNull();
+  }
+
+  @Test
+  public void testRetiredPoolClosedAfterLastRequest() throws Exception {
+    final WxPayHttpClientPool pool = new WxPayHttpClientPool(new WxPayConfig(), null);
+    this.slowResponse = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<String> inFlight = executor.submit(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        try (CloseableHttpResponse response = pool.getHttpClient().execute(new HttpGet(slowUrl))) {
+          return EntityUtils.toString(response.getEntity());
+        }
+      }
+    });
+    this.awaitLeased(pool);
+
+    pool.retire();
+    assertThat(pool.closeIfDrained()).isFalse();
+    this.slowResponse.countDown();
+    assertThat(inFlight.get(5, TimeUnit.SECONDS)).contains("SUCCESS");
+    executor.shutdown();
+
+    // 最后一个连接归还后自动关闭
+    try {
+      pool.getHttpClient().execute(new HttpGet(this.url));
+      Assert.fail("连接池应已关闭");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("shut down");
+    }
+  }
+
+  @Test
+  public void testSetConfigKeepsInFlightRequests() throws Exception {
+    final WxPayServiceApacheHttpImpl payService = new WxPayServiceApacheHttpImpl();
+    payService.setConfig(new WxPayConfig());
+    this.slowResponse = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> inFlight = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return payService.post(slowUrl, "<xml></xml>", false);
+        }
+      });
+      for (int i = 0; i < 250 && (payService.getHttpClientPoolStats(false) == null
+        || payService.getHttpClientPoolStats(false).getLeased() == 0); i++) {
+        Thread.sleep(20);
+      }
+
+      payService.setConfig(new WxPayConfig());
+      assertThat(payService.getHttpClientPoolStats(false)).isNull();
+      this.slowResponse.countDown();
+      assertThat(inFlight.get(5, TimeUnit.SECONDS)).contains("SUCCESS");
+      assertThat(payService.post(this.url, "<xml></xml>", false)).contains("SUCCESS");
+    } finally {
+      this.slowResponse.countDown();
+      executor.shutdown();
+      payService.close();
+    }
+  }
+
+  private void awaitLeased(WxPayHttpClientPool pool) throws InterruptedException {
+    for (int i = 0; i < 250 && pool.getStats().getLeased() == 0; i++) {
+      Thread.sleep(20);
+    }
+    assertThat(pool.getStats().getLeased()).isEqualTo(1);
+  }
+
+  @Test
+  public void testKeyPoolRebuiltWhenKeyChanged() throws Exception {
+    WxPayConfig config = new WxPayConfig();
+    config.setMchId("1900000001");
+    config.setKeyContent(TestKeyStores.createPkcs12("1900000001", BigInteger.ONE));
+    WxPayServiceApacheHttpImpl payService = new WxPayServiceApacheHttpImpl();
+    payService.setConfig(config);
+    try {
+      payService.post(this.url, "<xml></xml>", true);
+      payService.post(this.url, "<xml></xml>", true);
+      assertThat(payService.getHttpClientPoolStats(true).getHitCount()).isEqualTo(1);
+
+      config.setKeyContent(TestKeyStores.createPkcs12("1900000001", BigInteger.TEN));
+      payService.post(this.url, "<xml></xml>", true);
+      WxPayHttpClientPool.Stats stats = payService.getHttpClientPoolStats(true);
+      assertThat(stats.getMissCount()).isEqualTo(1);
+      assertThat(stats.getHitCount()).isEqualTo(0);
+    } finally {
+      payService.close();
+    }
+  }
+}
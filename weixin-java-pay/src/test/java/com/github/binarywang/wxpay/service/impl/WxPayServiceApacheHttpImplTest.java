@@ -0,0 +1,126 @@
+package com.github.binarywang.wxpay.service.impl;
+
+import com.github.binarywang.wxpay.bean.request.WxPayDownloadBillRequest;
+import com.github.binarywang.wxpay.bean.result.WxPayBillInfo;
+import com.github.binarywang.wxpay.bean.result.WxPayBillResult;
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.constant.WxPayConstants;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 使用本地http服务测试apache httpclient实现.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxPayServiceApacheHttpImplTest {
+  private static final String BILL_CONTENT = "交易时间,公众账号ID,商户号,特约商户号,设备号,微信订单号,商户订单号,用户标识,交易类型,交易状态,付款银行,货币种类,应结订单金额,代金券金额,商品名称,商户数据包,手续费,费率,订单金额,费率备注\n" +
+    "`2019-07-23 18:46:41,`wx2421b1c4370ec43b,`10000100,`0,`,`4200000001,`1415640626,`oUpF8uMuAJO_M2pxb1Q9zNjWeS6o,`JSAPI,`SUCCESS,`CFT,`CNY,`0.01,`0.00,`测试,`,`0.00000,`0.60%,`0.01,`\n" +
+    "`2019-07-23 18:47:41,`wx2421b1c4370ec43b,`10000100,`0,`,`4200000002,`1415640627,`oUpF8uMuAJO_M2pxb1Q9zNjWeS6o,`JSAPI,`SUCCESS,`CFT,`CNY,`0.02,`0.00,`测试,`,`0.00000,`0.60%,`0.02,`\n" +
+    "总交易单数,应结订单总金额,退款总金额,充值券退款总金额,手续费总金额,订单总金额,申请退款总金额\n" +
+    "`2,`0.03,`0.00,`0.00,`0.00000,`0.03,`0.00\n";
+
+  private HttpServer server;
+  private WxPayServiceApacheHttpImpl payService;
+
+  @BeforeClass
+  public void setUp() throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/pay/downloadbill", exchange -> {
+      String request = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+      byte[] body;
+      if (request.contains("20190724")) {
+        body = "<xml><return_code>FAIL</return_code><return_msg>No Bill Exist</return_msg></xml>"
+          .getBytes(StandardCharsets.UTF_8);
+      } else {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+          gzip.write(BILL_CONTENT.getBytes(StandardCharsets.UTF_8));
+        }
+        body = bytes.toByteArray();
+      }
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    this.server.start();
+
+    WxPayConfig config = new WxPayConfig();
+    config.setPayBaseUrl("http://127.0.0.1:" + this.server.getAddress().getPort());
+    config.setAppId("wx2421b1c4370ec43b");
+    config.setMchId("10000100");
+    config.setMchKey("192006250b4c09247ec02edce69f6a2d");
+    this.payService = new WxPayServiceApacheHttpImpl();
+    this.payService.setConfig(config);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    this.payService.close();
+    this.server.stop(0);
+  }
+
+  @Test
+  public void testDownloadBillStream() throws WxPayException {
+    List<WxPayBillInfo> billInfoList = new ArrayList<>();
+    WxPayBillResult result = this.payService.downloadBill(this.buildRequest("20190723"), billInfoList::add);
+
+    assertThat(billInfoList).hasSize(2);
+    assertThat(billInfoList.get(1).getOutTradeNo()).isEqualTo("1415640627");
+    assertThat(result.getBillInfoList()).isEmpty();
+    assertThat(result.getTotalRecord()).isEqualTo("2");
+    assertThat(result.getTotalFee()).isEqualTo("0.03");
+  }
+
+  @Test
+  public void testDownloadBillGzip() throws WxPayException {
+    WxPayBillResult result = this.payService.downloadBill(this.buildRequest("20190723"));
+
+    assertThat(result.getBillInfoList()).hasSize(2);
+    assertThat(result.getTotalRecord()).isEqualTo("2");
+  }
+
+  @Test
+  public void testDownloadBillStreamError() {
+    try {
+      this.payService.downloadBill(this.buildRequest("20190724"), billInfo -> {
+      });
+      throw new AssertionError("应抛出异常");
+    } catch (WxPayException e) {
+      assertThat(e.getReturnMsg()).isEqualTo("No Bill Exist");
+    }
+  }
+
+  private WxPayDownloadBillRequest buildRequest(String billDate) {
+    WxPayDownloadBillRequest request = new WxPayDownloadBillRequest();
+    request.setBillDate(billDate);
+    request.setBillType(WxPayConstants.BillType.SUCCESS);
+    request.setTarType(WxPayConstants.TarType.GZIP);
+    return request;
+  }
+
+  private static byte[] readAll(java.io.InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int len;
+    while ((len = in.read(buffer)) > -1) {
+      out.write(buffer, 0, len);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,151 @@
+package com.github.binarywang.wxpay.service.impl;
+
+import com.github.binarywang.wxpay.bean.result.WxPayV3CertificatesResult;
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.github.binarywang.wxpay.testbase.TestKeyStores;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 平台证书验签器测试，平台证书由本地生成并按微信规则加密后返回.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class WxPayV3CertificateVerifierTest {
+  private static final String MCH_KEY = "0123456789abcdef0123456789abcdef";
+
+  private KeyPair platformKeyPair;
+  private WxPayV3CertificatesResult certificatesResult;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    this.platformKeyPair = TestKeyStores.createKeyPair();
+    this.certificatesResult = this.createCertificatesResult("5157F09D5A4B3A8E2E7A1F5B7C3D2E1F");
+  }
+
+  private WxPayV3CertificatesResult createCertificatesResult(String serialNo) throws Exception {
+    X509Certificate certificate = TestKeyStores.createCertificate(this.platformKeyPair, "Tenpay.com Root CA",
+      new BigInteger(serialNo, 16));
+    String pem = "-----BEGIN CERTIFICATE-----\n"
+      + Base64.getMimeEncoder().encodeToString(certificate.getEncoded()) + "\n-----END CERTIFICATE-----";
+
+    String nonce = "61f9c719728a";
+    String associatedData = "certificate";
+    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(MCH_KEY.getBytes(), "AES"),
+      new GCMParameterSpec(128, nonce.getBytes()));
+    cipher.updateAAD(associatedData.getBytes());
+
+    WxPayV3CertificatesResult.Certificate.EncryptCertificate encryptCertificate =
+      new WxPayV3CertificatesResult.Certificate.EncryptCertificate();
+    encryptCertificate.setAlgorithm("AEAD_AES_256_GCM");
+    encryptCertificate.setNonce(nonce);
+    encryptCertificate.setAssociatedData(associatedData);
+    encryptCertificate.setCiphertext(Base64.getEncoder().encodeToString(
+      cipher.doFinal(pem.getBytes(StandardCharsets.UTF_8))));
+    WxPayV3CertificatesResult.Certificate resultCertificate = new WxPayV3CertificatesResult.Certificate();
+    resultCertificate.setSerialNo(serialNo);
+    resultCertificate.setEncryptCertificate(encryptCertificate);
+
+    WxPayV3CertificatesResult result = new WxPayV3CertificatesResult();
+    result.setData(new WxPayV3CertificatesResult.Certificate[]{resultCertificate});
+    return result;
+  }
+
+  @Test
+  public void testVerify() throws Exception {
+    final AtomicInteger downloads = new AtomicInteger();
+    WxPayServiceImpl payService = new WxPayServiceImpl() {
+      @Override
+      public WxPayV3CertificatesResult v3GetCertificates() {
+        downloads.incrementAndGet();
+        return certificatesResult;
+      }
+    };
+    WxPayConfig config = new WxPayConfig();
+    config.setMchKey(MCH_KEY);
+    payService.setConfig(config);
+
+    try (WxPayV3CertificateVerifier verifier = new WxPayV3CertificateVerifier(payService)) {
+      verifier.start();
+      assertThat(downloads.get()).isEqualTo(1);
+      assertThat(verifier.getLatestCertificate()).isNotNull();
+
+      String body = "{\"id\":\"EV-2018022511223320873\",\"event_type\":\"TRANSACTION.SUCCESS\"}";
+      String signature = this.sign("1554208460", "593BEC0C930BF1AFEB40B4A08C8FB242", body);
+      assertThat(verifier.verify("5157f09d5a4b3a8e2e7a1f5b7c3d2e1f", "1554208460",
+        "593BEC0C930BF1AFEB40B4A08C8FB242", body, signature)).isTrue();
+      assertThat(verifier.verify("5157F09D5A4B3A8E2E7A1F5B7C3D2E1F", "1554208460",
+        "593BEC0C930BF1AFEB40B4A08C8FB242", body + " ", signature)).isFalse();
+
+      // 未知序列号直接验签失败，且刚刷新过证书时不会再次下载
+      assertThat(verifier.verify("ABCDEF", "1554208460", "593BEC0C930BF1AFEB40B4A08C8FB242", body, signature))
+        .isFalse();
+      assertThat(downloads.get()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testVerifyWithLeadingZeroSerialNo() throws Exception {
+    final String serialNo = "0157F09D5A4B3A8E2E7A1F5B7C3D2E1F0A1B2C3D";
+    final WxPayV3CertificatesResult result = this.createCertificatesResult(serialNo);
+    WxPayServiceImpl payService = new WxPayServiceImpl() {
+      @Override
+      public WxPayV3CertificatesResult v3GetCertificates() {
+        return result;
+      }
+    };
+    WxPayConfig config = new WxPayConfig();
+    config.setMchKey(MCH_KEY);
+    payService.setConfig(config);
+
+    try (WxPayV3CertificateVerifier verifier = new WxPayV3CertificateVerifier(payService)) {
+      verifier.start();
+      // 进件等接口请求头中的序列号同样需要保留前导0
+      assertThat(config.getSerialNo(verifier.getLatestCertificate())).isEqualTo(serialNo);
+
+      String body = "{\"code\":\"SUCCESS\"}";
+      String signature = this.sign("1554208460", "593BEC0C930BF1AFEB40B4A08C8FB242", body);
+      assertThat(verifier.verify(serialNo, "1554208460", "593BEC0C930BF1AFEB40B4A08C8FB242", body, signature))
+        .isTrue();
+      assertThat(verifier.verify(serialNo.toLowerCase(), "1554208460", "593BEC0C930BF1AFEB40B4A08C8FB242", body,
+        signature)).isTrue();
+    }
+  }
+
+  @Test(expectedExceptions = WxPayException.class)
+  public void testStartWithoutCertificates() throws Exception {
+    WxPayServiceImpl payService = new WxPayServiceImpl() {
+      @Override
+      public WxPayV3CertificatesResult v3GetCertificates() {
+        return new WxPayV3CertificatesResult();
+      }
+    };
+    payService.setConfig(new WxPayConfig());
+
+    try (WxPayV3CertificateVerifier verifier = new WxPayV3CertificateVerifier(payService)) {
+      verifier.start();
+    }
+  }
+
+  private String sign(String timestamp, String nonce, String body) throws Exception {
+    Signature signature = Signature.getInstance("SHA256WithRSA");
+    signature.initSign(this.platformKeyPair.getPrivate());
+    signature.update((timestamp + "\n" + nonce + "\n" + body + "\n").getBytes(StandardCharsets.UTF_8));
+    return Base64.getEncoder().encodeToString(signature.sign());
+  }
+}
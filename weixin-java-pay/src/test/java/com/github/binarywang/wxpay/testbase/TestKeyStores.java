@@ -0,0 +1,67 @@
+package com.github.binarywang.wxpay.testbase;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+
+/**
+ * 生成测试用的商户p12证书.
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class TestKeyStores {
+
+  /**
+   * 生成一个自签名的p12证书，密码为商户号.
+   *
+   * @param mchId    商户号
+   * @param serialNo 证书序列号
+   * @return p12证书内容
+   */
+  public static byte[] createPkcs12(String mchId, BigInteger serialNo) throws Exception {
+    KeyPair keyPair = createKeyPair();
+    X509Certificate certificate = createCertificate(keyPair, mchId, serialNo);
+
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    keyStore.load(null, null);
+    keyStore.setKeyEntry("Tenpay Certificate", keyPair.getPrivate(), mchId.toCharArray(),
+      new Certificate[]{certificate});
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    keyStore.store(out, mchId.toCharArray());
+    return out.toByteArray();
+  }
+
+  public static KeyPair createKeyPair() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    return generator.generateKeyPair();
+  }
+
+  /**
+   * 生成一个自签名证书.
+   *
+   * @param keyPair    密钥对
+   * @param commonName 证书主体名称
+   * @param serialNo   证书序列号
+   * @return 证书
+   */
+  public static X509Certificate createCertificate(KeyPair keyPair, String commonName, BigInteger serialNo)
+    throws Exception {
+    X500Name name = new X500Name("CN=" + commonName);
+    Date notBefore = new Date();
+    Date notAfter = new Date(notBefore.getTime() + 365L * 24 * 3600 * 1000);
+    return new JcaX509CertificateConverter().getCertificate(
+      new JcaX509v3CertificateBuilder(name, serialNo, notBefore, notAfter, name, keyPair.getPublic())
+        .build(new JcaContentSignerBuilder("SHA256WithRSA").build(keyPair.getPrivate())));
+  }
+}
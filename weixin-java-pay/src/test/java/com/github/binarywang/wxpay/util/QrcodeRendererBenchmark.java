@@ -0,0 +1,116 @@
+package com.github.binarywang.wxpay.util;
+
+import com.github.binarywang.utils.qrcode.QrcodeUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <pre>
+ * 带logo的扫码支付二维码生成开销对比.
+ * qrcodeUtils 为之前每次调用QrcodeUtils的做法，每次都读取logo并经临时文件写出jpg；
+ * renderer 为使用QrcodeRenderer生成单个png的做法；
+ * qrcodeUtilsBatch 与 rendererBatch 分别用同样数量的线程生成10000个二维码，统计整批的耗时.
+ * 运行main方法即可执行.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QrcodeRendererBenchmark {
+  private static final int BATCH_SIZE = 10000;
+  private static final int SIDE_LENGTH = 400;
+
+  private File logoFile;
+  private QrcodeRenderer renderer;
+  private List<String> contents;
+  private int parallelism;
+  private int index;
+  private final LongAdder bytes = new LongAdder();
+
+  @Setup
+  public void setup() throws Exception {
+    BufferedImage logo = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = logo.createGraphics();
+    graphics.setColor(Color.ORANGE);
+    graphics.fillRect(0, 0, 200, 200);
+    graphics.dispose();
+    this.logoFile = File.createTempFile("logo", ".png");
+    this.logoFile.deleteOnExit();
+    ImageIO.write(logo, "png", this.logoFile);
+
+    this.renderer = new QrcodeRenderer(this.logoFile);
+    this.contents = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      this.contents.add("weixin://wxpay/bizpayurl?appid=wxd930ea5d5a258f4f&mch_id=10000100&product_id=table" + i
+        + "&time_stamp=1414488825&nonce_str=" + i + "&sign=BD0E1C1B1F6B6E5A0A0C6F5E2C1F2B3D");
+    }
+    this.parallelism = Runtime.getRuntime().availableProcessors();
+  }
+
+  private String nextContent() {
+    this.index = (this.index + 1) % BATCH_SIZE;
+    return this.contents.get(this.index);
+  }
+
+  @Benchmark
+  public byte[] qrcodeUtils() {
+    return QrcodeUtils.createQrcode(this.nextContent(), SIDE_LENGTH, this.logoFile);
+  }
+
+  @Benchmark
+  public byte[] renderer() throws Exception {
+    return this.renderer.render(this.nextContent(), SIDE_LENGTH);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long qrcodeUtilsBatch() {
+    this.contents.parallelStream().forEach(content ->
+      this.bytes.add(QrcodeUtils.createQrcode(content, SIDE_LENGTH, this.logoFile).length));
+    return this.bytes.sum();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long rendererBatch() throws Exception {
+    this.renderer.renderAll(this.contents, SIDE_LENGTH, this.parallelism, (index, content) -> new OutputStream() {
+      @Override
+      public void write(int b) {
+        bytes.increment();
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        bytes.add(len);
+      }
+    });
+    return this.bytes.sum();
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+      .include(QrcodeRendererBenchmark.class.getSimpleName())
+      .build())
+      .run();
+  }
+
+}
@@ -0,0 +1,128 @@
+package com.github.binarywang.wxpay.util;
+
+import com.github.binarywang.utils.qrcode.BufferedImageLuminanceSource;
+import com.github.binarywang.wxpay.exception.WxPayException;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.common.HybridBinarizer;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class QrcodeRendererTest {
+  private File logoFile;
+
+  @BeforeClass
+  public void createLogo() throws IOException {
+    BufferedImage logo = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = logo.createGraphics();
+    graphics.setColor(Color.ORANGE);
+    graphics.fillRect(0, 0, 200, 200);
+    graphics.dispose();
+    this.logoFile = File.createTempFile("logo", ".png");
+    this.logoFile.deleteOnExit();
+    ImageIO.write(logo, "png", this.logoFile);
+  }
+
+  private static String decode(byte[] image) throws Exception {
+    BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(image));
+    BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(bufferedImage)));
+    return new MultiFormatReader().decode(bitmap).getText();
+  }
+
+  @Test
+  public void testRender() throws Exception {
+    QrcodeRenderer renderer = new QrcodeRenderer(this.logoFile);
+    // 同一线程连续生成不同边长的二维码，复用的缓冲区需要重新分配
+    for (int sideLength : new int[]{400, 300, 400}) {
+      String content = "weixin://wxpay/bizpayurl?sr=" + sideLength;
+      byte[] image = renderer.render(content, sideLength);
+      assertEquals(ImageIO.read(new ByteArrayInputStream(image)).getWidth(), sideLength);
+      assertEquals(decode(image), content);
+    }
+
+    byte[] jpg = new QrcodeRenderer(null, "jpg").render("weixin://wxpay/bizpayurl?sr=jpg", 400);
+    assertEquals(jpg[0] & 0xFF, 0xFF);
+    assertEquals(jpg[1] & 0xFF, 0xD8);
+    assertEquals(decode(jpg), "weixin://wxpay/bizpayurl?sr=jpg");
+  }
+
+  @Test
+  public void testIdleCanvasesBounded() throws Exception {
+    final QrcodeRenderer renderer = new QrcodeRenderer(this.logoFile);
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final String content = "weixin://wxpay/bizpayurl?sr=thread" + i;
+      Thread thread = new Thread(() -> {
+        try {
+          assertEquals(decode(renderer.render(content, 300)), content);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // 多个线程各自生成后，只保留少量空闲缓冲区
+    assertTrue(renderer.idleCanvasCount() >= 1 && renderer.idleCanvasCount() <= 2,
+      String.valueOf(renderer.idleCanvasCount()));
+
+    renderer.renderAll(Collections.nCopies(10, "abc"), 300, 4, (index, content) -> new ByteArrayOutputStream());
+    assertTrue(renderer.idleCanvasCount() <= 2);
+  }
+
+  @Test
+  public void testRenderAll() throws Exception {
+    final List<String> contents = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      contents.add("weixin://wxpay/bizpayurl?sr=" + i);
+    }
+
+    final Map<Integer, ByteArrayOutputStream> images = new ConcurrentHashMap<>();
+    QrcodeRenderer renderer = new QrcodeRenderer(this.logoFile);
+    try {
+      renderer.renderAll(contents, 300, 4, (index, content) -> {
+        if (index == 7) {
+          throw new IOException("磁盘已满");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        images.put(index, out);
+        return out;
+      });
+      fail("应该抛出异常");
+    } catch (WxPayException e) {
+      assertTrue(e.getMessage().startsWith("1个"), e.getMessage());
+    }
+
+    // 多线程生成的结果应与单独生成的完全一致
+    assertEquals(images.size(), 99);
+    for (Map.Entry<Integer, ByteArrayOutputStream> entry : images.entrySet()) {
+      assertEquals(entry.getValue().toByteArray(), renderer.render(contents.get(entry.getKey()), 300));
+    }
+  }
+
+}
@@ -0,0 +1,115 @@
+package com.github.binarywang.wxpay.util;
+
+import com.github.binarywang.wxpay.bean.request.BaseWxPayRequest;
+import com.github.binarywang.wxpay.bean.request.WxPayUnifiedOrderRequest;
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * 支付请求对象签名的开销对比.
+ * reflection 模拟之前每次签名都反射读取所有字段、构造map及TreeMap的做法，
+ * signPlan 为按类缓存签名计划后直接遍历字段拼接待签名串的做法.
+ * 运行main方法即可执行.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignUtilsBenchmark {
+  private static final String SIGN_KEY = "192006250b4c09247ec02edce69f6a2d";
+  private static final List<String> NO_SIGN_PARAMS = Arrays.asList("sign", "key", "xmlString", "xmlDoc", "couponList");
+
+  private WxPayUnifiedOrderRequest request;
+
+  @Setup
+  public void setup() {
+    this.request = WxPayUnifiedOrderRequest.newBuilder()
+      .body("腾讯充值中心-QQ会员充值")
+      .outTradeNo("20150806125346")
+      .totalFee(888)
+      .spbillCreateIp("123.12.12.123")
+      .notifyUrl("http://www.weixin.qq.com/wxpay/pay.php")
+      .tradeType("JSAPI")
+      .openid("oUpF8uMuAJO_M2pxb1Q9zNjWeS6o")
+      .build();
+    this.request.setAppid("wxd930ea5d5a258f4f");
+    this.request.setMchId("10000100");
+    this.request.setNonceStr("ibuaiVcKdpRxkhJA");
+
+    if (!this.reflection().equals(this.signPlan())) {
+      throw new IllegalStateException("两种方式的签名结果不一致");
+    }
+  }
+
+  @Benchmark
+  public String reflection() {
+    Map<String, String> params = xmlBean2Map(this.request);
+    SortedMap<String, String> sortedMap = new TreeMap<>(params);
+    StringBuilder toSign = new StringBuilder();
+    for (String key : sortedMap.keySet()) {
+      String value = params.get(key);
+      if (StringUtils.isNotEmpty(value) && !NO_SIGN_PARAMS.contains(key)) {
+        toSign.append(key).append("=").append(value).append("&");
+      }
+    }
+
+    toSign.append("key=").append(SIGN_KEY);
+    return DigestUtils.md5Hex(toSign.toString()).toUpperCase();
+  }
+
+  @Benchmark
+  public String signPlan() {
+    return SignUtils.createSign(this.request, null, SIGN_KEY, new String[0]);
+  }
+
+  private static Map<String, String> xmlBean2Map(Object bean) {
+    Map<String, String> result = new HashMap<>();
+    List<Field> fields = new ArrayList<>(Arrays.asList(bean.getClass().getDeclaredFields()));
+    fields.addAll(Arrays.asList(bean.getClass().getSuperclass().getDeclaredFields()));
+    if (bean.getClass().getSuperclass().getSuperclass() == BaseWxPayRequest.class) {
+      fields.addAll(Arrays.asList(BaseWxPayRequest.class.getDeclaredFields()));
+    }
+
+    for (Field field : fields) {
+      try {
+        boolean isAccessible = field.isAccessible();
+        field.setAccessible(true);
+        if (field.get(bean) == null) {
+          field.setAccessible(isAccessible);
+          continue;
+        }
+
+        if (field.isAnnotationPresent(XStreamAlias.class)) {
+          result.put(field.getAnnotation(XStreamAlias.class).value(), field.get(bean).toString());
+        } else if (!Modifier.isStatic(field.getModifiers())) {
+          result.put(field.getName(), field.get(bean).toString());
+        }
+
+        field.setAccessible(isAccessible);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    return result;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(SignUtilsBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -2,7 +2,12 @@ package com.github.binarywang.wxpay.util;
 
 import org.testng.annotations.*;
 
+import com.github.binarywang.wxpay.bean.notify.WxPayOrderNotifyResult;
+import com.github.binarywang.wxpay.bean.request.WxPayUnifiedOrderRequest;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
 
 import static com.github.binarywang.wxpay.constant.WxPayConstants.SignType.HMAC_SHA256;
 import static org.testng.Assert.*;
@@ -51,6 +56,78 @@ public class SignUtilsTest {
    */
   @Test
   public void testCheckSign() throws Exception {
+    String signKey = "192006250b4c09247ec02edce69f6a2d";
+    String xmlString = "<xml>" +
+      "<appid><![CDATA[wx2421b1c4370ec43b]]></appid>" +
+      "<mch_id><![CDATA[10000100]]></mch_id>" +
+      "<nonce_str><![CDATA[5d2b6c2a8db53831f7eda20af46e531c]]></nonce_str>" +
+      "<openid><![CDATA[oUpF8uMEb4qRXf22hE3X68TekukE]]></openid>" +
+      "<out_trade_no><![CDATA[1409811653]]></out_trade_no>" +
+      "<result_code><![CDATA[SUCCESS]]></result_code>" +
+      "<return_code><![CDATA[SUCCESS]]></return_code>" +
+      "<total_fee>300</total_fee>" +
+      "<coupon_count>1</coupon_count>" +
+      "<coupon_type_0><![CDATA[CASH]]></coupon_type_0>" +
+      "<coupon_id_0>10000</coupon_id_0>" +
+      "<coupon_fee_0>100</coupon_fee_0>" +
+      "</xml>";
+    Map<String, String> params = ImmutableMap.<String, String>builder()
+      .put("appid", "wx2421b1c4370ec43b")
+      .put("mch_id", "10000100")
+      .put("nonce_str", "5d2b6c2a8db53831f7eda20af46e531c")
+      .put("openid", "oUpF8uMEb4qRXf22hE3X68TekukE")
+      .put("out_trade_no", "1409811653")
+      .put("result_code", "SUCCESS")
+      .put("return_code", "SUCCESS")
+      .put("total_fee", "300")
+      .put("coupon_count", "1")
+      .put("coupon_type_0", "CASH")
+      .put("coupon_id_0", "10000")
+      .put("coupon_fee_0", "100")
+      .build();
+
+    WxPayOrderNotifyResult result = WxPayOrderNotifyResult.fromXML(xmlString);
+    result.setSign(SignUtils.createSign(params, null, signKey, null));
+    assertTrue(SignUtils.checkSign(result, ImmutableMap.of("coupon_type_0", "CASH", "coupon_id_0", "10000",
+      "coupon_fee_0", "100"), null, signKey));
+    assertFalse(SignUtils.checkSign(result, null, null, signKey));
+    assertTrue(SignUtils.checkSign(result.toMap(), null, signKey));
+
+    result.setTotalFee(301);
+    assertFalse(SignUtils.checkSign(result.toMap(), null, signKey));
+  }
+
+  /**
+   * 按签名计划签名的结果应与按参数map签名的结果一致.
+   */
+  @Test
+  public void testCreateSignByBean() {
+    String signKey = "192006250b4c09247ec02edce69f6a2d";
+    WxPayUnifiedOrderRequest request = WxPayUnifiedOrderRequest.newBuilder()
+      .body("腾讯充值中心-QQ会员充值")
+      .outTradeNo("20150806125346")
+      .totalFee(888)
+      .spbillCreateIp("123.12.12.123")
+      .notifyUrl("http://www.weixin.qq.com/wxpay/pay.php")
+      .tradeType("JSAPI")
+      .openid("oUpF8uMuAJO_M2pxb1Q9zNjWeS6o")
+      .sceneInfo("")
+      .build();
+    request.setAppid("wxd930ea5d5a258f4f");
+    request.setMchId("10000100");
+    request.setNonceStr("ibuaiVcKdpRxkhJA");
+    request.setSign("SHOULD_BE_IGNORED");
+
+    String expected = SignUtils.createSign(request.getSignParams(), null, signKey, null);
+    assertEquals(SignUtils.createSign(request, null, signKey, null), expected);
+    assertEquals(SignUtils.createSign(request, HMAC_SHA256, signKey, new String[]{"openid"}),
+      SignUtils.createSign(request.getSignParams(), HMAC_SHA256, signKey, new String[]{"openid"}));
+    assertNotEquals(SignUtils.createSign(request, null, signKey, new String[]{"openid"}), expected);
+
+    Map<String, String> map = SignUtils.xmlBean2Map(request);
+    assertEquals(map.get("total_fee"), "888");
+    assertEquals(map.get("sign"), "SHOULD_BE_IGNORED");
+    assertFalse(map.containsKey("device_info"));
   }
 
 }
@@ -0,0 +1,72 @@
+package com.github.binarywang.wxpay.util;
+
+import com.github.binarywang.wxpay.config.WxPayConfig;
+import com.github.binarywang.wxpay.constant.WxPayConstants;
+import com.github.binarywang.wxpay.testbase.TestKeyStores;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <pre>
+ * V3接口每次请求签名的开销对比.
+ * perRequestParse 模拟之前每次请求都重新解析两次p12证书并重新编码私钥的做法，
+ * cachedKeyMaterial 为使用配置中缓存的私钥及每线程复用Signature实例的做法.
+ * 运行main方法即可执行.
+ * </pre>
+ *
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class V3UtilsSignBenchmark {
+  private static final String MCH_ID = "1900000001";
+  private WxPayConfig config;
+  private String message;
+
+  @Setup
+  public void setup() throws Exception {
+    this.config = new WxPayConfig();
+    this.config.setMchId(MCH_ID);
+    this.config.setKeyContent(TestKeyStores.createPkcs12(MCH_ID, BigInteger.valueOf(1234567890L)));
+    this.message = V3Utils.buildSignMessage(WxPayConstants.RequestMethod.POST, "/v3/pay/transactions/jsapi",
+      System.currentTimeMillis() / 1000, "5K8264ILTKCH16CQ2502SI8ZNMTM67VS", "{\"mchid\":\"" + MCH_ID + "\"}");
+  }
+
+  @Benchmark
+  public String perRequestParse() throws Exception {
+    KeyStore keyStore = this.loadKeyStore();
+    PrivateKey privateKey = (PrivateKey) keyStore.getKey(keyStore.aliases().nextElement(), MCH_ID.toCharArray());
+    String privateKeyStr = Base64.getEncoder().encodeToString(privateKey.getEncoded());
+    keyStore = this.loadKeyStore();
+    X509Certificate certificate = (X509Certificate) keyStore.getCertificate(keyStore.aliases().nextElement());
+    return this.config.getSerialNo(certificate) + V3Utils.encryptByPrivateKey(this.message, privateKeyStr);
+  }
+
+  @Benchmark
+  public String cachedKeyMaterial() throws Exception {
+    return this.config.getSerialNo() + V3Utils.encryptByPrivateKey(this.message, this.config.getPrivateKey());
+  }
+
+  private KeyStore loadKeyStore() throws Exception {
+    KeyStore keyStore = KeyStore.getInstance("PKCS12");
+    keyStore.load(new ByteArrayInputStream(this.config.getKeyContent()), MCH_ID.toCharArray());
+    return keyStore;
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(V3UtilsSignBenchmark.class.getSimpleName()).build()).run();
+  }
+}
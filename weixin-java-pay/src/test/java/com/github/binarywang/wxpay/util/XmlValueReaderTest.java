@@ -0,0 +1,47 @@
+package com.github.binarywang.wxpay.util;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+/**
+ * @author <a href="https://github.com/binarywang">Binary Wang</a>
+ */
+public class XmlValueReaderTest {
+  private static final String XML = "<xml>\n" +
+    "  <return_code><![CDATA[SUCCESS]]></return_code>\n" +
+    "  <hblist><hbinfo><openid>o1</openid></hbinfo><hbinfo><openid>o2</openid></hbinfo></hblist>\n" +
+    "  <total_fee>1</total_fee>\n" +
+    "  <empty></empty>\n" +
+    "</xml>";
+
+  @Test
+  public void testReadFirstValues() {
+    Map<String, String> values = XmlValueReader.readFirstValues(XML);
+    assertEquals(values.get("return_code"), "SUCCESS");
+    assertEquals(values.get("total_fee"), "1");
+    assertEquals(values.get("openid"), "o1");
+    assertNull(values.get("hblist"));
+    assertNull(values.get("empty"));
+  }
+
+  @Test
+  public void testReadChildValues() {
+    Map<String, String> values = XmlValueReader.readChildValues(XML, "xml");
+    assertEquals(values.get("return_code"), "SUCCESS");
+    assertEquals(values.get("hblist"), "o1o2");
+    assertEquals(values.get("empty"), "");
+    assertFalse(values.containsKey("openid"));
+
+    assertEquals(XmlValueReader.readChildValues("<root><a>1</a></root>", "xml").size(), 0);
+  }
+
+  @Test(expectedExceptions = RuntimeException.class)
+  public void testRejectDoctype() {
+    XmlValueReader.readFirstValues("<?xml version=\"1.0\" ?><!DOCTYPE xml [<!ENTITY a \"b\">]><xml><a>&a;</a></xml>");
+  }
+}